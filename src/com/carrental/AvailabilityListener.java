@@ -0,0 +1,32 @@
+package com.carrental;
+
+/**
+ * Callback used by a {@link Car} to report availability changes.
+ *
+ * <p>{@link CarInventory} registers itself as the listener of every car it
+ * stores, so its secondary indexes stay correct when a car is rented or
+ * returned outside of the inventory (e.g. by a {@link Rental}).</p>
+ *
+ * <p>{@link OffHeapCarStore} uses the listener the other way round: its car
+ * views are copies of an off-heap record, and the listener writes each
+ * change through to that record. If the record has changed in the meantime
+ * (another view of the same car won), the listener rejects the change and
+ * the car rolls back.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Interface:</b> Decouples the car from the inventory implementation.</li>
+ *   <li><b>Observer Pattern:</b> The car notifies its observer after each state change.</li>
+ * </ul>
+ * </p>
+ */
+interface AvailabilityListener {
+
+    /**
+     * Called after {@link Car#rent()} or {@link Car#returnCar()} changed the car's state.
+     *
+     * @param car the car whose availability has changed
+     * @return true to accept the change, false to make the car undo it
+     */
+    boolean availabilityChanged(Car car);
+}
@@ -0,0 +1,308 @@
+package com.carrental;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client of a {@link BookingServer}: sends requests in the {@link BookingProtocol} format over one connection.
+ *
+ * <p>Every call returns at once with a future; any number of requests can be
+ * outstanding (pipelining). Requests from several threads are written
+ * together: whoever finds no write running writes everything queued so far,
+ * the others only append (the same scheme as the journal's group commit).
+ * A reader thread matches the responses to their futures by request ID.</p>
+ *
+ * <p>Failed requests complete their future exceptionally with the exception
+ * the local {@link RentalService} would have thrown:
+ * {@link CarNotAvailableException}, {@link IllegalStateException} (rental
+ * already closed, server error) or {@link IllegalArgumentException}
+ * (unknown ID, invalid value). If the connection breaks, every outstanding
+ * future fails with an {@link UncheckedIOException}.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Framing, request IDs and the socket are hidden behind three calls.</li>
+ *   <li><b>Asynchrony:</b> Futures let callers keep many requests in flight.</li>
+ * </ul>
+ * </p>
+ */
+public final class BookingClient implements AutoCloseable {
+
+    /**
+     * Answer to a rent request.
+     *
+     * @param rentalId      ID of the new rental
+     * @param paymentId     ID of its payment
+     * @param amount        amount charged
+     * @param paymentStatus payment status when the server answered (PENDING while the gateway works)
+     */
+    public record Rented(int rentalId, int paymentId, double amount, PaymentStatus paymentStatus) {}
+
+    /**
+     * Answer to an availability request.
+     *
+     * @param carId     car ID
+     * @param available true if the car is free right now
+     * @param fee       rental fee for the requested number of days
+     */
+    public record Availability(int carId, boolean available, double fee) {}
+
+    /** A request waiting for its response. */
+    private record Outstanding(byte op, int carId, CompletableFuture<Object> future) {}
+
+    private final SocketChannel channel;
+    private final Thread reader;
+
+    // Request ID -> its future (written by callers, removed by the reader)
+    private final ConcurrentHashMap<Integer, Outstanding> outstanding = new ConcurrentHashMap<>();
+
+    /** Guards everything below. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Encoded requests not yet written, and the buffer for the next write
+    private ByteBuffer pending = ByteBuffer.allocate(16 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(16 * 1024);
+    private boolean writing;
+    private int nextRequestId;
+
+    // First failure; every later call fails with it
+    private volatile UncheckedIOException failure;
+
+    /**
+     * Connects to a server.
+     *
+     * @param host server host
+     * @param port server port
+     * @throws UncheckedIOException if the connection cannot be made
+     */
+    public BookingClient(String host, int port) {
+        try {
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sunucuya bağlanılamadı: " + host + ":" + port, e);
+        }
+        reader = Thread.ofVirtual().name("booking-client-reader").start(this::readLoop);
+    }
+
+    /**
+     * Rents a car for a new customer.
+     *
+     * @param carId  car ID
+     * @param name   customer name
+     * @param phone  customer phone (10-11 digits)
+     * @param days   number of rental days
+     * @param method payment method
+     * @return completes with the rental and payment IDs
+     * @throws IllegalArgumentException if name or phone is null or too long
+     * @throws InvalidRentalPeriodException if days is out of range
+     */
+    public CompletableFuture<Rented> rent(int carId, String name, String phone, int days, PaymentMethod method) {
+        if (method == null) throw new IllegalArgumentException("Ödeme yöntemi null olamaz.");
+        return send(BookingProtocol.RENT, carId,
+                (out, id) -> BookingProtocol.writeRent(out, id, carId, days, method, name, phone));
+    }
+
+    /**
+     * Returns the car of a rental.
+     *
+     * @param rentalId rental ID
+     * @return completes with the rental ID once the rental is closed
+     */
+    public CompletableFuture<Integer> returnRental(int rentalId) {
+        return send(BookingProtocol.RETURN, 0, (out, id) -> BookingProtocol.writeReturn(out, id, rentalId));
+    }
+
+    /**
+     * Asks whether a car is free and what it would cost.
+     *
+     * @param carId car ID
+     * @param days  number of rental days to quote
+     * @return completes with the availability and fee
+     * @throws InvalidRentalPeriodException if days is out of range
+     */
+    public CompletableFuture<Availability> availability(int carId, int days) {
+        return send(BookingProtocol.AVAILABILITY, carId,
+                (out, id) -> BookingProtocol.writeAvailability(out, id, carId, days));
+    }
+
+    /**
+     * @return number of requests sent and not answered yet
+     */
+    public int outstanding() {
+        return outstanding.size();
+    }
+
+    /**
+     * Closes the connection; outstanding requests fail.
+     */
+    @Override
+    public void close() {
+        fail(new UncheckedIOException(new IOException("İstemci kapatıldı.")));
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================= SENDING =================
+
+    /** Encodes one request with the given request ID. */
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(ByteBuffer out, int requestId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> send(byte op, int carId, Encoder encoder) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        boolean writer;
+
+        lock.lock();
+        try {
+            if (failure != null) throw failure;
+            int requestId = nextRequestId++;
+            int start = pending.position();
+            if (pending.remaining() < BookingProtocol.maxRentBytes()) {
+                pending = ByteBuffer.allocate(pending.capacity() * 2).put(pending.flip());
+            }
+            try {
+                encoder.encode(pending, requestId);
+            } catch (RuntimeException e) {
+                pending.position(start); // drop the half-encoded request
+                throw e;
+            }
+            outstanding.put(requestId, new Outstanding(op, carId, future));
+
+            writer = !writing;
+            if (writer) writing = true;
+        } finally {
+            lock.unlock();
+        }
+
+        if (writer) writeAll();
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * Writes queued requests until none are left; requests appended meanwhile go out in the next round.
+     */
+    private void writeAll() {
+        while (true) {
+            ByteBuffer batch;
+            lock.lock();
+            try {
+                if (pending.position() == 0 || failure != null) {
+                    writing = false;
+                    return;
+                }
+                batch = pending;
+                pending = (spare != null) ? spare : ByteBuffer.allocate(batch.capacity());
+                spare = null;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) channel.write(batch);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    writing = false;
+                } finally {
+                    lock.unlock();
+                }
+                fail(new UncheckedIOException("İstek gönderilemedi.", e));
+                return;
+            }
+
+            lock.lock();
+            try {
+                spare = batch.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ================= RECEIVING =================
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        try {
+            while (true) {
+                if (channel.read(in) < 0) throw new IOException("Sunucu bağlantıyı kapattı.");
+                in.flip();
+                int length;
+                while ((length = BookingProtocol.completeFrame(in)) >= 0) {
+                    int body = in.position() + BookingProtocol.LENGTH_BYTES;
+                    complete(in.slice(body, length));
+                    in.position(body + length);
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            fail(new UncheckedIOException("Yanıt okunamadı.", e));
+        } catch (RuntimeException e) {
+            // Broken frame: the stream cannot be resynchronised
+            fail(new UncheckedIOException("Geçersiz yanıt.", new IOException(e)));
+        }
+    }
+
+    private void complete(ByteBuffer frame) {
+        BookingProtocol.Status status = BookingProtocol.status(frame.get());
+        int requestId = frame.getInt();
+        Outstanding request = outstanding.remove(requestId);
+        if (request == null) return; // unknown ID: nothing waits for it
+
+        if (status != BookingProtocol.Status.OK) {
+            request.future().completeExceptionally(exception(status, BookingProtocol.readMessage(frame)));
+            return;
+        }
+        Object result = switch (request.op()) {
+            case BookingProtocol.RENT -> new Rented(frame.getInt(), frame.getInt(),
+                    BookingProtocol.amount(frame.getLong()), BookingProtocol.paymentStatus(frame.get()));
+            case BookingProtocol.RETURN -> frame.getInt();
+            default -> new Availability(request.carId(), frame.get() != 0, BookingProtocol.amount(frame.getLong()));
+        };
+        request.future().complete(result);
+    }
+
+    private static RuntimeException exception(BookingProtocol.Status status, String message) {
+        return switch (status) {
+            case NOT_AVAILABLE -> new CarNotAvailableException(message);
+            case NOT_FOUND, BAD_REQUEST -> new IllegalArgumentException(message);
+            default -> new IllegalStateException(message);
+        };
+    }
+
+    /**
+     * Records the first failure, closes the socket and fails every outstanding request.
+     */
+    private void fail(UncheckedIOException error) {
+        lock.lock();
+        try {
+            if (failure == null) failure = error;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already failing
+        }
+        for (Integer requestId : outstanding.keySet()) {
+            Outstanding request = outstanding.remove(requestId);
+            if (request != null) request.future().completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.carrental;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary request/response format spoken by {@link BookingServer} and {@link BookingClient}.
+ *
+ * <p>Every frame starts with its length (unsigned 16 bit, the bytes after the
+ * length field) and is big-endian. Requests carry a request ID chosen by the
+ * client; the response repeats it, so a client can send many requests
+ * without waiting (pipelining) and match the answers, which may come back in
+ * a different order.</p>
+ *
+ * <pre>
+ * request  = length:u16  op:u8  requestId:i32  body
+ *   RENT         carId:i32  days:i16  method:u8  nameLength:u8  name:utf8  phoneLength:u8  phone:ascii
+ *   RETURN       rentalId:i32
+ *   AVAILABILITY carId:i32  days:i16
+ *
+ * response = length:u16  status:u8  requestId:i32  body
+ *   OK + RENT         rentalId:i32  paymentId:i32  amount:i64 (kuruş)  paymentStatus:u8
+ *   OK + RETURN       rentalId:i32
+ *   OK + AVAILABILITY available:u8  fee:i64 (kuruş, for the requested days)
+ *   any other status  messageLength:u16  message:utf8
+ * </pre>
+ *
+ * <p>Enums travel as their ordinal. A RENT frame with a 10-character name is
+ * 37 bytes and its answer 24 bytes, against several hundred for the same call
+ * over the HTTP API.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Server and client share one definition of the byte layout.</li>
+ *   <li><b>Enum Usage:</b> Operations and statuses are closed sets of values.</li>
+ * </ul>
+ * </p>
+ */
+public final class BookingProtocol {
+
+    /**
+     * Result of a request.
+     */
+    public enum Status {
+
+        // The request was carried out
+        OK,
+
+        // No car or rental with the given ID
+        NOT_FOUND,
+
+        // The car is rented or booked in the window
+        NOT_AVAILABLE,
+
+        // The rental is already completed or cancelled
+        CONFLICT,
+
+        // Malformed frame or invalid value (e.g. days < 1)
+        BAD_REQUEST,
+
+        // Unexpected failure on the server
+        SERVER_ERROR
+    }
+
+    // Operation codes
+    static final byte RENT = 1;
+    static final byte RETURN = 2;
+    static final byte AVAILABILITY = 3;
+
+    /** Bytes of the length field in front of every frame. */
+    static final int LENGTH_BYTES = 2;
+
+    /** Bytes of the op/status and request ID after the length. */
+    static final int HEADER_BYTES = 5;
+
+    /** Largest frame body; longer lengths are treated as a broken stream. */
+    static final int MAX_FRAME_BYTES = 1024;
+
+    private static final Status[] STATUSES = Status.values();
+    private static final PaymentMethod[] METHODS = PaymentMethod.values();
+    private static final PaymentStatus[] PAYMENT_STATUSES = PaymentStatus.values();
+
+    private BookingProtocol() {}
+
+    // ================= REQUESTS =================
+
+    static void writeRent(ByteBuffer out, int requestId, int carId, int days, PaymentMethod method,
+                          String name, String phone) {
+        byte[] nameBytes = shortString(name, "Müşteri adı");
+        byte[] phoneBytes = shortString(phone, "Telefon");
+        int start = begin(out, RENT, requestId);
+        out.putInt(carId);
+        out.putShort(days(days));
+        out.put((byte) method.ordinal());
+        out.put((byte) nameBytes.length).put(nameBytes);
+        out.put((byte) phoneBytes.length).put(phoneBytes);
+        end(out, start);
+    }
+
+    static void writeReturn(ByteBuffer out, int requestId, int rentalId) {
+        int start = begin(out, RETURN, requestId);
+        out.putInt(rentalId);
+        end(out, start);
+    }
+
+    static void writeAvailability(ByteBuffer out, int requestId, int carId, int days) {
+        int start = begin(out, AVAILABILITY, requestId);
+        out.putInt(carId);
+        out.putShort(days(days));
+        end(out, start);
+    }
+
+    /**
+     * @return worst-case size of a RENT frame, so callers can make room before encoding
+     */
+    static int maxRentBytes() {
+        return LENGTH_BYTES + HEADER_BYTES + 4 + 2 + 1 + 1 + 255 + 1 + 255;
+    }
+
+    // ================= RESPONSES =================
+
+    static void writeRented(ByteBuffer out, int requestId, Rental rental, Payment payment) {
+        int start = begin(out, (byte) Status.OK.ordinal(), requestId);
+        out.putInt(rental.getRentalId());
+        out.putInt(payment.getPaymentId());
+        out.putLong(kurus(payment.getAmount()));
+        out.put((byte) payment.getStatus().ordinal());
+        end(out, start);
+    }
+
+    static void writeReturned(ByteBuffer out, int requestId, Rental rental) {
+        int start = begin(out, (byte) Status.OK.ordinal(), requestId);
+        out.putInt(rental.getRentalId());
+        end(out, start);
+    }
+
+    static void writeAvailable(ByteBuffer out, int requestId, boolean available, double fee) {
+        int start = begin(out, (byte) Status.OK.ordinal(), requestId);
+        out.put((byte) (available ? 1 : 0));
+        out.putLong(kurus(fee));
+        end(out, start);
+    }
+
+    static void writeError(ByteBuffer out, int requestId, Status status, String message) {
+        byte[] text = (message == null ? status.name() : message).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(text.length, MAX_FRAME_BYTES - HEADER_BYTES - 2);
+        int start = begin(out, (byte) status.ordinal(), requestId);
+        out.putShort((short) length);
+        out.put(text, 0, length);
+        end(out, start);
+    }
+
+    /**
+     * @return worst-case size of any response frame
+     */
+    static int maxResponseBytes() {
+        return LENGTH_BYTES + MAX_FRAME_BYTES;
+    }
+
+    // ================= READING =================
+
+    /**
+     * Returns the body length of the frame at the buffer's position, or -1 if
+     * the buffer does not hold the whole frame yet. Does not move the position.
+     *
+     * @throws IllegalStateException if the length is out of range (the stream is broken)
+     */
+    static int completeFrame(ByteBuffer in) {
+        if (in.remaining() < LENGTH_BYTES) return -1;
+        int length = Short.toUnsignedInt(in.getShort(in.position()));
+        if (length < HEADER_BYTES || length > MAX_FRAME_BYTES) {
+            throw new IllegalStateException("Geçersiz çerçeve uzunluğu: " + length);
+        }
+        return in.remaining() >= LENGTH_BYTES + length ? length : -1;
+    }
+
+    static Status status(byte code) {
+        if (code < 0 || code >= STATUSES.length) throw new IllegalStateException("Geçersiz durum kodu: " + code);
+        return STATUSES[code];
+    }
+
+    static PaymentMethod method(byte code) {
+        if (code < 0 || code >= METHODS.length) throw new IllegalArgumentException("Geçersiz ödeme yöntemi: " + code);
+        return METHODS[code];
+    }
+
+    static PaymentStatus paymentStatus(byte code) {
+        if (code < 0 || code >= PAYMENT_STATUSES.length) throw new IllegalStateException("Geçersiz ödeme durumu: " + code);
+        return PAYMENT_STATUSES[code];
+    }
+
+    /**
+     * Reads a string written with a one-byte length.
+     */
+    static String readShortString(ByteBuffer in) {
+        int length = Byte.toUnsignedInt(in.get());
+        if (length > in.remaining()) throw new BufferUnderflowException();
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    /**
+     * Reads an error message written by {@link #writeError}.
+     */
+    static String readMessage(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length > in.remaining()) throw new BufferUnderflowException();
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    static double amount(long kurus) {
+        return kurus / 100.0;
+    }
+
+    // ================= HELPERS =================
+
+    private static int begin(ByteBuffer out, byte code, int requestId) {
+        int start = out.position();
+        out.putShort((short) 0); // length, patched in end()
+        out.put(code);
+        out.putInt(requestId);
+        return start;
+    }
+
+    private static void end(ByteBuffer out, int start) {
+        out.putShort(start, (short) (out.position() - start - LENGTH_BYTES));
+    }
+
+    private static short days(int days) {
+        if (days <= 0 || days > Short.MAX_VALUE) {
+            throw new InvalidRentalPeriodException("Kiralama günü 1 ile " + Short.MAX_VALUE + " arasında olmalı.");
+        }
+        return (short) days;
+    }
+
+    private static byte[] shortString(String s, String label) {
+        if (s == null) throw new IllegalArgumentException(label + " null olamaz.");
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 255) throw new IllegalArgumentException(label + " en fazla 255 bayt olabilir.");
+        return bytes;
+    }
+
+    private static long kurus(double amount) {
+        return Math.round(amount * 100);
+    }
+}
@@ -0,0 +1,418 @@
+package com.carrental;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Serves rent, return and availability requests in the {@link BookingProtocol} binary format.
+ *
+ * <p>One selector thread accepts connections, reads frames and writes
+ * responses for all clients, without blocking on any of them. Availability
+ * checks are answered right on that thread. Rents and returns may wait for
+ * the journal's fsync, so each runs on its own virtual thread and hands its
+ * response back to the selector thread; many of them in flight at once
+ * share one fsync through the journal's group commit.</p>
+ *
+ * <p>Clients may pipeline: every frame in a read is dispatched before the
+ * answers are written, and responses are matched by their request ID, not
+ * by their order. A connection stops being read while it has
+ * {@value #MAX_IN_FLIGHT} unanswered requests or a large backlog of unsent
+ * responses, so a fast client cannot make the server queue without bound.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Event-Driven Design:</b> A selector reacts to ready sockets instead of a thread per client.</li>
+ *   <li><b>Separation of Concerns:</b> Only translates frames to calls on the inventory and rental service.</li>
+ * </ul>
+ * </p>
+ */
+public final class BookingServer implements AutoCloseable {
+
+    /** Unanswered requests after which a connection is no longer read. */
+    static final int MAX_IN_FLIGHT = 1024;
+
+    /** Unsent response bytes after which a connection is no longer read. */
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int INITIAL_WRITE_BUFFER_BYTES = 16 * 1024;
+
+    /** State of one client connection. */
+    private static final class Connection {
+
+        final SocketChannel channel;
+        SelectionKey key;
+
+        // Received bytes not yet parsed (selector thread only)
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+
+        // Encoded responses not yet written (guarded by "this"; kept in write mode)
+        ByteBuffer out = ByteBuffer.allocate(INITIAL_WRITE_BUFFER_BYTES);
+
+        // Requests dispatched to workers and not answered yet
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        // True while the connection waits in the ready queue
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // Reading is paused by backpressure (selector thread only)
+        boolean paused;
+        boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final CarInventory inventory;
+    private final RentalService service;
+    private final BiFunction<String, String, Customer> customers;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread loop;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Connections with new responses to write
+    private final ConcurrentLinkedQueue<Connection> ready = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Binds the port and starts the selector thread.
+     *
+     * @param port      TCP port (0 = any free port, see {@link #port()})
+     * @param inventory car inventory for availability checks
+     * @param service   rental service that rents and returns
+     * @param customers creates a customer from name and phone (called concurrently, also for requests that then fail)
+     * @throws IllegalArgumentException if a component is null or the port is out of range
+     * @throws UncheckedIOException     if the port cannot be bound
+     */
+    public BookingServer(int port, CarInventory inventory, RentalService service,
+                         BiFunction<String, String, Customer> customers) {
+        if (inventory == null || service == null || customers == null) {
+            throw new IllegalArgumentException("Servis bileşenleri null olamaz.");
+        }
+        if (port < 0 || port > 65_535) throw new IllegalArgumentException("Geçersiz port: " + port);
+
+        this.inventory = inventory;
+        this.service = service;
+        this.customers = customers;
+
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), 4096);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Rezervasyon sunucusu başlatılamadı.", e);
+        }
+
+        loop = new Thread(this::run, "booking-server");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int port() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops accepting and reading, waits for running rents and returns, and closes every connection.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.close();
+
+        for (SelectionKey key : selector.keys()) closeQuietly(key.channel());
+        closeQuietly(serverChannel);
+        closeQuietly(selector);
+    }
+
+    // ================= SELECTOR LOOP =================
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                return; // selector broken: nothing left to serve
+            }
+
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (!key.isValid()) continue;
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                Connection c = (Connection) key.attachment();
+                if (key.isReadable()) read(c);
+                if (!c.closed && key.isValid() && key.isWritable()) flush(c);
+            }
+            selector.selectedKeys().clear();
+
+            // Responses produced since the last round, inline or by workers
+            Connection c;
+            while ((c = ready.poll()) != null) {
+                c.scheduled.set(false);
+                flush(c);
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection c = new Connection(channel);
+                c.key = channel.register(selector, SelectionKey.OP_READ, c);
+            }
+        } catch (IOException e) {
+            // the client gave up while being accepted; the others are unaffected
+        }
+    }
+
+    private void read(Connection c) {
+        int n;
+        try {
+            n = c.channel.read(c.in);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) {
+            disconnect(c);
+            return;
+        }
+        parse(c);
+    }
+
+    /**
+     * Dispatches every complete frame in the read buffer, until backpressure pauses the connection.
+     */
+    private void parse(Connection c) {
+        ByteBuffer in = c.in.flip();
+        try {
+            while (!c.paused) {
+                int length = BookingProtocol.completeFrame(in);
+                if (length < 0) break;
+
+                int body = in.position() + BookingProtocol.LENGTH_BYTES;
+                dispatch(c, in.slice(body, length));
+                in.position(body + length);
+
+                if (c.inFlight.get() >= MAX_IN_FLIGHT || pendingOutput(c) >= MAX_PENDING_OUTPUT) c.paused = true;
+            }
+        } catch (IllegalStateException e) {
+            // Broken length field: the stream cannot be resynchronised
+            disconnect(c);
+            return;
+        } finally {
+            in.compact();
+        }
+        updateInterest(c);
+    }
+
+    /**
+     * Writes as much pending output as the socket takes, and resumes a paused connection.
+     */
+    private void flush(Connection c) {
+        if (c.closed) return;
+        try {
+            synchronized (c) {
+                if (c.out.position() > 0) {
+                    c.out.flip();
+                    c.channel.write(c.out);
+                    c.out.compact();
+                }
+            }
+        } catch (IOException e) {
+            disconnect(c);
+            return;
+        }
+
+        if (c.paused && c.inFlight.get() < MAX_IN_FLIGHT && pendingOutput(c) < MAX_PENDING_OUTPUT) {
+            // Frames left in the read buffer when the connection was paused come first
+            c.paused = false;
+            parse(c);
+            return;
+        }
+        updateInterest(c);
+    }
+
+    private void updateInterest(Connection c) {
+        if (c.closed || !c.key.isValid()) return;
+        int ops = c.paused ? 0 : SelectionKey.OP_READ;
+        if (pendingOutput(c) > 0) ops |= SelectionKey.OP_WRITE;
+        c.key.interestOps(ops);
+    }
+
+    private static int pendingOutput(Connection c) {
+        synchronized (c) {
+            return c.out.position();
+        }
+    }
+
+    private void disconnect(Connection c) {
+        c.closed = true;
+        c.key.cancel();
+        closeQuietly(c.channel);
+    }
+
+    // ================= REQUESTS =================
+
+    private void dispatch(Connection c, ByteBuffer frame) {
+        byte op = frame.get();
+        int requestId = frame.getInt();
+        try {
+            switch (op) {
+                case BookingProtocol.AVAILABILITY -> availability(c, requestId, frame.getInt(), frame.getShort());
+                case BookingProtocol.RENT -> {
+                    int carId = frame.getInt();
+                    int days = frame.getShort();
+                    PaymentMethod method = BookingProtocol.method(frame.get());
+                    String name = BookingProtocol.readShortString(frame);
+                    String phone = BookingProtocol.readShortString(frame);
+                    c.inFlight.incrementAndGet();
+                    workers.execute(() -> rent(c, requestId, carId, days, method, name, phone));
+                }
+                case BookingProtocol.RETURN -> {
+                    int rentalId = frame.getInt();
+                    c.inFlight.incrementAndGet();
+                    workers.execute(() -> returnRental(c, requestId, rentalId));
+                }
+                default -> respond(c, out -> BookingProtocol.writeError(out, requestId,
+                        BookingProtocol.Status.BAD_REQUEST, "Bilinmeyen işlem: " + op));
+            }
+        } catch (RuntimeException e) {
+            // Truncated body or invalid enum code; the frame length keeps the stream in sync
+            respond(c, out -> BookingProtocol.writeError(out, requestId, BookingProtocol.Status.BAD_REQUEST,
+                    "Geçersiz çerçeve: " + e));
+        }
+    }
+
+    private void availability(Connection c, int requestId, int carId, int days) {
+        Car car = inventory.findCarById(carId);
+        if (car == null) {
+            respond(c, out -> BookingProtocol.writeError(out, requestId, BookingProtocol.Status.NOT_FOUND,
+                    "Araç bulunamadı: " + carId));
+            return;
+        }
+        if (days <= 0) {
+            respond(c, out -> BookingProtocol.writeError(out, requestId, BookingProtocol.Status.BAD_REQUEST,
+                    "Kiralama günü 1 veya daha fazla olmalı."));
+            return;
+        }
+        boolean available = car.isAvailable();
+        double fee = car.calculateRentalFee(days);
+        respond(c, out -> BookingProtocol.writeAvailable(out, requestId, available, fee));
+    }
+
+    private void rent(Connection c, int requestId, int carId, int days, PaymentMethod method,
+                      String name, String phone) {
+        Consumer<ByteBuffer> answer;
+        try {
+            if (inventory.findCarById(carId) == null) {
+                answer = error(requestId, BookingProtocol.Status.NOT_FOUND, "Araç bulunamadı: " + carId);
+            } else if (!phone.matches("\\d{10,11}")) {
+                answer = error(requestId, BookingProtocol.Status.BAD_REQUEST, "Telefon sadece rakam ve 10-11 haneli olmalı.");
+            } else {
+                Customer customer = customers.apply(name, phone);
+                RentalService.Booking booking = service.rent(carId, customer, days, method);
+                answer = out -> BookingProtocol.writeRented(out, requestId, booking.rentals().get(0), booking.payment());
+            }
+        } catch (RuntimeException e) {
+            answer = error(requestId, statusOf(e), e.getMessage());
+        }
+        c.inFlight.decrementAndGet();
+        respond(c, answer);
+    }
+
+    private void returnRental(Connection c, int requestId, int rentalId) {
+        Consumer<ByteBuffer> answer;
+        try {
+            Rental rental = service.returnRental(rentalId);
+            answer = (rental == null)
+                    ? error(requestId, BookingProtocol.Status.NOT_FOUND, "Rental bulunamadı: " + rentalId)
+                    : out -> BookingProtocol.writeReturned(out, requestId, rental);
+        } catch (RuntimeException e) {
+            answer = error(requestId, statusOf(e), e.getMessage());
+        }
+        c.inFlight.decrementAndGet();
+        respond(c, answer);
+    }
+
+    private static Consumer<ByteBuffer> error(int requestId, BookingProtocol.Status status, String message) {
+        return out -> BookingProtocol.writeError(out, requestId, status, message);
+    }
+
+    private static BookingProtocol.Status statusOf(RuntimeException e) {
+        if (e instanceof CarNotAvailableException) return BookingProtocol.Status.NOT_AVAILABLE;
+        if (e instanceof IllegalStateException || e instanceof RentalAlreadyClosedException) {
+            return BookingProtocol.Status.CONFLICT;
+        }
+        if (e instanceof IllegalArgumentException || e instanceof InvalidRentalPeriodException) {
+            return BookingProtocol.Status.BAD_REQUEST;
+        }
+        return BookingProtocol.Status.SERVER_ERROR;
+    }
+
+    /**
+     * Encodes a response into the connection's output and queues the connection for writing.
+     * Called on the selector thread and on workers.
+     */
+    private void respond(Connection c, Consumer<ByteBuffer> encoder) {
+        synchronized (c) {
+            if (c.out.remaining() < BookingProtocol.maxResponseBytes()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(c.out.capacity() * 2,
+                        c.out.position() + BookingProtocol.maxResponseBytes()));
+                c.out = larger.put(c.out.flip());
+            }
+            encoder.accept(c.out);
+        }
+        if (c.scheduled.compareAndSet(false, true)) {
+            ready.add(c);
+            // The selector thread drains the queue after its current round anyway
+            if (Thread.currentThread() != loop) selector.wakeup();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // shutting down; nothing left to do with it
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.carrental;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Day-by-day fleet capacity for the coming weeks, per car type and per fuel type.
+ *
+ * <p>Operations asks questions such as "how many electric cars are free on
+ * each of the next 90 days?" or "what is the lowest number of free diesel
+ * cars between the 3rd and the 17th?". Answering them from the rentals would
+ * mean visiting every rental for every day. The calendar instead keeps, per
+ * category, the number of <i>booked</i> cars on every day of a rolling
+ * horizon in a segment tree with lazy range updates:
+ * <ul>
+ *   <li>a rental or reservation adds 1 to its day range, a return or
+ *       cancellation subtracts 1 – O(log H) each,</li>
+ *   <li>the maximum and the sum of bookings over any day range come out of
+ *       the same tree – O(log H) per query.</li>
+ * </ul>
+ * Free capacity is the category's fleet size (a constant-time bitmap count
+ * from {@link CarInventory}) minus the bookings, so cars added to or removed
+ * from the inventory are reflected without touching the trees.</p>
+ *
+ * <p>Categories are the concrete car class ({@code GasCar.class},
+ * {@code ElectricCar.class}, {@code LuxuryCar.class}) and, for gas cars, the
+ * {@link FuelType}. Days before today are ignored.</p>
+ *
+ * <p>The horizon rolls forward with the clock: the tree is used as a ring
+ * buffer indexed by {@code epochDay mod H}, and days that fall behind
+ * "today" are reused for the new days at the end. The part of a booking
+ * that lies beyond the horizon is kept as start/end events per category
+ * and copied into the tree when its days enter the horizon.</p>
+ *
+ * <p>Thread safety: all methods are synchronized (queries push lazy updates
+ * down the tree, so they write too).</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Trees and the ring layout are private.</li>
+ *   <li><b>Aggregation:</b> The calendar reads fleet sizes from a {@link CarInventory}.</li>
+ * </ul>
+ * </p>
+ */
+public class CapacityCalendar {
+
+    /** Default number of days covered by the calendar. */
+    public static final int DEFAULT_HORIZON_DAYS = 90;
+
+    /**
+     * Segment tree over the ring positions with range add, range max and range sum.
+     */
+    private static final class BookingTree {
+
+        private final int n;
+        private final int[] max;
+        private final long[] sum;
+        private final int[] pending;
+
+        BookingTree(int n) {
+            this.n = n;
+            this.max = new int[4 * n];
+            this.sum = new long[4 * n];
+            this.pending = new int[4 * n];
+        }
+
+        /** Adds {@code delta} to positions {@code [lo, hi]}. */
+        void add(int lo, int hi, int delta) {
+            add(1, 0, n - 1, lo, hi, delta);
+        }
+
+        /** @return largest value in {@code [lo, hi]} */
+        int max(int lo, int hi) {
+            return max(1, 0, n - 1, lo, hi);
+        }
+
+        /** @return sum of values in {@code [lo, hi]} */
+        long sum(int lo, int hi) {
+            return sum(1, 0, n - 1, lo, hi);
+        }
+
+        private void add(int node, int l, int r, int lo, int hi, int delta) {
+            if (hi < l || r < lo) return;
+            if (lo <= l && r <= hi) {
+                apply(node, l, r, delta);
+                return;
+            }
+            push(node, l, r);
+            int m = (l + r) >>> 1;
+            add(2 * node, l, m, lo, hi, delta);
+            add(2 * node + 1, m + 1, r, lo, hi, delta);
+            max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+            sum[node] = sum[2 * node] + sum[2 * node + 1];
+        }
+
+        private int max(int node, int l, int r, int lo, int hi) {
+            if (hi < l || r < lo) return Integer.MIN_VALUE;
+            if (lo <= l && r <= hi) return max[node];
+            push(node, l, r);
+            int m = (l + r) >>> 1;
+            return Math.max(max(2 * node, l, m, lo, hi), max(2 * node + 1, m + 1, r, lo, hi));
+        }
+
+        private long sum(int node, int l, int r, int lo, int hi) {
+            if (hi < l || r < lo) return 0;
+            if (lo <= l && r <= hi) return sum[node];
+            push(node, l, r);
+            int m = (l + r) >>> 1;
+            return sum(2 * node, l, m, lo, hi) + sum(2 * node + 1, m + 1, r, lo, hi);
+        }
+
+        private void apply(int node, int l, int r, int delta) {
+            max[node] += delta;
+            sum[node] += (long) delta * (r - l + 1);
+            pending[node] += delta;
+        }
+
+        /** Hands a pending range update down to both children. */
+        private void push(int node, int l, int r) {
+            if (pending[node] == 0) return;
+            int m = (l + r) >>> 1;
+            apply(2 * node, l, m, pending[node]);
+            apply(2 * node + 1, m + 1, r, pending[node]);
+            pending[node] = 0;
+        }
+    }
+
+    /**
+     * Bookings of one category: the tree for days inside the horizon plus
+     * start/end events for days after it.
+     */
+    private static final class Category {
+        final BookingTree tree;
+
+        // Epoch day -> change in bookings on that day (all days are past the horizon end)
+        final NavigableMap<Long, Integer> beyond = new TreeMap<>();
+
+        // Bookings from 'beyond' that cover the last day that entered the horizon
+        int carry;
+
+        Category(int horizon) {
+            this.tree = new BookingTree(horizon);
+        }
+    }
+
+    // Source of fleet sizes per category
+    private final CarInventory inventory;
+
+    // Number of days in the horizon (size of every tree)
+    private final int horizon;
+
+    // Source of "today"
+    private final Clock clock;
+
+    // Epoch day of the first day in the horizon
+    private long firstDay;
+
+    // Bookings per concrete car class and per fuel type
+    private final Map<Class<? extends Car>, Category> byType = new HashMap<>();
+    private final Map<FuelType, Category> byFuel = new EnumMap<>(FuelType.class);
+
+    /**
+     * Creates a calendar for the next {@value #DEFAULT_HORIZON_DAYS} days.
+     *
+     * @param inventory inventory whose fleet sizes are used
+     */
+    public CapacityCalendar(CarInventory inventory) {
+        this(inventory, DEFAULT_HORIZON_DAYS, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a calendar with a custom horizon and clock.
+     *
+     * @param inventory   inventory whose fleet sizes are used
+     * @param horizonDays number of days covered, starting today
+     * @param clock       clock that defines "today"
+     * @throws IllegalArgumentException if inventory or clock is null or horizonDays is not positive
+     */
+    public CapacityCalendar(CarInventory inventory, int horizonDays, Clock clock) {
+        if (inventory == null) throw new IllegalArgumentException("Envanter null olamaz.");
+        if (clock == null) throw new IllegalArgumentException("Saat null olamaz.");
+        if (horizonDays <= 0) throw new IllegalArgumentException("Takvim en az 1 gün olmalı.");
+
+        this.inventory = inventory;
+        this.horizon = horizonDays;
+        this.clock = clock;
+        this.firstDay = LocalDate.now(clock).toEpochDay();
+
+        for (FuelType f : FuelType.values()) {
+            byFuel.put(f, new Category(horizon));
+        }
+    }
+
+    // ================= UPDATES =================
+
+    /**
+     * Records a new rental (its car is booked from the rental day for {@code days} days).
+     *
+     * @param rental the rental that was created
+     */
+    public synchronized void onRentalCreated(Rental rental) {
+        LocalDate start = rental.getCreatedAt().toLocalDate();
+        update(rental.getCar(), start, start.plusDays(rental.getDays()), +1);
+    }
+
+    /**
+     * Records several new rentals under one lock acquisition (batch booking).
+     *
+     * @param batch the rentals that were created
+     */
+    public synchronized void onRentalsCreated(List<Rental> batch) {
+        for (Rental rental : batch) {
+            onRentalCreated(rental);
+        }
+    }
+
+    /**
+     * Records a closed rental: the days from the return day to the planned end become free.
+     *
+     * @param rental the rental that was closed
+     */
+    public synchronized void onRentalClosed(Rental rental) {
+        LocalDate start = rental.getCreatedAt().toLocalDate();
+        LocalDate plannedEnd = start.plusDays(rental.getDays());
+        LocalDate returned = (rental.getClosedAt() != null)
+                ? rental.getClosedAt().toLocalDate()
+                : LocalDate.now(clock);
+        update(rental.getCar(), returned.isAfter(start) ? returned : start, plannedEnd, -1);
+    }
+
+    /**
+     * Books a car for a window {@code [from, to)} (e.g. a future reservation).
+     *
+     * @param car  the booked car
+     * @param from first day
+     * @param to   day the car is free again (exclusive)
+     */
+    public synchronized void book(Car car, LocalDate from, LocalDate to) {
+        update(car, from, to, +1);
+    }
+
+    /**
+     * Releases a window {@code [from, to)} that was booked before.
+     *
+     * @param car  the car
+     * @param from first day
+     * @param to   day the booking ended (exclusive)
+     */
+    public synchronized void release(Car car, LocalDate from, LocalDate to) {
+        update(car, from, to, -1);
+    }
+
+    // ================= QUERIES =================
+
+    /**
+     * @param type concrete car class
+     * @param day  day inside the horizon
+     * @return number of cars of that class that are not booked on the day
+     */
+    public synchronized int freeOn(Class<? extends Car> type, LocalDate day) {
+        return minFree(type, day, day.plusDays(1));
+    }
+
+    /**
+     * Lowest number of free cars of a class on any day of {@code [from, to)}.
+     *
+     * @param type concrete car class
+     * @param from first day
+     * @param to   end of the range (exclusive)
+     * @return minimum free capacity over the range
+     */
+    public synchronized int minFree(Class<? extends Car> type, LocalDate from, LocalDate to) {
+        return inventory.countByType(type) - maxBooked(byType.get(type), from, to);
+    }
+
+    /**
+     * Lowest number of free gas cars with a fuel type on any day of {@code [from, to)}.
+     *
+     * @param fuelType fuel type
+     * @param from     first day
+     * @param to       end of the range (exclusive)
+     * @return minimum free capacity over the range
+     */
+    public synchronized int minFree(FuelType fuelType, LocalDate from, LocalDate to) {
+        return inventory.countByFuelType(fuelType) - maxBooked(byFuel.get(fuelType), from, to);
+    }
+
+    /**
+     * Total free car-days of a class over {@code [from, to)}.
+     *
+     * @param type concrete car class
+     * @param from first day
+     * @param to   end of the range (exclusive)
+     * @return sum over the days of the free cars on that day
+     */
+    public synchronized long freeCarDays(Class<? extends Car> type, LocalDate from, LocalDate to) {
+        return freeCarDays(inventory.countByType(type), byType.get(type), from, to);
+    }
+
+    /**
+     * Total free car-days of gas cars with a fuel type over {@code [from, to)}.
+     *
+     * @param fuelType fuel type
+     * @param from     first day
+     * @param to       end of the range (exclusive)
+     * @return sum over the days of the free cars on that day
+     */
+    public synchronized long freeCarDays(FuelType fuelType, LocalDate from, LocalDate to) {
+        return freeCarDays(inventory.countByFuelType(fuelType), byFuel.get(fuelType), from, to);
+    }
+
+    /**
+     * Free cars of a class for every day of the horizon.
+     *
+     * @param type concrete car class
+     * @return free capacity per day, index 0 = today
+     */
+    public synchronized int[] dailyFree(Class<? extends Car> type) {
+        advance();
+        int total = inventory.countByType(type);
+        Category category = byType.get(type);
+
+        int[] result = new int[horizon];
+        for (int i = 0; i < horizon; i++) {
+            int p = position(firstDay + i);
+            result[i] = total - (category == null ? 0 : category.tree.max(p, p));
+        }
+        return result;
+    }
+
+    /**
+     * @return number of days covered by the calendar
+     */
+    public int getHorizonDays() {
+        return horizon;
+    }
+
+    // ================= HELPERS =================
+
+    /**
+     * Applies a booking change to the car's type category and, for gas cars, its fuel category.
+     */
+    private void update(Car car, LocalDate from, LocalDate to, int delta) {
+        if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
+        advance();
+
+        Category type = byType.computeIfAbsent(car.getClass(), k -> new Category(horizon));
+        addBooking(type, from.toEpochDay(), to.toEpochDay(), delta);
+        if (car instanceof GasCar g) {
+            addBooking(byFuel.get(g.getFuelType()), from.toEpochDay(), to.toEpochDay(), delta);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the epoch days {@code [from, to)}: inside the horizon
+     * through the tree, after it as events. Days before today are ignored.
+     */
+    private void addBooking(Category category, long from, long to, int delta) {
+        long end = firstDay + horizon;
+
+        long lo = Math.max(from, firstDay);
+        long hi = Math.min(to, end) - 1;
+        if (lo <= hi) {
+            int pLo = position(lo);
+            int pHi = position(hi);
+            if (pLo <= pHi) {
+                category.tree.add(pLo, pHi, delta);
+            } else {
+                category.tree.add(pLo, horizon - 1, delta);
+                category.tree.add(0, pHi, delta);
+            }
+        }
+
+        long beyondFrom = Math.max(from, end);
+        if (beyondFrom < to) {
+            category.beyond.merge(beyondFrom, delta, Integer::sum);
+            category.beyond.merge(to, -delta, Integer::sum);
+        }
+    }
+
+    /**
+     * Largest booking count on a day of {@code [from, to)} (0 if the category has no bookings).
+     */
+    private int maxBooked(Category category, LocalDate from, LocalDate to) {
+        long[] range = clip(from, to);
+        if (category == null) return 0;
+
+        int result = 0;
+        for (int part = 0; part < range.length; part += 2) {
+            result = Math.max(result, category.tree.max((int) range[part], (int) range[part + 1]));
+        }
+        return result;
+    }
+
+    private long freeCarDays(int total, Category category, LocalDate from, LocalDate to) {
+        long[] range = clip(from, to);
+
+        long days = 0;
+        long booked = 0;
+        for (int part = 0; part < range.length; part += 2) {
+            days += range[part + 1] - range[part] + 1;
+            if (category != null) booked += category.tree.sum((int) range[part], (int) range[part + 1]);
+        }
+        return total * days - booked;
+    }
+
+    /**
+     * Converts a date range to one or two ring position ranges.
+     *
+     * @return {@code [lo, hi]} or {@code [lo1, hi1, lo2, hi2]} if the range wraps around the ring
+     * @throws InvalidRentalPeriodException if the range is empty or not inside the horizon
+     */
+    private long[] clip(LocalDate from, LocalDate to) {
+        advance();
+        long lo = from.toEpochDay();
+        long hi = to.toEpochDay() - 1;
+        if (lo > hi) {
+            throw new InvalidRentalPeriodException("Bitiş tarihi başlangıç tarihinden sonra olmalı.");
+        }
+        if (lo < firstDay || hi >= firstDay + horizon) {
+            throw new IllegalArgumentException("Tarih aralığı takvimin dışında: " + from + " - " + to);
+        }
+
+        int pLo = position(lo);
+        int pHi = position(hi);
+        return (pLo <= pHi) ? new long[]{pLo, pHi} : new long[]{pLo, horizon - 1, 0, pHi};
+    }
+
+    /**
+     * Rolls the horizon forward to today.
+     *
+     * <p>The ring position of a day that has passed is reused for the day
+     * that enters at the end; it is set to the bookings that reach into that
+     * day from beyond the old horizon.</p>
+     */
+    private void advance() {
+        long today = LocalDate.now(clock).toEpochDay();
+        if (today <= firstDay) return;
+
+        long oldEnd = firstDay + horizon;
+        long newEnd = today + horizon;
+        for (long d = oldEnd; d < newEnd; d++) {
+            boolean inNewHorizon = d >= today;
+            for (Category c : byType.values()) enter(c, d, inNewHorizon);
+            for (Category c : byFuel.values()) enter(c, d, inNewHorizon);
+        }
+        firstDay = today;
+    }
+
+    /**
+     * Moves day {@code d} from the events into the tree (or just consumes its events).
+     */
+    private void enter(Category category, long d, boolean store) {
+        Integer change = category.beyond.remove(d);
+        if (change != null) category.carry += change;
+        if (!store) return;
+
+        int p = position(d);
+        int old = category.tree.max(p, p);
+        if (old != category.carry) category.tree.add(p, p, category.carry - old);
+    }
+
+    /**
+     * @return ring position of an epoch day
+     */
+    private int position(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) horizon);
+    }
+}
@@ -1,5 +1,8 @@
 package com.carrental;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 /**
  * Abstract base class for all car types in the system.
  *
@@ -15,9 +18,27 @@ package com.carrental;
  *   <li><b>Polymorphism:</b> Subclasses implement their own rental fee calculation.</li>
  * </ul>
  * </p>
+ *
+ * <p>Thread safety: {@link #rent()} and {@link #returnCar()} are atomic
+ * compare-and-set transitions, so when several threads try to rent the same
+ * car at once exactly one of them wins.</p>
  */
 public abstract class Car implements Rentable {
 
+    // Atomic access to the availability and inventory listener fields
+    private static final VarHandle AVAILABLE;
+    private static final VarHandle LISTENER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            AVAILABLE = lookup.findVarHandle(Car.class, "available", boolean.class);
+            LISTENER = lookup.findVarHandle(Car.class, "availabilityListener", AvailabilityListener.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     // Unique identifier for the car (immutable after creation)
     private final int id;
 
@@ -30,8 +51,14 @@ public abstract class Car implements Rentable {
     // Daily rental price of the car
     private final double dailyRate;
 
-    // Availability status of the car (true if available for rent)
-    private boolean available;
+    // Availability status of the car (true if available for rent); changed only by CAS
+    private volatile boolean available;
+
+    // Position of the car inside its inventory (-1 while not in an inventory)
+    private volatile int inventorySlot = -1;
+
+    // Inventory callback notified when availability changes (null if not in an inventory)
+    private volatile AvailabilityListener availabilityListener;
 
     /**
      * Creates a new car instance.
@@ -93,34 +120,113 @@ public abstract class Car implements Rentable {
      * Marks the car as rented.
      *
      * <p>If the car is already rented, an exception is thrown to prevent
-     * invalid state changes.</p>
+     * invalid state changes. Checking and updating happen in one atomic
+     * compare-and-set, so two concurrent callers can never both succeed.</p>
      *
      * @throws CarNotAvailableException if the car is already rented
      */
     @Override
     public void rent() {
-        // Prevent renting a car that is already in use
-        if (!available) {
+        // Prevent renting a car that is already in use (available: true -> false)
+        if (!AVAILABLE.compareAndSet(this, true, false)) {
+            throw new CarNotAvailableException("Araç şu anda müsait değil.");
+        }
+        if (!notifyAvailabilityChanged()) {
+            // The backing store was rented through another view: undo
+            AVAILABLE.compareAndSet(this, false, true);
             throw new CarNotAvailableException("Araç şu anda müsait değil.");
         }
-        available = false; // update availability state
     }
 
     /**
      * Marks the car as returned and makes it available again.
      *
      * <p>This method restores the car's availability after a rental
-     * is completed.</p>
+     * is completed. Like {@link #rent()}, it is a single atomic transition.</p>
      *
      * @throws IllegalStateException if the car is already available
      */
     @Override
     public void returnCar() {
-        // Prevent returning a car that is not currently rented
-        if (available) {
+        // Prevent returning a car that is not currently rented (available: false -> true)
+        if (!AVAILABLE.compareAndSet(this, false, true)) {
+            throw new IllegalStateException("Araç zaten müsait.");
+        }
+        if (!notifyAvailabilityChanged()) {
+            // The backing store was returned through another view: undo
+            AVAILABLE.compareAndSet(this, true, false);
             throw new IllegalStateException("Araç zaten müsait.");
         }
-        available = true; // car is now available for new rentals
+    }
+
+    /**
+     * @return position of the car inside its inventory, or -1 if it is not stored in one
+     */
+    int getInventorySlot() {
+        return inventorySlot;
+    }
+
+    /**
+     * Attaches the car to an inventory.
+     *
+     * <p>Only {@link CarInventory} calls this method, so that its indexes
+     * follow every {@link #rent()} and {@link #returnCar()}. The listener is
+     * claimed atomically, so a car can belong to at most one inventory.</p>
+     *
+     * @param slot     position of the car inside the inventory
+     * @param listener callback notified on availability changes
+     * @return true if the car was attached, false if it already belongs to an inventory
+     */
+    boolean attachToInventory(int slot, AvailabilityListener listener) {
+        if (!LISTENER.compareAndSet(this, null, listener)) return false;
+        this.inventorySlot = slot;
+        return true;
+    }
+
+    /**
+     * Moves the car to another slot of the same inventory (used when slots are compacted).
+     *
+     * @param slot new position of the car
+     */
+    void moveToSlot(int slot) {
+        this.inventorySlot = slot;
+    }
+
+    /**
+     * Detaches the car from its inventory after it has been removed.
+     */
+    void detachFromInventory() {
+        this.availabilityListener = null;
+        this.inventorySlot = -1;
+    }
+
+    /**
+     * @return true if the car is currently stored in an inventory
+     */
+    boolean isAttachedToInventory() {
+        return availabilityListener != null;
+    }
+
+    /**
+     * Sets the initial availability of a car that is being rebuilt from stored data.
+     *
+     * <p>Must be called before the car is attached to an inventory or store,
+     * so no listener is notified.</p>
+     *
+     * @param available stored availability
+     */
+    void initAvailability(boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * Informs the owning inventory (if any) that availability has changed.
+     *
+     * @return false if the listener rejected the change
+     */
+    private boolean notifyAvailabilityChanged() {
+        AvailabilityListener listener = availabilityListener;
+        return listener == null || listener.availabilityChanged(this);
     }
 
     /**
@@ -2,6 +2,10 @@ package com.carrental;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Manages the car inventory of the system.
@@ -9,21 +13,81 @@ import java.util.List;
  * <p>This class is responsible for storing car objects and providing
  * operations such as adding, removing, searching, listing, and filtering cars.</p>
  *
+ * <p>Every stored car gets an internal <b>slot</b> number in the order it was
+ * added. Availability, brand, concrete car type and fuel type are kept as
+ * {@link SlotBitmap}s over those slots (see {@link SlotIndex}). Cars report
+ * every {@link Car#rent()} / {@link Car#returnCar()} back to the inventory
+ * through {@link AvailabilityListener}, so availability scans, counts and
+ * filters intersect bitmaps one 64-bit word at a time instead of visiting
+ * every car. Arbitrary combinations of criteria are expressed as a
+ * {@link CarQuery} and executed by {@link #search(CarQuery)}. Callers that
+ * need to stay current subscribe to {@link #events} instead of searching
+ * again and again.</p>
+ *
+ * <p>Thread safety: the inventory can be shared between threads.
+ * <ul>
+ *   <li>Adding and removing cars is serialised by an internal lock.</li>
+ *   <li>Lookups, listings and filters never take that lock, so they never
+ *       wait for writers. They see a weakly consistent view while cars are
+ *       being added, removed, rented or returned.</li>
+ *   <li>Renting and returning go straight to the car's atomic
+ *       compare-and-set and a lock-free bitmap update, so concurrent bookings
+ *       of different cars do not contend on the inventory.</li>
+ * </ul>
+ * </p>
+ *
  * <p>Object-Oriented Concepts:
  * <ul>
  *   <li><b>Encapsulation:</b> The internal car list is private and only accessed via methods.</li>
  *   <li><b>Polymorphism:</b> The inventory stores cars using the base type {@link Car}.</li>
- *   <li><b>Type Checking:</b> Filtering uses {@code instanceof} for car-specific filters.</li>
+ *   <li><b>Type Checking:</b> Cars are indexed by their runtime class for car-specific filters.</li>
  * </ul>
  * </p>
  */
 public class CarInventory {
 
+    /** Removed slots are compacted away once they outnumber live cars (and exceed this count). */
+    private static final int MIN_HOLES_BEFORE_COMPACTION = 1024;
+
+    /**
+     * Primary-key index of the inventory, keyed by car ID.
+     *
+     * <p>Lookup, uniqueness checks and removal are constant time, and the
+     * {@code int} keys are stored without boxing.</p>
+     */
+    private final IntObjectMap<Car> cars = new IntObjectMap<>();
+
+    /**
+     * Slot table and bitmaps. Replaced as a whole when slots are compacted,
+     * so readers always work on one consistent index.
+     */
+    private volatile SlotIndex index = new SlotIndex();
+
+    /** Serialises add, remove and compaction. Readers never take it. */
+    private final Object writeLock = new Object();
+
+    /** Callback registered on every stored car. */
+    private final AvailabilityListener availabilityListener = this::onAvailabilityChanged;
+
+    /** Subscribers of {@link #events}; publishing is a no-op while there are none. */
+    private final InventoryFeed feed;
+
+    /**
+     * Creates an empty inventory.
+     */
+    public CarInventory() {
+        this(new InventoryFeed());
+    }
+
     /**
-     * Internal storage for all cars in the system.
-     * We store them as {@link Car} to support multiple car types in a single list.
+     * Creates an empty inventory that publishes its changes to a shared feed
+     * (used by {@link ShardedInventory}, whose shards share one feed).
+     *
+     * @param feed receiver of this inventory's change events
      */
-    private final List<Car> cars = new ArrayList<>();
+    CarInventory(InventoryFeed feed) {
+        this.feed = feed;
+    }
 
     /**
      * Adds a single car to the inventory.
@@ -32,6 +96,7 @@ public class CarInventory {
      * <ul>
      *   <li>Car cannot be null</li>
      *   <li>Car ID must be unique</li>
+     *   <li>Car cannot already belong to another inventory</li>
      * </ul>
      * </p>
      *
@@ -42,20 +107,24 @@ public class CarInventory {
         // Null check to prevent NullPointerException in later operations
         if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
 
-        // Ensure unique ID: two cars cannot share the same identifier
-        if (findCarById(car.getId()) != null) {
-            throw new IllegalArgumentException("Bu ID zaten kullanılıyor: " + car.getId());
-        }
+        synchronized (writeLock) {
+            // Ensure unique ID: two cars cannot share the same identifier
+            if (cars.containsKey(car.getId())) {
+                throw new IllegalArgumentException("Bu ID zaten kullanılıyor: " + car.getId());
+            }
 
-        // Add the car into the internal list
-        cars.add(car);
+            // Add the car into the ID index and the slot index
+            store(car);
+        }
     }
 
     /**
      * Adds multiple cars at once (used for seeding initial data).
      *
      * <p>Before adding, this method checks that none of the IDs conflict with
-     * existing inventory records.</p>
+     * existing inventory records or with each other. Each check is a single
+     * index lookup, so seeding is linear in the size of the list. The whole
+     * batch is added under one lock acquisition.</p>
      *
      * @param carList list of cars to add
      * @throws IllegalArgumentException if an ID conflict occurs
@@ -64,21 +133,41 @@ public class CarInventory {
         // If list is null/empty, there is nothing to add
         if (carList == null || carList.isEmpty()) return;
 
-        // Validate ID uniqueness against current inventory
-        for (Car c : carList) {
-            if (c == null) continue; // skip null items safely
-            if (findCarById(c.getId()) != null) {
-                throw new IllegalArgumentException("Seed içinde çakışan ID var: " + c.getId());
-            }
-        }
-
-        // Add all cars after validation
-        cars.addAll(carList);
+        addBatch(carList);
 
         // Console feedback: helps user see that seeding succeeded
         System.out.println(carList.size() + " araç envantere eklendi.");
     }
 
+    /**
+     * Validates and adds a batch of cars under one lock acquisition, without console output.
+     *
+     * @param carList cars to add (null items are skipped)
+     * @throws IllegalArgumentException if an ID conflict occurs (nothing is added then)
+     */
+    void addBatch(List<Car> carList) {
+        synchronized (writeLock) {
+            // Validate ID uniqueness against current inventory and within the list itself
+            IntObjectMap<Car> batchIds = new IntObjectMap<>(carList.size());
+            List<Car> batch = new ArrayList<>(carList.size());
+            for (Car c : carList) {
+                if (c == null) continue; // skip null items safely
+                if (cars.containsKey(c.getId()) || batchIds.put(c.getId(), c) != null) {
+                    throw new IllegalArgumentException("Seed içinde çakışan ID var: " + c.getId());
+                }
+                if (c.isAttachedToInventory()) {
+                    throw new IllegalArgumentException("Araç başka bir envantere kayıtlı: " + c.getId());
+                }
+                batch.add(c);
+            }
+
+            // Add all cars after validation
+            for (Car c : batch) {
+                store(c);
+            }
+        }
+    }
+
     /**
      * Removes a car from inventory by its unique ID.
      *
@@ -86,13 +175,19 @@ public class CarInventory {
      * @return true if the car was found and removed, false otherwise
      */
     public boolean removeCar(int id) {
-        // Find the car first; if not found, we cannot remove it
-        Car found = findCarById(id);
-        if (found == null) return false;
+        synchronized (writeLock) {
+            // Remove directly through the ID index; null means the car was not found
+            Car removed = cars.remove(id);
+            if (removed == null) return false;
 
-        // Remove the found car from the list
-        cars.remove(found);
-        return true;
+            // Drop it from the slot table and bitmaps, and stop listening to it
+            index.remove(removed);
+            removed.detachFromInventory();
+            if (feed.hasSubscribers()) feed.publish(InventoryEvent.Type.REMOVED, removed);
+
+            compactIfSparse();
+            return true;
+        }
     }
 
     /**
@@ -102,47 +197,230 @@ public class CarInventory {
      * @return the car if found, otherwise null
      */
     public Car findCarById(int id) {
-        // Linear search is enough for this project scale
-        for (Car car : cars) {
-            if (car.getId() == id) return car;
-        }
-        return null;
+        // Constant-time, lock-free lookup through the ID index
+        return cars.get(id);
     }
 
     /**
      * Lists only the cars that are currently available for rental.
      *
-     * <p>Uses {@link Car#isAvailable()} to check rental availability.</p>
+     * <p>Walks the availability bitmap, so rented cars are skipped
+     * 64 at a time without being touched.</p>
      */
     public void listAvailableCars() {
-        boolean found = false;
+        // Print cars as the query finds them instead of collecting them first
+        int[] printed = {0};
+        stream(new CarQuery().availableOnly()).forEach(car -> {
+            System.out.println(car);
+            printed[0]++;
+        });
 
-        // Print only available cars
-        for (Car car : cars) {
-            if (car.isAvailable()) {
-                System.out.println(car);
-                found = true;
-            }
+        // If no cars are available, show a message to user
+        if (printed[0] == 0) {
+            System.out.println("Müsait araç yok.");
         }
+    }
 
-        // If no cars are available, show a message to user
-        if (!found) System.out.println("Müsait araç yok.");
+    /**
+     * Counts the cars that are currently available for rental.
+     *
+     * @return number of free cars (constant time)
+     */
+    public int countAvailableCars() {
+        return index.availableSlots().cardinality();
+    }
+
+    /**
+     * Counts the cars of a type, subclasses included (rented or not).
+     *
+     * @param type car type, e.g. {@code ElectricCar.class}
+     * @return number of cars of that type (constant time for concrete types)
+     */
+    public int countByType(Class<? extends Car> type) {
+        if (type == null) throw new IllegalArgumentException("Araç tipi null olamaz.");
+        SlotBitmap slots = index.typeSlots(type);
+        return slots == null ? 0 : slots.cardinality();
+    }
+
+    /**
+     * Counts the gas cars with a fuel type (rented or not).
+     *
+     * @param fuelType fuel type
+     * @return number of gas cars with that fuel type (constant time)
+     */
+    public int countByFuelType(FuelType fuelType) {
+        if (fuelType == null) throw new IllegalArgumentException("Yakıt türü null olamaz.");
+        return index.fuelSlots(fuelType).cardinality();
+    }
+
+    /**
+     * @return total number of cars in the inventory (available and rented)
+     */
+    public int size() {
+        return cars.size();
     }
 
     /**
      * Lists all cars in the inventory (both available and rented).
      */
     public void listAllCars() {
+        // Print each car using its toString(), straight from the slot table
+        int[] printed = {0};
+        stream(new CarQuery()).forEach(car -> {
+            System.out.println(car);
+            printed[0]++;
+        });
+
         // Empty inventory check
-        if (cars.isEmpty()) {
+        if (printed[0] == 0) {
             System.out.println("Araç yok.");
-            return;
         }
+    }
 
-        // Print each car using its toString()
-        for (Car car : cars) {
-            System.out.println(car);
+    // ================= SEARCH =================
+
+    /**
+     * Runs a query and returns the matching cars in listing order.
+     *
+     * <p>The query is planned against the current indexes (see
+     * {@link QueryPlan}): the most selective bitmap drives the scan, the other
+     * indexed criteria are intersected with it word by word, and the
+     * remaining criteria are checked only on the surviving cars.</p>
+     *
+     * @param query search criteria
+     * @return list of matching cars
+     */
+    public List<Car> search(CarQuery query) {
+        if (query == null) throw new IllegalArgumentException("Sorgu null olamaz.");
+
+        List<Car> result = new ArrayList<>();
+        QueryPlan.of(query, index).forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Runs a query lazily and returns the matching cars as a stream.
+     *
+     * <p>Nothing is collected up front: cars are found as the stream pulls
+     * them, so {@code limit}, {@code findFirst} or paging only scan as far as
+     * needed. The stream is ordered (listing order) and can be made
+     * {@code parallel()}; it then splits the fleet by slot range.</p>
+     *
+     * @param query search criteria
+     * @return sequential stream of matching cars
+     */
+    public Stream<Car> stream(CarQuery query) {
+        if (query == null) throw new IllegalArgumentException("Sorgu null olamaz.");
+        return StreamSupport.stream(QueryPlan.of(query, index).spliterator(), false);
+    }
+
+    /**
+     * Returns one page of a query result.
+     *
+     * @param query    search criteria
+     * @param page     page number (starting at 0)
+     * @param pageSize number of cars per page
+     * @return cars of the requested page (empty if the page is past the end)
+     * @throws IllegalArgumentException if page is negative or pageSize is not positive
+     */
+    public List<Car> page(CarQuery query, int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Sayfa numarası 0 veya daha büyük, sayfa boyutu 1 veya daha büyük olmalı.");
         }
+        return stream(query)
+                .skip((long) page * pageSize)
+                .limit(pageSize)
+                .toList();
+    }
+
+    /**
+     * Describes how a query would be executed (useful for tuning searches).
+     *
+     * @param query search criteria
+     * @return plan description, e.g. {@code brand(3) ∩ available(49) | residual: rate}
+     */
+    public String explain(CarQuery query) {
+        if (query == null) throw new IllegalArgumentException("Sorgu null olamaz.");
+        return QueryPlan.of(query, index).toString();
+    }
+
+    // ================= ANALYTICS =================
+
+    /**
+     * Computes the average daily rate of each brand over the whole fleet.
+     *
+     * <p>Runs over the primitive rate and brand columns instead of the car
+     * objects.</p>
+     *
+     * @return brand name -> average daily rate, in order of first appearance
+     */
+    public Map<String, Double> averageDailyRateByBrand() {
+        SlotIndex current = index;
+        return current.columns().averageDailyRateByBrand(current.slotCount());
+    }
+
+    /**
+     * Computes the average daily rate of gas cars per fuel type.
+     *
+     * @return fuel type -> average daily rate (fuel types without cars are left out)
+     */
+    public Map<FuelType, Double> averageDailyRateByFuelType() {
+        SlotIndex current = index;
+        return current.columns().averageDailyRateByFuelType(current.slotCount());
+    }
+
+    /**
+     * Sums the range of all electric cars that are currently available.
+     *
+     * @return total range in km
+     */
+    public long totalAvailableElectricRangeKm() {
+        SlotIndex current = index;
+        return current.columns().sumRangeKm(current.availableSlots(), current.slotCount());
+    }
+
+    // ================= PRICING =================
+
+    /**
+     * Quotes the rental fee of many cars for the same number of days.
+     *
+     * <p>Gives exactly what {@link Car#calculateRentalFee(int)} returns for
+     * each car, but prices the stored cars in one pass over the rate and
+     * fee-factor columns instead of one virtual call (and one validation) per
+     * car. Cars that are not stored in this inventory, or whose class has its
+     * own pricing, fall back to {@code calculateRentalFee}.</p>
+     *
+     * @param candidates cars to price (e.g. a search result)
+     * @param days       number of rental days
+     * @return fees in the order of {@code candidates}
+     * @throws InvalidRentalPeriodException if days is less than 1
+     */
+    public double[] quote(List<Car> candidates, int days) {
+        if (candidates == null) throw new IllegalArgumentException("Araç listesi null olamaz.");
+        if (days <= 0) throw new InvalidRentalPeriodException("Kiralama günü 1 veya daha fazla olmalı.");
+
+        SlotIndex current = index;
+        int slotCount = current.slotCount();
+        int n = candidates.size();
+
+        // Slots are only trusted for cars this index stores below its published slot count
+        int[] slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            Car car = candidates.get(i);
+            int slot = car.getInventorySlot();
+            slots[i] = (slot >= 0 && slot < slotCount && current.carAt(slot) == car) ? slot : -1;
+        }
+
+        double[] fees = new double[n];
+        current.columns().quote(slots, n, days, fees);
+
+        // Cars the columns could not price (removed slots read as NaN too)
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(fees[i])) {
+                fees[i] = candidates.get(i).calculateRentalFee(days);
+            }
+        }
+        return fees;
     }
 
     // ================= FILTERING =================
@@ -154,15 +432,8 @@ public class CarInventory {
      * @return list of available cars matching the brand
      */
     public List<Car> filterAvailableByBrand(String brand) {
-        List<Car> result = new ArrayList<>();
-
-        // Add cars that are available AND brand matches
-        for (Car car : cars) {
-            if (car.isAvailable() && car.getBrand().equalsIgnoreCase(brand)) {
-                result.add(car);
-            }
-        }
-        return result;
+        if (brand == null) return new ArrayList<>();
+        return search(new CarQuery().brand(brand).availableOnly());
     }
 
     /**
@@ -171,15 +442,7 @@ public class CarInventory {
      * @return list of available gas cars
      */
     public List<Car> filterAvailableGasCars() {
-        List<Car> result = new ArrayList<>();
-
-        // instanceof checks the runtime type of each Car
-        for (Car car : cars) {
-            if (car.isAvailable() && car instanceof GasCar) {
-                result.add(car);
-            }
-        }
-        return result;
+        return search(new CarQuery().type(GasCar.class).availableOnly());
     }
 
     /**
@@ -188,37 +451,160 @@ public class CarInventory {
      * @return list of available electric cars
      */
     public List<Car> filterAvailableElectricCars() {
-        List<Car> result = new ArrayList<>();
-
-        for (Car car : cars) {
-            if (car.isAvailable() && car instanceof ElectricCar) {
-                result.add(car);
-            }
-        }
-        return result;
+        return search(new CarQuery().type(ElectricCar.class).availableOnly());
     }
 
     /**
      * Filters available gas cars by fuel type.
      *
-     * <p>Only {@link GasCar} has fuel type, so we filter by:
-     * available AND instance of GasCar AND fuelType matches.</p>
+     * <p>Only {@link GasCar} has fuel type, so only gas cars are present
+     * in the fuel type index.</p>
      *
      * @param fuelType fuel type to filter
      * @return list of available gas cars matching the given fuel type
      */
     public List<Car> filterAvailableByFuelType(FuelType fuelType) {
-        List<Car> result = new ArrayList<>();
+        if (fuelType == null) return new ArrayList<>();
+        return search(new CarQuery().fuelType(fuelType).availableOnly());
+    }
 
-        for (Car car : cars) {
-            // We only check fuel type for GasCar objects
-            if (car.isAvailable() && car instanceof GasCar) {
-                GasCar g = (GasCar) car; // safe cast after instanceof
-                if (g.getFuelType() == fuelType) {
-                    result.add(car);
-                }
+    // ================= CHANGE EVENTS =================
+
+    /**
+     * Returns a publisher of the changes to cars that match a filter.
+     *
+     * <p>Each subscriber receives an {@link InventoryEvent} whenever a
+     * matching car is added, removed, rented or returned, so a view of the
+     * fleet can be kept current without polling {@link #search(CarQuery)}.
+     * With {@code includeCurrentCars}, the subscriber first receives an
+     * {@link InventoryEvent.Type#ADDED} event for every matching car already
+     * stored, and no change between that state and the following events is
+     * lost.</p>
+     *
+     * <p>Delivery follows the subscriber's {@link Flow.Subscription#request}
+     * calls and never blocks the thread that changed the inventory. While a
+     * subscriber is not requesting, changes of the same car are coalesced
+     * into one event (see {@link InventoryEvent}), so a slow subscriber
+     * always catches up with the latest state instead of a growing backlog.
+     * Events are delivered on virtual threads, one at a time per
+     * subscriber.</p>
+     *
+     * @param filter             brand, type, fuel type, daily rate or range criteria; null matches every car
+     * @param includeCurrentCars true to start with the cars already stored
+     * @return a publisher; every subscribe call registers a new subscriber
+     * @throws IllegalArgumentException if the filter restricts availability (changes of it would be hidden)
+     */
+    public Flow.Publisher<InventoryEvent> events(CarQuery filter, boolean includeCurrentCars) {
+        CarQuery query = eventFilter(filter);
+
+        return subscriber -> {
+            if (subscriber == null) throw new NullPointerException("Abone null olamaz.");
+            InventoryFeed.FeedSubscription subscription;
+            synchronized (writeLock) {
+                // Register and take the initial state together, so no add or remove falls in between
+                subscription = feed.register(query, subscriber);
+                if (includeCurrentCars) index.forEachCar(subscription::seed);
             }
+            subscription.start();
+        };
+    }
+
+    /**
+     * @param filter filter passed to {@link #events}
+     * @return the filter to use (null becomes "every car")
+     * @throws IllegalArgumentException if the filter restricts availability
+     */
+    static CarQuery eventFilter(CarQuery filter) {
+        CarQuery query = (filter == null) ? new CarQuery() : filter;
+        if (query.getAvailable() != null) {
+            throw new IllegalArgumentException("Olay filtresi müsaitliğe göre süzemez.");
+        }
+        return query;
+    }
+
+    /**
+     * Adds every stored car to a subscription's initial state, under the write lock.
+     *
+     * <p>For a subscription that is already registered on this inventory's
+     * feed: cars added or removed meanwhile have been published to it, and
+     * holding the lock keeps the index still while it is read.</p>
+     *
+     * @param subscription registered subscription that has not been started
+     */
+    void seedEvents(InventoryFeed.FeedSubscription subscription) {
+        synchronized (writeLock) {
+            index.forEachCar(subscription::seed);
+        }
+    }
+
+    // ================= INDEX MAINTENANCE =================
+
+    /**
+     * Keeps the availability bitmap in sync when a stored car is rented or returned.
+     *
+     * <p>Runs on the thread that rented or returned the car, without taking the write lock.</p>
+     *
+     * @param car the car whose availability has changed
+     * @return always true (the inventory never rejects a change)
+     */
+    private boolean onAvailabilityChanged(Car car) {
+        index.syncAvailability(car);
+        if (feed.hasSubscribers()) feed.publish(InventoryEvent.Type.AVAILABILITY, car);
+        return true;
+    }
+
+    /**
+     * Stores a validated car in a new slot and in the ID index.
+     *
+     * <p>Caller must hold {@link #writeLock}.</p>
+     *
+     * @param car the car to store
+     * @throws IllegalArgumentException if the car already belongs to another inventory
+     */
+    private void store(Car car) {
+        SlotIndex idx = index;
+        if (!car.attachToInventory(idx.nextSlot(), availabilityListener)) {
+            throw new IllegalArgumentException("Araç başka bir envantere kayıtlı: " + car.getId());
+        }
+        idx.add(car);
+        cars.put(car.getId(), car);
+
+        // Pick up a rent/return that happened between attaching and indexing
+        idx.syncAvailability(car);
+
+        if (feed.hasSubscribers()) feed.publish(InventoryEvent.Type.ADDED, car);
+    }
+
+    /**
+     * Renumbers slots once removed cars leave the slot table mostly empty.
+     *
+     * <p>Slots are never reused (that would break listing order), so heavy
+     * churn leaves holes behind. When holes outnumber live cars, live cars are
+     * copied to consecutive slots of a fresh {@link SlotIndex} in their current
+     * order, which then replaces the old one in a single volatile write.
+     * Readers still holding the old index finish on it undisturbed. The cost
+     * is linear but amortised over the removals that caused it.</p>
+     *
+     * <p>Caller must hold {@link #writeLock}.</p>
+     */
+    private void compactIfSparse() {
+        SlotIndex old = index;
+        int holes = old.slotCount() - cars.size();
+        if (holes < MIN_HOLES_BEFORE_COMPACTION || holes <= cars.size()) return;
+
+        List<Car> live = new ArrayList<>(cars.size());
+        old.forEachCar(live::add);
+
+        SlotIndex fresh = new SlotIndex();
+        for (Car car : live) {
+            car.moveToSlot(fresh.nextSlot());
+            fresh.add(car);
+        }
+        index = fresh;
+
+        // Rents/returns that raced with the copy may have updated the old index only
+        for (Car car : live) {
+            fresh.syncAvailability(car);
         }
-        return result;
     }
 }
@@ -0,0 +1,271 @@
+package com.carrental;
+
+/**
+ * Describes a search over the car inventory.
+ *
+ * <p>A query combines any number of criteria; a car matches when it meets
+ * all of them. Criteria that are not set do not restrict the result.
+ * Queries are built fluently and run with {@link CarInventory#search(CarQuery)}:</p>
+ *
+ * <pre>
+ * List&lt;Car&gt; cars = inventory.search(new CarQuery()
+ *         .brand("Toyota")
+ *         .fuelType(FuelType.DIZEL)
+ *         .dailyRateBetween(500, 900)
+ *         .availableOnly());
+ * </pre>
+ *
+ * <p>Supported criteria:
+ * <ul>
+ *   <li><b>brand</b> (case-insensitive) – indexed</li>
+ *   <li><b>type</b> (e.g. {@code ElectricCar.class}, subclasses included) – indexed</li>
+ *   <li><b>fuel type</b> (gas cars only) – indexed</li>
+ *   <li><b>availability</b> – indexed when searching for available cars</li>
+ *   <li><b>daily rate range</b> – checked per candidate</li>
+ *   <li><b>EV range</b> in km (electric cars only) – checked per candidate</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Criteria are private and only set through fluent methods.</li>
+ *   <li><b>Separation of Concerns:</b> The query only describes <i>what</i> to find;
+ *       the inventory decides <i>how</i> to find it.</li>
+ * </ul>
+ * </p>
+ */
+public class CarQuery {
+
+    // Brand name to match (null = any brand)
+    private String brand;
+
+    // Car type to match, subclasses included (null = any type)
+    private Class<? extends Car> type;
+
+    // Fuel type to match (null = any; set implies GasCar)
+    private FuelType fuelType;
+
+    // Required availability (null = both available and rented cars)
+    private Boolean available;
+
+    // Inclusive daily rate bounds
+    private double minDailyRate = Double.NEGATIVE_INFINITY;
+    private double maxDailyRate = Double.POSITIVE_INFINITY;
+
+    // Inclusive EV range bounds in km (set implies ElectricCar)
+    private int minRangeKm = Integer.MIN_VALUE;
+    private int maxRangeKm = Integer.MAX_VALUE;
+
+    /**
+     * Restricts the query to one brand (case-insensitive).
+     *
+     * @param brand brand name
+     * @return this query
+     */
+    public CarQuery brand(String brand) {
+        if (brand == null) throw new IllegalArgumentException("Marka null olamaz.");
+        this.brand = brand;
+        return this;
+    }
+
+    /**
+     * Restricts the query to one car type (subclasses included).
+     *
+     * @param type car type, e.g. {@code GasCar.class}
+     * @return this query
+     */
+    public CarQuery type(Class<? extends Car> type) {
+        if (type == null) throw new IllegalArgumentException("Araç tipi null olamaz.");
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * Restricts the query to gas cars with the given fuel type.
+     *
+     * @param fuelType fuel type
+     * @return this query
+     */
+    public CarQuery fuelType(FuelType fuelType) {
+        if (fuelType == null) throw new IllegalArgumentException("Yakıt türü null olamaz.");
+        this.fuelType = fuelType;
+        return this;
+    }
+
+    /**
+     * Restricts the query to cars that are currently available for rent.
+     *
+     * @return this query
+     */
+    public CarQuery availableOnly() {
+        return available(true);
+    }
+
+    /**
+     * Restricts the query to available ({@code true}) or rented ({@code false}) cars.
+     *
+     * @param available required availability
+     * @return this query
+     */
+    public CarQuery available(boolean available) {
+        this.available = available;
+        return this;
+    }
+
+    /**
+     * Restricts the daily rate to an inclusive range.
+     *
+     * @param min lowest daily rate
+     * @param max highest daily rate
+     * @return this query
+     * @throws IllegalArgumentException if min is greater than max
+     */
+    public CarQuery dailyRateBetween(double min, double max) {
+        if (min > max) throw new IllegalArgumentException("Minimum ücret maksimumdan büyük olamaz.");
+        this.minDailyRate = min;
+        this.maxDailyRate = max;
+        return this;
+    }
+
+    /**
+     * Restricts the query to electric cars whose range lies in an inclusive interval.
+     *
+     * @param minKm lowest range in km
+     * @param maxKm highest range in km
+     * @return this query
+     * @throws IllegalArgumentException if minKm is greater than maxKm
+     */
+    public CarQuery rangeKmBetween(int minKm, int maxKm) {
+        if (minKm > maxKm) throw new IllegalArgumentException("Minimum menzil maksimumdan büyük olamaz.");
+        this.minRangeKm = minKm;
+        this.maxRangeKm = maxKm;
+        return this;
+    }
+
+    /**
+     * Restricts the query to electric cars with at least the given range.
+     *
+     * @param minKm lowest range in km
+     * @return this query
+     */
+    public CarQuery minRangeKm(int minKm) {
+        return rangeKmBetween(minKm, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return brand criterion, or null if any brand matches
+     */
+    public String getBrand() {
+        return brand;
+    }
+
+    /**
+     * @return type criterion, or null if any type matches
+     */
+    public Class<? extends Car> getType() {
+        return type;
+    }
+
+    /**
+     * @return fuel type criterion, or null if any fuel type matches
+     */
+    public FuelType getFuelType() {
+        return fuelType;
+    }
+
+    /**
+     * @return required availability, or null if availability does not matter
+     */
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return lowest daily rate (inclusive), or negative infinity if not set
+     */
+    public double getMinDailyRate() {
+        return minDailyRate;
+    }
+
+    /**
+     * @return highest daily rate (inclusive), or positive infinity if not set
+     */
+    public double getMaxDailyRate() {
+        return maxDailyRate;
+    }
+
+    /**
+     * @return lowest EV range in km (inclusive), or {@link Integer#MIN_VALUE} if not set
+     */
+    public int getMinRangeKm() {
+        return minRangeKm;
+    }
+
+    /**
+     * @return highest EV range in km (inclusive), or {@link Integer#MAX_VALUE} if not set
+     */
+    public int getMaxRangeKm() {
+        return maxRangeKm;
+    }
+
+    /**
+     * @return true if a daily rate range is set
+     */
+    boolean hasRateRange() {
+        return minDailyRate != Double.NEGATIVE_INFINITY || maxDailyRate != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return true if an EV range interval is set
+     */
+    boolean hasRangeKm() {
+        return minRangeKm != Integer.MIN_VALUE || maxRangeKm != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Checks the criteria that are not backed by an index.
+     *
+     * <p>Brand, type, fuel type and availability are normally answered by
+     * bitmaps; when the planner cannot use a bitmap for one of them
+     * (e.g. searching for rented cars), it is checked here as well. Rate and
+     * EV range are always checked, also when the planner already selected
+     * slots by them: a slot may hold another car by the time it is read.</p>
+     *
+     * @param car candidate car
+     * @param checkIndexed also check the indexed criteria
+     * @return true if the car meets the checked criteria
+     */
+    boolean matchesResidual(Car car, boolean checkIndexed) {
+        if (available != null && car.isAvailable() != available) return false;
+
+        if (hasRateRange()) {
+            double rate = car.getDailyRate();
+            if (rate < minDailyRate || rate > maxDailyRate) return false;
+        }
+
+        if (hasRangeKm()) {
+            if (!(car instanceof ElectricCar e)) return false;
+            if (e.getRangeKm() < minRangeKm || e.getRangeKm() > maxRangeKm) return false;
+        }
+
+        if (!checkIndexed) return true;
+        if (brand != null && !car.getBrand().equalsIgnoreCase(brand)) return false;
+        if (type != null && !type.isInstance(car)) return false;
+        return fuelType == null || (car instanceof GasCar g && g.getFuelType() == fuelType);
+    }
+
+    /**
+     * @return readable summary of the criteria (used in plan descriptions)
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CarQuery{");
+        if (brand != null) sb.append(" brand=").append(brand);
+        if (type != null) sb.append(" type=").append(type.getSimpleName());
+        if (fuelType != null) sb.append(" fuel=").append(fuelType);
+        if (available != null) sb.append(" available=").append(available);
+        if (hasRateRange()) sb.append(" rate=[").append(minDailyRate).append(", ").append(maxDailyRate).append(']');
+        if (hasRangeKm()) sb.append(" rangeKm=[").append(minRangeKm).append(", ").append(maxRangeKm).append(']');
+        return sb.append(" }").toString();
+    }
+}
@@ -18,6 +18,9 @@ package com.carrental;
  */
 public class ElectricCar extends Car {
 
+    /** Fixed battery maintenance fee added to every electric car rental. */
+    public static final double BATTERY_FEE = 20.0;
+
     // Maximum driving range of the electric car in kilometers
     private final int rangeKm;
 
@@ -60,11 +63,8 @@ public class ElectricCar extends Car {
             throw new IllegalArgumentException("Gün sayısı 1 veya daha fazla olmalı!");
         }
 
-        // Fixed battery maintenance fee for electric cars
-        double batteryFee = 20.0;
-
         // Total price = daily rate * days + battery fee
-        return days * getDailyRate() + batteryFee;
+        return days * getDailyRate() + BATTERY_FEE;
     }
 
     /**
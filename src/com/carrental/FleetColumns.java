@@ -0,0 +1,388 @@
+package com.carrental;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Column-oriented copy of the fleet's numeric attributes, addressed by slot.
+ *
+ * <p>{@link Car} objects are spread over the heap, and their brand, rate and
+ * subtype fields sit in different objects. An aggregation over the whole
+ * fleet (e.g. average daily rate per brand) would touch several objects per
+ * car. This class keeps the same data as a struct of arrays instead:
+ * <ul>
+ *   <li>{@code double[] rates} – daily rate per slot,</li>
+ *   <li>{@code int[] brandIds} – brand as an id into a brand dictionary,</li>
+ *   <li>{@code byte[] codes} – car type (low 4 bits) and fuel type (high 4 bits),</li>
+ *   <li>{@code int[] rangesKm} – EV range per slot (0 for other cars),</li>
+ *   <li>{@code double[] feeFactors} – price multiplier per slot (see {@link #quote}).</li>
+ * </ul>
+ * Aggregations are plain loops over these arrays.</p>
+ *
+ * <p>Empty slots (never filled or removed) have type code 0 and brand id 0,
+ * so aggregations can run over every slot without checking whether it holds
+ * a car: brand 0 and fuel code 0 are "no car" buckets whose results are
+ * ignored.</p>
+ *
+ * <p>Readers must pass the index's slot count, read <i>before</i> calling.
+ * Every slot below it was completely written (brand dictionary included)
+ * before the count was published.</p>
+ *
+ * <p>Thread safety: {@link #add} and {@link #remove} are called by the owning
+ * {@link SlotIndex} under the inventory's write lock. Growth copies the
+ * arrays into a new {@link Block} that is published in one volatile write,
+ * so readers always see matching columns. Readers only look at slots below
+ * the index's published slot count.</p>
+ */
+final class FleetColumns {
+
+    // Type codes (low 4 bits of a code byte); 0 = empty slot
+    private static final byte TYPE_GAS = 1;
+    private static final byte TYPE_ELECTRIC = 2;
+    private static final byte TYPE_LUXURY = 3;
+    private static final byte TYPE_OTHER = 4;
+
+    private static final int FUEL_SHIFT = 4;
+
+    /**
+     * Fixed fee per type code, added after {@code rate * days * factor}.
+     *
+     * <p>Luxury cars add {@code -0.0}, which leaves every result unchanged
+     * (including a zero fee's sign), so their column formula matches
+     * {@link LuxuryCar#calculateRentalFee} bit for bit. Empty slots and
+     * cars of other classes get NaN and are priced by the caller.</p>
+     */
+    private static final double[] FLAT_FEES = {
+            Double.NaN,              // empty slot
+            GasCar.SERVICE_FEE,      // TYPE_GAS
+            ElectricCar.BATTERY_FEE, // TYPE_ELECTRIC
+            -0.0,                    // TYPE_LUXURY
+            Double.NaN               // TYPE_OTHER
+    };
+
+    private static final int MIN_CAPACITY = 64;
+
+    /**
+     * One generation of the column arrays (all of the same length).
+     */
+    private static final class Block {
+        final double[] rates;
+        final int[] brandIds;
+        final byte[] codes;
+        final int[] rangesKm;
+        final double[] feeFactors;
+
+        Block(int capacity) {
+            this.rates = new double[capacity];
+            this.brandIds = new int[capacity];
+            this.codes = new byte[capacity];
+            this.rangesKm = new int[capacity];
+            this.feeFactors = new double[capacity];
+        }
+
+        Block(Block old, int capacity) {
+            this.rates = Arrays.copyOf(old.rates, capacity);
+            this.brandIds = Arrays.copyOf(old.brandIds, capacity);
+            this.codes = Arrays.copyOf(old.codes, capacity);
+            this.rangesKm = Arrays.copyOf(old.rangesKm, capacity);
+            this.feeFactors = Arrays.copyOf(old.feeFactors, capacity);
+        }
+    }
+
+    // Current column arrays, replaced as a whole on growth
+    private volatile Block block = new Block(MIN_CAPACITY);
+
+    // Brand dictionary: lower-cased brand key -> id (writer-only)
+    private final Map<String, Integer> brandIds = new HashMap<>();
+
+    // Brand names by id, spelled as first added; index 0 is the "no car" bucket
+    private volatile String[] brandNames = {""};
+
+    // ================= WRITER OPERATIONS =================
+
+    /**
+     * Records a car's attributes in its slot.
+     *
+     * @param slot slot the car was stored in
+     * @param car  the car
+     */
+    void add(int slot, Car car) {
+        Block b = block;
+        if (slot >= b.rates.length) {
+            b = new Block(b, Math.max(slot + 1, b.rates.length * 2));
+        }
+
+        b.rates[slot] = car.getDailyRate();
+        b.brandIds[slot] = brandId(car.getBrand());
+        b.codes[slot] = codeOf(car);
+        b.rangesKm[slot] = (car instanceof ElectricCar e) ? e.getRangeKm() : 0;
+        b.feeFactors[slot] = feeFactorOf(car);
+
+        // Publish a grown block only after the new slot is filled in
+        if (b != block) block = b;
+    }
+
+    /**
+     * Empties a slot so that aggregations ignore it.
+     *
+     * @param slot slot of the removed car
+     */
+    void remove(int slot) {
+        Block b = block;
+        if (slot >= b.rates.length) return;
+        b.codes[slot] = 0;
+        b.brandIds[slot] = 0;
+        b.rates[slot] = 0.0;
+        b.rangesKm[slot] = 0;
+        b.feeFactors[slot] = Double.NaN;
+    }
+
+    // ================= AGGREGATIONS =================
+
+    /**
+     * Computes the average daily rate of every brand.
+     *
+     * @param slotCount number of slots to scan (the index's slot count)
+     * @return brand name -> average daily rate, in order of first appearance
+     */
+    Map<String, Double> averageDailyRateByBrand(int slotCount) {
+        Block b = block;
+        String[] names = brandNames;
+        int n = Math.min(slotCount, b.rates.length);
+
+        double[] sums = new double[names.length];
+        int[] counts = new int[names.length];
+        double[] rates = b.rates;
+        int[] brands = b.brandIds;
+
+        // Empty slots add 0.0 to bucket 0, so the loop needs no branch
+        for (int slot = 0; slot < n; slot++) {
+            int id = brands[slot];
+            sums[id] += rates[slot];
+            counts[id]++;
+        }
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int id = 1; id < names.length; id++) {
+            if (counts[id] > 0) result.put(names[id], sums[id] / counts[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Sums a per-slot column over the slots set in a bitmap.
+     *
+     * <p>Used for "total range of available EVs": the range column is 0 for
+     * every car that is not electric, so only the availability bitmap has to
+     * be consulted, one word at a time.</p>
+     *
+     * @param slots     bitmap selecting the slots to sum
+     * @param slotCount number of slots to consider
+     * @return sum of {@code rangesKm} over the selected slots
+     */
+    long sumRangeKm(SlotBitmap slots, int slotCount) {
+        Block b = block;
+        int[] ranges = b.rangesKm;
+        int n = Math.min(slotCount, ranges.length);
+
+        long total = 0;
+        int words = (n + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long bits = slots.wordAt(w);
+            while (bits != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (slot >= n) break;
+                total += ranges[slot];
+                bits &= bits - 1;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Computes the average daily rate of gas cars per fuel type.
+     *
+     * @param slotCount number of slots to scan
+     * @return fuel type -> average daily rate (fuel types without cars are left out)
+     */
+    Map<FuelType, Double> averageDailyRateByFuelType(int slotCount) {
+        Block b = block;
+        int n = Math.min(slotCount, b.codes.length);
+
+        // Bucket 0 collects every slot that is not a gas car
+        int buckets = FuelType.values().length + 1;
+        double[] sums = new double[buckets];
+        int[] counts = new int[buckets];
+        byte[] codes = b.codes;
+        double[] rates = b.rates;
+
+        for (int slot = 0; slot < n; slot++) {
+            int fuel = (codes[slot] & 0xFF) >>> FUEL_SHIFT;
+            sums[fuel] += rates[slot];
+            counts[fuel]++;
+        }
+
+        Map<FuelType, Double> result = new EnumMap<>(FuelType.class);
+        for (FuelType f : FuelType.values()) {
+            int i = f.ordinal() + 1;
+            if (counts[i] > 0) result.put(f, sums[i] / counts[i]);
+        }
+        return result;
+    }
+
+    // ================= SELECTIONS =================
+
+    /**
+     * Selects the cars whose daily rate lies within a range.
+     *
+     * <p>Lets a rate criterion take part in a {@link QueryPlan}'s bitmap
+     * intersection: one pass over the rate column, 64 slots per word,
+     * instead of reading the rate from every car object that the other
+     * criteria leave over.</p>
+     *
+     * @param min       lowest daily rate (inclusive)
+     * @param max       highest daily rate (inclusive)
+     * @param slotCount number of slots to scan
+     * @return new bitmap of the matching slots
+     */
+    SlotBitmap rateSlots(double min, double max, int slotCount) {
+        Block b = block;
+        double[] rates = b.rates;
+        byte[] codes = b.codes;
+        int n = Math.min(slotCount, rates.length);
+
+        SlotBitmap result = new SlotBitmap();
+        for (int base = 0; base < n; base += 64) {
+            int end = Math.min(base + 64, n);
+            long word = 0;
+            for (int slot = base; slot < end; slot++) {
+                double rate = rates[slot];
+                // Empty slots have rate 0.0 but type code 0
+                if (codes[slot] != 0 && rate >= min && rate <= max) word |= 1L << slot;
+            }
+            result.fillWord(base >>> 6, word);
+        }
+        return result;
+    }
+
+    /**
+     * Selects the electric cars whose range lies within a range.
+     *
+     * @param minKm     lowest range in km (inclusive)
+     * @param maxKm     highest range in km (inclusive)
+     * @param slotCount number of slots to scan
+     * @return new bitmap of the matching slots
+     */
+    SlotBitmap rangeKmSlots(int minKm, int maxKm, int slotCount) {
+        Block b = block;
+        int[] ranges = b.rangesKm;
+        byte[] codes = b.codes;
+        int n = Math.min(slotCount, ranges.length);
+
+        SlotBitmap result = new SlotBitmap();
+        for (int base = 0; base < n; base += 64) {
+            int end = Math.min(base + 64, n);
+            long word = 0;
+            for (int slot = base; slot < end; slot++) {
+                int km = ranges[slot];
+                // Other cars have range 0 too, so the type code decides
+                if ((codes[slot] & 0x0F) == TYPE_ELECTRIC && km >= minKm && km <= maxKm) word |= 1L << slot;
+            }
+            result.fillWord(base >>> 6, word);
+        }
+        return result;
+    }
+
+    // ================= PRICING =================
+
+    /**
+     * Prices a set of slots for the same number of days.
+     *
+     * <p>Every priced car's fee is {@code rate * days * factor + flat}: gas
+     * and electric cars have factor 1.0 and their fixed fee, luxury cars have
+     * factor {@code 1.0 + premiumRate} and no fixed fee. The operations and
+     * their order are those of the subclasses' {@code calculateRentalFee},
+     * so the results are identical.</p>
+     *
+     * <p>The loop only reads primitive columns: no virtual call, no
+     * per-car validation and no car object is touched. The fixed fee comes
+     * from a per-type table instead of a branch on the car type.</p>
+     *
+     * <p>Slots that cannot be priced from the columns (empty, or a car class
+     * with its own pricing) come back as NaN.</p>
+     *
+     * @param slots slots to price
+     * @param count number of entries of {@code slots} to use
+     * @param days  number of rental days (already validated)
+     * @param out   receives the fee of {@code slots[i]} at index i
+     */
+    void quote(int[] slots, int count, int days, double[] out) {
+        Block b = block;
+        double[] rates = b.rates;
+        double[] factors = b.feeFactors;
+        byte[] codes = b.codes;
+
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            if (slot < 0 || slot >= rates.length) {
+                out[i] = Double.NaN;
+                continue;
+            }
+            // Same expression as calculateRentalFee; must not be rewritten as a fused multiply-add
+            out[i] = rates[slot] * days * factors[slot] + FLAT_FEES[codes[slot] & 0x0F];
+        }
+    }
+
+    // ================= HELPERS =================
+
+    /**
+     * Returns the dictionary id of a brand, adding it on first use.
+     */
+    private int brandId(String brand) {
+        String key = SlotIndex.brandKey(brand);
+        Integer id = brandIds.get(key);
+        if (id != null) return id;
+
+        String[] names = brandNames;
+        String[] grown = Arrays.copyOf(names, names.length + 1);
+        grown[names.length] = brand;
+
+        // Publish the name before any slot can refer to the new id
+        brandNames = grown;
+        brandIds.put(key, names.length);
+        return names.length;
+    }
+
+    /**
+     * Returns the price multiplier of a car, or NaN if the column formula does
+     * not apply (a subclass may override {@code calculateRentalFee}).
+     */
+    private static double feeFactorOf(Car car) {
+        Class<?> c = car.getClass();
+        if (c == GasCar.class || c == ElectricCar.class) return 1.0;
+        if (c == LuxuryCar.class) return 1.0 + ((LuxuryCar) car).getPremiumRate();
+        return Double.NaN;
+    }
+
+    /**
+     * Encodes a car's type and fuel type into one byte.
+     */
+    private static byte codeOf(Car car) {
+        int type;
+        int fuel = 0;
+        if (car instanceof GasCar g) {
+            type = TYPE_GAS;
+            fuel = g.getFuelType().ordinal() + 1;
+        } else if (car instanceof ElectricCar) {
+            type = TYPE_ELECTRIC;
+        } else if (car instanceof LuxuryCar) {
+            type = TYPE_LUXURY;
+        } else {
+            type = TYPE_OTHER;
+        }
+        return (byte) (type | (fuel << FUEL_SHIFT));
+    }
+}
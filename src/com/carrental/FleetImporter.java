@@ -0,0 +1,518 @@
+package com.carrental;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk import of cars from fleet files.
+ *
+ * <p>The file is read sequentially in fixed-size chunks that always end at a
+ * line break. Each chunk is parsed on a worker thread while the next one is
+ * being read, and only a bounded number of chunks is in flight, so memory use
+ * does not grow with the file size (apart from the parsed cars themselves).
+ * When every chunk is parsed, the IDs are checked for uniqueness in one pass
+ * and all valid cars go into the inventory with a single
+ * {@link RentalService#addCars(List)} call (one lock acquisition, one journal
+ * commit).</p>
+ *
+ * <p><b>Formats:</b> every line is one car, either as CSV or as a JSON
+ * object (JSON lines); both may be mixed in one file. Blank lines and lines
+ * starting with {@code #} are ignored, as is a CSV header line starting
+ * with {@code type}.</p>
+ * <pre>
+ * type,id,brand,model,dailyRate,extra
+ * GAS,1,Toyota,Corolla,800,BENZIN          extra = fuel type
+ * ELECTRIC,41,Tesla,Model 3,1200,500       extra = range in km
+ * LUXURY,46,BMW,520d,2500,0.35             extra = premium rate (optional)
+ * {"type":"GAS","id":2,"brand":"Fiat","model":"Egea","dailyRate":720,"fuelType":"BENZIN"}
+ * </pre>
+ * <p>CSV fields may be enclosed in double quotes (e.g. a model containing a
+ * comma). JSON keys for the extra field are {@code fuelType},
+ * {@code rangeKm} and {@code premiumRate}.</p>
+ *
+ * <p><b>Errors:</b> a bad line does not stop the import. It is skipped and
+ * reported with its line number in the {@link Report}; so are IDs that
+ * already exist in the inventory or appear twice in the file (the first
+ * occurrence wins).</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Single Responsibility:</b> Parsing and validation of files are kept out of the inventory.</li>
+ *   <li><b>Encapsulation:</b> Chunking and threading details are hidden behind {@link #importFile(Path)}.</li>
+ * </ul>
+ * </p>
+ */
+public final class FleetImporter {
+
+    /** Default size of one chunk read from the file. */
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    /** Errors kept in a report; further errors are only counted. */
+    public static final int MAX_REPORTED_ERRORS = 1_000;
+
+    /**
+     * A line that could not be imported.
+     *
+     * @param line    line number in the file (1-based)
+     * @param message reason
+     */
+    public record LineError(long line, String message) {
+
+        @Override
+        public String toString() {
+            return "Satır " + line + ": " + message;
+        }
+    }
+
+    /**
+     * Result of an import.
+     *
+     * @param lines        number of lines read (including blank and comment lines)
+     * @param imported     number of cars added to the inventory
+     * @param errorCount   number of lines that were rejected
+     * @param errors       the first {@link #MAX_REPORTED_ERRORS} rejected lines, in file order
+     * @param elapsedNanos wall-clock time of the whole import
+     */
+    public record Report(long lines, int imported, long errorCount, List<LineError> errors, long elapsedNanos) {
+
+        @Override
+        public String toString() {
+            return String.format("%d satır okundu, %d araç eklendi, %d satır hatalı (%.0f ms)",
+                    lines, imported, errorCount, elapsedNanos / 1e6);
+        }
+    }
+
+    /** Cars and errors of one chunk; line numbers are relative to the chunk. */
+    private record ChunkResult(List<Car> cars, long[] carLines, int carCount,
+                               List<LineError> errors, int lineCount) {}
+
+    private final CarInventory inventory;
+    private final RentalService service;
+    private final int parallelism;
+    private final int chunkBytes;
+
+    /**
+     * Creates an importer with one parser thread per processor.
+     *
+     * @param inventory inventory checked for existing IDs
+     * @param service   service that adds (and journals) the imported cars
+     */
+    public FleetImporter(CarInventory inventory, RentalService service) {
+        this(inventory, service, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param inventory   inventory checked for existing IDs
+     * @param service     service that adds (and journals) the imported cars
+     * @param parallelism number of parser threads
+     * @param chunkBytes  size of one chunk; lines longer than this still work, they just enlarge the chunk
+     * @throws IllegalArgumentException if an argument is null or not positive
+     */
+    public FleetImporter(CarInventory inventory, RentalService service, int parallelism, int chunkBytes) {
+        if (inventory == null || service == null) throw new IllegalArgumentException("Envanter ve servis null olamaz.");
+        if (parallelism <= 0) throw new IllegalArgumentException("İş parçacığı sayısı 1 veya daha büyük olmalı.");
+        if (chunkBytes <= 0) throw new IllegalArgumentException("Parça boyutu 1 veya daha büyük olmalı.");
+
+        this.inventory = inventory;
+        this.service = service;
+        this.parallelism = parallelism;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Imports every valid car of a file.
+     *
+     * @param file CSV or JSON-lines file (UTF-8)
+     * @return counts and rejected lines
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    public Report importFile(Path file) {
+        long start = System.nanoTime();
+
+        List<ChunkResult> chunks = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "fleet-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Chunks in file order; at most two per thread are waiting at any time
+            ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+
+            byte[] carry = new byte[0];
+            ByteBuffer buffer = ByteBuffer.allocate(chunkBytes);
+            boolean eof = false;
+            while (!eof) {
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        eof = true;
+                        break;
+                    }
+                }
+                buffer.flip();
+
+                // Chunk = leftover of the previous read + this read, cut after the last line break
+                byte[] data = new byte[carry.length + buffer.remaining()];
+                System.arraycopy(carry, 0, data, 0, carry.length);
+                buffer.get(data, carry.length, data.length - carry.length);
+
+                int end = data.length;
+                if (!eof) {
+                    end = lastLineBreak(data) + 1;
+                    if (end == 0) {
+                        // No line break yet (a very long line): keep reading
+                        carry = data;
+                        continue;
+                    }
+                }
+                carry = Arrays.copyOfRange(data, end, data.length);
+                if (end == 0) break;
+
+                int length = end;
+                inFlight.add(pool.submit(() -> parseChunk(data, length)));
+                if (inFlight.size() >= 2 * parallelism) chunks.add(await(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) chunks.add(await(inFlight.poll()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Dosya okunamadı: " + file, e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return load(chunks, start);
+    }
+
+    /**
+     * Checks IDs across all chunks and adds the accepted cars in one batch.
+     */
+    private Report load(List<ChunkResult> chunks, long start) {
+        int total = 0;
+        for (ChunkResult chunk : chunks) total += chunk.carCount();
+
+        List<Car> accepted = new ArrayList<>(total);
+        IntObjectMap<Car> seen = new IntObjectMap<>(total);
+        List<LineError> errors = new ArrayList<>();
+        long errorCount = 0;
+        long lineOffset = 0;
+
+        for (ChunkResult chunk : chunks) {
+            // Parse errors and ID errors of the chunk are merged in line order
+            List<LineError> parseErrors = chunk.errors();
+            int nextParseError = 0;
+
+            for (int i = 0; i < chunk.carCount(); i++) {
+                long line = lineOffset + chunk.carLines()[i];
+                while (nextParseError < parseErrors.size() && parseErrors.get(nextParseError).line() + lineOffset < line) {
+                    LineError e = parseErrors.get(nextParseError++);
+                    if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new LineError(e.line() + lineOffset, e.message()));
+                    errorCount++;
+                }
+
+                Car car = chunk.cars().get(i);
+                String problem = null;
+                if (inventory.findCarById(car.getId()) != null) {
+                    problem = "ID envanterde zaten var: " + car.getId();
+                } else if (seen.put(car.getId(), car) != null) {
+                    problem = "ID dosyada tekrar ediyor: " + car.getId();
+                }
+
+                if (problem == null) {
+                    accepted.add(car);
+                } else {
+                    if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new LineError(line, problem));
+                    errorCount++;
+                }
+            }
+            while (nextParseError < parseErrors.size()) {
+                LineError e = parseErrors.get(nextParseError++);
+                if (errors.size() < MAX_REPORTED_ERRORS) errors.add(new LineError(e.line() + lineOffset, e.message()));
+                errorCount++;
+            }
+            lineOffset += chunk.lineCount();
+        }
+
+        service.addCars(accepted);
+        return new Report(lineOffset, accepted.size(), errorCount, List.copyOf(errors), System.nanoTime() - start);
+    }
+
+    // ================= PARSING =================
+
+    /**
+     * Parses the lines of one chunk (runs on a worker thread).
+     */
+    private static ChunkResult parseChunk(byte[] data, int length) {
+        String text = new String(data, 0, length, StandardCharsets.UTF_8);
+
+        List<Car> cars = new ArrayList<>();
+        long[] carLines = new long[64];
+        List<LineError> errors = new ArrayList<>();
+
+        int line = 0;
+        int pos = 0;
+        int n = text.length();
+        while (pos < n) {
+            int eol = text.indexOf('\n', pos);
+            if (eol < 0) eol = n;
+            line++;
+
+            String record = text.substring(pos, eol).strip();
+            pos = eol + 1;
+            if (!record.isEmpty() && record.charAt(0) == '\uFEFF') record = record.substring(1).strip(); // UTF-8 BOM
+            if (record.isEmpty() || record.startsWith("#") || isHeader(record)) continue;
+
+            try {
+                Car car = record.charAt(0) == '{' ? parseJson(record) : parseCsv(record);
+                if (cars.size() == carLines.length) carLines = Arrays.copyOf(carLines, carLines.length * 2);
+                carLines[cars.size()] = line;
+                cars.add(car);
+            } catch (IllegalArgumentException e) {
+                errors.add(new LineError(line, e.getMessage()));
+            }
+        }
+        return new ChunkResult(cars, carLines, cars.size(), errors, line);
+    }
+
+    private static boolean isHeader(String record) {
+        return record.regionMatches(true, 0, "type", 0, 4)
+                && (record.length() == 4 || record.charAt(4) == ',');
+    }
+
+    /**
+     * Parses {@code type,id,brand,model,dailyRate[,extra]}.
+     */
+    private static Car parseCsv(String record) {
+        List<String> f = splitCsv(record);
+        if (f.size() < 5 || f.size() > 6) {
+            throw new IllegalArgumentException("5 veya 6 alan bekleniyordu, " + f.size() + " bulundu");
+        }
+        return build(f.get(0), f.get(1), f.get(2), f.get(3), f.get(4), f.size() == 6 ? f.get(5) : null);
+    }
+
+    /**
+     * Splits a CSV line; a field in double quotes may contain commas and doubled quotes.
+     */
+    private static List<String> splitCsv(String record) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().strip());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("Kapanmamış tırnak");
+        fields.add(field.toString().strip());
+        return fields;
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings or numbers.
+     */
+    private static Car parseJson(String record) {
+        Map<String, String> values = new HashMap<>();
+        int[] pos = {1};
+
+        skipSpaces(record, pos);
+        if (peek(record, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                skipSpaces(record, pos);
+                String key = readJsonString(record, pos);
+                skipSpaces(record, pos);
+                expect(record, pos, ':');
+                skipSpaces(record, pos);
+                String value = peek(record, pos) == '"' ? readJsonString(record, pos) : readJsonNumber(record, pos);
+                values.put(key, value);
+                skipSpaces(record, pos);
+
+                char c = peek(record, pos);
+                pos[0]++;
+                if (c == '}') break;
+                if (c != ',') throw new IllegalArgumentException("JSON içinde ',' veya '}' bekleniyordu");
+            }
+        }
+        skipSpaces(record, pos);
+        if (pos[0] != record.length()) throw new IllegalArgumentException("JSON nesnesinden sonra fazladan karakter");
+
+        String type = values.get("type");
+        String extra = type == null ? null : switch (type.toUpperCase(Locale.ROOT)) {
+            case "GAS", "GASCAR" -> values.get("fuelType");
+            case "ELECTRIC", "ELECTRICCAR" -> values.get("rangeKm");
+            case "LUXURY", "LUXURYCAR" -> values.get("premiumRate");
+            default -> null;
+        };
+        return build(type, values.get("id"), values.get("brand"), values.get("model"), values.get("dailyRate"), extra);
+    }
+
+    private static String readJsonString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder out = new StringBuilder();
+        while (true) {
+            if (pos[0] >= s.length()) throw new IllegalArgumentException("Kapanmamış JSON metni");
+            char c = s.charAt(pos[0]++);
+            if (c == '"') return out.toString();
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            char e = peek(s, pos);
+            pos[0]++;
+            switch (e) {
+                case '"', '\\', '/' -> out.append(e);
+                case 'n' -> out.append('\n');
+                case 't' -> out.append('\t');
+                case 'r' -> out.append('\r');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'u' -> {
+                    if (pos[0] + 4 > s.length()) throw new IllegalArgumentException("Geçersiz \\u kaçışı");
+                    try {
+                        out.append((char) Integer.parseInt(s.substring(pos[0], pos[0] + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Geçersiz \\u kaçışı");
+                    }
+                    pos[0] += 4;
+                }
+                default -> throw new IllegalArgumentException("Geçersiz JSON kaçışı: \\" + e);
+            }
+        }
+    }
+
+    private static String readJsonNumber(String s, int[] pos) {
+        int from = pos[0];
+        while (pos[0] < s.length() && "+-.eE0123456789".indexOf(s.charAt(pos[0])) >= 0) pos[0]++;
+        if (from == pos[0]) throw new IllegalArgumentException("JSON değeri metin veya sayı olmalı");
+        return s.substring(from, pos[0]);
+    }
+
+    private static void skipSpaces(String s, int[] pos) {
+        while (pos[0] < s.length() && Character.isWhitespace(s.charAt(pos[0]))) pos[0]++;
+    }
+
+    private static char peek(String s, int[] pos) {
+        if (pos[0] >= s.length()) throw new IllegalArgumentException("JSON satırı yarım kalmış");
+        return s.charAt(pos[0]);
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) throw new IllegalArgumentException("JSON içinde '" + c + "' bekleniyordu");
+        pos[0]++;
+    }
+
+    // ================= VALIDATION =================
+
+    /**
+     * Validates the fields of one record and creates the car of the right type.
+     */
+    private static Car build(String type, String id, String brand, String model, String dailyRate, String extra) {
+        if (type == null || type.isBlank()) throw new IllegalArgumentException("Araç türü eksik");
+        int carId = parseInt(id, "id");
+        if (carId <= 0) throw new IllegalArgumentException("ID 1 veya daha büyük olmalı");
+        if (brand == null || brand.isBlank()) throw new IllegalArgumentException("Marka eksik");
+        if (model == null || model.isBlank()) throw new IllegalArgumentException("Model eksik");
+        double rate = parseDouble(dailyRate, "dailyRate");
+        if (!(rate > 0) || Double.isInfinite(rate)) throw new IllegalArgumentException("Günlük ücret pozitif olmalı");
+
+        boolean hasExtra = extra != null && !extra.isBlank();
+        switch (type.strip().toUpperCase(Locale.ROOT)) {
+            case "GAS", "GASCAR" -> {
+                if (!hasExtra) throw new IllegalArgumentException("Yakıt türü eksik");
+                FuelType fuel;
+                try {
+                    fuel = FuelType.valueOf(extra.strip().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Bilinmeyen yakıt türü: " + extra);
+                }
+                return new GasCar(carId, brand, model, rate, fuel);
+            }
+            case "ELECTRIC", "ELECTRICCAR" -> {
+                if (!hasExtra) throw new IllegalArgumentException("Menzil eksik");
+                int range = parseInt(extra, "rangeKm");
+                if (range <= 0) throw new IllegalArgumentException("Menzil pozitif olmalı");
+                return new ElectricCar(carId, brand, model, rate, range);
+            }
+            case "LUXURY", "LUXURYCAR" -> {
+                if (!hasExtra) return new LuxuryCar(carId, brand, model, rate);
+                double premium = parseDouble(extra, "premiumRate");
+                if (!(premium >= 0) || Double.isInfinite(premium)) {
+                    throw new IllegalArgumentException("Premium oranı negatif olamaz");
+                }
+                return new LuxuryCar(carId, brand, model, rate, premium);
+            }
+            default -> throw new IllegalArgumentException("Bilinmeyen araç türü: " + type);
+        }
+    }
+
+    private static int parseInt(String value, String field) {
+        if (value == null) throw new IllegalArgumentException(field + " eksik");
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " tam sayı değil: " + value);
+        }
+    }
+
+    private static double parseDouble(String value, String field) {
+        if (value == null) throw new IllegalArgumentException(field + " eksik");
+        try {
+            return Double.parseDouble(value.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " sayı değil: " + value);
+        }
+    }
+
+    // ================= HELPERS =================
+
+    private static int lastLineBreak(byte[] data) {
+        for (int i = data.length - 1; i >= 0; i--) {
+            if (data[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private static ChunkResult await(Future<ChunkResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("İçe aktarma kesildi.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Dosya ayrıştırılamadı.", e.getCause());
+        }
+    }
+}
@@ -17,6 +17,9 @@ package com.carrental;
  */
 public class GasCar extends Car {
 
+    /** Fixed service fee added to every gas car rental. */
+    public static final double SERVICE_FEE = 50.0;
+
     // Type of fuel used by the car (e.g., PETROL, DIESEL)
     private final FuelType fuelType;
 
@@ -59,11 +62,8 @@ public class GasCar extends Car {
             throw new IllegalArgumentException("Gün sayısı 1 veya daha fazla olmalı!");
         }
 
-        // Fixed service fee applied to gas cars
-        double serviceFee = 50.0;
-
         // Total price = daily rate * days + service fee
-        return days * getDailyRate() + serviceFee;
+        return days * getDailyRate() + SERVICE_FEE;
     }
 
     /**
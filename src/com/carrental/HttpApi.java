@@ -0,0 +1,713 @@
+package com.carrental;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * Local HTTP service that exposes search, rent, return, receipts and payments as JSON.
+ *
+ * <p>Runs on the JDK's built-in {@link HttpServer}; every request is handled
+ * on its own virtual thread, so a request waiting for the journal's fsync
+ * or for the payment gateway does not hold up the others. Parameters are
+ * read from the query string, and for {@code POST} also from an
+ * {@code application/x-www-form-urlencoded} body.</p>
+ *
+ * <p>Endpoints:
+ * <ul>
+ *   <li>{@code GET /cars} – search; {@code brand, type (gas|electric|luxury), fuel,
+ *       available, minRate, maxRate, minRangeKm, maxRangeKm, page, size} and
+ *       {@code days} (adds the fee of each car)</li>
+ *   <li>{@code GET /cars/{id}} – one car</li>
+ *   <li>{@code POST /rentals} – rent; {@code carIds} (comma-separated), {@code name, phone,
+ *       days, method} and {@code wait=true} to answer only after the gateway did</li>
+ *   <li>{@code GET /rentals/{id}} – one rental</li>
+ *   <li>{@code POST /rentals/{id}/return} – return the car</li>
+ *   <li>{@code GET /rentals/{id}/receipt} – rental and its payment</li>
+ *   <li>{@code GET /payments} – payments in creation order; {@code status, offset, limit}
+ *       ({@code total} counts the payments with that status)</li>
+ *   <li>{@code GET /payments/{id}} – one payment</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Errors are answered as {@code {"error": "..."}} with 400 (bad input),
+ * 404 (unknown ID or path), 405 (wrong method, or a write on a
+ * {@link #readOnly} replica), 409 (car not available, rental already closed),
+ * 503 (a component is closed, e.g. during shutdown) or 500.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Separation of Concerns:</b> Only translates HTTP to calls on the service and registries.</li>
+ *   <li><b>Encapsulation:</b> Server, threads and JSON encoding are hidden behind the constructor and {@link #close}.</li>
+ * </ul>
+ * </p>
+ */
+public final class HttpApi implements AutoCloseable {
+
+    /** Connections waiting to be accepted; a burst of new clients queues here. */
+    private static final int BACKLOG = 4096;
+
+    /** Largest request body read. */
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    /** Default and largest page of cars or payments. */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /** Longest time {@code wait=true} waits for the gateway. */
+    private static final long SETTLEMENT_TIMEOUT_SECONDS = 10;
+
+    private final CarInventory inventory;
+    private final RentalService service;
+    private final RentalRegistry rentals;
+    private final PaymentRegistry payments;
+    private final BiFunction<String, String, Customer> customers;
+
+    // False on a read-only replica: rent and return are refused
+    private final boolean writable;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Starts the service.
+     *
+     * @param port      TCP port (0 = any free port, see {@link #port()})
+     * @param inventory car inventory to search
+     * @param service   rental service that rents and returns
+     * @param rentals   rental registry for lookups
+     * @param payments  payment registry for lookups and listings
+     * @param customers creates a customer from name and phone (called concurrently, also for requests that then fail)
+     * @throws IllegalArgumentException if a component is null or the port is out of range
+     * @throws UncheckedIOException     if the port cannot be bound
+     */
+    public HttpApi(int port, CarInventory inventory, RentalService service, RentalRegistry rentals,
+                   PaymentRegistry payments, BiFunction<String, String, Customer> customers) {
+        this(port, inventory, requireNonNull(service), rentals, payments, requireNonNull(customers), true);
+    }
+
+    /**
+     * Starts a service that only answers reads, e.g. on a {@link ReplicationFollower}.
+     *
+     * <p>Renting and returning answer 405; searches, rentals, receipts and
+     * payments work as usual.</p>
+     *
+     * @param port      TCP port (0 = any free port)
+     * @param inventory car inventory to search
+     * @param rentals   rental registry for lookups
+     * @param payments  payment registry for lookups and listings
+     * @return the running service
+     * @throws IllegalArgumentException if a component is null or the port is out of range
+     * @throws UncheckedIOException     if the port cannot be bound
+     */
+    public static HttpApi readOnly(int port, CarInventory inventory, RentalRegistry rentals, PaymentRegistry payments) {
+        return new HttpApi(port, inventory, null, rentals, payments, null, false);
+    }
+
+    private HttpApi(int port, CarInventory inventory, RentalService service, RentalRegistry rentals,
+                    PaymentRegistry payments, BiFunction<String, String, Customer> customers, boolean writable) {
+        if (inventory == null || rentals == null || payments == null) {
+            throw new IllegalArgumentException("Servis bileşenleri null olamaz.");
+        }
+        if (port < 0 || port > 65_535) throw new IllegalArgumentException("Geçersiz port: " + port);
+
+        this.inventory = inventory;
+        this.service = service;
+        this.rentals = rentals;
+        this.payments = payments;
+        this.customers = customers;
+        this.writable = writable;
+
+        tuneServer();
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        } catch (IOException e) {
+            throw new UncheckedIOException("HTTP sunucusu başlatılamadı.", e);
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/cars", exchange -> handle(exchange, this::cars));
+        server.createContext("/rentals", exchange -> handle(exchange, this::rentals));
+        server.createContext("/payments", exchange -> handle(exchange, this::payments));
+        server.createContext("/", exchange -> handle(exchange, request -> notFound("Bilinmeyen adres.")));
+        server.start();
+    }
+
+    private static <T> T requireNonNull(T component) {
+        if (component == null) throw new IllegalArgumentException("Servis bileşenleri null olamaz.");
+        return component;
+    }
+
+    /**
+     * @return the port the service listens on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, lets running ones finish (up to a second) and stops the threads.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    // ================= ROUTES =================
+
+    /** A route answers with a status and a JSON body, or throws. */
+    @FunctionalInterface
+    private interface Route {
+        Response answer(Request request);
+    }
+
+    private record Response(int status, String json) {}
+
+    /** Method, path segments below the context and all parameters of one request. */
+    private record Request(String method, String[] path, Map<String, String> params) {
+
+        String param(String name) {
+            String value = params.get(name);
+            return (value == null || value.isBlank()) ? null : value.trim();
+        }
+
+        String required(String name) {
+            String value = param(name);
+            if (value == null) throw new IllegalArgumentException("Eksik parametre: " + name);
+            return value;
+        }
+
+        int intParam(String name, int fallback) {
+            String value = param(name);
+            return value == null ? fallback : parseInt(name, value);
+        }
+
+        double doubleParam(String name, double fallback) {
+            String value = param(name);
+            if (value == null) return fallback;
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Geçersiz sayı: " + name + "=" + value);
+            }
+        }
+
+        int id(int segment) {
+            return parseInt("id", path[segment]);
+        }
+    }
+
+    private Response cars(Request request) {
+        requireMethod(request, "GET");
+        if (request.path().length == 1) {
+            Car car = inventory.findCarById(request.id(0));
+            if (car == null) return notFound("Araç bulunamadı.");
+            return ok(writeCar(new Json(), car, Double.NaN).toString());
+        }
+        if (request.path().length != 0) return notFound("Bilinmeyen adres.");
+
+        CarQuery query = carQuery(request);
+        int page = request.intParam("page", 0);
+        int size = pageSize(request, "size");
+        List<Car> found = inventory.page(query, page, size);
+
+        String daysParam = request.param("days");
+        double[] fees = (daysParam == null) ? null : inventory.quote(found, parseInt("days", daysParam));
+
+        Json json = new Json().beginObject()
+                .field("page", page)
+                .field("size", size)
+                .name("cars").beginArray();
+        for (int i = 0; i < found.size(); i++) {
+            writeCar(json, found.get(i), fees == null ? Double.NaN : fees[i]);
+        }
+        return ok(json.endArray().endObject().toString());
+    }
+
+    private Response rentals(Request request) {
+        String[] path = request.path();
+        if (path.length == 0) {
+            requireMethod(request, "POST");
+            requireWritable();
+            return rent(request);
+        }
+
+        int rentalId = request.id(0);
+        if (path.length == 1) {
+            requireMethod(request, "GET");
+            Rental rental = rentals.findById(rentalId);
+            return rental == null ? notFound("Rental bulunamadı.") : ok(writeRental(new Json(), rental).toString());
+        }
+        if (path.length == 2 && path[1].equals("return")) {
+            requireMethod(request, "POST");
+            requireWritable();
+            Rental rental = service.returnRental(rentalId);
+            return rental == null ? notFound("Rental bulunamadı.") : ok(writeRental(new Json(), rental).toString());
+        }
+        if (path.length == 2 && path[1].equals("receipt")) {
+            requireMethod(request, "GET");
+            Rental rental = rentals.findById(rentalId);
+            if (rental == null) return notFound("Rental bulunamadı.");
+
+            Json json = new Json().beginObject().name("rental");
+            writeRental(json, rental).name("payment");
+            writePayment(json, payments.findByRentalId(rentalId));
+            return ok(json.endObject().toString());
+        }
+        return notFound("Bilinmeyen adres.");
+    }
+
+    private Response rent(Request request) {
+        int[] carIds = parseIds(request.required("carIds"));
+        String name = request.required("name");
+        String phone = request.required("phone");
+        if (!phone.matches("\\d{10,11}")) throw new IllegalArgumentException("Telefon sadece rakam ve 10-11 haneli olmalı.");
+        int days = parseInt("days", request.required("days"));
+        PaymentMethod method = parseEnum(PaymentMethod.class, "method", request.required("method"));
+
+        Customer customer = customers.apply(name, phone);
+        RentalService.Booking booking = service.rentBatch(carIds, customer, days, method);
+
+        Payment payment = booking.payment();
+        if ("true".equalsIgnoreCase(request.param("wait"))) {
+            payment = awaitSettlement(booking);
+        }
+
+        Json json = new Json().beginObject()
+                .field("customerId", customer.getId())
+                .name("rentals").beginArray();
+        for (Rental rental : booking.rentals()) writeRental(json, rental);
+        json.endArray().name("payment");
+        writePayment(json, payment);
+        return new Response(201, json.endObject().toString());
+    }
+
+    private Response payments(Request request) {
+        requireMethod(request, "GET");
+        String[] path = request.path();
+        if (path.length == 1) {
+            Payment payment = payments.findById(request.id(0));
+            return payment == null ? notFound("Ödeme bulunamadı.") : ok(writePayment(new Json(), payment).toString());
+        }
+        if (path.length != 0) return notFound("Bilinmeyen adres.");
+
+        int offset = request.intParam("offset", 0);
+        int limit = pageSize(request, "limit");
+        if (offset < 0) throw new IllegalArgumentException("Başlangıç 0 veya daha büyük olmalı.");
+
+        List<Payment> page;
+        int total;
+        String statusParam = request.param("status");
+        if (statusParam == null) {
+            page = payments.page(offset, limit);
+            total = payments.size();
+        } else {
+            // No index by status: walk the log, keeping only the requested slice but counting every match
+            PaymentStatus status = parseEnum(PaymentStatus.class, "status", statusParam);
+            List<Payment> matching = new ArrayList<>(limit);
+            int[] matched = {0};
+            payments.forEach(p -> {
+                if (p.getStatus() != status) return;
+                if (matched[0]++ >= offset && matching.size() < limit) matching.add(p);
+            });
+            page = matching;
+            total = matched[0];
+        }
+
+        Json json = new Json().beginObject()
+                .field("offset", offset)
+                .field("limit", limit)
+                .field("total", total)
+                .name("payments").beginArray();
+        for (Payment payment : page) writePayment(json, payment);
+        return ok(json.endArray().endObject().toString());
+    }
+
+    // ================= PARAMETERS =================
+
+    private static CarQuery carQuery(Request request) {
+        CarQuery query = new CarQuery();
+
+        String brand = request.param("brand");
+        if (brand != null) query.brand(brand);
+
+        String type = request.param("type");
+        if (type != null) {
+            query.type(switch (type.toLowerCase(Locale.ROOT)) {
+                case "gas" -> GasCar.class;
+                case "electric" -> ElectricCar.class;
+                case "luxury" -> LuxuryCar.class;
+                default -> throw new IllegalArgumentException("Geçersiz tür (gas / electric / luxury): " + type);
+            });
+        }
+
+        String fuel = request.param("fuel");
+        if (fuel != null) query.fuelType(parseEnum(FuelType.class, "fuel", fuel));
+
+        String available = request.param("available");
+        if (available != null) query.available(Boolean.parseBoolean(available));
+
+        if (request.param("minRate") != null || request.param("maxRate") != null) {
+            query.dailyRateBetween(request.doubleParam("minRate", 0), request.doubleParam("maxRate", Double.MAX_VALUE));
+        }
+        if (request.param("minRangeKm") != null || request.param("maxRangeKm") != null) {
+            query.rangeKmBetween(request.intParam("minRangeKm", 0), request.intParam("maxRangeKm", Integer.MAX_VALUE));
+        }
+        return query;
+    }
+
+    private static int pageSize(Request request, String name) {
+        int size = request.intParam(name, DEFAULT_PAGE_SIZE);
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(name + " 1 ile " + MAX_PAGE_SIZE + " arasında olmalı.");
+        }
+        return size;
+    }
+
+    private static int[] parseIds(String list) {
+        String[] parts = list.split(",");
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ids[i] = parseInt("carIds", parts[i].trim());
+        }
+        return ids;
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Geçersiz sayı: " + name + "=" + value);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Geçersiz değer: " + name + "=" + value);
+        }
+    }
+
+    private static void requireMethod(Request request, String method) {
+        if (!request.method().equals(method)) throw new MethodNotAllowed(method);
+    }
+
+    private void requireWritable() {
+        if (!writable) {
+            throw new MethodNotAllowed("", "Salt okunur kopya: kiralama ve iade birincil sunucuda yapılır.");
+        }
+    }
+
+    /** Answers 405; carries the methods the path accepts. */
+    private static final class MethodNotAllowed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final String allowed;
+
+        MethodNotAllowed(String allowed) {
+            this(allowed, "Bu adres yalnızca " + allowed + " kabul eder.");
+        }
+
+        MethodNotAllowed(String allowed, String message) {
+            super(message, null, false, false);
+            this.allowed = allowed;
+        }
+    }
+
+    /**
+     * Waits for the gateway's answer on this (virtual) thread.
+     */
+    private static Payment awaitSettlement(RentalService.Booking booking) {
+        try {
+            return booking.settlement().get(SETTLEMENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return booking.payment();
+        } catch (ExecutionException | TimeoutException e) {
+            // Still pending (or the answer could not be applied): report the current status
+            return booking.payment();
+        }
+    }
+
+    // ================= EXCHANGE =================
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                response = route.answer(parse(exchange));
+            } catch (MethodNotAllowed e) {
+                exchange.getResponseHeaders().set("Allow", e.allowed);
+                response = error(405, e.getMessage());
+            } catch (CarNotAvailableException | RentalAlreadyClosedException e) {
+                response = error(409, e.getMessage());
+            } catch (IllegalArgumentException | InvalidRentalPeriodException e) {
+                response = error(400, e.getMessage());
+            } catch (IllegalStateException e) {
+                // Not a conflict with the request: the journal or payment pipeline refuses work
+                response = error(503, e.getMessage());
+            } catch (RuntimeException e) {
+                response = error(500, e.toString());
+            }
+
+            byte[] body = response.json().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static Request parse(HttpExchange exchange) throws IOException {
+        // Segments below the context, e.g. "/rentals/7/return" -> ["7", "return"]
+        String context = exchange.getHttpContext().getPath();
+        String rest = exchange.getRequestURI().getPath().substring(context.length());
+        String[] path = rest.isEmpty() || rest.equals("/") ? new String[0] : rest.substring(1).split("/");
+
+        Map<String, String> params = new HashMap<>();
+        decodeForm(exchange.getRequestURI().getRawQuery(), params);
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            decodeForm(readBody(exchange.getRequestBody()), params);
+        }
+        return new Request(exchange.getRequestMethod(), path, params);
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) throw new IllegalArgumentException("İstek gövdesi çok büyük.");
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static void decodeForm(String form, Map<String, String> into) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            into.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Response ok(String json) {
+        return new Response(200, json);
+    }
+
+    private static Response notFound(String message) {
+        return error(404, message);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, new Json().beginObject().field("error", message).endObject().toString());
+    }
+
+    /**
+     * Loosens two limits of the built-in server that hurt many keep-alive clients:
+     * it closes idle connections beyond 200, and it leaves Nagle's algorithm on, which
+     * delays small responses by the client's delayed ACK. Only applies if the properties
+     * are not set already, and only before the first server of the JVM is created.
+     */
+    private static void tuneServer() {
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "100000");
+        }
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    // ================= JSON =================
+
+    private static Json writeCar(Json json, Car car, double fee) {
+        json.beginObject()
+                .field("id", car.getId())
+                .field("type", car.getClass().getSimpleName())
+                .field("brand", car.getBrand())
+                .field("model", car.getModel())
+                .field("dailyRate", car.getDailyRate())
+                .field("available", car.isAvailable());
+        if (car instanceof GasCar g) json.field("fuelType", g.getFuelType().name());
+        if (car instanceof ElectricCar e) json.field("rangeKm", e.getRangeKm());
+        if (car instanceof LuxuryCar l) json.field("premiumRate", l.getPremiumRate());
+        if (!Double.isNaN(fee)) json.field("fee", fee);
+        return json.endObject();
+    }
+
+    private static Json writeRental(Json json, Rental rental) {
+        return json.beginObject()
+                .field("rentalId", rental.getRentalId())
+                .field("carId", rental.getCar().getId())
+                .field("customerId", rental.getCustomer().getId())
+                .field("customerName", rental.getCustomer().getName())
+                .field("days", rental.getDays())
+                .field("totalFee", rental.getTotalFee())
+                .field("status", rental.getStatus().name())
+                .field("createdAt", rental.getCreatedAt())
+                .field("closedAt", rental.getClosedAt())
+                .endObject();
+    }
+
+    private static Json writePayment(Json json, Payment payment) {
+        if (payment == null) return json.nullValue();
+        json.beginObject()
+                .field("paymentId", payment.getPaymentId())
+                .name("rentalIds").beginArray();
+        for (int rentalId : payment.getRentalIds()) json.value(rentalId);
+        return json.endArray()
+                .field("amount", payment.getAmount())
+                .field("method", payment.getMethod().name())
+                .field("status", payment.getStatus().name())
+                .field("paidAt", payment.getPaidAt())
+                .endObject();
+    }
+
+    /**
+     * Minimal streaming JSON writer: objects, arrays, strings, numbers, booleans and null.
+     */
+    private static final class Json {
+
+        private final StringBuilder out = new StringBuilder(256);
+
+        // True when the next member or element needs a separating comma
+        private boolean comma;
+
+        Json beginObject() {
+            separate();
+            out.append('{');
+            return this;
+        }
+
+        Json endObject() {
+            out.append('}');
+            comma = true;
+            return this;
+        }
+
+        Json beginArray() {
+            separate();
+            out.append('[');
+            return this;
+        }
+
+        Json endArray() {
+            out.append(']');
+            comma = true;
+            return this;
+        }
+
+        Json name(String name) {
+            separate();
+            string(name);
+            out.append(':');
+            return this;
+        }
+
+        Json value(String value) {
+            separate();
+            if (value == null) out.append("null");
+            else string(value);
+            comma = true;
+            return this;
+        }
+
+        Json value(long value) {
+            separate();
+            out.append(value);
+            comma = true;
+            return this;
+        }
+
+        Json value(double value) {
+            separate();
+            // Amounts are shown to the kuruş; NaN and infinities are not valid JSON
+            if (Double.isFinite(value)) out.append(Math.round(value * 100) / 100.0);
+            else out.append("null");
+            comma = true;
+            return this;
+        }
+
+        Json value(boolean value) {
+            separate();
+            out.append(value);
+            comma = true;
+            return this;
+        }
+
+        Json nullValue() {
+            return value((String) null);
+        }
+
+        Json field(String name, String value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, long value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, double value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, boolean value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, LocalDateTime value) {
+            return name(name).value(value == null ? null : value.toString());
+        }
+
+        private void separate() {
+            if (comma) out.append(',');
+            comma = false;
+        }
+
+        private void string(String s) {
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                    }
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.carrental;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Hash map from primitive {@code int} keys to object values.
+ *
+ * <p>Cars, customers, rentals and payments are all identified by {@code int}
+ * IDs. A {@code HashMap<Integer, V>} boxes every key into an {@link Integer}
+ * and allocates a node object per entry. This map instead uses open
+ * addressing with linear probing over two parallel arrays (one {@code int[]}
+ * for keys, one {@code Object[]} for values), so an entry costs no objects
+ * beyond the value itself.</p>
+ *
+ * <p>Rules:
+ * <ul>
+ *   <li>Null values are not allowed (null marks a never-used array cell).</li>
+ *   <li>Removed entries leave a tombstone so that probe sequences stay intact;
+ *       tombstones are dropped on the next rehash.</li>
+ *   <li>Iteration order is table order, not insertion order.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Thread safety: writers ({@link #put}, {@link #remove}, {@link #clear})
+ * must be serialised by the caller, but any number of threads may read at
+ * the same time without locking. A key is written before its value is
+ * published with release semantics, a cell never changes its key once it
+ * holds one, and a rehash builds a new table that is published in a single
+ * volatile write. Readers therefore always see a key together with a value
+ * that was mapped to it.</p>
+ *
+ * @param <V> value type
+ */
+public final class IntObjectMap<V> {
+
+    // Marks a removed entry; probing continues past it
+    private static final Object TOMBSTONE = new Object();
+
+    // Rehash once live entries plus tombstones exceed 3/4 of the table (same as HashMap)
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Acquire/release access to single value cells
+    private static final VarHandle VALUE = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /**
+     * Key and value arrays of one table generation.
+     *
+     * <p>Keeping both arrays in one object lets a rehash swap them together.</p>
+     */
+    private static final class Table {
+        // Keys (only meaningful where values[i] is a real value or TOMBSTONE)
+        final int[] keys;
+
+        // Values: null = free cell, TOMBSTONE = removed entry
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+
+    // Current table, replaced as a whole on rehash
+    private volatile Table table;
+
+    // Number of live entries
+    private volatile int size;
+
+    // Number of cells that are not free (live entries + tombstones); writer-only
+    private int used;
+
+    /**
+     * Creates an empty map with a small default capacity.
+     */
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map sized for the expected number of entries.
+     *
+     * @param expectedSize number of entries the map should hold without resizing
+     */
+    public IntObjectMap(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Kapasite negatif olamaz.");
+        this.table = new Table(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @param key key to look up
+     * @return the value mapped to the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int mask = t.values.length - 1;
+
+        for (int i = mix(key) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            Object current = VALUE.getAcquire(t.values, i);
+            if (current == null) return null;
+            if (current != TOMBSTONE && t.keys[i] == key) return (V) current;
+        }
+        return null;
+    }
+
+    /**
+     * @param key key to check
+     * @return true if the map contains the key
+     */
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the key to the value, replacing any previous value.
+     *
+     * @param key   key
+     * @param value value (not null)
+     * @return the previous value, or null if the key was not present
+     * @throws IllegalArgumentException if value is null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new IllegalArgumentException("Değer null olamaz.");
+
+        Table t = table;
+        int mask = t.values.length - 1;
+
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Object current = t.values[i];
+
+            if (current == null) {
+                // Key is absent: claim a free cell (key first, then publish the value)
+                t.keys[i] = key;
+                VALUE.setRelease(t.values, i, value);
+                size = size + 1;
+                if (++used > (int) (t.values.length * LOAD_FACTOR)) rehash();
+                return null;
+            }
+
+            if (t.keys[i] == key) {
+                // Live entry or tombstone of the same key: the cell keeps its key
+                VALUE.setRelease(t.values, i, value);
+                if (current == TOMBSTONE) {
+                    size = size + 1;
+                    return null;
+                }
+                return (V) current;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for a key.
+     *
+     * @param key key to remove
+     * @return the removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        Table t = table;
+        int mask = t.values.length - 1;
+
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Object current = t.values[i];
+            if (current == null) return null;
+            if (current != TOMBSTONE && t.keys[i] == key) {
+                VALUE.setRelease(t.values, i, TOMBSTONE);
+                size = size - 1;
+                return (V) current;
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        table = new Table(MIN_CAPACITY);
+        size = 0;
+        used = 0;
+    }
+
+    /**
+     * @return number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the map has no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Calls {@code action} for every value in the map (in table order).
+     *
+     * @param action callback receiving each value
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        Object[] values = table.values;
+        for (int i = 0; i < values.length; i++) {
+            Object v = VALUE.getAcquire(values, i);
+            if (v != null && v != TOMBSTONE) action.accept((V) v);
+        }
+    }
+
+    /**
+     * Rebuilds the table without tombstones, doubling it if live entries need the room.
+     *
+     * <p>The new table is filled completely before it is published, so
+     * readers see either the old or the new table, never a partial one.</p>
+     */
+    private void rehash() {
+        Table old = table;
+        int capacity = old.values.length;
+        if (size >= (int) (capacity * LOAD_FACTOR) / 2) capacity *= 2;
+
+        Table fresh = new Table(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.values.length; j++) {
+            Object v = old.values[j];
+            if (v == null || v == TOMBSTONE) continue;
+
+            int i = mix(old.keys[j]) & mask;
+            while (fresh.values[i] != null) i = (i + 1) & mask;
+            fresh.keys[i] = old.keys[j];
+            fresh.values[i] = v;
+        }
+
+        used = size;
+        table = fresh;
+    }
+
+    /**
+     * Smallest power of two that holds {@code expectedSize} entries below the load factor.
+     */
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            if (capacity >= 1 << 30) throw new IllegalArgumentException("Kapasite çok büyük.");
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads sequential IDs across the table (Fibonacci hashing).
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
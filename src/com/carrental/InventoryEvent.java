@@ -0,0 +1,54 @@
+package com.carrental;
+
+/**
+ * A change in a {@link CarInventory}, delivered by {@link CarInventory#events}.
+ *
+ * <p>Events are coalesced per car while a subscriber is busy, so an event
+ * describes the car's state when it was delivered rather than one single
+ * change: three rentals and returns in a row arrive as one
+ * {@link Type#AVAILABILITY} event with the latest availability. An
+ * {@link Type#ADDED} event therefore means "this car is now in the
+ * inventory with this state" and may repeat a car the subscriber already
+ * knows (treat it as an insert-or-update).</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Immutability:</b> A record; the event never changes after delivery.</li>
+ *   <li><b>Enum Usage:</b> The kind of change is a closed set of values.</li>
+ * </ul>
+ * </p>
+ *
+ * @param type      kind of change
+ * @param car       the car concerned
+ * @param available availability of the car when the event was delivered
+ */
+public record InventoryEvent(Type type, Car car, boolean available) {
+
+    /**
+     * Kind of change.
+     */
+    public enum Type {
+
+        // The car was added (or is reported as part of the initial state)
+        ADDED,
+
+        // The car was rented or returned
+        AVAILABILITY,
+
+        // The car was removed from the inventory
+        REMOVED
+    }
+
+    /**
+     * @return ID of the car concerned
+     */
+    public int carId() {
+        return car.getId();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s #%d %s %s (%s)", type, car.getId(), car.getBrand(), car.getModel(),
+                available ? "Müsait" : "Kirada");
+    }
+}
@@ -0,0 +1,232 @@
+package com.carrental;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Delivers the {@link InventoryEvent}s of one inventory to its subscribers.
+ *
+ * <p>The inventory calls {@link #publish} on the thread that made the change
+ * (an add or remove under the write lock, a rent or return without any
+ * lock); the shards of a {@link ShardedInventory} all publish to the feed
+ * of the sharded inventory. Publishing never waits for a subscriber: each
+ * subscription keeps its undelivered changes in a map keyed by car ID, and
+ * a later change of the same car replaces the earlier one in place. A slow subscriber
+ * therefore holds at most one pending change per matching car, however many
+ * rentals happen while it is busy, and a subscriber that stops requesting
+ * costs no more memory than that.</p>
+ *
+ * <p>Each subscription is drained by its own virtual thread, started when
+ * there is both a pending change and outstanding demand, so signals to one
+ * subscriber never overlap and a blocked subscriber does not delay the
+ * others. The availability in a delivered event is read from the car at
+ * delivery time, so the last event a subscriber sees for a car always
+ * matches the car, even when two updates were published out of order.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Observer Pattern:</b> Subscribers are told about changes instead of polling listings.</li>
+ *   <li><b>Encapsulation:</b> Coalescing, demand and delivery threads are hidden from the inventory.</li>
+ * </ul>
+ * </p>
+ */
+final class InventoryFeed {
+
+    private static final ThreadFactory DELIVERY = Thread.ofVirtual().name("inventory-events-", 0).factory();
+
+    private final CopyOnWriteArrayList<FeedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return true if at least one subscriber is registered
+     */
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Records a change for every subscriber whose filter matches the car.
+     *
+     * @param type kind of change
+     * @param car  the car concerned
+     */
+    void publish(InventoryEvent.Type type, Car car) {
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.offer(type, car);
+        }
+    }
+
+    /**
+     * Registers a subscriber. Nothing is delivered until {@link FeedSubscription#start()}.
+     *
+     * @param filter     criteria the cars must match (availability is not used)
+     * @param subscriber receiver of the events
+     * @return the new subscription
+     */
+    FeedSubscription register(CarQuery filter, Flow.Subscriber<? super InventoryEvent> subscriber) {
+        FeedSubscription subscription = new FeedSubscription(filter, subscriber);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /** An undelivered change of one car. */
+    private record Pending(InventoryEvent.Type type, Car car) {}
+
+    /**
+     * One subscriber, its filter, its demand and its coalesced pending changes.
+     */
+    final class FeedSubscription implements Flow.Subscription {
+
+        private final CarQuery filter;
+        private final Flow.Subscriber<? super InventoryEvent> subscriber;
+
+        // Everything below is guarded by this subscription's monitor
+        private final Map<Integer, Pending> pending = new LinkedHashMap<>();
+        private long demand;
+        private boolean started;
+        private boolean draining;
+        private boolean cancelled;
+        private Throwable error;
+
+        private FeedSubscription(CarQuery filter, Flow.Subscriber<? super InventoryEvent> subscriber) {
+            this.filter = filter;
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Adds a car of the initial state as an {@link InventoryEvent.Type#ADDED} change.
+         *
+         * <p>Called before {@link #start()} while the write lock of the
+         * inventory storing the car is held, so a change already recorded for
+         * the car's ID concerns this very car; it folds into the ADDED
+         * change.</p>
+         *
+         * @param car a car currently stored in the inventory
+         */
+        void seed(Car car) {
+            if (!filter.matchesResidual(car, true)) return;
+            synchronized (this) {
+                pending.put(car.getId(), new Pending(InventoryEvent.Type.ADDED, car));
+            }
+        }
+
+        /**
+         * Hands the subscription to the subscriber and begins delivery.
+         */
+        void start() {
+            try {
+                subscriber.onSubscribe(this);
+            } catch (Throwable t) {
+                cancel();
+                return;
+            }
+            boolean drain;
+            synchronized (this) {
+                started = true;
+                drain = claimDrain();
+            }
+            if (drain) DELIVERY.newThread(this::drain).start();
+        }
+
+        @Override
+        public void request(long n) {
+            boolean drain;
+            synchronized (this) {
+                if (cancelled) return;
+                if (n <= 0) {
+                    error = new IllegalArgumentException("İstenen olay sayısı pozitif olmalı: " + n);
+                } else {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n; // saturate on overflow
+                }
+                drain = claimDrain();
+            }
+            if (drain) DELIVERY.newThread(this::drain).start();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                pending.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Records a change if the car matches the filter, merging it with an undelivered change of the same car.
+         */
+        private void offer(InventoryEvent.Type type, Car car) {
+            if (!filter.matchesResidual(car, true)) return;
+            boolean drain;
+            synchronized (this) {
+                if (cancelled) return;
+                Pending previous = pending.get(car.getId());
+                if (previous != null && previous.car() == car && type == InventoryEvent.Type.AVAILABILITY
+                        && previous.type() != InventoryEvent.Type.AVAILABILITY) {
+                    // ADDED stays ADDED (availability is read on delivery); a late
+                    // change of a car that is already REMOVED must not revive it
+                    return;
+                }
+                // Replacing an existing key keeps its place in the delivery order
+                pending.put(car.getId(), new Pending(type, car));
+                drain = claimDrain();
+            }
+            if (drain) DELIVERY.newThread(this::drain).start();
+        }
+
+        /**
+         * Decides whether a drain thread must be started and, if so, marks one as running.
+         *
+         * <p>Caller must hold this subscription's monitor.</p>
+         */
+        private boolean claimDrain() {
+            if (!started || draining || cancelled) return false;
+            if (error == null && (demand == 0 || pending.isEmpty())) return false;
+            draining = true;
+            return true;
+        }
+
+        /**
+         * Delivers pending changes while there is demand; runs on a delivery thread.
+         */
+        private void drain() {
+            while (true) {
+                Pending next;
+                Throwable failure = null;
+                synchronized (this) {
+                    if (cancelled || (error == null && (demand == 0 || pending.isEmpty()))) {
+                        draining = false;
+                        return;
+                    }
+                    if (error != null) {
+                        failure = error;
+                        next = null;
+                        cancelled = true;
+                        pending.clear();
+                    } else {
+                        Iterator<Pending> oldest = pending.values().iterator();
+                        next = oldest.next();
+                        oldest.remove();
+                        if (demand != Long.MAX_VALUE) demand--;
+                    }
+                }
+
+                if (failure != null) {
+                    subscriptions.remove(this);
+                    subscriber.onError(failure);
+                    return;
+                }
+                try {
+                    subscriber.onNext(new InventoryEvent(next.type(), next.car(), next.car().isAvailable()));
+                } catch (Throwable t) {
+                    // A subscriber that throws is treated as having cancelled
+                    cancel();
+                    return;
+                }
+            }
+        }
+    }
+}
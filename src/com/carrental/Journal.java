@@ -0,0 +1,1029 @@
+package com.carrental;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of every change to cars, rentals and payments.
+ *
+ * <p>Without it, all state lives in memory and is lost on exit. The journal
+ * appends one compact binary record per change to a file; on startup the
+ * records are replayed to rebuild the inventory and the registries (see
+ * {@link JournalReplay}).</p>
+ *
+ * <p><b>File format:</b> a header (magic number and generation), then records of the form
+ * {@code [int length][byte type][payload][int CRC32C]}, where length covers
+ * type and payload and the checksum covers the same bytes. A crash can only
+ * leave a torn record at the end of the file; it fails the length or
+ * checksum test on the next open and is cut off. A booking (its rentals, its
+ * customer and its payment) is one record, so it is replayed completely or
+ * not at all.</p>
+ *
+ * <p><b>Group commit:</b> appending only encodes the record into an
+ * in-memory batch and returns its sequence number (LSN).
+ * {@link #commit(long)} returns once that record is on disk. One thread
+ * writes and fsyncs the whole batch while the others wait; records appended
+ * meanwhile go into the next batch. Concurrent committers therefore share
+ * fsyncs instead of paying one each.</p>
+ *
+ * <p><b>fsync batching</b> is configured with two limits. A batch is
+ * written as soon as it holds {@code maxBatchRecords} records. A background
+ * thread writes whatever is pending every {@code maxBatchDelayMillis}, which
+ * bounds how much uncommitted work a crash can lose.</p>
+ *
+ * <p>Replay reads the file into memory and decodes it in one sequential
+ * pass. It does not map the file: a live mapping would keep Windows from
+ * truncating it (cutting off a torn tail, rolling over).</p>
+ *
+ * <p><b>Generations:</b> after a {@link Snapshot} has captured the state,
+ * {@link #rollOver()} empties the file and increments its generation. A
+ * snapshot remembers the generation it covers, so a journal whose generation
+ * is not newer than the loaded snapshot is skipped instead of being replayed
+ * twice (a crash between writing the snapshot and rolling over).</p>
+ *
+ * <p><b>Shipping:</b> a {@link ReplicationServer} attached as the
+ * {@link Shipper} receives each batch once it is on disk, so followers only
+ * ever see records the primary would also replay after a crash.</p>
+ *
+ * <p>Thread safety: all methods can be called from any thread.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> The record format is private to this class;
+ *       callers append domain objects and read them back through {@link Visitor}.</li>
+ *   <li><b>Visitor:</b> Replay calls one method per record type.</li>
+ * </ul>
+ * </p>
+ */
+public final class Journal implements AutoCloseable {
+
+    /**
+     * Receives the records of a journal during replay, in the order they were written.
+     */
+    public interface Visitor {
+
+        /** A car was added to the inventory. */
+        default void carAdded(Car car) {}
+
+        /** A car was removed from the inventory. */
+        default void carRemoved(int carId) {}
+
+        /**
+         * Rentals were opened and paid for together (a single rental or a batch).
+         *
+         * <p>The payment is either already paid, or pending until a later
+         * {@link #paymentSettled} or {@link #paymentFailed} record.</p>
+         *
+         * @param customer  renting customer
+         * @param days      number of rental days
+         * @param rentalIds rental IDs
+         * @param carIds    car of each rental
+         * @param createdAt creation time of each rental
+         * @param paymentId ID of the payment covering all rentals
+         * @param amount    paid amount
+         * @param method    payment method
+         * @param paidAt    payment time
+         * @param status    {@link PaymentStatus#PAID} or {@link PaymentStatus#PENDING}
+         */
+        default void bookingRecorded(Customer customer, int days, int[] rentalIds, int[] carIds,
+                                     LocalDateTime[] createdAt, int paymentId, double amount,
+                                     PaymentMethod method, LocalDateTime paidAt, PaymentStatus status) {}
+
+        /** A rental was closed (car returned). */
+        default void rentalClosed(int rentalId, LocalDateTime closedAt) {}
+
+        /** A payment was refunded. */
+        default void paymentRefunded(int paymentId) {}
+
+        /** The gateway approved a pending payment. */
+        default void paymentSettled(int paymentId) {}
+
+        /**
+         * The gateway declined a pending payment.
+         *
+         * @param paymentId          ID of the failed payment
+         * @param cancelledRentalIds rentals that were cancelled because of it (those still active)
+         * @param cancelledAt        time of the cancellation
+         */
+        default void paymentFailed(int paymentId, int[] cancelledRentalIds, LocalDateTime cancelledAt) {}
+    }
+
+    /**
+     * Receives every batch of records once it is on disk (used by {@link ReplicationServer}).
+     *
+     * <p>Records are numbered from 1 within their generation. Both methods
+     * are called in log order while the journal's lock is held, so they
+     * must only copy or queue, never block.</p>
+     */
+    interface Shipper {
+
+        /**
+         * @param generation  generation of the records
+         * @param firstRecord number of the first record in the batch
+         * @param lastRecord  number of the last record in the batch
+         * @param records     the records in file format (read-only; only valid during the call)
+         */
+        void shipped(long generation, long firstRecord, long lastRecord, ByteBuffer records);
+
+        /**
+         * A new, empty generation has started.
+         *
+         * @param generation the new generation
+         */
+        void rolledOver(long generation);
+    }
+
+    // "CRJ2"; header = magic + generation
+    private static final int MAGIC = 0x43524A32;
+    private static final int HEADER_BYTES = 12;
+
+    // Record types
+    private static final byte CAR_ADDED = 1;
+    private static final byte CAR_REMOVED = 2;
+    private static final byte BOOKING = 3;
+    private static final byte RENTAL_CLOSED = 4;
+    private static final byte PAYMENT_REFUNDED = 5;
+    private static final byte PENDING_BOOKING = 6;
+    private static final byte PAYMENT_SETTLED = 7;
+    private static final byte PAYMENT_FAILED = 8;
+
+    // Car kinds inside a CAR_ADDED record (shared with the snapshot format)
+    static final byte KIND_GAS = 1;
+    static final byte KIND_ELECTRIC = 2;
+    static final byte KIND_LUXURY = 3;
+
+    private static final int INITIAL_BATCH_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int maxBatchRecords;
+    private final int replayedRecords;
+
+    // Generation of the file contents; LSN of the last record before it started (both guarded by lock)
+    private long generation;
+    private long generationStartLsn;
+
+    /**
+     * Guards everything below. A {@link ReentrantLock} rather than a monitor,
+     * so that virtual threads waiting for a commit do not pin their carrier.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Signalled whenever a batch write ends
+    private final Condition flushed = lock.newCondition();
+
+    // Records encoded but not yet handed to the file, and the buffer for the next batch
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BATCH_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BATCH_BYTES);
+    private int pendingRecords;
+
+    // Sequence number of the last appended record and of the last record on disk
+    private long appendedLsn;
+    private long durableLsn;
+
+    // True while one thread writes a batch
+    private boolean flushing;
+
+    // First write error; the journal refuses further work after it
+    private IOException failure;
+
+    private boolean closed;
+
+    // Receives durable batches (null = no replication)
+    private Shipper shipper;
+
+    private final CRC32C crc = new CRC32C();
+
+    // Writes pending records periodically (null if disabled)
+    private final Thread flusher;
+
+    private Journal(Path file, FileChannel channel, int maxBatchRecords, long maxBatchDelayMillis,
+                    long generation, int replayedRecords) {
+        this.file = file;
+        this.channel = channel;
+        this.generation = generation;
+        this.maxBatchRecords = maxBatchRecords;
+        this.replayedRecords = replayedRecords;
+        this.appendedLsn = replayedRecords;
+        this.durableLsn = replayedRecords;
+
+        if (maxBatchDelayMillis > 0) {
+            flusher = new Thread(() -> flushLoop(maxBatchDelayMillis), "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens (or creates) a journal, replays its records and prepares it for appending.
+     *
+     * @param file                journal file
+     * @param maxBatchRecords     pending records that trigger a write + fsync
+     * @param maxBatchDelayMillis interval of the background write + fsync (0 = none)
+     * @param replayTo            receives the existing records (null to skip them)
+     * @return the open journal
+     * @throws UncheckedIOException if the file cannot be read or written
+     * @throws IllegalStateException if the file is not a journal
+     */
+    public static Journal open(Path file, int maxBatchRecords, long maxBatchDelayMillis, Visitor replayTo) {
+        return open(file, maxBatchRecords, maxBatchDelayMillis, replayTo, 0);
+    }
+
+    /**
+     * Opens a journal on top of a loaded snapshot and replays only what the snapshot lacks.
+     *
+     * @param file                journal file
+     * @param maxBatchRecords     pending records that trigger a write + fsync
+     * @param maxBatchDelayMillis interval of the background write + fsync (0 = none)
+     * @param replayTo            receives the records written after the snapshot (null to skip them)
+     * @param coveredGeneration   generation contained in the loaded snapshot (0 = no snapshot)
+     * @return the open journal
+     * @throws UncheckedIOException if the file cannot be read or written
+     * @throws IllegalStateException if the file is not a journal, or records
+     *                               between the snapshot and the journal are missing
+     */
+    public static Journal open(Path file, int maxBatchRecords, long maxBatchDelayMillis,
+                               Visitor replayTo, long coveredGeneration) {
+        if (maxBatchRecords <= 0) throw new IllegalArgumentException("Grup boyutu 1 veya daha büyük olmalı.");
+        if (maxBatchDelayMillis < 0) throw new IllegalArgumentException("Gecikme negatif olamaz.");
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long next = coveredGeneration + 1;
+            int records = 0;
+            long end;
+
+            // A file shorter than a header holds no records (crash while it was being created)
+            long generation = (channel.size() < HEADER_BYTES) ? 0 : readGeneration(channel);
+            if (generation > next) {
+                throw new IllegalStateException("Günlük anlık görüntüden yeni; arada kayıtlar eksik: " + file);
+            }
+
+            if (generation < next) {
+                // New file, or everything in it is already in the snapshot
+                writeHeader(channel, next);
+                generation = next;
+                end = HEADER_BYTES;
+            } else {
+                long[] validEnd = new long[1];
+                records = replay(channel, replayTo == null ? new Visitor() {} : replayTo, validEnd);
+                end = validEnd[0];
+
+                // Cut off a record torn by a crash so new records follow the last good one
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+
+            channel.position(end);
+            return new Journal(file, channel, maxBatchRecords, maxBatchDelayMillis, generation, records);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException("Günlük açılamadı: " + file, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // ================= APPEND =================
+
+    /**
+     * Appends a car addition.
+     *
+     * @param car the added car (GasCar, ElectricCar or LuxuryCar)
+     * @return sequence number of the record
+     * @throws IllegalArgumentException if the car's class cannot be journaled
+     */
+    public long carAdded(Car car) {
+        byte kind = kindOf(car);
+        return append(CAR_ADDED, () -> {
+            put(kind);
+            putInt(car.getId());
+            putString(car.getBrand());
+            putString(car.getModel());
+            putDouble(car.getDailyRate());
+            switch (kind) {
+                case KIND_GAS -> put((byte) ((GasCar) car).getFuelType().ordinal());
+                case KIND_ELECTRIC -> putInt(((ElectricCar) car).getRangeKm());
+                default -> putDouble(((LuxuryCar) car).getPremiumRate());
+            }
+        });
+    }
+
+    /**
+     * Appends a car removal.
+     *
+     * @param carId ID of the removed car
+     * @return sequence number of the record
+     */
+    public long carRemoved(int carId) {
+        return append(CAR_REMOVED, () -> putInt(carId));
+    }
+
+    /**
+     * Appends a booking: rentals of one customer and the payment covering them, as one record.
+     *
+     * @param rentals rentals of the booking (same customer and day count)
+     * @param payment their payment
+     * @return sequence number of the record
+     */
+    public long bookingRecorded(List<Rental> rentals, Payment payment) {
+        if (rentals.isEmpty()) throw new IllegalArgumentException("Kiralama listesi boş olamaz.");
+        Rental first = rentals.get(0);
+        Customer customer = first.getCustomer();
+
+        byte type = switch (payment.getStatus()) {
+            case PAID -> BOOKING;
+            case PENDING -> PENDING_BOOKING;
+            default -> throw new IllegalArgumentException("Rezervasyon ödemesi ödenmiş veya beklemede olmalı.");
+        };
+
+        return append(type, () -> {
+            putInt(customer.getId());
+            putString(customer.getName());
+            putString(customer.getPhone());
+            putInt(first.getDays());
+            putInt(rentals.size());
+            for (Rental r : rentals) {
+                putInt(r.getRentalId());
+                putInt(r.getCar().getId());
+                putLong(epochNanos(r.getCreatedAt()));
+            }
+            putInt(payment.getPaymentId());
+            putDouble(payment.getAmount());
+            put((byte) payment.getMethod().ordinal());
+            putLong(epochNanos(payment.getPaidAt()));
+        });
+    }
+
+    /**
+     * Appends the closing of a rental.
+     *
+     * @param rentalId ID of the closed rental
+     * @param closedAt time of the return
+     * @return sequence number of the record
+     */
+    public long rentalClosed(int rentalId, LocalDateTime closedAt) {
+        return append(RENTAL_CLOSED, () -> {
+            putInt(rentalId);
+            putLong(epochNanos(closedAt));
+        });
+    }
+
+    /**
+     * Appends a refund.
+     *
+     * @param paymentId ID of the refunded payment
+     * @return sequence number of the record
+     */
+    public long paymentRefunded(int paymentId) {
+        return append(PAYMENT_REFUNDED, () -> putInt(paymentId));
+    }
+
+    /**
+     * Appends the approval of a pending payment.
+     *
+     * @param paymentId ID of the paid payment
+     * @return sequence number of the record
+     */
+    public long paymentSettled(int paymentId) {
+        return append(PAYMENT_SETTLED, () -> putInt(paymentId));
+    }
+
+    /**
+     * Appends a declined payment and the rentals cancelled because of it.
+     *
+     * @param paymentId ID of the failed payment
+     * @param cancelled rentals that were cancelled
+     * @param at        time of the cancellation
+     * @return sequence number of the record
+     */
+    public long paymentFailed(int paymentId, List<Rental> cancelled, LocalDateTime at) {
+        return append(PAYMENT_FAILED, () -> {
+            putInt(paymentId);
+            putLong(epochNanos(at));
+            putInt(cancelled.size());
+            for (Rental r : cancelled) putInt(r.getRentalId());
+        });
+    }
+
+    // ================= COMMIT =================
+
+    /**
+     * Waits until a record is on disk.
+     *
+     * <p>If no write is running, the caller writes and fsyncs every pending
+     * record (its own and those of other threads); otherwise it waits for the
+     * running write and, if its record was not part of it, for the next one.</p>
+     *
+     * @param lsn sequence number returned by an append method
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    public void commit(long lsn) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long target;
+
+                lock.lock();
+                try {
+                    while (true) {
+                        if (failure != null) throw new UncheckedIOException("Günlük yazılamadı.", failure);
+                        if (durableLsn >= lsn) return;
+                        if (!flushing) break;
+                        try {
+                            flushed.await();
+                        } catch (InterruptedException e) {
+                            // Durability is promised to the caller: keep waiting, restore the flag later
+                            interrupted = true;
+                        }
+                    }
+
+                    // This thread writes the batch; appends continue into the spare buffer
+                    flushing = true;
+                    batch = pending;
+                    target = appendedLsn;
+                    pending = spare;
+                    spare = null;
+                    pendingRecords = 0;
+                } finally {
+                    lock.unlock();
+                }
+
+                IOException error = null;
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) channel.write(batch);
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                }
+
+                lock.lock();
+                try {
+                    if (error != null) {
+                        failure = error;
+                    } else {
+                        if (shipper != null) {
+                            shipper.shipped(generation, durableLsn - generationStartLsn + 1,
+                                    target - generationStartLsn, batch.slice(0, batch.limit()).asReadOnlyBuffer());
+                        }
+                        durableLsn = target;
+                    }
+                    spare = batch.clear();
+                    flushing = false;
+                    flushed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes and fsyncs every record appended so far.
+     *
+     * @throws UncheckedIOException if the journal could not be written
+     */
+    public void sync() {
+        long lsn;
+        lock.lock();
+        try {
+            lsn = appendedLsn;
+        } finally {
+            lock.unlock();
+        }
+        commit(lsn);
+    }
+
+    /**
+     * @return number of records read when the journal was opened
+     */
+    public int replayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * @return generation of the current file contents
+     */
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of records in the current generation (replayed ones included)
+     */
+    public long recordsInGeneration() {
+        lock.lock();
+        try {
+            return appendedLsn - generationStartLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new, empty generation after a snapshot has captured everything.
+     *
+     * <p>The caller must make sure nothing is appended concurrently (the
+     * snapshot needs a quiet state anyway). Sequence numbers keep counting,
+     * so LSNs handed out before the roll-over can still be committed.</p>
+     *
+     * @return the generation that was closed (the one the snapshot covers)
+     * @throws UncheckedIOException if the file cannot be rewritten
+     */
+    public long rollOver() {
+        sync();
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            try {
+                // Let a running background write finish first
+                while (flushing) {
+                    try {
+                        flushed.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (failure != null) throw new UncheckedIOException("Günlük yazılamadı.", failure);
+
+                long closedGeneration = generation;
+                try {
+                    writeHeader(channel, closedGeneration + 1);
+                    channel.position(HEADER_BYTES);
+                } catch (IOException e) {
+                    failure = e;
+                    throw new UncheckedIOException("Günlük yenilenemedi.", e);
+                }
+                generation = closedGeneration + 1;
+                generationStartLsn = appendedLsn;
+                if (shipper != null) shipper.rolledOver(generation);
+                return closedGeneration;
+            } finally {
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the journal file
+     */
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Starts handing every durable batch to a shipper.
+     *
+     * @param shipper receiver of the batches written from now on
+     * @return {generation, records of that generation on disk}: where the shipper's first batch continues
+     * @throws IllegalStateException if a shipper is already attached
+     */
+    long[] attach(Shipper shipper) {
+        lock.lock();
+        try {
+            if (this.shipper != null) throw new IllegalStateException("Günlüğe zaten bir kopyalayıcı bağlı.");
+            this.shipper = shipper;
+            return new long[]{generation, durableLsn - generationStartLsn};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops handing batches to the attached shipper.
+     */
+    void detach() {
+        lock.lock();
+        try {
+            shipper = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending records and closes the file.
+     *
+     * @throws UncheckedIOException if the final write fails
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            sync();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            if (flusher != null) flusher.interrupt();
+            closeQuietly(channel);
+        }
+    }
+
+    // ================= ENCODING =================
+
+    /**
+     * Encodes one record into the pending batch and returns its sequence number.
+     * Writes the batch right away if it has become full.
+     */
+    private long append(byte type, Runnable body) {
+        long lsn;
+        boolean full;
+
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Günlük kapatılmış.");
+            if (failure != null) throw new UncheckedIOException("Günlük yazılamadı.", failure);
+
+            int start = pending.position();
+            ensure(5);
+            pending.putInt(0); // length, patched below
+            pending.put(type);
+            try {
+                body.run();
+            } catch (RuntimeException e) {
+                pending.position(start); // drop the half-encoded record
+                throw e;
+            }
+
+            int length = pending.position() - start - 4;
+            pending.putInt(start, length);
+            crc.reset();
+            crc.update(pending.array(), start + 4, length);
+            ensure(4);
+            pending.putInt((int) crc.getValue());
+
+            pendingRecords++;
+            lsn = ++appendedLsn;
+            full = pendingRecords >= maxBatchRecords;
+        } finally {
+            lock.unlock();
+        }
+
+        if (full) commit(lsn);
+        return lsn;
+    }
+
+    // The put helpers are only called from append bodies, under the lock
+
+    private void put(byte b) {
+        ensure(1);
+        pending.put(b);
+    }
+
+    private void putInt(int v) {
+        ensure(4);
+        pending.putInt(v);
+    }
+
+    private void putLong(long v) {
+        ensure(8);
+        pending.putLong(v);
+    }
+
+    private void putDouble(double v) {
+        ensure(8);
+        pending.putDouble(v);
+    }
+
+    /** Length-prefixed UTF-8; length -1 stands for null. */
+    private void putString(String s) {
+        if (s == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        pending.putInt(bytes.length);
+        pending.put(bytes);
+    }
+
+    /**
+     * Grows the pending buffer so that {@code bytes} more fit.
+     */
+    private void ensure(int bytes) {
+        if (pending.remaining() >= bytes) return;
+        int capacity = Math.max(pending.capacity() * 2, pending.position() + bytes);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        pending.flip();
+        grown.put(pending);
+        pending = grown;
+    }
+
+    /**
+     * Checks that a car can be journaled, before it is added anywhere.
+     *
+     * @param car the car
+     * @throws IllegalArgumentException if the car is null or its class has no record format
+     */
+    static void checkRecordable(Car car) {
+        kindOf(car);
+    }
+
+    static byte kindOf(Car car) {
+        if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
+        Class<?> c = car.getClass();
+        if (c == GasCar.class) return KIND_GAS;
+        if (c == ElectricCar.class) return KIND_ELECTRIC;
+        if (c == LuxuryCar.class) return KIND_LUXURY;
+        throw new IllegalArgumentException("Bu araç türü günlüğe yazılamaz: " + c.getName());
+    }
+
+    // ================= REPLAY =================
+
+    /**
+     * Reads records {@code (after, upTo]} of a generation from a journal file in file format.
+     *
+     * <p>Used to send a replica the records it missed. The file may be
+     * appended to meanwhile; only records that are already on disk may be
+     * requested. The caller must check afterwards that the generation was not
+     * rolled over during the read.</p>
+     *
+     * @param file       journal file
+     * @param generation generation the records must belong to
+     * @param after      number of records to skip
+     * @param upTo       number of the last record to read
+     * @return the records, ready for {@link #decodeRecords}
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws IllegalStateException if the file holds another generation or fewer records
+     */
+    static ByteBuffer readRecords(Path file, long generation, long after, long upTo) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (readGeneration(ch) != generation) {
+                throw new IllegalStateException("Günlük başka bir nesle geçti.");
+            }
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new IllegalStateException("Günlük dosyası çok büyük.");
+
+            // Positional reads instead of a mapping: a roll-over may truncate the file meanwhile
+            ByteBuffer in = readFully(ch, size);
+
+            int pos = HEADER_BYTES, start = HEADER_BYTES;
+            for (long record = 1; record <= upTo; record++) {
+                if (pos + 4 > in.limit()) throw new IllegalStateException("Günlükte kayıtlar eksik.");
+                int length = in.getInt(pos);
+                if (length < 1 || (long) pos + 4 + length + 4 > in.limit()) {
+                    throw new IllegalStateException("Günlükte kayıtlar eksik.");
+                }
+                pos += 4 + length + 4;
+                if (record == after) start = pos;
+            }
+            return in.slice(start, pos - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Günlük okunamadı: " + file, e);
+        }
+    }
+
+    /**
+     * Checks and decodes records in file format, e.g. as shipped to a replica.
+     *
+     * @param records concatenated records
+     * @param skip    number of leading records to check but not pass on (already applied)
+     * @param visitor receives the remaining records
+     * @return number of records in the buffer
+     * @throws IllegalStateException if a record is torn or fails its checksum
+     */
+    static int decodeRecords(ByteBuffer records, int skip, Visitor visitor) {
+        CRC32C check = new CRC32C();
+        int count = 0;
+        int pos = records.position();
+        while (pos < records.limit()) {
+            int length = (pos + 4 <= records.limit()) ? records.getInt(pos) : -1;
+            if (length < 1 || (long) pos + 4 + length + 4 > records.limit()) {
+                throw new IllegalStateException("Eksik günlük kaydı.");
+            }
+            check.reset();
+            check.update(records.slice(pos + 4, length));
+            if ((int) check.getValue() != records.getInt(pos + 4 + length)) {
+                throw new IllegalStateException("Günlük kaydı sağlama toplamı tutmuyor.");
+            }
+            if (count >= skip) decode(records.slice(pos + 4, length), visitor);
+            count++;
+            pos += 4 + length + 4;
+        }
+        return count;
+    }
+
+    /**
+     * Decodes every intact record of the file and passes it to the visitor.
+     *
+     * @param validEnd receives the file offset after the last intact record
+     * @return number of replayed records
+     */
+    private static int replay(FileChannel channel, Visitor visitor, long[] validEnd) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Günlük dosyası çok büyük; önce anlık görüntü alınmalı.");
+        }
+
+        // Read, not mapped: open() truncates a torn tail right after this returns
+        ByteBuffer in = readFully(channel, size);
+        size = in.limit();
+
+        CRC32C check = new CRC32C();
+        int records = 0;
+        int pos = HEADER_BYTES;
+        while (pos + 4 <= size) {
+            int length = in.getInt(pos);
+
+            // A torn or damaged record ends the valid part of the file
+            if (length < 1 || (long) pos + 4 + length + 4 > size) break;
+            check.reset();
+            check.update(in.slice(pos + 4, length));
+            if ((int) check.getValue() != in.getInt(pos + 4 + length)) break;
+
+            decode(in.slice(pos + 4, length), visitor);
+            records++;
+            pos += 4 + length + 4;
+        }
+
+        validEnd[0] = pos;
+        return records;
+    }
+
+    /**
+     * Reads the first {@code size} bytes of a file with positional reads (the channel position is not moved).
+     *
+     * @return the bytes read, flipped; fewer than requested if the file is shorter by now
+     */
+    private static ByteBuffer readFully(FileChannel channel, long size) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate((int) size);
+        while (in.hasRemaining() && channel.read(in, in.position()) > 0) {
+            // keep reading
+        }
+        return in.flip();
+    }
+
+    /**
+     * Decodes one record (type byte + payload) and calls the matching visitor method.
+     */
+    private static void decode(ByteBuffer r, Visitor visitor) {
+        byte type = r.get();
+        switch (type) {
+            case CAR_ADDED -> visitor.carAdded(decodeCar(r));
+            case CAR_REMOVED -> visitor.carRemoved(r.getInt());
+            case BOOKING, PENDING_BOOKING -> {
+                Customer customer = new Customer(r.getInt(), getString(r), getString(r));
+                int days = r.getInt();
+                int n = r.getInt();
+                int[] rentalIds = new int[n];
+                int[] carIds = new int[n];
+                LocalDateTime[] createdAt = new LocalDateTime[n];
+                for (int i = 0; i < n; i++) {
+                    rentalIds[i] = r.getInt();
+                    carIds[i] = r.getInt();
+                    createdAt[i] = fromEpochNanos(r.getLong());
+                }
+                int paymentId = r.getInt();
+                double amount = r.getDouble();
+                PaymentMethod method = PaymentMethod.values()[r.get()];
+                LocalDateTime paidAt = fromEpochNanos(r.getLong());
+                PaymentStatus status = (type == BOOKING) ? PaymentStatus.PAID : PaymentStatus.PENDING;
+                visitor.bookingRecorded(customer, days, rentalIds, carIds, createdAt,
+                        paymentId, amount, method, paidAt, status);
+            }
+            case RENTAL_CLOSED -> visitor.rentalClosed(r.getInt(), fromEpochNanos(r.getLong()));
+            case PAYMENT_REFUNDED -> visitor.paymentRefunded(r.getInt());
+            case PAYMENT_SETTLED -> visitor.paymentSettled(r.getInt());
+            case PAYMENT_FAILED -> {
+                int paymentId = r.getInt();
+                LocalDateTime at = fromEpochNanos(r.getLong());
+                int[] cancelled = new int[r.getInt()];
+                for (int i = 0; i < cancelled.length; i++) cancelled[i] = r.getInt();
+                visitor.paymentFailed(paymentId, cancelled, at);
+            }
+            default -> throw new IllegalStateException("Bilinmeyen günlük kaydı türü: " + type);
+        }
+    }
+
+    private static Car decodeCar(ByteBuffer r) {
+        byte kind = r.get();
+        int id = r.getInt();
+        String brand = getString(r);
+        String model = getString(r);
+        double rate = r.getDouble();
+        return switch (kind) {
+            case KIND_GAS -> new GasCar(id, brand, model, rate, FuelType.values()[r.get()]);
+            case KIND_ELECTRIC -> new ElectricCar(id, brand, model, rate, r.getInt());
+            case KIND_LUXURY -> new LuxuryCar(id, brand, model, rate, r.getDouble());
+            default -> throw new IllegalStateException("Bilinmeyen araç türü: " + kind);
+        };
+    }
+
+    private static String getString(ByteBuffer r) {
+        int length = r.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        r.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ================= HELPERS =================
+
+    /**
+     * Reads and checks the header of a non-empty file.
+     *
+     * @return generation stored in the header
+     */
+    private static long readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) break;
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Geçersiz günlük dosyası.");
+        }
+        return header.getLong(4);
+    }
+
+    /**
+     * Replaces the file contents with a header for the given generation.
+     */
+    private static void writeHeader(FileChannel channel, long generation) throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putLong(generation).flip();
+        long pos = 0;
+        while (header.hasRemaining()) pos += channel.write(header, pos);
+        channel.force(true);
+    }
+
+    static long epochNanos(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + t.getNano();
+    }
+
+    static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * Background loop: writes pending records every {@code delayMillis}.
+     */
+    private void flushLoop(long delayMillis) {
+        while (true) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                return; // closed
+            }
+
+            lock.lock();
+            try {
+                if (closed || failure != null) return;
+                if (pendingRecords == 0) continue;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                sync();
+            } catch (UncheckedIOException e) {
+                return; // recorded in failure; the next append or commit reports it
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // nothing left to do with a channel that cannot be closed
+        }
+    }
+}
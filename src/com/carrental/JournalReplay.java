@@ -0,0 +1,135 @@
+package com.carrental;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rebuilds the in-memory state of the system from a {@link Journal}.
+ *
+ * <p>Every record is applied the same way the live operation changed the
+ * state: cars go into the inventory, bookings re-create their rentals (with
+ * their original times), reservations and calendar entries, closings return
+ * the cars, and payments are registered again. Declined payments cancel the
+ * same rentals they cancelled originally. Customers are collected from
+ * the bookings, since a customer is only ever created for a rental.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Polymorphism:</b> Implements {@link Journal.Visitor} to react to each record type.</li>
+ *   <li><b>Single Responsibility:</b> Recovery logic is kept out of the journal's file handling.</li>
+ * </ul>
+ * </p>
+ */
+final class JournalReplay implements Journal.Visitor {
+
+    private final CarInventory inventory;
+    private final RentalRegistry rentals;
+    private final PaymentRegistry payments;
+    private final ReservationEngine reservations;
+    private final CapacityCalendar capacity;
+
+    // Customers by ID (one object per customer), and in order of first booking
+    private final IntObjectMap<Customer> customersById = new IntObjectMap<>();
+    private final List<Customer> customers = new ArrayList<>();
+
+    JournalReplay(CarInventory inventory, RentalRegistry rentals, PaymentRegistry payments,
+                  ReservationEngine reservations, CapacityCalendar capacity) {
+        this.inventory = inventory;
+        this.rentals = rentals;
+        this.payments = payments;
+        this.reservations = reservations;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Makes customers that are already loaded (e.g. from a snapshot) known,
+     * so their later bookings reuse the same objects.
+     *
+     * @param loaded customers already in the system
+     */
+    void knownCustomers(List<Customer> loaded) {
+        for (Customer c : loaded) {
+            customersById.put(c.getId(), c);
+        }
+    }
+
+    @Override
+    public void carAdded(Car car) {
+        inventory.addCar(car);
+    }
+
+    @Override
+    public void carRemoved(int carId) {
+        inventory.removeCar(carId);
+    }
+
+    @Override
+    public void bookingRecorded(Customer customer, int days, int[] rentalIds, int[] carIds,
+                                LocalDateTime[] createdAt, int paymentId, double amount,
+                                PaymentMethod method, LocalDateTime paidAt, PaymentStatus status) {
+        Customer known = customersById.get(customer.getId());
+        if (known == null) {
+            customersById.put(customer.getId(), customer);
+            customers.add(customer);
+            known = customer;
+        }
+
+        List<Rental> batch = new ArrayList<>(rentalIds.length);
+        for (int i = 0; i < rentalIds.length; i++) {
+            Car car = inventory.findCarById(carIds[i]);
+            if (car == null) throw new IllegalStateException("Günlükte bilinmeyen araç: " + carIds[i]);
+
+            Rental rental = new Rental(rentalIds[i], car, known, days, createdAt[i]);
+            LocalDate start = createdAt[i].toLocalDate();
+            reservations.tryReserve(car.getId(), start, start.plusDays(days));
+            batch.add(rental);
+        }
+        rentals.registerAll(batch);
+        capacity.onRentalsCreated(batch);
+
+        payments.register(new Payment(paymentId, rentalIds, amount, method, paidAt, status));
+    }
+
+    @Override
+    public void rentalClosed(int rentalId, LocalDateTime closedAt) {
+        Rental rental = rentals.closeRental(rentalId, closedAt);
+        if (rental == null) throw new IllegalStateException("Günlükte bilinmeyen kiralama: " + rentalId);
+
+        reservations.endEarly(rental.getCar().getId(), rental.getCreatedAt().toLocalDate(), closedAt.toLocalDate());
+        capacity.onRentalClosed(rental);
+    }
+
+    @Override
+    public void paymentRefunded(int paymentId) {
+        if (payments.findById(paymentId) == null) {
+            throw new IllegalStateException("Günlükte bilinmeyen ödeme: " + paymentId);
+        }
+        payments.refund(paymentId);
+    }
+
+    @Override
+    public void paymentSettled(int paymentId) {
+        payments.settle(paymentId);
+    }
+
+    @Override
+    public void paymentFailed(int paymentId, int[] cancelledRentalIds, LocalDateTime cancelledAt) {
+        for (int rentalId : cancelledRentalIds) {
+            Rental rental = rentals.cancelRental(rentalId, cancelledAt);
+            if (rental == null) throw new IllegalStateException("Günlükte iptal edilemeyen kiralama: " + rentalId);
+
+            reservations.endEarly(rental.getCar().getId(), rental.getCreatedAt().toLocalDate(), cancelledAt.toLocalDate());
+            capacity.onRentalClosed(rental);
+        }
+        payments.fail(paymentId);
+    }
+
+    /**
+     * @return customers first seen in the journal, in order of their first booking
+     */
+    List<Customer> customers() {
+        return customers;
+    }
+}
@@ -18,6 +18,9 @@ package com.carrental;
  */
 public class LuxuryCar extends Car {
 
+    /** Premium rate used when none is given. */
+    public static final double DEFAULT_PREMIUM_RATE = 0.30;
+
     /**
      * Premium rate applied to the base rental price.
      *
@@ -35,7 +38,7 @@ public class LuxuryCar extends Car {
      */
     public LuxuryCar(int id, String brand, String model, double dailyRate) {
         super(id, brand, model, dailyRate);
-        this.premiumRate = 0.30; // default luxury premium
+        this.premiumRate = DEFAULT_PREMIUM_RATE;
     }
 
     /**
@@ -55,6 +58,13 @@ public class LuxuryCar extends Car {
         this.premiumRate = premiumRate;
     }
 
+    /**
+     * @return premium rate applied on top of the base price (e.g. 0.30 = 30%)
+     */
+    public double getPremiumRate() {
+        return premiumRate;
+    }
+
     /**
      * Calculates the rental fee for luxury cars.
      *
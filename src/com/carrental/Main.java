@@ -1,5 +1,8 @@
 package com.carrental;
 
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -24,18 +27,66 @@ public class Main {
     /** Single Scanner instance used for all console input. */
     private static final Scanner sc = new Scanner(System.in);
 
-    /** Inventory stores all cars (GasCar / ElectricCar / LuxuryCar). */
-    private static final CarInventory inventory = new CarInventory();
+    /**
+     * Inventory stores all cars (GasCar / ElectricCar / LuxuryCar).
+     * Split by car ID into {@code -Dcarrental.shards=N} shards when N > 1.
+     */
+    private static final CarInventory inventory = newInventory();
 
     /** In-memory data stores for the application runtime. */
     private static final List<Customer> customers = new ArrayList<>();
-    private static final List<Rental> rentals = new ArrayList<>();
-    private static final List<Payment> payments = new ArrayList<>();
 
-    /** Simple ID generators for customers, rentals and payments. */
+    /** Rentals and payments, indexed so returns and receipts do not scan the history. */
+    private static final RentalRegistry rentals = new RentalRegistry();
+    private static final PaymentRegistry payments = new PaymentRegistry();
+
+    /** Booked date windows of every car (current rentals and future reservations). */
+    private static final ReservationEngine reservations = new ReservationEngine();
+
+    /** Free cars per type and fuel type for the coming days. */
+    private static final CapacityCalendar capacity = new CapacityCalendar(inventory);
+
+    /** Recently shown fee quotes, so refreshed searches are not priced again. */
+    private static final QuoteCache quotes = new QuoteCache(inventory, 10_000);
+
+    /** Point-in-time image of the stores above; loaded before the journal tail. */
+    private static final Path SNAPSHOT_FILE =
+            Path.of(System.getProperty("carrental.snapshot", "carrental.snapshot"));
+
+    /** Journal records after which a new snapshot is written automatically. */
+    private static final long SNAPSHOT_EVERY_RECORDS = 10_000;
+
+    /** Durable log of every change; replayed into the stores above at startup. */
+    private static final Journal journal = openJournal();
+
+    /** Runs rent and return workflows across the stores above (also batch rentals). */
+    private static final RentalService rentalService =
+            new RentalService(inventory, rentals, payments, reservations, capacity, journal);
+
+    /** Charges payments through the (simulated) gateway without holding up the rent menu. */
+    private static final PaymentPipeline paymentPipeline =
+            rentalService.usePaymentGateway(new SimulatedPaymentGateway(150, 0.0, 100_000), 32, 20);
+
+    /** Simple ID generator for customers (rental and payment IDs come from the service); guarded by Main.class. */
     private static int nextCustomerId = 1;
-    private static int nextRentalId = 1;
-    private static int nextPaymentId = 1;
+
+    /** Port of the HTTP API; the API is only started when the property is set. */
+    private static final String HTTP_PORT = System.getProperty("carrental.http.port");
+
+    /** JSON API for concurrent clients next to the console (null if not started). */
+    private static HttpApi httpApi;
+
+    /** Port of the binary booking protocol for partner channels; only served when the property is set. */
+    private static final String BINARY_PORT = System.getProperty("carrental.binary.port");
+
+    /** Binary rent / return / availability server (null if not started). */
+    private static BookingServer bookingServer;
+
+    /** Port that read-only followers replicate the journal from; only served when the property is set. */
+    private static final String REPLICATION_PORT = System.getProperty("carrental.replication.port");
+
+    /** Ships journal records to {@link ReplicationFollower}s (null if not started). */
+    private static ReplicationServer replicationServer;
 
     /**
      * Main loop of the application.
@@ -51,8 +102,38 @@ public class Main {
      */
     public static void main(String[] args) {
 
-        // Seed initial cars (Gas + Electric + Luxury)
-        inventory.addCars(DataSeeder.seedCars());
+        // Snapshot every SNAPSHOT_EVERY_RECORDS changes, so the journal tail stays short
+        rentalService.enableSnapshots(SNAPSHOT_FILE, SNAPSHOT_EVERY_RECORDS);
+
+        // Customer IDs continue after those restored from the snapshot and journal
+        for (Customer c : customers) {
+            nextCustomerId = Math.max(nextCustomerId, c.getId() + 1);
+        }
+
+        // Seed initial cars (Gas + Electric + Luxury) on the first start only
+        if (inventory.size() == 0) {
+            rentalService.addCars(DataSeeder.seedCars());
+        }
+
+        // Serve HTTP clients alongside the console, e.g. -Dcarrental.http.port=8080
+        if (HTTP_PORT != null) {
+            httpApi = new HttpApi(Integer.parseInt(HTTP_PORT), inventory, rentalService, rentals, payments,
+                    Main::remoteCustomer);
+            System.out.println("HTTP API: http://localhost:" + httpApi.port() + "/cars");
+        }
+
+        // Partner channels speak the binary protocol, e.g. -Dcarrental.binary.port=9090
+        if (BINARY_PORT != null) {
+            bookingServer = new BookingServer(Integer.parseInt(BINARY_PORT), inventory, rentalService,
+                    Main::remoteCustomer);
+            System.out.println("Binary protokol: localhost:" + bookingServer.port());
+        }
+
+        // Standby nodes follow the journal, e.g. -Dcarrental.replication.port=9191
+        if (REPLICATION_PORT != null) {
+            replicationServer = new ReplicationServer(Integer.parseInt(REPLICATION_PORT), journal, SNAPSHOT_FILE);
+            System.out.println("Replikasyon: localhost:" + replicationServer.port());
+        }
 
         // Main application loop: keeps running until user selects exit
         while (true) {
@@ -72,6 +153,13 @@ public class Main {
                     case 8 -> handleAddCar();
                     case 9 -> handleRemoveCar();
                     case 10 -> printReceipt();
+                    case 11 -> printCapacityReport();
+                    case 12 -> handleBatchRent();
+                    case 13 -> System.out.println(quotes.stats());
+                    case 14 -> handleImport();
+                    case 15 -> handleRefund();
+                    case 16 -> printRevenueReport();
+                    case 17 -> printReplicationStatus();
                     case 0 -> exit();
                     default -> System.out.println("Geçersiz seçim!");
                 }
@@ -105,10 +193,55 @@ public class Main {
         System.out.println("[9]  Araç sil (ID)");
         System.out.println("--------------------------------------");
         System.out.println("[10] Receipt / Fiş yazdır");
+        System.out.println("[11] Kapasite raporu");
+        System.out.println("[12] Toplu kiralama");
+        System.out.println("[13] Fiyat önbelleği istatistikleri");
+        System.out.println("[14] Dosyadan araç içe aktar (CSV / JSON)");
+        System.out.println("[15] Ödeme iade et (Payment ID)");
+        System.out.println("[16] Gelir raporu");
+        System.out.println("[17] Replikasyon durumu");
         System.out.println("[0]  Çıkış");
         System.out.println("======================================");
     }
 
+    /**
+     * @return a single inventory, or a sharded one if {@code carrental.shards} is above 1
+     */
+    private static CarInventory newInventory() {
+        int shards = Integer.getInteger("carrental.shards", 1);
+        return (shards > 1) ? ShardedInventory.byIdHash(shards) : new CarInventory();
+    }
+
+    /**
+     * Loads the latest snapshot, then opens the journal and replays the records written after it.
+     *
+     * <p>The files are {@code carrental.snapshot} and {@code carrental.journal}
+     * in the working directory unless the system properties of the same names
+     * point elsewhere.</p>
+     */
+    private static Journal openJournal() {
+        Snapshot.Loaded loaded = Snapshot.load(SNAPSHOT_FILE, inventory, rentals, payments, reservations, capacity);
+        long covered = 0;
+        if (loaded != null) {
+            customers.addAll(loaded.customers());
+            covered = loaded.generation();
+            System.out.println("Anlık görüntü yüklendi: " + loaded.cars() + " araç, "
+                    + loaded.rentals() + " kiralama, " + loaded.payments() + " ödeme.");
+        }
+
+        Path file = Path.of(System.getProperty("carrental.journal", "carrental.journal"));
+        JournalReplay replay = new JournalReplay(inventory, rentals, payments, reservations, capacity);
+        replay.knownCustomers(customers);
+
+        // Group commit: write at 64 pending records, or every 20 ms at the latest
+        Journal opened = Journal.open(file, 64, 20, replay, covered);
+        customers.addAll(replay.customers());
+        if (opened.replayedRecords() > 0) {
+            System.out.println("Günlükten " + opened.replayedRecords() + " kayıt yüklendi.");
+        }
+        return opened;
+    }
+
     // ================= INPUT =================
 
     /**
@@ -209,6 +342,43 @@ public class Main {
         }
     }
 
+    /**
+     * Reads a date in ISO format (YYYY-MM-DD).
+     * Keeps asking until a valid date is entered.
+     *
+     * @param label prompt label
+     * @return parsed date
+     */
+    private static LocalDate readDate(String label) {
+        while (true) {
+            try {
+                return LocalDate.parse(readLine(label));
+            } catch (DateTimeParseException e) {
+                System.out.println("Geçersiz tarih (YYYY-AA-GG)");
+            }
+        }
+    }
+
+    /**
+     * Reads a comma-separated list of IDs, prompting again on invalid input.
+     */
+    private static int[] readIdList(String label) {
+        while (true) {
+            String line = readLine(label);
+            if (line.isEmpty()) return new int[0];
+            try {
+                String[] parts = line.split(",");
+                int[] ids = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    ids[i] = Integer.parseInt(parts[i].trim());
+                }
+                return ids;
+            } catch (NumberFormatException e) {
+                System.out.println("Geçersiz liste (örn: 1,2,3)");
+            }
+        }
+    }
+
     // ================= RENT =================
 
     /**
@@ -240,33 +410,85 @@ public class Main {
         String phone = readPhone("Telefon: ");
 
         // Create and store customer (immutable entity)
-        Customer customer = new Customer(nextCustomerId++, name, phone);
-        customers.add(customer);
+        Customer customer = newCustomer(name, phone);
 
         // Rental duration input
         int days = readPositiveInt("Kaç gün kiralanacak? ");
 
-        // Create rental (internally marks car as rented, status becomes ACTIVE)
-        Rental rental = new Rental(nextRentalId++, car, customer, days);
-        rentals.add(rental);
-
-        // Payment input + record creation
+        // Payment method is needed up front: rental and payment are created together
         PaymentMethod method =
                 readPaymentMethod("Ödeme yöntemi (CASH / CARD / TRANSFER / MOBILE_PAY): ");
 
-        Payment payment = new Payment(
-                nextPaymentId++,
-                rental.getRentalId(),
-                rental.getTotalFee(),
-                method
-        );
-        payments.add(payment);
+        // Books the window, rents the car and records the payment (nothing is kept on failure)
+        RentalService.Booking booking = rentalService.rent(carId, customer, days, method);
+        Rental rental = booking.rentals().get(0);
 
         // User feedback
         System.out.println("Kiralama başarılı:");
         System.out.println(rental);
-        System.out.println("Ödeme alındı:");
-        System.out.println(payment);
+        printPayment(booking);
+    }
+
+    /**
+     * Creates and stores a customer with the next free ID.
+     * Synchronized because HTTP and binary requests create customers concurrently with the console.
+     */
+    private static synchronized Customer newCustomer(String name, String phone) {
+        Customer customer = remoteCustomer(name, phone);
+        customers.add(customer);
+        return customer;
+    }
+
+    /**
+     * Creates a customer for an HTTP or binary request without storing it in the console's list.
+     * A request may be refused after this, and the customer of a rent that goes through is kept
+     * with its rental (journal and snapshot) anyway.
+     */
+    private static synchronized Customer remoteCustomer(String name, String phone) {
+        return new Customer(nextCustomerId++, name, phone);
+    }
+
+    /**
+     * Handles a batch rental: several cars for one customer, all or nothing.
+     * If any car cannot be rented, none of them is rented and no payment is taken.
+     */
+    private static void handleBatchRent() {
+        int[] carIds = readIdList("Araç ID'leri (virgülle ayrılmış): ");
+        if (carIds.length == 0) {
+            System.out.println("Araç listesi boş.");
+            return;
+        }
+
+        String name = readLine("Müşteri adı: ");
+        String phone = readPhone("Telefon: ");
+        Customer customer = newCustomer(name, phone);
+
+        int days = readPositiveInt("Kaç gün kiralanacak? ");
+        PaymentMethod method =
+                readPaymentMethod("Ödeme yöntemi (CASH / CARD / TRANSFER / MOBILE_PAY): ");
+
+        RentalService.Booking booking = rentalService.rentBatch(carIds, customer, days, method);
+
+        System.out.println("Toplu kiralama başarılı (" + booking.rentals().size() + " araç):");
+        booking.rentals().forEach(System.out::println);
+        printPayment(booking);
+    }
+
+    /**
+     * Prints the payment of a booking, and its outcome once the gateway has answered.
+     */
+    private static void printPayment(RentalService.Booking booking) {
+        Payment payment = booking.payment();
+        if (payment.getStatus() != PaymentStatus.PENDING) {
+            System.out.println("Ödeme alındı:");
+            System.out.println(payment);
+            return;
+        }
+
+        System.out.println("Ödeme işleniyor: " + payment);
+        booking.settlement().thenAccept(p -> System.out.println(p.getStatus() == PaymentStatus.PAID
+                ? "\n[Ödeme #" + p.getPaymentId() + " onaylandı]"
+                : "\n[Ödeme #" + p.getPaymentId() + " reddedildi, kiralama iptal edildi]"));
     }
 
     /**
@@ -276,18 +498,15 @@ public class Main {
     private static void handleReturn() {
         int rid = readInt("İade edilecek Rental ID: ");
 
-        // Find the rental by ID
-        for (Rental r : rentals) {
-            if (r.getRentalId() == rid) {
-                // Close rental => car.returnCar() + status COMPLETED
-                r.closeRental();
-                System.out.println("Araç iade edildi:");
-                System.out.println(r);
-                return;
-            }
+        // Close rental by ID => car.returnCar() + status COMPLETED, booked window trimmed
+        Rental r = rentalService.returnRental(rid);
+        if (r == null) {
+            System.out.println("Rental bulunamadı.");
+            return;
         }
 
-        System.out.println("Rental bulunamadı.");
+        System.out.println("Araç iade edildi:");
+        System.out.println(r);
     }
 
     // ================= LIST =================
@@ -322,32 +541,57 @@ public class Main {
         System.out.println("2 - Yakıt türüne göre");
         System.out.println("3 - GasCar");
         System.out.println("4 - ElectricCar");
+        System.out.println("5 - Tarih aralığında boş araçlar");
         System.out.println("0 - Geri dön");
 
         int c = readInt("Seçim: ");
 
-        // Filters use CarInventory methods to keep inventory logic in one place
+        // Filters are CarInventory queries; results are streamed, not collected
         switch (c) {
-            case 1 -> printCars(inventory.filterAvailableByBrand(readLine("Marka: ")));
-            case 2 -> printCars(inventory.filterAvailableByFuelType(readFuelType("Yakıt: ")));
-            case 3 -> printCars(inventory.filterAvailableGasCars());
-            case 4 -> printCars(inventory.filterAvailableElectricCars());
+            case 1 -> printCars(new CarQuery().brand(readLine("Marka: ")).availableOnly());
+            case 2 -> printCars(new CarQuery().fuelType(readFuelType("Yakıt: ")).availableOnly());
+            case 3 -> printCars(new CarQuery().type(GasCar.class).availableOnly());
+            case 4 -> printCars(new CarQuery().type(ElectricCar.class).availableOnly());
+            case 5 -> printFreeCars();
             case 0 -> { return; }
             default -> System.out.println("Geçersiz seçim!");
         }
     }
 
     /**
-     * Prints a list of cars to the console.
+     * Prints the cars matching a query to the console as they are found.
      *
-     * @param cars list of cars to print
+     * @param query search criteria
      */
-    private static void printCars(List<Car> cars) {
-        if (cars.isEmpty()) {
+    private static void printCars(CarQuery query) {
+        int[] printed = {0};
+        inventory.stream(query).forEach(car -> {
+            System.out.println(car);
+            printed[0]++;
+        });
+        if (printed[0] == 0) {
+            System.out.println("Sonuç yok.");
+        }
+    }
+
+    /**
+     * Prints the cars that have no booking in a date window, with their fee for the window.
+     */
+    private static void printFreeCars() {
+        LocalDate from = readDate("Başlangıç (YYYY-AA-GG): ");
+        int days = readPositiveInt("Kaç gün? ");
+
+        List<Car> free = reservations.freeCars(inventory, new CarQuery(), from, from.plusDays(days)).toList();
+        if (free.isEmpty()) {
             System.out.println("Sonuç yok.");
             return;
         }
-        cars.forEach(System.out::println);
+
+        // Price the whole result at once for the requested number of days
+        double[] fees = quotes.quote(free, days);
+        for (int i = 0; i < fees.length; i++) {
+            System.out.printf("%s | %d gün: %.2f%n", free.get(i), days, fees[i]);
+        }
     }
 
     // ================= INVENTORY =================
@@ -387,18 +631,42 @@ public class Main {
         }
 
         // Inventory enforces unique ID and non-null validations
-        inventory.addCar(car);
+        rentalService.addCar(car);
         System.out.println("Araç eklendi: " + car);
     }
 
+    /**
+     * Imports cars from a CSV or JSON-lines file and prints the error report.
+     */
+    private static void handleImport() {
+        String path = readLine("Dosya yolu: ");
+        if (path.isEmpty()) {
+            System.out.println("Dosya yolu boş olamaz.");
+            return;
+        }
+
+        FleetImporter.Report report = new FleetImporter(inventory, rentalService).importFile(Path.of(path));
+        System.out.println(report);
+
+        // Only the first few errors; the rest are summarised by the count above
+        int shown = 0;
+        for (FleetImporter.LineError error : report.errors()) {
+            if (shown++ == 20) {
+                System.out.println("... ve " + (report.errorCount() - 20) + " hata daha");
+                break;
+            }
+            System.out.println(error);
+        }
+    }
+
     /**
      * Removes a car from inventory by its ID.
-     * Uses CarInventory to keep inventory logic encapsulated.
+     * Goes through the rental service so that the removal is journaled.
      */
     private static void handleRemoveCar() {
         int id = readInt("Silinecek araç ID: ");
         System.out.println(
-                inventory.removeCar(id) ? "Araç silindi." : "Araç bulunamadı."
+                rentalService.removeCar(id) ? "Araç silindi." : "Araç bulunamadı."
         );
     }
 
@@ -414,13 +682,7 @@ public class Main {
         int rid = readInt("Rental ID: ");
 
         // Find rental by ID
-        Rental rental = null;
-        for (Rental r : rentals) {
-            if (r.getRentalId() == rid) {
-                rental = r;
-                break;
-            }
-        }
+        Rental rental = rentals.findById(rid);
 
         if (rental == null) {
             System.out.println("Rental bulunamadı.");
@@ -428,13 +690,7 @@ public class Main {
         }
 
         // Find payment by rental ID
-        Payment payment = null;
-        for (Payment p : payments) {
-            if (p.getRentalId() == rid) {
-                payment = p;
-                break;
-            }
-        }
+        Payment payment = payments.findByRentalId(rid);
 
         // Receipt output
         System.out.println("\n===== RECEIPT =====");
@@ -444,6 +700,92 @@ public class Main {
         System.out.println("===================");
     }
 
+    // ================= CAPACITY =================
+
+    /**
+     * Prints the lowest number of free cars per car type and fuel type
+     * over the coming days.
+     */
+    private static void printCapacityReport() {
+        int days;
+        do {
+            days = readPositiveInt("Kaç gün (1-" + capacity.getHorizonDays() + ")? ");
+        } while (days > capacity.getHorizonDays());
+
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(days);
+
+        System.out.println("\n===== KAPASİTE (" + from + " - " + to + ") =====");
+        System.out.println("En az boş araç (gün bazında):");
+        System.out.println("GasCar      : " + capacity.minFree(GasCar.class, from, to));
+        System.out.println("ElectricCar : " + capacity.minFree(ElectricCar.class, from, to));
+        System.out.println("LuxuryCar   : " + capacity.minFree(LuxuryCar.class, from, to));
+        for (FuelType f : FuelType.values()) {
+            System.out.printf("%-12s: %d%n", f, capacity.minFree(f, from, to));
+        }
+        System.out.println("===================");
+    }
+
+    // ================= REVENUE =================
+
+    /**
+     * Refunds a payment whose rentals have been returned.
+     */
+    private static void handleRefund() {
+        int pid = readInt("Payment ID: ");
+        Payment payment = rentalService.refund(pid);
+        System.out.println("İade edildi: " + payment);
+    }
+
+    /**
+     * Prints revenue totals from the payment ledger and checks them against the payments.
+     */
+    private static void printRevenueReport() {
+        PaymentLedger ledger = payments.ledger();
+
+        System.out.println("\n===== GELİR RAPORU =====");
+        System.out.println("Toplam alınan : " + ledger.taken());
+        System.out.println("Toplam iade   : " + ledger.refunded());
+        System.out.printf("Net gelir     : %.2f TL%n", ledger.netRevenue());
+
+        System.out.println("Ödeme yöntemine göre (alınan / iade):");
+        for (PaymentMethod m : PaymentMethod.values()) {
+            System.out.printf("%-12s: %s / %s%n", m, ledger.byMethod(m), ledger.refundedByMethod(m));
+        }
+        System.out.println("Duruma göre:");
+        for (PaymentStatus st : PaymentStatus.values()) {
+            System.out.printf("%-12s: %s%n", st, ledger.byStatus(st));
+        }
+
+        LocalDate today = LocalDate.now();
+        System.out.println("Son 7 gün:");
+        List<PaymentLedger.DayTotals> week = ledger.days(today.minusDays(6), today);
+        if (week.isEmpty()) System.out.println("Ödeme yok.");
+        week.forEach(System.out::println);
+
+        System.out.println("Ödeme hattı: " + paymentPipeline.stats());
+
+        // Recount from the raw payments to make sure the running totals are right
+        System.out.println(payments.reconcile());
+        System.out.println("===================");
+    }
+
+    /**
+     * Prints every connected follower with its replication lag.
+     */
+    private static void printReplicationStatus() {
+        if (replicationServer == null) {
+            System.out.println("Replikasyon kapalı (-Dcarrental.replication.port ile başlatın).");
+            return;
+        }
+        List<ReplicationServer.FollowerStatus> followers = replicationServer.followers();
+        if (followers.isEmpty()) {
+            System.out.println("Bağlı kopya yok.");
+            return;
+        }
+        followers.forEach(System.out::println);
+    }
+
     // ================= EXIT =================
 
     /**
@@ -452,6 +794,17 @@ public class Main {
      */
     private static void exit() {
         System.out.println("Çıkılıyor...");
+        // No new HTTP or binary bookings after this point
+        if (httpApi != null) httpApi.close();
+        if (bookingServer != null) bookingServer.close();
+
+        // Outstanding payments are answered first, so they are in the snapshot as paid or failed
+        paymentPipeline.close();
+
+        // Next start loads the snapshot and finds an empty journal
+        rentalService.checkpoint();
+        if (replicationServer != null) replicationServer.close();
+        journal.close();
         sc.close();
         System.exit(0);
     }
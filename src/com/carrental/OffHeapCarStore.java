@@ -0,0 +1,559 @@
+package com.carrental;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Car storage for very large fleets that keeps car data outside the Java heap.
+ *
+ * <p>{@link CarInventory} holds one {@link Car} object (plus its brand and
+ * model strings) per vehicle. With millions of cars, every garbage
+ * collection has to trace those objects. This store instead writes each car
+ * as a fixed-width 40-byte record into direct {@link ByteBuffer}s:</p>
+ *
+ * <pre>
+ * offset  size  field
+ *   0      4    state      (generation &lt;&lt; 1 | available bit)
+ *   4      4    id
+ *   8      8    dailyRate
+ *  16      8    premiumRate (LuxuryCar, else 0)
+ *  24      4    brand id    (string dictionary)
+ *  28      4    model id    (string dictionary)
+ *  32      4    rangeKm     (ElectricCar, else 0)
+ *  36      1    type code   (0 = empty record)
+ *  37      1    fuel code   (GasCar: ordinal + 1, else 0)
+ * </pre>
+ *
+ * <p>The heap only holds the buffer directory, a primitive ID index and the
+ * brand/model dictionaries, whose size depends on the number of distinct
+ * names rather than on the number of cars, so GC work stays flat as the
+ * fleet grows.</p>
+ *
+ * <p><b>Flyweight views:</b> {@link #findCarById} and the iteration methods
+ * build a short-lived {@link GasCar}, {@link ElectricCar} or {@link LuxuryCar}
+ * from the record on every call. Views can be rented and returned like any
+ * car: the change is written through to the record with a compare-and-set.
+ * If the record was changed through another view in the meantime, the view
+ * rolls back and throws, so two callers can never rent the same car. A view
+ * is a snapshot; fetch a fresh one to see later changes.</p>
+ *
+ * <p>Records of removed cars are reused by later adds. Each record carries
+ * a generation number that changes whenever the record is rewritten, so
+ * views of a removed car can no longer change the record, and readers
+ * detect (and retry) a record that was rewritten while they copied it.</p>
+ *
+ * <p>Thread safety: adding and removing are serialised by an internal lock;
+ * lookups, iteration and availability changes are lock-free.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> The record layout is private; callers only see {@link Car} objects.</li>
+ *   <li><b>Flyweight Pattern:</b> Car objects are created on access instead of being stored.</li>
+ *   <li><b>Polymorphism:</b> Views are regular Car subclasses, so pricing works unchanged.</li>
+ * </ul>
+ * </p>
+ */
+public final class OffHeapCarStore {
+
+    // ================= RECORD LAYOUT =================
+
+    private static final int RECORD_BYTES = 40;
+    private static final int OFF_STATE = 0;
+    private static final int OFF_ID = 4;
+    private static final int OFF_RATE = 8;
+    private static final int OFF_PREMIUM = 16;
+    private static final int OFF_BRAND = 24;
+    private static final int OFF_MODEL = 28;
+    private static final int OFF_RANGE = 32;
+    private static final int OFF_TYPE = 36;
+    private static final int OFF_FUEL = 37;
+
+    // Type codes stored at OFF_TYPE
+    private static final byte TYPE_EMPTY = 0;
+    private static final byte TYPE_GAS = 1;
+    private static final byte TYPE_ELECTRIC = 2;
+    private static final byte TYPE_LUXURY = 3;
+
+    // Records per buffer (2^16 records = 2.5 MB off-heap)
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    // Generations wrap around inside 31 bits
+    private static final int GENERATION_MASK = 0x7FFFFFFF;
+
+    // Atomic access to the state word of a record
+    private static final VarHandle STATE =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    // ================= STATE =================
+
+    // Record buffers; only the directory is copied on growth
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    // Number of records ever handed out (iteration bound)
+    private volatile int recordCount;
+
+    // Records of removed cars, reused by later adds (writer-only stack)
+    private int[] freeRecords = new int[16];
+    private int freeCount;
+
+    // Car ID -> record number
+    private final IdTable ids = new IdTable();
+
+    // Brand and model names by dictionary id
+    private final StringDictionary names = new StringDictionary();
+
+    // Number of stored cars and of available cars
+    private volatile int size;
+    private final LongAdder availableCount = new LongAdder();
+
+    // Serialises add and remove. Readers never take it.
+    private final Object writeLock = new Object();
+
+    // ================= WRITE OPERATIONS =================
+
+    /**
+     * Copies a car into the store.
+     *
+     * <p>Only the car's data is stored; the given object is not kept and
+     * later changes to it are not seen by the store.</p>
+     *
+     * @param car the car to add (GasCar, ElectricCar or LuxuryCar)
+     * @throws IllegalArgumentException if car is null, its type is not supported or the ID exists
+     */
+    public void addCar(Car car) {
+        if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
+        checkSupported(car);
+
+        synchronized (writeLock) {
+            if (ids.get(car.getId()) >= 0) {
+                throw new IllegalArgumentException("Bu ID zaten kullanılıyor: " + car.getId());
+            }
+            write(car);
+        }
+    }
+
+    /**
+     * Copies several cars into the store under one lock acquisition.
+     *
+     * @param carList cars to add
+     * @throws IllegalArgumentException if an ID conflicts or a type is not supported
+     */
+    public void addCars(List<Car> carList) {
+        if (carList == null || carList.isEmpty()) return;
+
+        synchronized (writeLock) {
+            // Validate the whole batch first, so a bad car adds nothing
+            IntObjectMap<Car> batchIds = new IntObjectMap<>(carList.size());
+            for (Car c : carList) {
+                if (c == null) continue;
+                checkSupported(c);
+                if (ids.get(c.getId()) >= 0 || batchIds.put(c.getId(), c) != null) {
+                    throw new IllegalArgumentException("Seed içinde çakışan ID var: " + c.getId());
+                }
+            }
+            for (Car c : carList) {
+                if (c != null) write(c);
+            }
+        }
+    }
+
+    /**
+     * Removes a car by ID.
+     *
+     * @param id car ID
+     * @return true if the car was found and removed, false otherwise
+     */
+    public boolean removeCar(int id) {
+        synchronized (writeLock) {
+            int record = ids.remove(id);
+            if (record < 0) return false;
+
+            ByteBuffer chunk = chunks[record >>> CHUNK_SHIFT];
+            int base = (record & CHUNK_MASK) * RECORD_BYTES;
+
+            // Move to an odd generation: views of this car can no longer change it
+            int state;
+            do {
+                state = (int) STATE.getVolatile(chunk, base + OFF_STATE);
+            } while (!STATE.compareAndSet(chunk, base + OFF_STATE, state, nextGeneration(state, 1)));
+            if ((state & 1) != 0) availableCount.decrement();
+
+            chunk.put(base + OFF_TYPE, TYPE_EMPTY);
+            STATE.setRelease(chunk, base + OFF_STATE, nextGeneration(state, 2));
+
+            pushFree(record);
+            size = size - 1;
+            return true;
+        }
+    }
+
+    // ================= READ OPERATIONS =================
+
+    /**
+     * Finds a car by ID and returns a view of it.
+     *
+     * @param id car ID
+     * @return a new view of the car, or null if it is not stored
+     */
+    public Car findCarById(int id) {
+        int record = ids.get(id);
+        if (record < 0) return null;
+
+        Car car = view(record);
+
+        // The record may have been reused for another car after the lookup
+        return (car != null && car.getId() == id) ? car : null;
+    }
+
+    /**
+     * Calls {@code action} with a view of every stored car, in record order.
+     *
+     * @param action callback receiving each car
+     */
+    public void forEachCar(Consumer<? super Car> action) {
+        int count = recordCount;
+        for (int record = 0; record < count; record++) {
+            Car car = view(record);
+            if (car != null) action.accept(car);
+        }
+    }
+
+    /**
+     * Calls {@code action} with a view of every available car.
+     *
+     * <p>Only the state word of rented and empty records is read; no view is
+     * built for them.</p>
+     *
+     * @param action callback receiving each available car
+     */
+    public void forEachAvailableCar(Consumer<? super Car> action) {
+        int count = recordCount;
+        ByteBuffer[] dir = chunks;
+        for (int record = 0; record < count; record++) {
+            ByteBuffer chunk = dir[record >>> CHUNK_SHIFT];
+            int state = (int) STATE.getAcquire(chunk, (record & CHUNK_MASK) * RECORD_BYTES + OFF_STATE);
+            if ((state & 1) == 0) continue;
+
+            Car car = view(record);
+            if (car != null && car.isAvailable()) action.accept(car);
+        }
+    }
+
+    /**
+     * @return number of cars that are currently available for rental
+     */
+    public int countAvailableCars() {
+        return availableCount.intValue();
+    }
+
+    /**
+     * @return number of stored cars
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes reserved outside the heap for car records
+     */
+    public long offHeapBytes() {
+        return (long) chunks.length * CHUNK_RECORDS * RECORD_BYTES;
+    }
+
+    // ================= RECORD ACCESS =================
+
+    /**
+     * Writes a new record for the car. Caller must hold {@link #writeLock}.
+     */
+    private void write(Car car) {
+        int record = (freeCount > 0) ? freeRecords[--freeCount] : recordCount;
+        ByteBuffer chunk = chunkForWrite(record >>> CHUNK_SHIFT);
+        int base = (record & CHUNK_MASK) * RECORD_BYTES;
+
+        // Odd generation while the fields are written: readers retry
+        int state = (int) STATE.getVolatile(chunk, base + OFF_STATE);
+        STATE.setVolatile(chunk, base + OFF_STATE, nextGeneration(state, 1));
+
+        chunk.putInt(base + OFF_ID, car.getId());
+        chunk.putDouble(base + OFF_RATE, car.getDailyRate());
+        chunk.putDouble(base + OFF_PREMIUM, (car instanceof LuxuryCar l) ? l.getPremiumRate() : 0.0);
+        chunk.putInt(base + OFF_BRAND, names.idOf(car.getBrand()));
+        chunk.putInt(base + OFF_MODEL, names.idOf(car.getModel()));
+        chunk.putInt(base + OFF_RANGE, (car instanceof ElectricCar e) ? e.getRangeKm() : 0);
+        chunk.put(base + OFF_FUEL, (car instanceof GasCar g) ? (byte) (g.getFuelType().ordinal() + 1) : 0);
+        chunk.put(base + OFF_TYPE, typeCodeOf(car));
+
+        // Even generation plus availability publishes the record
+        boolean available = car.isAvailable();
+        STATE.setRelease(chunk, base + OFF_STATE, nextGeneration(state, 2) | (available ? 1 : 0));
+        if (available) availableCount.increment();
+
+        ids.put(car.getId(), record);
+        if (record == recordCount) recordCount = record + 1;
+        size = size + 1;
+    }
+
+    /**
+     * Builds a view of a record, or returns null if the record is empty.
+     *
+     * <p>Fields are copied between two reads of the state word; if the
+     * generation changed in between (the record was rewritten), the copy is
+     * discarded and repeated.</p>
+     */
+    private Car view(int record) {
+        ByteBuffer chunk = chunks[record >>> CHUNK_SHIFT];
+        int base = (record & CHUNK_MASK) * RECORD_BYTES;
+
+        while (true) {
+            int before = (int) STATE.getAcquire(chunk, base + OFF_STATE);
+            if (isWriting(before)) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            byte type = chunk.get(base + OFF_TYPE);
+            int id = chunk.getInt(base + OFF_ID);
+            double rate = chunk.getDouble(base + OFF_RATE);
+            double premium = chunk.getDouble(base + OFF_PREMIUM);
+            int brand = chunk.getInt(base + OFF_BRAND);
+            int model = chunk.getInt(base + OFF_MODEL);
+            int range = chunk.getInt(base + OFF_RANGE);
+            byte fuel = chunk.get(base + OFF_FUEL);
+
+            // Keep the field reads above from moving below the second state read
+            VarHandle.acquireFence();
+            int after = (int) STATE.getVolatile(chunk, base + OFF_STATE);
+            if ((after >>> 1) != (before >>> 1)) continue;
+
+            if (type == TYPE_EMPTY) return null;
+
+            Car car = switch (type) {
+                case TYPE_GAS -> new GasCar(id, names.nameOf(brand), names.nameOf(model), rate,
+                        FuelType.values()[fuel - 1]);
+                case TYPE_ELECTRIC -> new ElectricCar(id, names.nameOf(brand), names.nameOf(model), rate, range);
+                default -> new LuxuryCar(id, names.nameOf(brand), names.nameOf(model), rate, premium);
+            };
+            car.initAvailability((after & 1) != 0);
+
+            // Rent/return on the view is written through to this generation of the record
+            int generation = after >>> 1;
+            car.attachToInventory(record, c -> writeAvailability(record, generation, c.isAvailable()));
+            return car;
+        }
+    }
+
+    /**
+     * Writes a view's availability change into its record.
+     *
+     * @return false if the record no longer had the expected state
+     */
+    private boolean writeAvailability(int record, int generation, boolean available) {
+        ByteBuffer chunk = chunks[record >>> CHUNK_SHIFT];
+        int offset = (record & CHUNK_MASK) * RECORD_BYTES + OFF_STATE;
+
+        int expected = (generation << 1) | (available ? 0 : 1);
+        int next = (generation << 1) | (available ? 1 : 0);
+        if (!STATE.compareAndSet(chunk, offset, expected, next)) return false;
+
+        if (available) availableCount.increment();
+        else availableCount.decrement();
+        return true;
+    }
+
+    // ================= HELPERS =================
+
+    /**
+     * @return true if the state word belongs to a record that is being rewritten
+     */
+    private static boolean isWriting(int state) {
+        return ((state >>> 1) & 1) != 0;
+    }
+
+    /**
+     * Advances the generation of a state word by {@code steps}; the available bit is cleared.
+     */
+    private static int nextGeneration(int state, int steps) {
+        return (((state >>> 1) + steps) & GENERATION_MASK) << 1;
+    }
+
+    private static void checkSupported(Car car) {
+        if (typeCodeOf(car) == TYPE_EMPTY) {
+            throw new IllegalArgumentException("Desteklenmeyen araç tipi: " + car.getClass().getSimpleName());
+        }
+    }
+
+    private static byte typeCodeOf(Car car) {
+        if (car.getClass() == GasCar.class) return TYPE_GAS;
+        if (car.getClass() == ElectricCar.class) return TYPE_ELECTRIC;
+        if (car.getClass() == LuxuryCar.class) return TYPE_LUXURY;
+        return TYPE_EMPTY;
+    }
+
+    /**
+     * Returns buffer {@code c}, allocating it (and growing the directory) if needed.
+     */
+    private ByteBuffer chunkForWrite(int c) {
+        ByteBuffer[] dir = chunks;
+        if (c < dir.length) return dir[c];
+
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_BYTES).order(ByteOrder.nativeOrder());
+        ByteBuffer[] grown = Arrays.copyOf(dir, c + 1);
+        grown[c] = chunk;
+        chunks = grown;
+        return chunk;
+    }
+
+    private void pushFree(int record) {
+        if (freeCount == freeRecords.length) freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        freeRecords[freeCount++] = record;
+    }
+
+    /**
+     * Open-addressing map from car ID to record number ({@code int} to {@code int}).
+     *
+     * <p>Same scheme as {@link IntObjectMap}, with the record number stored
+     * as {@code record + 1} so that 0 marks a free cell and -1 a removed one.
+     * One writer (under the store's lock), lock-free readers.</p>
+     */
+    private static final class IdTable {
+
+        private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+        private static final int FREE = 0;
+        private static final int TOMBSTONE = -1;
+
+        private static final class Table {
+            final int[] keys;
+            final int[] records;
+
+            Table(int capacity) {
+                this.keys = new int[capacity];
+                this.records = new int[capacity];
+            }
+        }
+
+        private volatile Table table = new Table(16);
+        private int live;
+        private int used;
+
+        /**
+         * @return record number of the ID, or -1 if it is not stored
+         */
+        int get(int key) {
+            Table t = table;
+            int mask = t.records.length - 1;
+            for (int i = mix(key) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                int cell = (int) CELL.getAcquire(t.records, i);
+                if (cell == FREE) return -1;
+                if (cell != TOMBSTONE && t.keys[i] == key) return cell - 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Maps an ID that is not currently stored to a record number.
+         */
+        void put(int key, int record) {
+            Table t = table;
+            int mask = t.records.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                int cell = t.records[i];
+                if (cell == FREE) {
+                    t.keys[i] = key;
+                    CELL.setRelease(t.records, i, record + 1);
+                    live++;
+                    if (++used > t.records.length * 3 / 4) rehash();
+                    return;
+                }
+                if (cell == TOMBSTONE && t.keys[i] == key) {
+                    CELL.setRelease(t.records, i, record + 1);
+                    live++;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return the removed record number, or -1 if the ID was not stored
+         */
+        int remove(int key) {
+            Table t = table;
+            int mask = t.records.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                int cell = t.records[i];
+                if (cell == FREE) return -1;
+                if (cell != TOMBSTONE && t.keys[i] == key) {
+                    CELL.setRelease(t.records, i, TOMBSTONE);
+                    live--;
+                    return cell - 1;
+                }
+            }
+        }
+
+        private void rehash() {
+            Table old = table;
+            int capacity = old.records.length;
+            if (live >= capacity * 3 / 8) capacity *= 2;
+
+            Table fresh = new Table(capacity);
+            int mask = capacity - 1;
+            for (int j = 0; j < old.records.length; j++) {
+                int cell = old.records[j];
+                if (cell == FREE || cell == TOMBSTONE) continue;
+                int i = mix(old.keys[j]) & mask;
+                while (fresh.records[i] != FREE) i = (i + 1) & mask;
+                fresh.keys[i] = old.keys[j];
+                fresh.records[i] = cell;
+            }
+            used = live;
+            table = fresh;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Dictionary that turns brand and model names into small integer ids.
+     *
+     * <p>Fleets repeat the same few hundred names across millions of cars,
+     * so each distinct string is kept on the heap once. New names are added
+     * by the writer before the record that uses them is published.</p>
+     */
+    private static final class StringDictionary {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private volatile String[] names = new String[16];
+        private int count;
+
+        int idOf(String name) {
+            String key = (name == null) ? "" : name;
+            Integer id = ids.get(key);
+            if (id != null) return id;
+
+            String[] current = names;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+            }
+            current[count] = key;
+            names = current;
+            ids.put(key, count);
+            return count++;
+        }
+
+        String nameOf(int id) {
+            return names[id];
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package com.carrental;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 /**
  * Represents a payment transaction in the car rental system.
  *
  * <p>A {@code Payment} object is associated with a specific rental
- * and records how much was paid, when it was paid, and by which method.</p>
+ * and records how much was paid, when it was paid, and by which method.
+ * A batch booking is paid with one consolidated payment that covers
+ * several rentals.</p>
  *
  * <p>Payment Lifecycle:
  * <ul>
+ *   <li><b>PENDING:</b> Waiting for the payment gateway (see {@link PaymentPipeline})</li>
  *   <li><b>PAID:</b> Payment successfully completed</li>
+ *   <li><b>FAILED:</b> Declined by the gateway; the rentals were cancelled</li>
  *   <li><b>REFUNDED:</b> Payment refunded after rental return</li>
  * </ul>
  * </p>
@@ -28,8 +33,8 @@ public class Payment {
     // Unique identifier for the payment transaction
     private final int paymentId;
 
-    // ID of the related rental transaction
-    private final int rentalId;
+    // IDs of the related rental transactions (one, or several for a batch booking)
+    private final int[] rentalIds;
 
     // Paid amount for the rental
     private final double amount;
@@ -40,8 +45,8 @@ public class Payment {
     // Timestamp when the payment was made
     private final LocalDateTime paidAt;
 
-    // Current payment status (PAID or REFUNDED)
-    private PaymentStatus status;
+    // Current payment status (PENDING, PAID, FAILED or REFUNDED)
+    private volatile PaymentStatus status;
 
     /**
      * Creates a new payment record.
@@ -55,23 +60,81 @@ public class Payment {
      * @param method payment method
      */
     public Payment(int paymentId, int rentalId, double amount, PaymentMethod method) {
+        this(paymentId, new int[]{rentalId}, amount, method);
+    }
+
+    /**
+     * Creates one payment that covers several rentals (batch booking).
+     *
+     * @param paymentId unique payment identifier
+     * @param rentalIds IDs of the rentals paid for (at least one)
+     * @param amount total payment amount
+     * @param method payment method
+     * @throws IllegalArgumentException if no rental ID is given
+     */
+    public Payment(int paymentId, int[] rentalIds, double amount, PaymentMethod method) {
+        this(paymentId, rentalIds, amount, method, LocalDateTime.now());
+    }
+
+    /**
+     * Re-creates a payment with its original payment time (journal replay).
+     *
+     * @param paymentId unique payment identifier
+     * @param rentalIds IDs of the rentals paid for (at least one)
+     * @param amount    total payment amount
+     * @param method    payment method
+     * @param paidAt    when the payment was made
+     */
+    Payment(int paymentId, int[] rentalIds, double amount, PaymentMethod method, LocalDateTime paidAt) {
+        this(paymentId, rentalIds, amount, method, paidAt, PaymentStatus.PAID);
+    }
+
+    /**
+     * Creates a payment in a given status (a pending payment, or a snapshot load).
+     *
+     * @param paymentId unique payment identifier
+     * @param rentalIds IDs of the rentals paid for (at least one)
+     * @param amount    total payment amount
+     * @param method    payment method
+     * @param paidAt    when the payment was made (requested, while pending)
+     * @param status    initial status
+     */
+    Payment(int paymentId, int[] rentalIds, double amount, PaymentMethod method,
+            LocalDateTime paidAt, PaymentStatus status) {
+        if (rentalIds == null || rentalIds.length == 0) {
+            throw new IllegalArgumentException("Ödeme en az bir kiralamaya ait olmalı.");
+        }
         this.paymentId = paymentId;
-        this.rentalId = rentalId;
+        this.rentalIds = rentalIds.clone();
         this.amount = amount;
         this.method = method;
 
-        // Payment time is recorded automatically
-        this.paidAt = LocalDateTime.now();
+        // Payment time (now, or the original time when replayed)
+        this.paidAt = paidAt;
 
         // Initial payment state
-        this.status = PaymentStatus.PAID;
+        this.status = status;
+    }
+
+    /**
+     * @return payment ID
+     */
+    public int getPaymentId() {
+        return paymentId;
     }
 
     /**
-     * @return rental ID associated with this payment
+     * @return rental ID associated with this payment (the first one for a batch payment)
      */
     public int getRentalId() {
-        return rentalId;
+        return rentalIds[0];
+    }
+
+    /**
+     * @return IDs of all rentals covered by this payment
+     */
+    public int[] getRentalIds() {
+        return rentalIds.clone();
     }
 
     /**
@@ -108,18 +171,53 @@ public class Payment {
      * <p>This method ensures that a payment cannot be refunded more than once
      * by checking the current {@link PaymentStatus}.</p>
      *
-     * @throws IllegalStateException if the payment is already refunded
+     * @throws IllegalStateException if the payment is already refunded or was never completed
      */
     public void refund() {
+        refund(() -> {});
+    }
+
+    /**
+     * Refunds the payment, running a step after the status check and before the status changes.
+     *
+     * @param beforeChange e.g. journaling the refund; if it throws, the payment stays as it was
+     * @throws IllegalStateException if the payment is already refunded or was never completed
+     */
+    void refund(Runnable beforeChange) {
         // Prevent double refund
         if (status == PaymentStatus.REFUNDED) {
             throw new IllegalStateException("Ödeme zaten iade edilmiş.");
         }
+        // Only money that was actually taken can be returned
+        if (status != PaymentStatus.PAID) {
+            throw new IllegalStateException("Sadece tamamlanmış ödeme iade edilebilir: " + status);
+        }
+        beforeChange.run();
 
         // Update payment state
         status = PaymentStatus.REFUNDED;
     }
 
+    /**
+     * Completes a pending payment after the gateway approved it.
+     *
+     * @throws IllegalStateException if the payment is not pending
+     */
+    void settle() {
+        if (status != PaymentStatus.PENDING) throw new IllegalStateException("Ödeme beklemede değil: " + status);
+        status = PaymentStatus.PAID;
+    }
+
+    /**
+     * Marks a pending payment as declined by the gateway.
+     *
+     * @throws IllegalStateException if the payment is not pending
+     */
+    void fail() {
+        if (status != PaymentStatus.PENDING) throw new IllegalStateException("Ödeme beklemede değil: " + status);
+        status = PaymentStatus.FAILED;
+    }
+
     /**
      * Returns a readable string representation of the payment.
      *
@@ -130,7 +228,7 @@ public class Payment {
     @Override
     public String toString() {
         return "Payment #" + paymentId +
-                " | Rental: " + rentalId +
+                " | Rental: " + (rentalIds.length == 1 ? String.valueOf(rentalIds[0]) : Arrays.toString(rentalIds)) +
                 " | Tutar: " + amount +
                 " | Yöntem: " + method +
                 " | Durum: " + status +
@@ -0,0 +1,60 @@
+package com.carrental;
+
+import java.util.List;
+
+/**
+ * External payment provider that charges customers for their bookings.
+ *
+ * <p>Requests are sent in batches, since a call to a real provider costs a
+ * network round trip whatever its size. Each request carries the payment
+ * ID, which a provider should treat as an idempotency key: after a crash,
+ * payments that were still pending are submitted again.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Interface:</b> The rental workflow does not depend on a concrete provider.</li>
+ *   <li><b>Polymorphism:</b> Real and simulated gateways are interchangeable.</li>
+ * </ul>
+ * </p>
+ */
+public interface PaymentGateway {
+
+    /**
+     * One charge to make.
+     *
+     * @param paymentId  payment ID (idempotency key)
+     * @param customerId paying customer
+     * @param amount     amount to charge
+     * @param method     payment method
+     */
+    record Request(int paymentId, int customerId, double amount, PaymentMethod method) {}
+
+    /**
+     * Outcome of one charge.
+     *
+     * @param paymentId payment ID of the request
+     * @param approved  true if the money was taken
+     * @param reason    why the charge was declined (null if approved)
+     */
+    record Result(int paymentId, boolean approved, String reason) {
+
+        /** @return an approval of the payment */
+        public static Result approved(int paymentId) {
+            return new Result(paymentId, true, null);
+        }
+
+        /** @return a decline of the payment with its reason */
+        public static Result declined(int paymentId, String reason) {
+            return new Result(paymentId, false, reason);
+        }
+    }
+
+    /**
+     * Charges a batch of payments.
+     *
+     * @param batch requests to charge (at least one)
+     * @return one result per request, in the same order
+     * @throws RuntimeException if the provider cannot be reached; the batch may then be retried
+     */
+    List<Result> charge(List<Request> batch);
+}
@@ -0,0 +1,384 @@
+package com.carrental;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running revenue totals of all payments, kept up to date on every payment and refund.
+ *
+ * <p>Finance reports (totals by payment method, by status, refunded amounts
+ * and per-day takings) would otherwise walk every payment ever taken. The
+ * ledger is owned by a {@link PaymentRegistry}, which updates it whenever a
+ * payment is registered, settled, declined or refunded, so every total is answered from a few
+ * counters in constant time.</p>
+ *
+ * <p><b>Taken</b> means money that was actually received: paid and later
+ * refunded payments. Pending and failed payments only appear in the totals
+ * by status until the gateway has approved them.</p>
+ *
+ * <p><b>Amounts</b> are summed as whole kuruş ({@code long}), so the totals
+ * do not depend on the order in which payments were added and can be compared
+ * exactly with a recount. <b>Days</b> are the days the payments were taken;
+ * a refund is counted against the day of the payment it refunds (refunds do
+ * not carry a time of their own).</p>
+ *
+ * <p>{@link PaymentRegistry#reconcile()} recounts the totals from the raw
+ * payments and reports every difference, e.g. after a payment was refunded
+ * directly through {@link Payment#refund()} instead of through the registry.</p>
+ *
+ * <p>Thread safety: all methods are serialised by an internal lock.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Counters are private; callers only see immutable totals.</li>
+ *   <li><b>Single Responsibility:</b> Reporting aggregates are kept apart from payment storage.</li>
+ * </ul>
+ * </p>
+ */
+public final class PaymentLedger {
+
+    /**
+     * Number and sum of a group of payments.
+     *
+     * @param count  number of payments
+     * @param amount total amount
+     */
+    public record Totals(long count, double amount) {
+
+        @Override
+        public String toString() {
+            return String.format("%d ödeme, %.2f TL", count, amount);
+        }
+    }
+
+    /**
+     * Takings of one day.
+     *
+     * @param day      the day the payments were taken
+     * @param taken    all payments taken that day
+     * @param refunded the ones among them that were refunded since
+     */
+    public record DayTotals(LocalDate day, Totals taken, Totals refunded) {
+
+        /**
+         * @return amount taken that day and not refunded
+         */
+        public double net() {
+            return taken.amount() - refunded.amount();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s | Alınan: %s | İade: %s | Net: %.2f TL", day, taken, refunded, net());
+        }
+    }
+
+    /**
+     * Result of comparing the ledger with a recount of the payments.
+     *
+     * @param payments    number of payments recounted
+     * @param differences one line per total that does not match (empty if all match)
+     */
+    public record Reconciliation(int payments, List<String> differences) {
+
+        /**
+         * @return true if every total matches the recount
+         */
+        public boolean matches() {
+            return differences.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return matches()
+                    ? "Mutabakat tamam: " + payments + " ödeme, tüm toplamlar eşleşiyor."
+                    : "Mutabakat hatası (" + differences.size() + " fark): " + String.join("; ", differences);
+        }
+    }
+
+    /** Counters of one day. */
+    private static final class Day {
+        final int epochDay;
+        long count;
+        long cents;
+        long refundCount;
+        long refundCents;
+
+        Day(int epochDay) {
+            this.epochDay = epochDay;
+        }
+    }
+
+    private static final PaymentMethod[] METHODS = PaymentMethod.values();
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+
+    // All payments taken (paid or refunded), by method (index = ordinal)
+    private final long[] methodCount = new long[METHODS.length];
+    private final long[] methodCents = new long[METHODS.length];
+
+    // Refunded payments, by method
+    private final long[] methodRefundCount = new long[METHODS.length];
+    private final long[] methodRefundCents = new long[METHODS.length];
+
+    // Payments by their current status
+    private final long[] statusCount = new long[STATUSES.length];
+    private final long[] statusCents = new long[STATUSES.length];
+
+    // Epoch day -> counters of that day
+    private final IntObjectMap<Day> days = new IntObjectMap<>();
+
+    /** Guards every counter. */
+    private final Object lock = new Object();
+
+    PaymentLedger() {}
+
+    /**
+     * Adds a newly registered payment (in its current status).
+     */
+    void paymentAdded(Payment payment) {
+        long cents = cents(payment.getAmount());
+        PaymentStatus status = payment.getStatus();
+
+        synchronized (lock) {
+            statusCount[status.ordinal()]++;
+            statusCents[status.ordinal()] += cents;
+            if (status == PaymentStatus.PAID || status == PaymentStatus.REFUNDED) taken(payment, cents);
+            if (status == PaymentStatus.REFUNDED) {
+                int m = payment.getMethod().ordinal();
+                Day day = day(payment.getPaidAt().toLocalDate());
+                methodRefundCount[m]++;
+                methodRefundCents[m] += cents;
+                day.refundCount++;
+                day.refundCents += cents;
+            }
+        }
+    }
+
+    /**
+     * Moves a payment from pending to paid, which counts it as taken.
+     */
+    void paymentSettled(Payment payment) {
+        long cents = cents(payment.getAmount());
+        synchronized (lock) {
+            move(PaymentStatus.PENDING, PaymentStatus.PAID, cents);
+            taken(payment, cents);
+        }
+    }
+
+    /**
+     * Moves a payment from pending to failed (nothing was taken).
+     */
+    void paymentFailed(Payment payment) {
+        long cents = cents(payment.getAmount());
+        synchronized (lock) {
+            move(PaymentStatus.PENDING, PaymentStatus.FAILED, cents);
+        }
+    }
+
+    /**
+     * Moves a payment from its previous status to {@link PaymentStatus#REFUNDED}.
+     */
+    void paymentRefunded(Payment payment, PaymentStatus previous) {
+        long cents = cents(payment.getAmount());
+        int m = payment.getMethod().ordinal();
+
+        synchronized (lock) {
+            move(previous, PaymentStatus.REFUNDED, cents);
+
+            methodRefundCount[m]++;
+            methodRefundCents[m] += cents;
+
+            Day day = day(payment.getPaidAt().toLocalDate());
+            day.refundCount++;
+            day.refundCents += cents;
+        }
+    }
+
+    /**
+     * @param method payment method
+     * @return all payments taken with the method (refunded ones included)
+     */
+    public Totals byMethod(PaymentMethod method) {
+        synchronized (lock) {
+            return totals(methodCount[method.ordinal()], methodCents[method.ordinal()]);
+        }
+    }
+
+    /**
+     * @param method payment method
+     * @return payments taken with the method that were refunded since
+     */
+    public Totals refundedByMethod(PaymentMethod method) {
+        synchronized (lock) {
+            return totals(methodRefundCount[method.ordinal()], methodRefundCents[method.ordinal()]);
+        }
+    }
+
+    /**
+     * @param status payment status
+     * @return payments currently in the status
+     */
+    public Totals byStatus(PaymentStatus status) {
+        synchronized (lock) {
+            return totals(statusCount[status.ordinal()], statusCents[status.ordinal()]);
+        }
+    }
+
+    /**
+     * @return every payment taken (refunded ones included)
+     */
+    public Totals taken() {
+        synchronized (lock) {
+            long count = 0, cents = 0;
+            for (int m = 0; m < METHODS.length; m++) {
+                count += methodCount[m];
+                cents += methodCents[m];
+            }
+            return totals(count, cents);
+        }
+    }
+
+    /**
+     * @return every refunded payment
+     */
+    public Totals refunded() {
+        return byStatus(PaymentStatus.REFUNDED);
+    }
+
+    /**
+     * @return amount taken and not refunded
+     */
+    public double netRevenue() {
+        synchronized (lock) {
+            long cents = 0;
+            for (int m = 0; m < METHODS.length; m++) cents += methodCents[m] - methodRefundCents[m];
+            return cents / 100.0;
+        }
+    }
+
+    /**
+     * @param day a calendar day
+     * @return takings of the day (zero totals if nothing was taken)
+     */
+    public DayTotals byDay(LocalDate day) {
+        synchronized (lock) {
+            Day d = days.get(Math.toIntExact(day.toEpochDay()));
+            if (d == null) return new DayTotals(day, totals(0, 0), totals(0, 0));
+            return dayTotals(d);
+        }
+    }
+
+    /**
+     * Takings of every day in a range that has at least one payment.
+     *
+     * @param from first day (inclusive)
+     * @param to   last day (inclusive)
+     * @return one entry per day with payments, in day order
+     */
+    public List<DayTotals> days(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Geçersiz tarih aralığı.");
+        }
+        List<DayTotals> out = new ArrayList<>();
+        synchronized (lock) {
+            for (long e = from.toEpochDay(); e <= to.toEpochDay(); e++) {
+                Day d = days.get(Math.toIntExact(e));
+                if (d != null) out.add(dayTotals(d));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Compares every total with a ledger recounted from the raw payments.
+     */
+    Reconciliation compareWith(PaymentLedger recount, int payments) {
+        List<String> differences = new ArrayList<>();
+        synchronized (lock) {
+            for (PaymentMethod method : METHODS) {
+                int m = method.ordinal();
+                compare(differences, "Yöntem " + method, methodCount[m], methodCents[m],
+                        recount.methodCount[m], recount.methodCents[m]);
+                compare(differences, "İade " + method, methodRefundCount[m], methodRefundCents[m],
+                        recount.methodRefundCount[m], recount.methodRefundCents[m]);
+            }
+            for (PaymentStatus status : STATUSES) {
+                int s = status.ordinal();
+                compare(differences, "Durum " + status, statusCount[s], statusCents[s],
+                        recount.statusCount[s], recount.statusCents[s]);
+            }
+
+            // Days missing on either side show up when walking both maps
+            days.forEachValue(d -> compareDay(differences, d, recount.days.get(d.epochDay)));
+            recount.days.forEachValue(r -> {
+                if (days.get(r.epochDay) == null) compareDay(differences, new Day(r.epochDay), r);
+            });
+        }
+        return new Reconciliation(payments, List.copyOf(differences));
+    }
+
+    private static void compareDay(List<String> differences, Day kept, Day counted) {
+        if (counted == null) counted = new Day(kept.epochDay);
+        String label = "Gün " + LocalDate.ofEpochDay(kept.epochDay);
+        compare(differences, label, kept.count, kept.cents, counted.count, counted.cents);
+        compare(differences, label + " iade", kept.refundCount, kept.refundCents,
+                counted.refundCount, counted.refundCents);
+    }
+
+    private static void compare(List<String> differences, String label,
+                                long count, long cents, long expectedCount, long expectedCents) {
+        if (count != expectedCount || cents != expectedCents) {
+            differences.add(label + ": defter " + totals(count, cents) + ", ödemeler " + totals(expectedCount, expectedCents));
+        }
+    }
+
+    /**
+     * Moves a payment between status totals. Caller must hold {@link #lock}.
+     */
+    private void move(PaymentStatus from, PaymentStatus to, long cents) {
+        statusCount[from.ordinal()]--;
+        statusCents[from.ordinal()] -= cents;
+        statusCount[to.ordinal()]++;
+        statusCents[to.ordinal()] += cents;
+    }
+
+    /**
+     * Adds a payment to the taken totals of its method and day. Caller must hold {@link #lock}.
+     */
+    private void taken(Payment payment, long cents) {
+        int m = payment.getMethod().ordinal();
+        methodCount[m]++;
+        methodCents[m] += cents;
+
+        Day day = day(payment.getPaidAt().toLocalDate());
+        day.count++;
+        day.cents += cents;
+    }
+
+    /**
+     * Returns the counters of a day, creating them on first use. Caller must hold {@link #lock}.
+     */
+    private Day day(LocalDate date) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        Day d = days.get(epochDay);
+        if (d == null) {
+            d = new Day(epochDay);
+            days.put(epochDay, d);
+        }
+        return d;
+    }
+
+    private static DayTotals dayTotals(Day d) {
+        return new DayTotals(LocalDate.ofEpochDay(d.epochDay), totals(d.count, d.cents),
+                totals(d.refundCount, d.refundCents));
+    }
+
+    private static Totals totals(long count, long cents) {
+        return new Totals(count, cents / 100.0);
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
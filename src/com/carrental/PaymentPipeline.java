@@ -0,0 +1,342 @@
+package com.carrental;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sends payment requests to a {@link PaymentGateway} in batches, off the renting thread.
+ *
+ * <p>{@link #submit} only queues a request and returns a future. Worker
+ * threads take requests from the queue and send them to the gateway
+ * together: a batch is sent as soon as it holds {@code maxBatch} requests,
+ * or {@code maxDelayMillis} after its first request at the latest. Several
+ * workers can have batches in flight at the same time.</p>
+ *
+ * <p>When the gateway answers, the batch handler applies all results first
+ * (see {@link RentalService#usePaymentGateway}); only then are the futures
+ * completed. A gateway call that throws is retried with a growing pause,
+ * and so is a handler that throws (e.g. because the journal cannot be
+ * written).</p>
+ *
+ * <p>A call that throws says nothing about whether the money was taken, so
+ * a batch is never declined for it. If the gateway or the handler keeps
+ * failing, the requests go back into the queue and are charged again later,
+ * which the payment ID as idempotency key makes safe. Once the pipeline is
+ * closed, their futures fail instead; the payments stay pending and are
+ * submitted again on the next start.</p>
+ *
+ * <p>The queue is bounded: when the gateway falls far behind,
+ * {@link #submit} waits for room instead of letting requests pile up.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Producer-Consumer:</b> Renting threads produce requests, worker threads consume them in batches.</li>
+ *   <li><b>Encapsulation:</b> Queueing, batching and retries are hidden behind {@link #submit}.</li>
+ * </ul>
+ * </p>
+ */
+public final class PaymentPipeline implements AutoCloseable {
+
+    /**
+     * Applies the results of a batch before their futures complete.
+     */
+    @FunctionalInterface
+    interface BatchHandler {
+
+        /**
+         * Must skip payments that are no longer pending, since a batch is
+         * handled again after a failed attempt.
+         *
+         * @param requests the batch
+         * @param results  one result per request, in the same order
+         */
+        void completed(List<PaymentGateway.Request> requests, List<PaymentGateway.Result> results);
+    }
+
+    /**
+     * Snapshot of the pipeline counters.
+     *
+     * @param submitted requests queued so far
+     * @param approved  requests the gateway approved
+     * @param declined  requests the gateway declined
+     * @param batches   batches the gateway answered (retries and re-queued batches are not counted again)
+     * @param queued    requests waiting for a batch right now
+     */
+    public record Stats(long submitted, long approved, long declined, long batches, int queued) {
+
+        /**
+         * @return average number of requests per gateway call
+         */
+        public double averageBatch() {
+            return batches == 0 ? 0.0 : (double) (approved + declined) / batches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Gönderilen: %d | Onay: %d | Red: %d | Toplu çağrı: %d (ort. %.1f) | Kuyrukta: %d",
+                    submitted, approved, declined, batches, averageBatch(), queued);
+        }
+    }
+
+    /** Gateway calls that throw are tried this many times in total. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** Pause before the first retry; doubled for each further one. */
+    private static final long RETRY_PAUSE_MILLIS = 50;
+
+    /** A queued request and the future of its caller. */
+    private record Queued(PaymentGateway.Request request, CompletableFuture<PaymentGateway.Result> future) {}
+
+    private final PaymentGateway gateway;
+    private final BatchHandler handler;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Queued> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    /** Submitting shares it, closing takes it exclusively: nothing is queued once the workers may stop. */
+    private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong approved = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Creates a pipeline and starts its workers.
+     *
+     * @param gateway        provider that charges the payments
+     * @param maxBatch       most requests per gateway call
+     * @param maxDelayMillis longest time a request waits for its batch to fill
+     * @param workerCount    number of batches that can be in flight at once
+     * @param queueCapacity  most requests waiting in the queue
+     * @param handler        applies the results of each batch
+     * @throws IllegalArgumentException if an argument is null or out of range
+     */
+    PaymentPipeline(PaymentGateway gateway, int maxBatch, long maxDelayMillis, int workerCount,
+                    int queueCapacity, BatchHandler handler) {
+        if (gateway == null || handler == null) throw new IllegalArgumentException("Ödeme sağlayıcısı null olamaz.");
+        if (maxBatch <= 0) throw new IllegalArgumentException("Toplu ödeme boyutu 1 veya daha büyük olmalı.");
+        if (maxDelayMillis < 0) throw new IllegalArgumentException("Bekleme süresi negatif olamaz.");
+        if (workerCount <= 0) throw new IllegalArgumentException("İş parçacığı sayısı 1 veya daha büyük olmalı.");
+        if (queueCapacity <= 0) throw new IllegalArgumentException("Kuyruk kapasitesi 1 veya daha büyük olmalı.");
+
+        this.gateway = gateway;
+        this.handler = handler;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "payment-pipeline-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Queues a payment request.
+     *
+     * @param request the charge to make
+     * @return completes with the gateway's answer after it has been applied
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public CompletableFuture<PaymentGateway.Result> submit(PaymentGateway.Request request) {
+        if (request == null) throw new IllegalArgumentException("Ödeme isteği null olamaz.");
+
+        CompletableFuture<PaymentGateway.Result> future = new CompletableFuture<>();
+        gate.readLock().lock();
+        try {
+            if (closed) throw new IllegalStateException("Ödeme hattı kapalı.");
+            queue.put(new Queued(request, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ödeme kuyruğa alınamadı.", e);
+        } finally {
+            gate.readLock().unlock();
+        }
+        submitted.incrementAndGet();
+        return future;
+    }
+
+    /**
+     * @return current counters
+     */
+    public Stats stats() {
+        return new Stats(submitted.get(), approved.get(), declined.get(), batches.get(), queue.size());
+    }
+
+    /**
+     * Stops accepting requests and waits until every queued request has been answered.
+     */
+    @Override
+    public void close() {
+        // Waits for submitters that are still putting their request into the queue
+        gate.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            gate.writeLock().unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ================= WORKERS =================
+
+    private void work() {
+        List<Queued> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            Queued first;
+            try {
+                first = queue.poll(50, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                if (closed && queue.isEmpty()) return;
+                continue;
+            }
+
+            // Fill the batch until it is full or the first request has waited long enough
+            batch.add(first);
+            long deadline = System.nanoTime() + maxDelayNanos;
+            while (batch.size() < maxBatch) {
+                if (queue.drainTo(batch, maxBatch - batch.size()) > 0) continue;
+                long left = deadline - System.nanoTime();
+                if (left <= 0) break;
+                try {
+                    Queued next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Charges one batch, applies the results and completes the futures.
+     */
+    private void process(List<Queued> batch) {
+        List<PaymentGateway.Request> requests = new ArrayList<>(batch.size());
+        for (Queued q : batch) requests.add(q.request());
+
+        List<PaymentGateway.Result> results;
+        try {
+            results = charge(requests);
+        } catch (RuntimeException e) {
+            requeue(batch, e);
+            return;
+        }
+        batches.incrementAndGet();
+
+        RuntimeException failure = apply(requests, results);
+        if (failure != null) {
+            requeue(batch, failure);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PaymentGateway.Result result = results.get(i);
+            (result.approved() ? approved : declined).incrementAndGet();
+            batch.get(i).future().complete(result);
+        }
+    }
+
+    /**
+     * Calls the gateway, retrying when it throws.
+     *
+     * @throws IllegalStateException if it never answered; whether it charged anything is unknown
+     */
+    private List<PaymentGateway.Result> charge(List<PaymentGateway.Request> requests) {
+        RuntimeException last = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (attempt > 0 && !pause(attempt)) break;
+            try {
+                List<PaymentGateway.Result> results = gateway.charge(requests);
+                checkAnswers(requests, results);
+                return results;
+            } catch (RuntimeException e) {
+                last = e;
+            }
+        }
+
+        throw new IllegalStateException("Ödeme sağlayıcısına ulaşılamadı: " + last.getMessage(), last);
+    }
+
+    /**
+     * Runs the batch handler, retrying when it throws.
+     *
+     * @return null once it succeeded, otherwise its last failure
+     */
+    private RuntimeException apply(List<PaymentGateway.Request> requests, List<PaymentGateway.Result> results) {
+        RuntimeException last = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (attempt > 0 && !pause(attempt)) break;
+            try {
+                handler.completed(requests, results);
+                return null;
+            } catch (RuntimeException e) {
+                last = e;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Puts a batch that was not answered or not applied back into the queue, so it is charged and applied again.
+     */
+    private void requeue(List<Queued> batch, RuntimeException failure) {
+        for (Queued q : batch) {
+            // After close no worker may be left to take it; the payment stays pending until the next start
+            if (closed || !queue.offer(q)) q.future().completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Waits before a retry; the pause doubles with each attempt.
+     *
+     * @return false if the thread was interrupted
+     */
+    private static boolean pause(int attempt) {
+        try {
+            Thread.sleep(RETRY_PAUSE_MILLIS << (attempt - 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void checkAnswers(List<PaymentGateway.Request> requests, List<PaymentGateway.Result> results) {
+        if (results == null || results.size() != requests.size()) {
+            throw new IllegalStateException("Ödeme sağlayıcısı eksik yanıt döndürdü.");
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            if (results.get(i) == null || results.get(i).paymentId() != requests.get(i).paymentId()) {
+                throw new IllegalStateException("Ödeme sağlayıcısı yanıtları sırasız döndürdü.");
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.carrental;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores all payments of the system and indexes them for constant-time lookup.
+ *
+ * <p>Receipts need the payment of a given rental. Instead of scanning every
+ * payment ever taken, the registry keeps:
+ * <ul>
+ *   <li>payments by payment ID,</li>
+ *   <li>payments by the ID of the rental they pay for,</li>
+ *   <li>an append-only log of all payments in creation order (for listings).</li>
+ * </ul>
+ * </p>
+ *
+ * <p>It also owns the {@link PaymentLedger} with the running revenue totals.
+ * Registering, settling, failing and {@link #refund(int)} update the ledger
+ * in the same step, so refunds should go through the registry rather than
+ * {@link Payment#refund()}.</p>
+ *
+ * <p>Thread safety: status changes are serialised by an internal lock;
+ * lookups and listings never take it.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Indexes are private and always updated together.</li>
+ *   <li><b>Single Responsibility:</b> Payment bookkeeping is separated from the console UI.</li>
+ * </ul>
+ * </p>
+ */
+public class PaymentRegistry {
+
+    // Payment ID -> payment
+    private final IntObjectMap<Payment> byId = new IntObjectMap<>();
+
+    // Rental ID -> payment for that rental (a batch payment appears under each of its rentals)
+    private final IntObjectMap<Payment> byRentalId = new IntObjectMap<>();
+
+    // All payments in creation order; the array is replaced when it grows
+    private volatile Payment[] log = new Payment[16];
+
+    // Number of payments in the log
+    private volatile int size;
+
+    // Running totals of all payments
+    private final PaymentLedger ledger = new PaymentLedger();
+
+    /** Serialises register and status changes. Readers never take it. */
+    private final Object writeLock = new Object();
+
+    /**
+     * Registers a new payment.
+     *
+     * @param payment the payment to register
+     * @throws IllegalArgumentException if payment is null, its ID is already registered
+     *                                  or one of its rentals already has a payment
+     */
+    public void register(Payment payment) {
+        if (payment == null) throw new IllegalArgumentException("Ödeme null olamaz.");
+
+        synchronized (writeLock) {
+            if (byId.containsKey(payment.getPaymentId())) {
+                throw new IllegalArgumentException("Bu ödeme ID zaten kullanılıyor: " + payment.getPaymentId());
+            }
+            int[] rentalIds = payment.getRentalIds();
+            for (int rentalId : rentalIds) {
+                if (byRentalId.containsKey(rentalId)) {
+                    throw new IllegalArgumentException("Bu kiralama için zaten ödeme var: " + rentalId);
+                }
+            }
+            byId.put(payment.getPaymentId(), payment);
+            for (int rentalId : rentalIds) {
+                byRentalId.put(rentalId, payment);
+            }
+            append(payment);
+            ledger.paymentAdded(payment);
+        }
+    }
+
+    /**
+     * Refunds a payment and moves its amount to the refunded totals of the ledger.
+     *
+     * @param paymentId payment ID
+     * @return the refunded payment
+     * @throws IllegalArgumentException if no payment has the ID
+     * @throws IllegalStateException    if the payment is already refunded
+     */
+    public Payment refund(int paymentId) {
+        return refund(paymentId, () -> {});
+    }
+
+    /**
+     * Refunds a payment, running a step before the payment and the ledger change.
+     *
+     * @param paymentId    payment ID
+     * @param beforeChange called once the payment is known to be refundable (e.g. to journal
+     *                     the refund); if it throws, nothing changes
+     * @return the refunded payment
+     * @throws IllegalArgumentException if no payment has the ID
+     * @throws IllegalStateException    if the payment is already refunded
+     */
+    Payment refund(int paymentId, Runnable beforeChange) {
+        synchronized (writeLock) {
+            Payment payment = existing(paymentId);
+            PaymentStatus previous = payment.getStatus();
+            payment.refund(beforeChange);
+            ledger.paymentRefunded(payment, previous);
+            return payment;
+        }
+    }
+
+    /**
+     * Completes a pending payment the gateway approved.
+     *
+     * @param paymentId payment ID
+     * @return the paid payment
+     * @throws IllegalArgumentException if no payment has the ID
+     * @throws IllegalStateException    if the payment is not pending
+     */
+    Payment settle(int paymentId) {
+        synchronized (writeLock) {
+            Payment payment = existing(paymentId);
+            payment.settle();
+            ledger.paymentSettled(payment);
+            return payment;
+        }
+    }
+
+    /**
+     * Marks a pending payment as declined by the gateway.
+     *
+     * @param paymentId payment ID
+     * @return the failed payment
+     * @throws IllegalArgumentException if no payment has the ID
+     * @throws IllegalStateException    if the payment is not pending
+     */
+    Payment fail(int paymentId) {
+        synchronized (writeLock) {
+            Payment payment = existing(paymentId);
+            payment.fail();
+            ledger.paymentFailed(payment);
+            return payment;
+        }
+    }
+
+    /**
+     * @return running revenue totals of the registered payments
+     */
+    public PaymentLedger ledger() {
+        return ledger;
+    }
+
+    /**
+     * Recounts the ledger totals from the registered payments and compares them.
+     *
+     * <p>Walks every payment, so it is meant for occasional checks. Registering
+     * and refunding wait until the recount is done.</p>
+     *
+     * @return the differences found (none if the ledger is correct)
+     */
+    public PaymentLedger.Reconciliation reconcile() {
+        synchronized (writeLock) {
+            PaymentLedger recount = new PaymentLedger();
+            forEach(recount::paymentAdded);
+            return ledger.compareWith(recount, size);
+        }
+    }
+
+    /**
+     * @param paymentId payment ID
+     * @return the payment, or null if not found
+     */
+    public Payment findById(int paymentId) {
+        return byId.get(paymentId);
+    }
+
+    /**
+     * @param rentalId rental ID
+     * @return the payment for the rental, or null if it has none
+     */
+    public Payment findByRentalId(int rentalId) {
+        return byRentalId.get(rentalId);
+    }
+
+    /**
+     * @return number of registered payments
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no payment has been registered
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a slice of the payments in creation order, without walking the ones before it.
+     *
+     * @param offset number of payments to skip
+     * @param limit  most payments to return
+     * @return the payments of the slice (empty if offset is past the end)
+     * @throws IllegalArgumentException if offset is negative or limit is not positive
+     */
+    public List<Payment> page(int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Başlangıç 0 veya daha büyük, limit 1 veya daha büyük olmalı.");
+        }
+        int count = size;
+        Payment[] current = log;
+        if (offset >= count) return List.of();
+        return List.of(Arrays.copyOfRange(current, offset, (int) Math.min(count, (long) offset + limit)));
+    }
+
+    /**
+     * Calls {@code action} for every payment in creation order.
+     *
+     * @param action callback receiving each payment
+     */
+    public void forEach(Consumer<? super Payment> action) {
+        // Read the size first: the log it was published with holds at least that many payments
+        int count = size;
+        Payment[] current = log;
+        for (int i = 0; i < count; i++) {
+            action.accept(current[i]);
+        }
+    }
+
+    private Payment existing(int paymentId) {
+        Payment payment = byId.get(paymentId);
+        if (payment == null) throw new IllegalArgumentException("Ödeme bulunamadı: " + paymentId);
+        return payment;
+    }
+
+    /**
+     * Appends a payment to the log. Caller must hold {@link #writeLock}.
+     */
+    private void append(Payment payment) {
+        Payment[] current = log;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = payment;
+        log = current;
+        size = size + 1;
+    }
+}
@@ -11,6 +11,7 @@ package com.carrental;
  *   <li><b>PENDING:</b> Payment is created but not yet completed</li>
  *   <li><b>PAID:</b> Payment has been successfully completed</li>
  *   <li><b>REFUNDED:</b> Payment has been refunded after rental return</li>
+ *   <li><b>FAILED:</b> Payment was declined; its rentals were cancelled</li>
  * </ul>
  * </p>
  *
@@ -31,5 +32,8 @@ public enum PaymentStatus {
     PAID,
 
     // Payment has been refunded
-    REFUNDED
+    REFUNDED,
+
+    // Payment was declined by the payment gateway
+    FAILED
 }
@@ -0,0 +1,293 @@
+package com.carrental;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Execution plan for a {@link CarQuery} against one {@link SlotIndex}.
+ *
+ * <p>The planner works in three steps:
+ * <ol>
+ *   <li>Every criterion that has a bitmap (brand, type, fuel type,
+ *       availability) contributes that bitmap. A criterion whose bitmap does
+ *       not exist (e.g. an unknown brand) makes the whole plan empty.</li>
+ *   <li>The bitmaps are ordered by cardinality. The smallest one drives the
+ *       scan: words where it is zero are skipped before the other bitmaps
+ *       are even read, and chunks it does not have are skipped entirely.</li>
+ *   <li>A rate range or EV range gets a bitmap built from one pass over the
+ *       {@link FleetColumns}, unless the indexed bitmaps already leave less
+ *       than one candidate per 64 slots: then checking those few cars is
+ *       cheaper than the pass.</li>
+ *   <li>Criteria without a bitmap ("rented only", and rate or EV range when
+ *       no column bitmap was built) are checked last, only on cars that
+ *       survived the intersection.</li>
+ * </ol>
+ * With no bitmap at all, the plan falls back to a scan of the slot table,
+ * which {@link #toString()} shows as {@code scan(n)}.</p>
+ *
+ * <p>A plan can run eagerly ({@link #forEach}) or lazily through
+ * {@link #spliterator()}, which walks the same intersection on demand and
+ * splits by slot range for parallel streams.</p>
+ */
+final class QueryPlan {
+
+    /**
+     * One bitmap taking part in the intersection, with a label for {@link #toString()}.
+     */
+    private record Step(String label, SlotBitmap bitmap) {}
+
+    // The query being executed
+    private final CarQuery query;
+
+    // Index the bitmaps belong to
+    private final SlotIndex index;
+
+    // Bitmaps to intersect, most selective first (empty = scan all slots)
+    private final List<Step> steps;
+
+    // True if some indexed criterion can never match
+    private final boolean empty;
+
+    // True if the rate / EV range criteria got a column bitmap in steps
+    private final boolean rateSelected;
+    private final boolean rangeSelected;
+
+    private QueryPlan(CarQuery query, SlotIndex index, List<Step> steps, boolean empty,
+                      boolean rateSelected, boolean rangeSelected) {
+        this.query = query;
+        this.index = index;
+        this.steps = steps;
+        this.empty = empty;
+        this.rateSelected = rateSelected;
+        this.rangeSelected = rangeSelected;
+    }
+
+    /**
+     * Builds the plan for a query.
+     *
+     * @param query query to plan
+     * @param index slot index to run against
+     * @return plan ready to execute
+     */
+    static QueryPlan of(CarQuery query, SlotIndex index) {
+        List<Step> steps = new ArrayList<>();
+        boolean empty = false;
+
+        if (query.getBrand() != null) {
+            empty |= !addStep(steps, "brand", index.brandSlots(query.getBrand()));
+        }
+        if (query.getType() != null) {
+            empty |= !addStep(steps, "type", index.typeSlots(query.getType()));
+        } else if (query.hasRangeKm()) {
+            // A range criterion only matches electric cars, so their bitmap narrows the scan
+            empty |= !addStep(steps, "type", index.typeSlots(ElectricCar.class));
+        }
+        if (query.getFuelType() != null) {
+            empty |= !addStep(steps, "fuel", index.fuelSlots(query.getFuelType()));
+        }
+        if (Boolean.TRUE.equals(query.getAvailable())) {
+            addStep(steps, "available", index.availableSlots());
+        }
+
+        // Rate and EV range from the columns, if enough candidates are left to pay for the pass
+        boolean rateSelected = false;
+        boolean rangeSelected = false;
+        int slotCount = index.slotCount();
+        if (!empty && (query.hasRateRange() || query.hasRangeKm()) && worthColumnPass(steps, slotCount)) {
+            FleetColumns columns = index.columns();
+            if (query.hasRateRange()) {
+                steps.add(new Step("rate", columns.rateSlots(query.getMinDailyRate(), query.getMaxDailyRate(), slotCount)));
+                rateSelected = true;
+            }
+            if (query.hasRangeKm()) {
+                steps.add(new Step("rangeKm", columns.rangeKmSlots(query.getMinRangeKm(), query.getMaxRangeKm(), slotCount)));
+                rangeSelected = true;
+            }
+        }
+
+        // Most selective bitmap first
+        steps.sort(Comparator.comparingInt(s -> s.bitmap().cardinality()));
+        return new QueryPlan(query, index, steps, empty, rateSelected, rangeSelected);
+    }
+
+    /**
+     * Decides whether a pass over the columns is cheaper than checking the
+     * cars the other bitmaps leave over.
+     *
+     * @return true with no bitmap yet, or if the smallest one has at least one car per 64 slots
+     */
+    private static boolean worthColumnPass(List<Step> steps, int slotCount) {
+        int smallest = slotCount;
+        for (Step s : steps) smallest = Math.min(smallest, s.bitmap().cardinality());
+        return (long) smallest * 64 >= slotCount;
+    }
+
+    /**
+     * Adds a bitmap step unless the bitmap is missing.
+     *
+     * @return false if the bitmap is missing (nothing can match)
+     */
+    private static boolean addStep(List<Step> steps, String label, SlotBitmap bitmap) {
+        if (bitmap == null) return false;
+        steps.add(new Step(label, bitmap));
+        return true;
+    }
+
+    /**
+     * Runs the plan and passes every matching car to {@code action}, in listing order.
+     *
+     * @param action callback receiving matching cars
+     */
+    void forEach(Consumer<? super Car> action) {
+        if (empty) return;
+
+        if (steps.isEmpty()) {
+            // No index applies: scan the slot table
+            index.forEachCar(car -> {
+                if (query.matchesResidual(car, false)) action.accept(car);
+            });
+            return;
+        }
+
+        SlotBitmap[] bitmaps = new SlotBitmap[steps.size()];
+        for (int i = 0; i < bitmaps.length; i++) bitmaps[i] = steps.get(i).bitmap();
+
+        SlotBitmap.forEachAnd(slot -> {
+            Car car = index.carAt(slot);
+
+            // Skip cars removed while the scan was running
+            if (car != null && query.matchesResidual(car, false)) action.accept(car);
+        }, bitmaps);
+    }
+
+    /**
+     * Returns a lazy, splittable iterator over the matching cars.
+     *
+     * @return spliterator covering all slots that exist when it is created
+     */
+    Spliterator<Car> spliterator() {
+        return new SlotSpliterator(0, empty ? 0 : index.slotCount());
+    }
+
+    /**
+     * @return upper bound for the number of results (size of the driving bitmap)
+     */
+    int estimatedSize() {
+        if (empty) return 0;
+        if (steps.isEmpty()) return index.slotCount();
+        return steps.get(0).bitmap().cardinality();
+    }
+
+    /**
+     * Describes the plan, e.g. {@code brand(3) ∩ fuel(15) ∩ available(49) | residual: rate}
+     * or {@code rate(120) ∩ available(49)}.
+     *
+     * @return readable plan description
+     */
+    @Override
+    public String toString() {
+        if (empty) return "empty (an indexed criterion has no matching cars)";
+
+        StringBuilder sb = new StringBuilder();
+        if (steps.isEmpty()) {
+            sb.append("scan(").append(index.slotCount()).append(')');
+        }
+        for (Step s : steps) {
+            if (sb.length() > 0) sb.append(" ∩ ");
+            sb.append(s.label()).append('(').append(s.bitmap().cardinality()).append(')');
+        }
+
+        List<String> residual = new ArrayList<>();
+        if (Boolean.FALSE.equals(query.getAvailable())) residual.add("rented");
+        if (query.hasRateRange() && !rateSelected) residual.add("rate");
+        if (query.hasRangeKm() && !rangeSelected) residual.add("rangeKm");
+        if (!residual.isEmpty()) sb.append(" | residual: ").append(String.join(", ", residual));
+        return sb.toString();
+    }
+
+    /**
+     * Lazy iterator over the matches of this plan within a slot range.
+     *
+     * <p>Each call to {@link #tryAdvance} resumes the bitmap intersection
+     * where the previous one stopped, so taking the first page of a large
+     * result only scans as far as that page. {@link #trySplit()} hands the
+     * lower half of the remaining slot range (aligned to whole bitmap words)
+     * to a new spliterator, which lets parallel streams divide the fleet.</p>
+     *
+     * <p>Characteristics: results come in listing order
+     * ({@link Spliterator#ORDERED}), each car at most once
+     * ({@link Spliterator#DISTINCT}), never null ({@link Spliterator#NONNULL}),
+     * and the inventory may change during traversal without failing it
+     * ({@link Spliterator#CONCURRENT}). The exact size is not known up front
+     * because of residual criteria and concurrent changes, so the spliterator
+     * is not {@link Spliterator#SIZED}; {@link #estimateSize()} scales the
+     * driving bitmap's cardinality to the remaining range.</p>
+     */
+    private final class SlotSpliterator implements Spliterator<Car> {
+
+        // Ranges smaller than this are not split further (64 words of slots)
+        private static final int MIN_SPLIT_SLOTS = 4096;
+
+        // Next slot to examine (inclusive) and end of the range (exclusive)
+        private int from;
+        private final int to;
+
+        // Bitmaps to intersect; empty array means scan the slot table
+        private final SlotBitmap[] bitmaps;
+
+        SlotSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.bitmaps = new SlotBitmap[steps.size()];
+            for (int i = 0; i < bitmaps.length; i++) bitmaps[i] = steps.get(i).bitmap();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Car> action) {
+            while (from < to) {
+                int slot = (bitmaps.length == 0) ? from : SlotBitmap.nextSetBitAnd(from, to, bitmaps);
+                if (slot < 0) {
+                    from = to;
+                    return false;
+                }
+                from = slot + 1;
+
+                Car car = index.carAt(slot);
+                if (car != null && query.matchesResidual(car, false)) {
+                    action.accept(car);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Car> trySplit() {
+            int remaining = to - from;
+            if (remaining < 2 * MIN_SPLIT_SLOTS) return null;
+
+            // Split on a word boundary so the halves never share a bitmap word
+            int mid = (from + remaining / 2) & ~63;
+            if (mid <= from) return null;
+
+            SlotSpliterator prefix = new SlotSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            int total = index.slotCount();
+            if (total == 0 || from >= to) return 0;
+            return (long) estimatedSize() * (to - from) / total;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | CONCURRENT;
+        }
+    }
+}
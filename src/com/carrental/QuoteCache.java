@@ -0,0 +1,219 @@
+package com.carrental;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of rental fee quotes, keyed by (car, days).
+ *
+ * <p>Customers refresh the same searches over and over, which prices the same
+ * cars for the same number of days again and again. The cache keeps the most
+ * recently used quotes (LRU) up to a fixed number of entries; on a miss the
+ * missing cars are priced together through {@link CarInventory#quote}.</p>
+ *
+ * <p><b>Invalidation:</b> a cached quote remembers the car object it was
+ * computed for. Rates and premiums are fixed per car object, so a quote can
+ * only go stale when the car is removed from the inventory or replaced by a
+ * new car with the same ID (e.g. with a new rate). Both are detected on
+ * lookup: a quote is only used if its car is still the inventory's car for
+ * that ID. {@link #invalidateCar(int)} and {@link #invalidateAll()} drop
+ * entries eagerly, e.g. after a pricing rule changes.</p>
+ *
+ * <p>Hit, miss and eviction counters are available through {@link #stats()}
+ * to help choose the capacity.</p>
+ *
+ * <p>Thread safety: all operations are serialised by an internal lock
+ * (an LRU lookup reorders the entries, so even reads modify the map).
+ * Pricing of misses happens outside the lock.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Entries and counters are private; callers only see fees and stats.</li>
+ *   <li><b>Composition:</b> The cache wraps the inventory's pricing path without changing it.</li>
+ * </ul>
+ * </p>
+ */
+public class QuoteCache {
+
+    /**
+     * Snapshot of the cache counters.
+     *
+     * @param hits      lookups answered from the cache
+     * @param misses    lookups that had to be priced
+     * @param evictions entries dropped because the cache was full
+     * @param size      current number of entries
+     * @param capacity  maximum number of entries
+     */
+    public record Stats(long hits, long misses, long evictions, int size, int capacity) {
+
+        /**
+         * @return share of lookups answered from the cache (0.0 if there were none)
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Hit: %d | Miss: %d | Eviction: %d | Boyut: %d/%d | Hit oranı: %.1f%%",
+                    hits, misses, evictions, size, capacity, hitRate() * 100);
+        }
+    }
+
+    /** Cached fee together with the car object it was computed for. */
+    private record Entry(Car car, double fee) {}
+
+    private final CarInventory inventory;
+    private final int capacity;
+
+    // (carId, days) -> quote, in access order (eldest = least recently used)
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /** Guards the map and the counters. */
+    private final Object lock = new Object();
+
+    /**
+     * Creates a cache in front of an inventory's pricing.
+     *
+     * @param inventory inventory whose cars are quoted
+     * @param capacity  maximum number of cached quotes
+     * @throws IllegalArgumentException if inventory is null or capacity is not positive
+     */
+    public QuoteCache(CarInventory inventory, int capacity) {
+        if (inventory == null) throw new IllegalArgumentException("Envanter null olamaz.");
+        if (capacity <= 0) throw new IllegalArgumentException("Önbellek kapasitesi 1 veya daha büyük olmalı.");
+
+        this.inventory = inventory;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() <= QuoteCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Quotes one car.
+     *
+     * @param car  car to price
+     * @param days number of rental days
+     * @return the same value as {@code car.calculateRentalFee(days)}
+     * @throws InvalidRentalPeriodException if days is less than 1
+     */
+    public double quote(Car car, int days) {
+        return quote(List.of(car), days)[0];
+    }
+
+    /**
+     * Quotes many cars for the same number of days (e.g. a search result).
+     *
+     * @param candidates cars to price
+     * @param days       number of rental days
+     * @return fees in the order of {@code candidates}
+     * @throws InvalidRentalPeriodException if days is less than 1
+     */
+    public double[] quote(List<Car> candidates, int days) {
+        if (candidates == null) throw new IllegalArgumentException("Araç listesi null olamaz.");
+        if (days <= 0) throw new InvalidRentalPeriodException("Kiralama günü 1 veya daha fazla olmalı.");
+
+        int n = candidates.size();
+        double[] fees = new double[n];
+
+        // Positions of the candidates that were not in the cache
+        int[] missing = new int[n];
+        int missCount = 0;
+
+        synchronized (lock) {
+            for (int i = 0; i < n; i++) {
+                Car car = candidates.get(i);
+                Long key = key(car.getId(), days);
+                Entry e = entries.get(key);
+                if (e != null && e.car() == car && isCurrent(car)) {
+                    fees[i] = e.fee();
+                    hits++;
+                } else {
+                    // Stale entries (car removed or replaced) are dropped right away
+                    if (e != null) entries.remove(key);
+                    missing[missCount++] = i;
+                    misses++;
+                }
+            }
+        }
+        if (missCount == 0) return fees;
+
+        // Price every miss in one pass, outside the lock
+        List<Car> toPrice = new ArrayList<>(missCount);
+        for (int m = 0; m < missCount; m++) toPrice.add(candidates.get(missing[m]));
+        double[] priced = inventory.quote(toPrice, days);
+
+        synchronized (lock) {
+            for (int m = 0; m < missCount; m++) {
+                Car car = toPrice.get(m);
+                fees[missing[m]] = priced[m];
+
+                // Cars outside the inventory cannot be invalidated, so they are not cached
+                if (isCurrent(car)) entries.put(key(car.getId(), days), new Entry(car, priced[m]));
+            }
+        }
+        return fees;
+    }
+
+    /**
+     * Drops every cached quote of a car (all day counts).
+     *
+     * <p>Scans the cache, so it is meant for occasional pricing changes, not
+     * for every lookup; removed and replaced cars are detected without it.</p>
+     *
+     * @param carId car ID
+     * @return number of dropped entries
+     */
+    public int invalidateCar(int carId) {
+        synchronized (lock) {
+            int before = entries.size();
+            entries.keySet().removeIf(k -> (int) (k >>> 32) == carId);
+            return before - entries.size();
+        }
+    }
+
+    /**
+     * Drops every cached quote (e.g. after a fee rule changes). Counters are kept.
+     */
+    public void invalidateAll() {
+        synchronized (lock) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return current counters and size
+     */
+    public Stats stats() {
+        synchronized (lock) {
+            return new Stats(hits, misses, evictions, entries.size(), capacity);
+        }
+    }
+
+    /**
+     * @return true if the car is the inventory's current car for its ID
+     */
+    private boolean isCurrent(Car car) {
+        return inventory.findCarById(car.getId()) == car;
+    }
+
+    /**
+     * Packs car ID and day count into one map key.
+     */
+    private static Long key(int carId, int days) {
+        return ((long) carId << 32) | (days & 0xFFFFFFFFL);
+    }
+}
@@ -14,6 +14,7 @@ import java.time.LocalDateTime;
  *   <li><b>CREATED:</b> Rental object is created</li>
  *   <li><b>ACTIVE:</b> Car is rented and in use</li>
  *   <li><b>COMPLETED:</b> Car is returned and rental is closed</li>
+ *   <li><b>CANCELLED:</b> Rental was rolled back and the car released</li>
  * </ul>
  * </p>
  *
@@ -43,13 +44,13 @@ public class Rental {
     private final double totalFee;
 
     // Current lifecycle status of the rental
-    private RentalStatus status;
+    private volatile RentalStatus status;
 
     // Timestamp when the rental was created
     private final LocalDateTime createdAt;
 
     // Timestamp when the rental was closed (null until completed)
-    private LocalDateTime closedAt;
+    private volatile LocalDateTime closedAt;
 
     /**
      * Creates a new rental transaction.
@@ -67,6 +68,19 @@ public class Rental {
      * @throws CarNotAvailableException if the car is not available
      */
     public Rental(int rentalId, Car car, Customer customer, int days) {
+        this(rentalId, car, customer, days, LocalDateTime.now());
+    }
+
+    /**
+     * Re-creates a rental with its original creation time (journal replay).
+     *
+     * @param rentalId  unique rental identifier
+     * @param car       rented car
+     * @param customer  renting customer
+     * @param days      number of rental days
+     * @param createdAt when the rental was originally created
+     */
+    Rental(int rentalId, Car car, Customer customer, int days, LocalDateTime createdAt) {
         // Input validation
         if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
         if (customer == null) throw new IllegalArgumentException("Müşteri null olamaz.");
@@ -78,7 +92,7 @@ public class Rental {
         this.days = days;
 
         // Set creation timestamp
-        this.createdAt = LocalDateTime.now();
+        this.createdAt = createdAt;
         this.closedAt = null;
 
         // Initial rental state
@@ -91,21 +105,54 @@ public class Rental {
         this.totalFee = car.calculateRentalFee(days);
     }
 
+    /**
+     * Re-creates a completed or cancelled rental (snapshot load) without renting and returning its car.
+     */
+    private Rental(int rentalId, Car car, Customer customer, int days,
+                   LocalDateTime createdAt, LocalDateTime closedAt, RentalStatus status) {
+        if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
+        if (customer == null) throw new IllegalArgumentException("Müşteri null olamaz.");
+        if (days <= 0) throw new InvalidRentalPeriodException("Kiralama günü 1 veya daha fazla olmalı.");
+
+        this.rentalId = rentalId;
+        this.car = car;
+        this.customer = customer;
+        this.days = days;
+        this.createdAt = createdAt;
+        this.closedAt = closedAt;
+        this.status = status;
+        this.totalFee = car.calculateRentalFee(days);
+    }
+
+    /**
+     * Re-creates a rental from a snapshot.
+     *
+     * <p>An open rental rents its car again; a completed one leaves the car
+     * untouched, since it was returned long ago.</p>
+     *
+     * @param closedAt closing time, or null if the rental is still active
+     * @param status   ACTIVE, COMPLETED or CANCELLED
+     * @return the restored rental
+     */
+    static Rental restore(int rentalId, Car car, Customer customer, int days,
+                          LocalDateTime createdAt, LocalDateTime closedAt, RentalStatus status) {
+        return (status == RentalStatus.ACTIVE)
+                ? new Rental(rentalId, car, customer, days, createdAt)
+                : new Rental(rentalId, car, customer, days, createdAt, closedAt, status);
+    }
+
     /**
      * Starts the rental by renting the car and updating the status.
      *
      * <p>This method ensures that a car cannot be rented if it is already
-     * in use by another rental.</p>
+     * in use by another rental. {@link Car#rent()} checks and changes the
+     * availability in one atomic step, so there is no separate availability
+     * check here that another booking could slip past.</p>
      *
      * @throws CarNotAvailableException if the car is not available
      */
     private void startRental() {
-        // Check availability before renting
-        if (!car.isAvailable()) {
-            throw new CarNotAvailableException("Araç müsait değil.");
-        }
-
-        // Change car state to rented
+        // Atomically change car state to rented (throws if it is already rented)
         car.rent();
 
         // Update rental lifecycle state
@@ -116,22 +163,76 @@ public class Rental {
      * Closes the rental transaction.
      *
      * <p>This method returns the car, updates the rental status,
-     * and records the closing timestamp.</p>
+     * and records the closing timestamp. It is synchronized so that two
+     * concurrent returns of the same rental cannot both pass the status check.</p>
      *
-     * @throws IllegalStateException if the rental is already completed
+     * @throws RentalAlreadyClosedException if the rental is already completed or cancelled
      */
     public void closeRental() {
+        closeRental(LocalDateTime.now());
+    }
+
+    /**
+     * Closes the rental with a given closing time (journal replay).
+     *
+     * @param closedAt when the rental was closed
+     * @throws RentalAlreadyClosedException if the rental is already completed or cancelled
+     */
+    void closeRental(LocalDateTime closedAt) {
+        closeRental(closedAt, () -> {});
+    }
+
+    /**
+     * Closes the rental, running a step after the status check and before the car is returned.
+     *
+     * @param closedAt      when the rental was closed
+     * @param beforeRelease e.g. journaling the return, so that a new rental of the car is always
+     *                      journaled after it; if it throws, the rental stays active
+     * @throws RentalAlreadyClosedException if the rental is already completed or cancelled
+     */
+    synchronized void closeRental(LocalDateTime closedAt, Runnable beforeRelease) {
         // Prevent closing an already completed rental
         if (status == RentalStatus.COMPLETED) {
-            throw new IllegalStateException("Bu kiralama zaten tamamlanmış.");
+            throw new RentalAlreadyClosedException("Bu kiralama zaten tamamlanmış.");
         }
+        if (status == RentalStatus.CANCELLED) {
+            throw new RentalAlreadyClosedException("Bu kiralama iptal edilmiş.");
+        }
+        beforeRelease.run();
 
         // Return the rented car
         car.returnCar();
 
         // Update lifecycle state and closing time
         this.status = RentalStatus.COMPLETED;
-        this.closedAt = LocalDateTime.now();
+        this.closedAt = closedAt;
+    }
+
+    /**
+     * Rolls back an active rental that has not been committed (e.g. part of a failed batch).
+     *
+     * <p>The car is released and the rental becomes {@link RentalStatus#CANCELLED}.</p>
+     *
+     * @throws IllegalStateException if the rental is not active
+     */
+    void cancel() {
+        cancel(LocalDateTime.now());
+    }
+
+    /**
+     * Cancels an active rental at a given time (failed payment, or its journal replay).
+     *
+     * @param cancelledAt when the rental was cancelled
+     * @throws IllegalStateException if the rental is not active
+     */
+    synchronized void cancel(LocalDateTime cancelledAt) {
+        if (status != RentalStatus.ACTIVE) {
+            throw new IllegalStateException("Sadece aktif kiralama iptal edilebilir.");
+        }
+
+        car.returnCar();
+        this.status = RentalStatus.CANCELLED;
+        this.closedAt = cancelledAt;
     }
 
     /**
@@ -0,0 +1,264 @@
+package com.carrental;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Stores all rentals of the system and indexes them for constant-time lookup.
+ *
+ * <p>Rentals are never deleted, so the number of records grows with every
+ * booking. Returns and receipts must therefore not scan the whole history.
+ * The registry keeps:
+ * <ul>
+ *   <li>rentals by rental ID,</li>
+ *   <li>the active rental of each car, by car ID,</li>
+ *   <li>an append-only log of all rentals in creation order (for listings).</li>
+ * </ul>
+ * Both indexes are {@link IntObjectMap}s, so lookups are constant time and
+ * IDs are not boxed.</p>
+ *
+ * <p>Thread safety: registering and closing rentals are serialised by an
+ * internal lock. Lookups and listings never take it; a listing sees every
+ * rental that was registered before it started.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Indexes are private and always updated together.</li>
+ *   <li><b>Single Responsibility:</b> Rental bookkeeping is separated from the console UI.</li>
+ * </ul>
+ * </p>
+ */
+public class RentalRegistry {
+
+    // Rental ID -> rental
+    private final IntObjectMap<Rental> byId = new IntObjectMap<>();
+
+    // Car ID -> the car's active rental (only ACTIVE rentals are kept)
+    private final IntObjectMap<Rental> activeByCarId = new IntObjectMap<>();
+
+    // All rentals in creation order; the array is replaced when it grows
+    private volatile Rental[] log = new Rental[16];
+
+    // Number of rentals in the log
+    private volatile int size;
+
+    /** Serialises register and close. Readers never take it. */
+    private final Object writeLock = new Object();
+
+    /**
+     * Registers a new rental.
+     *
+     * @param rental the rental to register
+     * @throws IllegalArgumentException if rental is null or its ID is already registered
+     */
+    public void register(Rental rental) {
+        if (rental == null) throw new IllegalArgumentException("Kiralama null olamaz.");
+
+        synchronized (writeLock) {
+            if (byId.containsKey(rental.getRentalId())) {
+                throw new IllegalArgumentException("Bu kiralama ID zaten kullanılıyor: " + rental.getRentalId());
+            }
+            byId.put(rental.getRentalId(), rental);
+            if (rental.getStatus() == RentalStatus.ACTIVE) {
+                activeByCarId.put(rental.getCar().getId(), rental);
+            }
+            append(rental);
+        }
+    }
+
+    /**
+     * Registers several rentals under one lock acquisition (batch booking).
+     *
+     * <p>All IDs are checked before anything is registered, so either every
+     * rental is registered or none is.</p>
+     *
+     * @param batch rentals to register
+     * @throws IllegalArgumentException if a rental is null or an ID is already registered or repeated
+     */
+    public void registerAll(List<Rental> batch) {
+        if (batch == null || batch.isEmpty()) return;
+
+        synchronized (writeLock) {
+            IntObjectMap<Rental> batchIds = new IntObjectMap<>(batch.size());
+            for (Rental rental : batch) {
+                if (rental == null) throw new IllegalArgumentException("Kiralama null olamaz.");
+                if (byId.containsKey(rental.getRentalId()) || batchIds.put(rental.getRentalId(), rental) != null) {
+                    throw new IllegalArgumentException("Bu kiralama ID zaten kullanılıyor: " + rental.getRentalId());
+                }
+            }
+
+            for (Rental rental : batch) {
+                byId.put(rental.getRentalId(), rental);
+                if (rental.getStatus() == RentalStatus.ACTIVE) {
+                    activeByCarId.put(rental.getCar().getId(), rental);
+                }
+                append(rental);
+            }
+        }
+    }
+
+    /**
+     * Closes a rental (returns the car) and drops it from the active index.
+     *
+     * @param rentalId rental ID
+     * @return the closed rental, or null if no rental has this ID
+     * @throws RentalAlreadyClosedException if the rental is already completed or cancelled
+     */
+    public Rental closeRental(int rentalId) {
+        return closeRental(rentalId, LocalDateTime.now());
+    }
+
+    /**
+     * Closes a rental with a given closing time (journal replay).
+     *
+     * @param rentalId rental ID
+     * @param closedAt when the rental was closed
+     * @return the closed rental, or null if no rental has this ID
+     */
+    Rental closeRental(int rentalId, LocalDateTime closedAt) {
+        return closeRental(rentalId, closedAt, rental -> {});
+    }
+
+    /**
+     * Closes a rental, running a step before its car can be rented again.
+     *
+     * @param rentalId      rental ID
+     * @param closedAt      when the rental was closed
+     * @param beforeRelease called with the rental once it is known to be closable (e.g. to journal
+     *                      the return); if it throws, the rental stays active
+     * @return the closed rental, or null if no rental has this ID
+     * @throws RentalAlreadyClosedException if the rental is already completed or cancelled
+     */
+    Rental closeRental(int rentalId, LocalDateTime closedAt, Consumer<Rental> beforeRelease) {
+        synchronized (writeLock) {
+            Rental rental = byId.get(rentalId);
+            if (rental == null) return null;
+
+            // Car is returned and status becomes COMPLETED (throws if already closed)
+            rental.closeRental(closedAt, () -> beforeRelease.accept(rental));
+
+            activeByCarId.remove(rental.getCar().getId());
+            return rental;
+        }
+    }
+
+    /**
+     * Cancels a rental if it is still active and drops it from the active index (journal replay).
+     *
+     * @param rentalId    rental ID
+     * @param cancelledAt when the rental was cancelled
+     * @return the cancelled rental, or null if no active rental has this ID (e.g. it was already returned)
+     */
+    Rental cancelRental(int rentalId, LocalDateTime cancelledAt) {
+        synchronized (writeLock) {
+            Rental rental = byId.get(rentalId);
+            if (rental == null || rental.getStatus() != RentalStatus.ACTIVE) return null;
+
+            rental.cancel(cancelledAt);
+            activeByCarId.remove(rental.getCar().getId());
+            return rental;
+        }
+    }
+
+    /**
+     * Cancels those of the given rentals that are still active, running a step before any car is released.
+     *
+     * <p>Every status change of a registered rental takes the internal lock,
+     * so none of the rentals can be returned between the check and the
+     * cancellation.</p>
+     *
+     * @param rentalIds     rental IDs (e.g. those of a declined payment)
+     * @param cancelledAt   when the rentals were cancelled
+     * @param beforeRelease called with the rentals about to be cancelled (e.g. to journal them);
+     *                      if it throws, nothing is cancelled
+     * @return the cancelled rentals (rentals already returned are left as they are)
+     */
+    List<Rental> cancelActive(int[] rentalIds, LocalDateTime cancelledAt, Consumer<List<Rental>> beforeRelease) {
+        synchronized (writeLock) {
+            List<Rental> active = new ArrayList<>(rentalIds.length);
+            for (int rentalId : rentalIds) {
+                Rental rental = byId.get(rentalId);
+                if (rental != null && rental.getStatus() == RentalStatus.ACTIVE) active.add(rental);
+            }
+            beforeRelease.accept(active);
+
+            for (Rental rental : active) {
+                rental.cancel(cancelledAt);
+                activeByCarId.remove(rental.getCar().getId());
+            }
+            return active;
+        }
+    }
+
+    /**
+     * @param rentalId rental ID
+     * @return the rental, or null if not found
+     */
+    public Rental findById(int rentalId) {
+        return byId.get(rentalId);
+    }
+
+    /**
+     * Finds the rental a car is currently out on.
+     *
+     * @param carId car ID
+     * @return the car's active rental, or null if the car is not rented through this registry
+     */
+    public Rental findActiveByCarId(int carId) {
+        Rental rental = activeByCarId.get(carId);
+
+        // A rental closed directly (not through this registry) is no longer active
+        return (rental != null && rental.getStatus() == RentalStatus.ACTIVE) ? rental : null;
+    }
+
+    /**
+     * @return number of registered rentals (active and completed)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no rental has been registered
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of rentals that are currently active
+     */
+    public int activeCount() {
+        return activeByCarId.size();
+    }
+
+    /**
+     * Calls {@code action} for every rental in creation order.
+     *
+     * @param action callback receiving each rental
+     */
+    public void forEach(Consumer<? super Rental> action) {
+        // Read the size first: the log it was published with holds at least that many rentals
+        int count = size;
+        Rental[] current = log;
+        for (int i = 0; i < count; i++) {
+            action.accept(current[i]);
+        }
+    }
+
+    /**
+     * Appends a rental to the log. Caller must hold {@link #writeLock}.
+     */
+    private void append(Rental rental) {
+        Rental[] current = log;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = rental;
+        log = current;
+        size = size + 1;
+    }
+}
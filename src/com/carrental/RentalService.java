@@ -0,0 +1,544 @@
+package com.carrental;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Books and returns cars, keeping every component of the system in step.
+ *
+ * <p>A booking touches the inventory (car availability), the
+ * {@link ReservationEngine} (booked window), the {@link RentalRegistry},
+ * the {@link CapacityCalendar} and the {@link PaymentRegistry}. This service
+ * performs those steps in one place, for one car or for a whole batch.</p>
+ *
+ * <p><b>Batch bookings</b> (e.g. a corporate customer taking 20–50 cars)
+ * are all-or-nothing:
+ * <ol>
+ *   <li>every car ID is resolved and checked for duplicates before anything changes,</li>
+ *   <li>each car's window is reserved and each car is rented (atomic per car);
+ *       if any car is not available, everything done so far is rolled back
+ *       and no rental or payment is recorded,</li>
+ *   <li>the rentals are registered and added to the calendar under one lock
+ *       acquisition each, with a block of consecutive rental IDs,</li>
+ *   <li>one consolidated {@link Payment} covers all rentals of the batch.</li>
+ * </ol>
+ * </p>
+ *
+ * <p><b>Durability:</b> when a {@link Journal} is given, every car
+ * addition/removal, booking, return and refund is journaled, and the method returns
+ * only after its record is on disk. Concurrent callers share fsyncs through
+ * the journal's group commit.</p>
+ *
+ * <p><b>Snapshots:</b> {@link #checkpoint()} writes a {@link Snapshot} and
+ * starts a new, empty journal generation, so the next startup loads the
+ * snapshot and replays only a short tail. With {@link #enableSnapshots}
+ * this happens automatically whenever the journal has grown by the given
+ * number of records.</p>
+ *
+ * <p><b>Payments:</b> by default a booking's payment is paid on the spot.
+ * After {@link #usePaymentGateway} the payment starts as
+ * {@link PaymentStatus#PENDING} and is charged through a
+ * {@link PaymentPipeline} once the booking is durable, so renting no longer
+ * waits for the gateway. An approved payment becomes PAID; a declined one
+ * becomes FAILED and its rentals that are still active are cancelled (cars
+ * and booked windows are freed). {@link Booking#settlement()} completes when
+ * the gateway has answered.</p>
+ *
+ * <p>Thread safety: the service can be shared between threads; each
+ * component it uses is thread-safe and IDs come from atomic counters.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Facade:</b> One entry point for the multi-step rent and return workflows.</li>
+ *   <li><b>Composition:</b> The service is built from the inventory and registries.</li>
+ * </ul>
+ * </p>
+ */
+public class RentalService {
+
+    /**
+     * Result of a booking: the created rentals and the payment that covers them.
+     *
+     * @param rentals    rentals in the order of the requested car IDs
+     * @param payment    the single payment for all rentals (PENDING while a gateway charges it)
+     * @param settlement completes with the payment once it is PAID or FAILED
+     */
+    public record Booking(List<Rental> rentals, Payment payment, CompletableFuture<Payment> settlement) {}
+
+    private final CarInventory inventory;
+    private final RentalRegistry rentals;
+    private final PaymentRegistry payments;
+    private final ReservationEngine reservations;
+    private final CapacityCalendar capacity;
+
+    // Write-ahead journal (null = in-memory only)
+    private final Journal journal;
+
+    /**
+     * Bookings, returns and payment answers share it; car additions, removals
+     * and checkpoints take it exclusively, so they are never journaled in the
+     * middle of a booking. Shared holders do not order each other: a change
+     * that frees a car is journaled before the car is released, so any
+     * booking of that car is journaled after it.
+     */
+    private final ReentrantReadWriteLock order = new ReentrantReadWriteLock();
+
+    // Snapshot file and journal size that triggers a checkpoint (null / 0 = manual only)
+    private volatile Path snapshotFile;
+    private volatile long snapshotEveryRecords;
+
+    // True while one thread writes a checkpoint
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+
+    // Charges payments asynchronously (null = payments are paid on the spot)
+    private volatile PaymentPipeline pipeline;
+
+    // ID generators for rentals and payments
+    private final AtomicInteger nextRentalId;
+    private final AtomicInteger nextPaymentId;
+
+    /**
+     * Creates an in-memory service over the given components.
+     *
+     * @param inventory    car inventory
+     * @param rentals      rental registry
+     * @param payments     payment registry
+     * @param reservations reservation engine
+     * @param capacity     capacity calendar
+     */
+    public RentalService(CarInventory inventory, RentalRegistry rentals, PaymentRegistry payments,
+                         ReservationEngine reservations, CapacityCalendar capacity) {
+        this(inventory, rentals, payments, reservations, capacity, null);
+    }
+
+    /**
+     * Creates a service that journals every change.
+     *
+     * <p>The registries may already hold replayed rentals and payments; new
+     * IDs continue after the highest existing ones.</p>
+     *
+     * @param inventory    car inventory
+     * @param rentals      rental registry
+     * @param payments     payment registry
+     * @param reservations reservation engine
+     * @param capacity     capacity calendar
+     * @param journal      journal to append to (null = in-memory only)
+     */
+    public RentalService(CarInventory inventory, RentalRegistry rentals, PaymentRegistry payments,
+                         ReservationEngine reservations, CapacityCalendar capacity, Journal journal) {
+        if (inventory == null || rentals == null || payments == null || reservations == null || capacity == null) {
+            throw new IllegalArgumentException("Servis bileşenleri null olamaz.");
+        }
+        this.inventory = inventory;
+        this.rentals = rentals;
+        this.payments = payments;
+        this.reservations = reservations;
+        this.capacity = capacity;
+        this.journal = journal;
+
+        int[] maxIds = new int[2];
+        rentals.forEach(r -> maxIds[0] = Math.max(maxIds[0], r.getRentalId()));
+        payments.forEach(p -> maxIds[1] = Math.max(maxIds[1], p.getPaymentId()));
+        this.nextRentalId = new AtomicInteger(maxIds[0] + 1);
+        this.nextPaymentId = new AtomicInteger(maxIds[1] + 1);
+    }
+
+    /**
+     * Adds a car to the inventory.
+     *
+     * @param car the car to add
+     * @throws IllegalArgumentException if the inventory rejects the car
+     */
+    public void addCar(Car car) {
+        long lsn = 0;
+        order.writeLock().lock();
+        try {
+            if (journal != null) Journal.checkRecordable(car);
+            inventory.addCar(car);
+            if (journal != null) lsn = journal.carAdded(car);
+        } finally {
+            order.writeLock().unlock();
+        }
+        if (lsn > 0) committed(lsn);
+    }
+
+    /**
+     * Adds several cars to the inventory with one journal commit.
+     *
+     * @param cars cars to add
+     * @throws IllegalArgumentException if the inventory rejects a car
+     */
+    public void addCars(List<Car> cars) {
+        long lsn = 0;
+        order.writeLock().lock();
+        try {
+            if (journal != null && cars != null) {
+                for (Car car : cars) {
+                    if (car != null) Journal.checkRecordable(car);
+                }
+            }
+            inventory.addCars(cars);
+            if (journal != null && cars != null) {
+                for (Car car : cars) {
+                    if (car != null) lsn = journal.carAdded(car);
+                }
+            }
+        } finally {
+            order.writeLock().unlock();
+        }
+        if (lsn > 0) committed(lsn);
+    }
+
+    /**
+     * Removes a car from the inventory.
+     *
+     * @param carId car ID
+     * @return true if the car was found and removed
+     */
+    public boolean removeCar(int carId) {
+        long lsn = 0;
+        order.writeLock().lock();
+        try {
+            if (!inventory.removeCar(carId)) return false;
+            if (journal != null) lsn = journal.carRemoved(carId);
+        } finally {
+            order.writeLock().unlock();
+        }
+        if (lsn > 0) committed(lsn);
+        return true;
+    }
+
+    /**
+     * Turns on automatic snapshots.
+     *
+     * @param file         snapshot file
+     * @param everyRecords journal records after which a checkpoint is taken (0 = only on {@link #checkpoint()})
+     * @throws IllegalStateException if the service has no journal
+     */
+    public void enableSnapshots(Path file, long everyRecords) {
+        if (journal == null) throw new IllegalStateException("Anlık görüntü için günlük gerekli.");
+        if (file == null) throw new IllegalArgumentException("Dosya null olamaz.");
+        if (everyRecords < 0) throw new IllegalArgumentException("Kayıt sayısı negatif olamaz.");
+        this.snapshotFile = file;
+        this.snapshotEveryRecords = everyRecords;
+    }
+
+    /**
+     * Writes a snapshot of the current state and empties the journal.
+     *
+     * <p>Bookings, returns and car changes wait while the snapshot is written.</p>
+     *
+     * @throws IllegalStateException if snapshots are not enabled
+     * @throws java.io.UncheckedIOException if the snapshot or journal cannot be written
+     */
+    public void checkpoint() {
+        Path file = snapshotFile;
+        if (file == null) throw new IllegalStateException("Anlık görüntü etkin değil.");
+
+        order.writeLock().lock();
+        try {
+            // Every applied change is journaled by now; the snapshot covers this generation
+            journal.sync();
+            Snapshot.write(file, journal.generation(), inventory, rentals, payments);
+            journal.rollOver();
+        } finally {
+            order.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for a record to be durable, then takes a checkpoint if the journal has grown enough.
+     */
+    private void committed(long lsn) {
+        journal.commit(lsn);
+
+        long every = snapshotEveryRecords;
+        if (every > 0 && journal.recordsInGeneration() >= every && checkpointing.compareAndSet(false, true)) {
+            try {
+                checkpoint();
+            } finally {
+                checkpointing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Rents one car.
+     *
+     * @param carId    car ID
+     * @param customer renting customer
+     * @param days     number of rental days
+     * @param method   payment method
+     * @return the rental and its payment
+     * @throws IllegalArgumentException if the car does not exist
+     * @throws CarNotAvailableException if the car is rented or booked in the window
+     */
+    public Booking rent(int carId, Customer customer, int days, PaymentMethod method) {
+        return rentBatch(new int[]{carId}, customer, days, method);
+    }
+
+    /**
+     * Rents several cars for one customer, all or nothing.
+     *
+     * @param carIds   IDs of the cars to rent (no duplicates)
+     * @param customer renting customer
+     * @param days     number of rental days (same for every car)
+     * @param method   payment method of the consolidated payment
+     * @return the rentals and the single payment covering them
+     * @throws IllegalArgumentException if the list is empty, has duplicates or names an unknown car
+     * @throws InvalidRentalPeriodException if days is less than 1
+     * @throws CarNotAvailableException if any car is rented or booked in the window (nothing is booked then)
+     */
+    public Booking rentBatch(int[] carIds, Customer customer, int days, PaymentMethod method) {
+        if (carIds == null || carIds.length == 0) throw new IllegalArgumentException("Araç listesi boş olamaz.");
+        if (customer == null) throw new IllegalArgumentException("Müşteri null olamaz.");
+        if (method == null) throw new IllegalArgumentException("Ödeme yöntemi null olamaz.");
+        if (days <= 0) throw new InvalidRentalPeriodException("Kiralama günü 1 veya daha fazla olmalı.");
+
+        long lsn = 0;
+        List<Rental> created;
+        Payment payment;
+
+        // Bookings may run in parallel; car additions and removals wait for them
+        order.readLock().lock();
+        try {
+            // 1) Resolve every car before changing anything
+            Car[] cars = new Car[carIds.length];
+            IntObjectMap<Car> seen = new IntObjectMap<>(carIds.length);
+            for (int i = 0; i < carIds.length; i++) {
+                Car car = inventory.findCarById(carIds[i]);
+                if (car == null) throw new IllegalArgumentException("Araç bulunamadı: " + carIds[i]);
+                if (seen.put(carIds[i], car) != null) {
+                    throw new IllegalArgumentException("Listede tekrar eden araç ID: " + carIds[i]);
+                }
+                cars[i] = car;
+            }
+
+            LocalDate today = LocalDate.now();
+            LocalDate until = today.plusDays(days);
+
+            // 2) Reserve and rent every car; undo everything on the first failure
+            int firstRentalId = nextRentalId.getAndAdd(cars.length);
+            created = new ArrayList<>(cars.length);
+            int reserved = 0;
+            try {
+                for (Car car : cars) {
+                    if (!reservations.tryReserve(car.getId(), today, until)) {
+                        throw new CarNotAvailableException("Araç bu tarihlerde dolu: " + car.getId());
+                    }
+                    reserved++;
+                }
+                for (int i = 0; i < cars.length; i++) {
+                    created.add(new Rental(firstRentalId + i, cars[i], customer, days));
+                }
+
+                int[] rentalIds = new int[created.size()];
+                double total = 0;
+                for (int i = 0; i < rentalIds.length; i++) {
+                    rentalIds[i] = created.get(i).getRentalId();
+                    total += created.get(i).getTotalFee();
+                }
+                PaymentStatus status = (pipeline == null) ? PaymentStatus.PAID : PaymentStatus.PENDING;
+                payment = new Payment(nextPaymentId.getAndIncrement(), rentalIds, total, method,
+                        LocalDateTime.now(), status);
+
+                // Journal before the booking becomes visible, so replay sees the same order
+                if (journal != null) lsn = journal.bookingRecorded(created, payment);
+            } catch (RuntimeException e) {
+                for (Rental r : created) r.cancel();
+                for (int i = 0; i < reserved; i++) reservations.cancel(cars[i].getId(), today);
+                throw e;
+            }
+
+            // 3) Commit: register all rentals and take one payment for them
+            rentals.registerAll(created);
+            capacity.onRentalsCreated(created);
+            payments.register(payment);
+        } finally {
+            order.readLock().unlock();
+        }
+
+        // The booking is reported only once it is durable
+        if (lsn > 0) committed(lsn);
+
+        // The gateway is only asked once the booking survives a crash
+        CompletableFuture<Payment> settlement = (payment.getStatus() == PaymentStatus.PENDING)
+                ? charge(payment, customer)
+                : CompletableFuture.completedFuture(payment);
+        return new Booking(List.copyOf(created), payment, settlement);
+    }
+
+    /**
+     * Closes a rental: returns the car, trims its booked window and updates the calendar.
+     *
+     * @param rentalId rental ID
+     * @return the closed rental, or null if no rental has this ID
+     * @throws RentalAlreadyClosedException if the rental is already completed or cancelled
+     */
+    public Rental returnRental(int rentalId) {
+        long[] lsn = new long[1]; // set while the rental is closed
+        Rental rental;
+        LocalDateTime now = LocalDateTime.now();
+
+        order.readLock().lock();
+        try {
+            // Journal before the car is free, so a booking of it cannot be journaled first
+            rental = rentals.closeRental(rentalId, now, closing -> {
+                if (journal != null) lsn[0] = journal.rentalClosed(rentalId, now);
+            });
+            if (rental == null) return null;
+
+            // Free the rest of the booked window if the car came back early
+            reservations.endEarly(rental.getCar().getId(), rental.getCreatedAt().toLocalDate(), LocalDate.now());
+            capacity.onRentalClosed(rental);
+        } finally {
+            order.readLock().unlock();
+        }
+
+        if (lsn[0] > 0) committed(lsn[0]);
+        return rental;
+    }
+
+    /**
+     * Switches payments to an asynchronous gateway.
+     *
+     * <p>Payments that are still pending (e.g. recovered from the journal
+     * after a crash) are submitted again right away.</p>
+     *
+     * @param gateway        provider that charges the payments
+     * @param maxBatch       most payments per gateway call
+     * @param maxDelayMillis longest time a payment waits for its batch to fill
+     * @return the pipeline; close it on shutdown to wait for outstanding payments
+     * @throws IllegalStateException if a gateway is already in use
+     */
+    public synchronized PaymentPipeline usePaymentGateway(PaymentGateway gateway, int maxBatch, long maxDelayMillis) {
+        if (pipeline != null) throw new IllegalStateException("Ödeme sağlayıcısı zaten tanımlı.");
+
+        // No booking runs meanwhile: each pending payment is either found here or charged by its booking
+        List<Payment> pending = new ArrayList<>();
+        order.writeLock().lock();
+        try {
+            pipeline = new PaymentPipeline(gateway, maxBatch, maxDelayMillis, 4, 10_000, this::paymentsAnswered);
+            payments.forEach(p -> {
+                if (p.getStatus() == PaymentStatus.PENDING) pending.add(p);
+            });
+        } finally {
+            order.writeLock().unlock();
+        }
+        for (Payment p : pending) {
+            charge(p, rentals.findById(p.getRentalId()).getCustomer());
+        }
+        return pipeline;
+    }
+
+    /**
+     * Queues a pending payment at the gateway.
+     */
+    private CompletableFuture<Payment> charge(Payment payment, Customer customer) {
+        PaymentGateway.Request request = new PaymentGateway.Request(
+                payment.getPaymentId(), customer.getId(), payment.getAmount(), payment.getMethod());
+        return pipeline.submit(request).thenApply(result -> payment);
+    }
+
+    /**
+     * Applies the gateway's answers for one batch (runs on a pipeline worker).
+     */
+    private void paymentsAnswered(List<PaymentGateway.Request> requests, List<PaymentGateway.Result> results) {
+        long lsn = 0;
+
+        order.readLock().lock();
+        try {
+            for (PaymentGateway.Result result : results) {
+                // Already answered by an earlier attempt at this batch
+                if (payments.findById(result.paymentId()).getStatus() != PaymentStatus.PENDING) continue;
+
+                if (result.approved()) {
+                    // Journal before the payment shows as paid, so a refund is always journaled after it
+                    if (journal != null) lsn = journal.paymentSettled(result.paymentId());
+                    payments.settle(result.paymentId());
+                } else {
+                    long failed = compensate(result.paymentId());
+                    if (failed > 0) lsn = failed;
+                }
+            }
+        } finally {
+            order.readLock().unlock();
+        }
+
+        // One commit covers the whole batch
+        if (lsn > 0) committed(lsn);
+    }
+
+    /**
+     * Cancels the still-active rentals of a declined payment and marks the payment failed.
+     *
+     * @return sequence number of the journal record (0 without a journal)
+     */
+    private long compensate(int paymentId) {
+        Payment payment = payments.findById(paymentId);
+        LocalDateTime now = LocalDateTime.now();
+        long[] lsn = new long[1]; // set while the rentals are cancelled
+
+        // A rental that was already returned stays completed. The record names the
+        // cancelled rentals, so replay cancels exactly the same ones, and it is journaled
+        // before their cars and windows are released, so a new booking of them comes after it
+        List<Rental> cancelled = rentals.cancelActive(payment.getRentalIds(), now, active -> {
+            if (journal != null) lsn[0] = journal.paymentFailed(paymentId, active, now);
+        });
+        for (Rental rental : cancelled) {
+            reservations.endEarly(rental.getCar().getId(), rental.getCreatedAt().toLocalDate(), now.toLocalDate());
+            capacity.onRentalClosed(rental);
+        }
+
+        payments.fail(paymentId);
+        return lsn[0];
+    }
+
+    /**
+     * Refunds a payment after its rentals have ended.
+     *
+     * <p>The refund goes through {@link PaymentRegistry#refund(int)}, so the
+     * payment ledger totals move from paid to refunded in the same step.</p>
+     *
+     * @param paymentId payment ID
+     * @return the refunded payment
+     * @throws IllegalArgumentException if no payment has the ID
+     * @throws IllegalStateException    if a rental of the payment is still active
+     *                                  or the payment is already refunded
+     */
+    public Payment refund(int paymentId) {
+        long[] lsn = new long[1]; // set while the payment is refunded
+        Payment payment;
+
+        order.readLock().lock();
+        try {
+            payment = payments.findById(paymentId);
+            if (payment == null) throw new IllegalArgumentException("Ödeme bulunamadı: " + paymentId);
+
+            // A car that is still out has to come back before its money is returned
+            for (int rentalId : payment.getRentalIds()) {
+                Rental rental = rentals.findById(rentalId);
+                if (rental != null && rental.getStatus() == RentalStatus.ACTIVE) {
+                    throw new IllegalStateException("Kiralama hâlâ aktif, önce araç iade edilmeli: " + rentalId);
+                }
+            }
+
+            // Journal before the refund shows anywhere, so a failed append changes nothing
+            payments.refund(paymentId, () -> {
+                if (journal != null) lsn[0] = journal.paymentRefunded(paymentId);
+            });
+        } finally {
+            order.readLock().unlock();
+        }
+
+        if (lsn[0] > 0) committed(lsn[0]);
+        return payment;
+    }
+}
@@ -11,6 +11,7 @@ package com.carrental;
  *   <li><b>CREATED:</b> Rental is created but not yet active</li>
  *   <li><b>ACTIVE:</b> Car is currently rented and in use</li>
  *   <li><b>COMPLETED:</b> Rental is finished and the car is returned</li>
+ *   <li><b>CANCELLED:</b> Rental was rolled back before it took effect</li>
  * </ul>
  * </p>
  *
@@ -31,5 +32,8 @@ public enum RentalStatus {
     ACTIVE,
 
     // Rental has been completed and the car has been returned
-    COMPLETED
+    COMPLETED,
+
+    // Rental was rolled back (e.g. another car of the same batch was not available)
+    CANCELLED
 }
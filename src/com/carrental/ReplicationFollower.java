@@ -0,0 +1,338 @@
+package com.carrental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Read-only copy of a primary's cars, rentals and payments, kept current from a {@link ReplicationServer}.
+ *
+ * <p>The follower owns its own inventory and registries and applies the
+ * primary's journal records to them with the same {@link JournalReplay}
+ * that rebuilds the primary at startup, so both end up in the same state.
+ * One thread receives and applies; searches, receipts and payment listings
+ * can be served from the stores meanwhile (e.g. through
+ * {@link HttpApi#readOnly}), which takes read traffic off the primary.</p>
+ *
+ * <p>When started empty, the follower first loads the primary's snapshot
+ * and then the journal tail. If the connection breaks, it reconnects and
+ * continues from the last record it applied. A follower that was away while
+ * the primary rolled its journal over is refused and stops; it has to be
+ * started again empty.</p>
+ *
+ * <p>Run a follower process with
+ * {@code java -cp bin com.carrental.ReplicationFollower host:port [httpPort]};
+ * {@code -Dcarrental.snapshot=FILE} sets where a received snapshot is
+ * kept.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Composition:</b> Built from the same inventory and registries as the primary.</li>
+ *   <li><b>Reuse:</b> Applies records through the journal's {@link Journal.Visitor} instead of its own decoder.</li>
+ * </ul>
+ * </p>
+ */
+public final class ReplicationFollower implements AutoCloseable {
+
+    /**
+     * Replication state of the follower.
+     *
+     * @param connected          true while connected to the primary
+     * @param generation         journal generation applied up to
+     * @param applied            records of that generation applied
+     * @param lagRecords         records the primary had on disk at the last contact and this follower lacks (-1 if unknown)
+     * @param millisSinceContact time since the last message from the primary
+     * @param error              why the follower stopped, or null while it runs
+     */
+    public record Status(boolean connected, long generation, long applied, long lagRecords,
+                         long millisSinceContact, String error) {
+
+        @Override
+        public String toString() {
+            return String.format("%s | nesil %d, kayıt %d | gecikme: %s kayıt | son temas: %d ms önce%s",
+                    connected ? "Bağlı" : "Bağlı değil", generation, applied,
+                    lagRecords < 0 ? "?" : String.valueOf(lagRecords), millisSinceContact,
+                    error == null ? "" : " | Durdu: " + error);
+        }
+    }
+
+    /** Pause before reconnecting after a broken connection. */
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final InetSocketAddress primary;
+    private final Path snapshotFile;
+
+    private final CarInventory inventory = new CarInventory();
+    private final RentalRegistry rentals = new RentalRegistry();
+    private final PaymentRegistry payments = new PaymentRegistry();
+    private final ReservationEngine reservations = new ReservationEngine();
+    private final CapacityCalendar capacity = new CapacityCalendar(inventory);
+    private final JournalReplay replay = new JournalReplay(inventory, rentals, payments, reservations, capacity);
+
+    // Position reached (written by the receiver thread only)
+    private volatile long generation;
+    private volatile long applied;
+
+    // Durable position of the primary as last reported
+    private volatile long primaryGeneration;
+    private volatile long primaryRecords;
+
+    private volatile long lastContactMillis = System.currentTimeMillis();
+    private volatile boolean connected;
+    private volatile String error;
+
+    private volatile boolean closed;
+    private volatile Socket socket;
+    private final Thread receiver;
+
+    /**
+     * Starts following a primary.
+     *
+     * @param host         host of the primary's {@link ReplicationServer}
+     * @param port         its port
+     * @param snapshotFile where a snapshot received from the primary is stored before it is loaded
+     * @throws IllegalArgumentException if host or snapshotFile is null
+     */
+    public ReplicationFollower(String host, int port, Path snapshotFile) {
+        if (host == null || snapshotFile == null) throw new IllegalArgumentException("Adres ve dosya null olamaz.");
+        this.primary = new InetSocketAddress(host, port);
+        this.snapshotFile = snapshotFile;
+        receiver = Thread.ofVirtual().name("replication-follower").start(this::receiveLoop);
+    }
+
+    /**
+     * @return the replicated inventory (read only: changes would be overwritten or break replication)
+     */
+    public CarInventory inventory() {
+        return inventory;
+    }
+
+    /**
+     * @return the replicated rentals (read only)
+     */
+    public RentalRegistry rentals() {
+        return rentals;
+    }
+
+    /**
+     * @return the replicated payments (read only)
+     */
+    public PaymentRegistry payments() {
+        return payments;
+    }
+
+    /**
+     * @return the replicated capacity calendar (read only)
+     */
+    public CapacityCalendar capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return current replication state
+     */
+    public Status status() {
+        long gen = generation;
+        long done = applied;
+        long lag = (primaryGeneration == gen) ? Math.max(0, primaryRecords - done) : -1;
+        return new Status(connected, gen, done, lag, System.currentTimeMillis() - lastContactMillis, error);
+    }
+
+    /**
+     * Stops following; the stores keep their last state.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeSocket();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================= RECEIVING =================
+
+    private void receiveLoop() {
+        while (!closed) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                if (closed) return;
+                s.connect(primary, CONNECT_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+                out.writeInt(ReplicationServer.MAGIC);
+                out.writeLong(generation);
+                out.writeLong(applied);
+                out.flush();
+                connected = true;
+
+                while (true) {
+                    if (!receive(in)) return;
+                    lastContactMillis = System.currentTimeMillis();
+                    out.writeLong(generation);
+                    out.writeLong(applied);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Primary gone or connection broken: retry from the current position
+            } catch (RuntimeException e) {
+                // The stream does not fit this follower's state; applying more could corrupt it
+                error = e.getMessage();
+                return;
+            } finally {
+                connected = false;
+            }
+
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads and applies one message.
+     *
+     * @return false if the primary refused this follower
+     */
+    private boolean receive(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ReplicationServer.SNAPSHOT -> {
+                long covered = in.readLong();
+                long length = in.readLong();
+                if (length < 0 || length > Integer.MAX_VALUE) throw new IllegalStateException("Geçersiz anlık görüntü boyutu.");
+                byte[] bytes = new byte[(int) length];
+                in.readFully(bytes);
+                loadSnapshot(covered, bytes);
+            }
+            case ReplicationServer.RECORDS -> {
+                long gen = in.readLong();
+                long first = in.readLong();
+                long last = in.readLong();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                applyRecords(gen, first, last, bytes);
+            }
+            case ReplicationServer.ROLL -> rollOver(in.readLong());
+            case ReplicationServer.HEARTBEAT -> {
+                primaryGeneration = in.readLong();
+                primaryRecords = in.readLong();
+            }
+            case ReplicationServer.REFUSED -> {
+                error = in.readUTF();
+                return false;
+            }
+            default -> throw new IllegalStateException("Bilinmeyen replikasyon mesajı: " + type);
+        }
+        return true;
+    }
+
+    private void loadSnapshot(long covered, byte[] bytes) throws IOException {
+        if (generation != 0 || applied != 0 || inventory.size() != 0) {
+            throw new IllegalStateException("Anlık görüntü yalnızca boş bir kopyaya yüklenebilir.");
+        }
+        Files.write(snapshotFile, bytes);
+        Snapshot.Loaded loaded = Snapshot.load(snapshotFile, inventory, rentals, payments, reservations, capacity);
+        replay.knownCustomers(loaded.customers());
+        if (loaded.generation() != covered) throw new IllegalStateException("Anlık görüntü beklenen nesli kapsamıyor.");
+
+        generation = covered + 1;
+        applied = 0;
+        primaryGeneration = generation;
+    }
+
+    private void applyRecords(long gen, long first, long last, byte[] bytes) {
+        if (gen != generation) {
+            throw new IllegalStateException("Beklenmeyen günlük nesli: " + gen + " (kopya: " + generation + ")");
+        }
+        primaryGeneration = gen;
+        primaryRecords = Math.max(primaryRecords, last);
+        if (last <= applied) return; // already applied before a reconnect
+        if (first > applied + 1) {
+            throw new IllegalStateException("Günlükte boşluk: " + (applied + 1) + ". kayıt gelmedi.");
+        }
+
+        int count = Journal.decodeRecords(ByteBuffer.wrap(bytes), (int) (applied - first + 1), replay);
+        if (count != last - first + 1) throw new IllegalStateException("Kayıt sayısı tutmuyor.");
+        applied = last;
+    }
+
+    private void rollOver(long gen) {
+        boolean empty = generation == 0 && applied == 0;
+        if (gen != generation + 1 && !empty) {
+            throw new IllegalStateException("Beklenmeyen günlük nesli: " + gen + " (kopya: " + generation + ")");
+        }
+        generation = gen;
+        applied = 0;
+        primaryGeneration = gen;
+        primaryRecords = 0;
+    }
+
+    private void closeSocket() {
+        Socket s = socket;
+        if (s == null) return;
+        try {
+            s.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+    }
+
+    // ================= PROCESS =================
+
+    /**
+     * Runs a follower process with a read-only HTTP API and prints its state every few seconds.
+     *
+     * @param args {@code host:port} of the primary's replication port, optionally the HTTP port (default 8081)
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1 || !args[0].contains(":")) {
+            System.out.println("Kullanım: ReplicationFollower host:port [httpPort]");
+            return;
+        }
+        String host = args[0].substring(0, args[0].lastIndexOf(':'));
+        int port = Integer.parseInt(args[0].substring(args[0].lastIndexOf(':') + 1));
+        int httpPort = args.length > 1 ? Integer.parseInt(args[1]) : 8081;
+        Path snapshot = Path.of(System.getProperty("carrental.snapshot", "replica.snapshot"));
+
+        ReplicationFollower follower = new ReplicationFollower(host, port, snapshot);
+        HttpApi api;
+        try {
+            api = HttpApi.readOnly(httpPort, follower.inventory(), follower.rentals(), follower.payments());
+        } catch (UncheckedIOException e) {
+            follower.close();
+            throw e;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.close();
+            follower.close();
+        }));
+        System.out.println("Kopya: " + host + ":" + port + " izleniyor, salt okunur HTTP API: http://localhost:" + api.port());
+
+        while (true) {
+            Thread.sleep(5000);
+            Status status = follower.status();
+            System.out.println(status + " | araç: " + follower.inventory().size() + ", kiralama: " + follower.rentals().size());
+            if (status.error() != null) {
+                api.close();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package com.carrental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ships the journal of a primary to {@link ReplicationFollower}s over local sockets.
+ *
+ * <p>The journal hands every batch to this server once it is on disk, in
+ * log order, so followers only ever see durable records and apply them in
+ * the order the primary did. Each follower has its own queue and sender
+ * thread; a follower that falls too far behind is disconnected instead of
+ * making the primary buffer without bound, and catches up again when it
+ * reconnects.</p>
+ *
+ * <p><b>Catch-up:</b> a connecting follower says which journal generation
+ * and record it has applied. If it is in the current generation, the
+ * missing records are read from the journal file. An empty follower first
+ * gets the snapshot file (which covers every earlier generation) and then
+ * the whole current generation. A follower whose position lies in a
+ * generation that is no longer on disk is refused; it has to start again
+ * empty. Records that become durable while the catch-up is sent are
+ * queued behind it; the follower skips any record it already has.</p>
+ *
+ * <p><b>Stream format</b> (big-endian): the follower sends
+ * {@code magic:i32 generation:i64 applied:i64} and then one
+ * {@code generation:i64 applied:i64} acknowledgement after each message.
+ * The primary sends messages starting with a type byte:</p>
+ * <pre>
+ * SNAPSHOT   covered:i64  length:i64  bytes      (snapshot file)
+ * RECORDS    generation:i64  first:i64  last:i64  length:i32  bytes   (journal records in file format)
+ * ROLL       generation:i64                      (new, empty generation)
+ * HEARTBEAT  generation:i64  durable:i64         (sent when idle)
+ * REFUSED    message:utf                         (connection closed after it)
+ * </pre>
+ *
+ * <p><b>Lag:</b> {@link #followers()} reports, per follower, how many
+ * durable records it has not acknowledged yet and how long the oldest of
+ * them has been waiting.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Observer Pattern:</b> The journal notifies the server of each durable batch.</li>
+ *   <li><b>Producer-Consumer:</b> The journal fills per-follower queues, sender threads drain them.</li>
+ * </ul>
+ * </p>
+ */
+public final class ReplicationServer implements AutoCloseable {
+
+    /**
+     * Replication state of one connected follower.
+     *
+     * @param address    remote address of the follower
+     * @param generation journal generation the follower has reached
+     * @param applied    records of that generation it has applied
+     * @param lagRecords durable records it has not acknowledged (-1 while it loads a snapshot)
+     * @param lagMillis  how long the oldest unacknowledged record has been on disk (0 if none)
+     */
+    public record FollowerStatus(String address, long generation, long applied, long lagRecords, long lagMillis) {
+
+        @Override
+        public String toString() {
+            return String.format("%s | nesil %d, kayıt %d | gecikme: %s kayıt, %d ms",
+                    address, generation, applied, lagRecords < 0 ? "?" : String.valueOf(lagRecords), lagMillis);
+        }
+    }
+
+    // "CRR1"
+    static final int MAGIC = 0x43525231;
+
+    // Message types, primary -> follower
+    static final byte SNAPSHOT = 1;
+    static final byte RECORDS = 2;
+    static final byte ROLL = 3;
+    static final byte HEARTBEAT = 4;
+    static final byte REFUSED = 5;
+
+    /** Idle time after which a heartbeat is sent. */
+    static final long HEARTBEAT_MILLIS = 1000;
+
+    /** Queued bytes after which a follower is disconnected. */
+    private static final long MAX_QUEUED_BYTES = 64L << 20;
+
+    /** Longest wait for a follower's greeting. */
+    private static final int HELLO_TIMEOUT_MILLIS = 10_000;
+
+    /** A message waiting in a follower's queue. */
+    private record Message(byte type, long generation, long first, long last, byte[] records, long shippedAtMillis) {}
+
+    /** Queued to stop a sender thread that is waiting for messages. */
+    private static final Message DISCONNECT = new Message((byte) 0, 0, 0, 0, null, 0);
+
+    private final Journal journal;
+    private final Path snapshotFile;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+
+    /**
+     * Guards everything below. Taken inside the journal's lock (from the
+     * shipper callbacks), so it must never be held while calling the journal.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Durable position of the primary: generation and records in it
+    private long generation;
+    private long durable;
+    private boolean positioned;
+
+    // Records of the previous generation, for the lag of followers still finishing it
+    private long previousGenerationRecords;
+
+    private final List<Session> sessions = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Attaches to a journal and starts accepting followers.
+     *
+     * @param port         TCP port (0 = any free port, see {@link #port()})
+     * @param journal      journal of the primary
+     * @param snapshotFile snapshot file the primary writes at checkpoints (may not exist yet)
+     * @throws IllegalArgumentException if journal or snapshotFile is null
+     * @throws IllegalStateException    if the journal already ships to another server
+     * @throws UncheckedIOException     if the port cannot be bound
+     */
+    public ReplicationServer(int port, Journal journal, Path snapshotFile) {
+        if (journal == null || snapshotFile == null) {
+            throw new IllegalArgumentException("Günlük ve anlık görüntü dosyası null olamaz.");
+        }
+
+        this.journal = journal;
+        this.snapshotFile = snapshotFile;
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Replikasyon sunucusu başlatılamadı.", e);
+        }
+
+        long[] position;
+        try {
+            position = journal.attach(new Journal.Shipper() {
+                @Override
+                public void shipped(long gen, long firstRecord, long lastRecord, ByteBuffer records) {
+                    onShipped(gen, firstRecord, lastRecord, records);
+                }
+
+                @Override
+                public void rolledOver(long gen) {
+                    onRolledOver(gen);
+                }
+            });
+        } catch (RuntimeException e) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+                // reporting the original failure
+            }
+            throw e;
+        }
+
+        lock.lock();
+        try {
+            // A batch shipped since attaching already carries a newer position
+            if (!positioned) {
+                generation = position[0];
+                durable = position[1];
+                positioned = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        acceptor = Thread.ofVirtual().name("replication-acceptor").start(this::acceptLoop);
+    }
+
+    /**
+     * @return the port followers connect to
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return replication state of every connected follower
+     */
+    public List<FollowerStatus> followers() {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            List<FollowerStatus> result = new ArrayList<>(sessions.size());
+            for (Session s : sessions) result.add(s.status(now));
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops shipping, disconnects every follower and closes the port.
+     */
+    @Override
+    public void close() {
+        List<Session> open;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            open = new ArrayList<>(sessions);
+        } finally {
+            lock.unlock();
+        }
+        journal.detach();
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // closing anyway
+        }
+        for (Session s : open) s.disconnect();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================= JOURNAL CALLBACKS =================
+
+    /** Copies a durable batch once and queues it for every follower. */
+    private void onShipped(long gen, long first, long last, ByteBuffer records) {
+        byte[] bytes = new byte[records.remaining()];
+        records.get(bytes);
+        Message message = new Message(RECORDS, gen, first, last, bytes, System.currentTimeMillis());
+
+        lock.lock();
+        try {
+            generation = gen;
+            durable = last;
+            positioned = true;
+            for (Session s : sessions) s.enqueue(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onRolledOver(long gen) {
+        Message message = new Message(ROLL, gen, 0, 0, null, System.currentTimeMillis());
+        lock.lock();
+        try {
+            previousGenerationRecords = durable;
+            generation = gen;
+            durable = 0;
+            positioned = true;
+            for (Session s : sessions) s.enqueue(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ================= CONNECTIONS =================
+
+    private void acceptLoop() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return; // closed
+            }
+            Thread.ofVirtual().name("replication-sender").start(() -> new Session(socket).run());
+        }
+    }
+
+    /**
+     * One follower connection: handshake, catch-up, then the live stream.
+     */
+    private final class Session {
+
+        private final Socket socket;
+        private final String address;
+
+        // Filled and cleared under the server lock; the sender polls it without the lock
+        private final LinkedBlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+
+        // Guarded by the server lock
+        private long queuedBytes;
+        private boolean dropped;
+        private long ackedGeneration;
+        private long acked;
+        private boolean snapshotting;
+
+        // Batches sent but not acknowledged yet: {generation, last record, shipped at} (guarded by the server lock)
+        private final ArrayDeque<long[]> unacked = new ArrayDeque<>();
+
+        Session(Socket socket) {
+            this.socket = socket;
+            this.address = String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        void run() {
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+
+                socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+                if (in.readInt() != MAGIC) return;
+                long followerGeneration = in.readLong();
+                long followerApplied = in.readLong();
+                socket.setSoTimeout(0);
+
+                // From here on every durable batch is queued for this follower
+                long gen, upTo;
+                lock.lock();
+                try {
+                    if (closed) return;
+                    gen = generation;
+                    upTo = durable;
+                    ackedGeneration = followerGeneration;
+                    acked = followerApplied;
+                    snapshotting = followerGeneration == 0 && gen > 1;
+                    sessions.add(this);
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    if (!catchUp(out, followerGeneration, followerApplied, gen, upTo)) return;
+                    Thread.ofVirtual().name("replication-acks").start(() -> readAcks(in));
+                    stream(out);
+                } finally {
+                    lock.lock();
+                    try {
+                        sessions.remove(this);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Follower gone, or the journal moved on during catch-up: it reconnects and starts over
+            }
+        }
+
+        /**
+         * Brings the follower from its position to {@code (gen, upTo)}.
+         *
+         * @return false if the follower was refused
+         */
+        private boolean catchUp(DataOutputStream out, long followerGeneration, long followerApplied,
+                                long gen, long upTo) throws IOException {
+            boolean empty = followerGeneration == 0 && followerApplied == 0;
+            if (!(followerGeneration == gen && followerApplied <= upTo) && !empty) {
+                out.writeByte(REFUSED);
+                out.writeUTF("Kopyanın konumu (nesil " + followerGeneration + ", kayıt " + followerApplied
+                        + ") artık günlükte yok; kopya boş başlatılmalı.");
+                out.flush();
+                return false;
+            }
+
+            // An empty follower gets everything before this generation from the snapshot
+            byte[] snapshot = null;
+            if (empty && gen > 1) {
+                snapshot = Files.exists(snapshotFile) ? Files.readAllBytes(snapshotFile) : new byte[0];
+                if (snapshot.length == 0 || Snapshot.coveredGeneration(ByteBuffer.wrap(snapshot)) != gen - 1) {
+                    throw new IllegalStateException("Anlık görüntü günlükle eşleşmiyor; yeniden denenecek.");
+                }
+            }
+            long from = empty ? 0 : followerApplied;
+            ByteBuffer missing = Journal.readRecords(journal.file(), gen, from, upTo);
+
+            // Both files belong to this generation only if no checkpoint rolled it over meanwhile
+            lock.lock();
+            try {
+                if (generation != gen) throw new IllegalStateException("Günlük okuma sırasında yenilendi.");
+            } finally {
+                lock.unlock();
+            }
+
+            if (snapshot != null) {
+                out.writeByte(SNAPSHOT);
+                out.writeLong(gen - 1);
+                out.writeLong(snapshot.length);
+                out.write(snapshot);
+            } else if (empty) {
+                // No earlier generation: the follower starts on this one with nothing to load
+                out.writeByte(ROLL);
+                out.writeLong(gen);
+            }
+
+            if (upTo > from) {
+                long now = System.currentTimeMillis();
+                lock.lock();
+                try {
+                    unacked.add(new long[]{gen, upTo, now});
+                } finally {
+                    lock.unlock();
+                }
+                writeRecords(out, gen, from + 1, upTo, missing.array(), missing.arrayOffset(), missing.remaining());
+            }
+            out.flush();
+            return true;
+        }
+
+        /**
+         * Sends queued messages until the connection breaks; a heartbeat whenever the queue stays empty.
+         */
+        private void stream(DataOutputStream out) throws IOException {
+            try {
+                while (true) {
+                    Message m = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (m == null) {
+                        long gen, upTo;
+                        lock.lock();
+                        try {
+                            if (closed) return;
+                            gen = generation;
+                            upTo = durable;
+                        } finally {
+                            lock.unlock();
+                        }
+                        out.writeByte(HEARTBEAT);
+                        out.writeLong(gen);
+                        out.writeLong(upTo);
+                        out.flush();
+                        continue;
+                    }
+                    if (m == DISCONNECT) return;
+
+                    lock.lock();
+                    try {
+                        if (m.records() != null) queuedBytes -= m.records().length;
+                        if (m.type() == RECORDS) unacked.add(new long[]{m.generation(), m.last(), m.shippedAtMillis()});
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (m.type() == RECORDS) {
+                        writeRecords(out, m.generation(), m.first(), m.last(), m.records(), 0, m.records().length);
+                    } else {
+                        out.writeByte(ROLL);
+                        out.writeLong(m.generation());
+                    }
+                    // Several queued batches go out in one write
+                    if (queue.isEmpty()) out.flush();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeRecords(DataOutputStream out, long gen, long first, long last,
+                                  byte[] bytes, int offset, int length) throws IOException {
+            out.writeByte(RECORDS);
+            out.writeLong(gen);
+            out.writeLong(first);
+            out.writeLong(last);
+            out.writeInt(length);
+            out.write(bytes, offset, length);
+        }
+
+        /** Reads acknowledgements until the connection breaks. */
+        private void readAcks(DataInputStream in) {
+            try {
+                while (true) {
+                    long gen = in.readLong();
+                    long applied = in.readLong();
+                    lock.lock();
+                    try {
+                        ackedGeneration = gen;
+                        acked = applied;
+                        snapshotting = false;
+                        // Drop the batches the follower has now applied
+                        while (!unacked.isEmpty()) {
+                            long[] batch = unacked.peek();
+                            if (batch[0] > gen || (batch[0] == gen && batch[1] > applied)) break;
+                            unacked.poll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (IOException e) {
+                disconnect();
+            }
+        }
+
+        /**
+         * Queues a message; disconnects the follower if it has fallen too far behind.
+         *
+         * <p>Caller must hold the server lock.</p>
+         */
+        void enqueue(Message message) {
+            if (dropped) return;
+            if (message.records() != null) queuedBytes += message.records().length;
+            if (queuedBytes > MAX_QUEUED_BYTES) {
+                disconnect();
+                return;
+            }
+            queue.add(message);
+        }
+
+        /**
+         * Stops queueing for the follower and closes the socket; the sender stops at its next write or poll.
+         *
+         * <p>Called from the ack reader and {@link #close()} as well as from
+         * {@link #enqueue}, so it takes the server lock itself (it is reentrant).</p>
+         */
+        void disconnect() {
+            lock.lock();
+            try {
+                dropped = true;
+                queue.clear();
+                queue.add(DISCONNECT);
+            } finally {
+                lock.unlock();
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already closed
+            }
+        }
+
+        /**
+         * Caller must hold the server lock.
+         */
+        FollowerStatus status(long now) {
+            long lag;
+            if (snapshotting) {
+                lag = -1;
+            } else if (ackedGeneration == generation) {
+                lag = durable - acked;
+            } else if (ackedGeneration == generation - 1) {
+                lag = previousGenerationRecords - acked + durable;
+            } else {
+                lag = -1;
+            }
+            long[] oldest = unacked.peek();
+            long lagMillis = (oldest == null) ? 0 : now - oldest[2];
+            return new FollowerStatus(address, ackedGeneration, acked, lag, lagMillis);
+        }
+    }
+}
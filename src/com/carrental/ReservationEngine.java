@@ -0,0 +1,287 @@
+package com.carrental;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Books cars for date windows and answers availability questions about the future.
+ *
+ * <p>{@link Car#isAvailable()} only tells whether a car is out right now.
+ * The reservation engine keeps, for every car, the list of windows it is
+ * booked for, so it can answer:
+ * <ul>
+ *   <li>"can car X be booked from D1 to D2?" ({@link #isFree}),</li>
+ *   <li>"which cars are free from D1 to D2?" ({@link #freeCars}).</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Windows are half-open day ranges {@code [from, to)}: a car booked until
+ * the 10th can be picked up again on the 10th. A car's bookings never
+ * overlap, so they are kept as one array sorted by start day. Because the
+ * bookings are disjoint, their end days are sorted too, and a window is free
+ * exactly when the last booking that starts before the window ends has
+ * already ended by the window's start. One binary search answers that, so a
+ * check is O(log k) for a car with k bookings.</p>
+ *
+ * <p>Cars without any booking have no schedule at all and are free for every
+ * window, so fleet-wide queries only do real work for booked cars.</p>
+ *
+ * <p>Thread safety: bookings of one car are serialised on that car's
+ * schedule; the array is replaced on every change, so checks and fleet
+ * queries never lock.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> Schedules are private; callers only work with dates.</li>
+ *   <li><b>Separation of Concerns:</b> The inventory knows what cars exist,
+ *       the engine knows when they are booked.</li>
+ * </ul>
+ * </p>
+ */
+public class ReservationEngine {
+
+    /**
+     * Bookings of one car as {@code [start0, end0, start1, end1, ...]} in epoch days,
+     * sorted by start.
+     */
+    private static final class Schedule {
+
+        private static final int[] EMPTY = new int[0];
+
+        // Replaced as a whole on every change
+        private volatile int[] bookings = EMPTY;
+
+        /**
+         * @return true if no booking overlaps {@code [from, to)}
+         */
+        boolean isFree(int from, int to) {
+            int[] b = bookings;
+            int i = lastStartingBefore(b, to);
+            return i < 0 || b[2 * i + 1] <= from;
+        }
+
+        /**
+         * Adds a booking if the window is still free.
+         *
+         * @return false if the window overlaps an existing booking
+         */
+        synchronized boolean book(int from, int to) {
+            int[] b = bookings;
+            int i = lastStartingBefore(b, to);
+            if (i >= 0 && b[2 * i + 1] > from) return false;
+
+            // Insert after booking i to keep the array sorted
+            int at = 2 * (i + 1);
+            int[] grown = new int[b.length + 2];
+            System.arraycopy(b, 0, grown, 0, at);
+            grown[at] = from;
+            grown[at + 1] = to;
+            System.arraycopy(b, at, grown, at + 2, b.length - at);
+            bookings = grown;
+            return true;
+        }
+
+        /**
+         * Ends the booking that starts on {@code from} at {@code newEnd}
+         * (removes it if {@code newEnd} is not after its start).
+         *
+         * @return false if no booking starts on that day
+         */
+        synchronized boolean shorten(int from, int newEnd) {
+            int[] b = bookings;
+            int i = lastStartingBefore(b, from + 1);
+            if (i < 0 || b[2 * i] != from) return false;
+
+            if (newEnd > from) {
+                if (newEnd < b[2 * i + 1]) {
+                    int[] copy = b.clone();
+                    copy[2 * i + 1] = newEnd;
+                    bookings = copy;
+                }
+                return true;
+            }
+
+            int[] shrunk = new int[b.length - 2];
+            System.arraycopy(b, 0, shrunk, 0, 2 * i);
+            System.arraycopy(b, 2 * i + 2, shrunk, 2 * i, b.length - 2 * i - 2);
+            bookings = shrunk;
+            return true;
+        }
+
+        /**
+         * Binary search for the last booking whose start is before {@code day}.
+         *
+         * @return booking index (not array index), or -1 if every booking starts on or after day
+         */
+        private static int lastStartingBefore(int[] b, int day) {
+            int lo = 0;
+            int hi = b.length / 2 - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (b[2 * mid] < day) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+    }
+
+    // Car ID -> schedule (only cars that have been booked at least once)
+    private final IntObjectMap<Schedule> schedules = new IntObjectMap<>();
+
+    /** Serialises schedule creation (the map allows one writer). */
+    private final Object writeLock = new Object();
+
+    /**
+     * Books a car for a window.
+     *
+     * @param carId car ID
+     * @param from  first day of the booking
+     * @param to    day the car is returned (exclusive)
+     * @throws InvalidRentalPeriodException if the window is empty or reversed
+     * @throws CarNotAvailableException if the car is already booked in that window
+     */
+    public void reserve(int carId, LocalDate from, LocalDate to) {
+        if (!tryReserve(carId, from, to)) {
+            throw new CarNotAvailableException("Araç bu tarihlerde dolu: " + carId + " (" + from + " - " + to + ")");
+        }
+    }
+
+    /**
+     * Books a car for a window if it is free.
+     *
+     * @param carId car ID
+     * @param from  first day of the booking
+     * @param to    day the car is returned (exclusive)
+     * @return true if the booking was made, false if the window overlaps another booking
+     * @throws InvalidRentalPeriodException if the window is empty or reversed
+     */
+    public boolean tryReserve(int carId, LocalDate from, LocalDate to) {
+        checkWindow(from, to);
+        return scheduleForWrite(carId).book(day(from), day(to));
+    }
+
+    /**
+     * Cancels the booking of a car that starts on the given day.
+     *
+     * @param carId car ID
+     * @param from  first day of the booking
+     * @return true if a booking was cancelled
+     */
+    public boolean cancel(int carId, LocalDate from) {
+        Schedule s = schedules.get(carId);
+        return s != null && s.shorten(day(from), Integer.MIN_VALUE);
+    }
+
+    /**
+     * Ends a booking early (e.g. the car came back before the planned day).
+     *
+     * <p>If the new end is on or before the booking's first day, the booking
+     * is removed completely.</p>
+     *
+     * @param carId  car ID
+     * @param from   first day of the booking
+     * @param newEnd new return day (exclusive)
+     * @return true if a booking starting on {@code from} was found
+     */
+    public boolean endEarly(int carId, LocalDate from, LocalDate newEnd) {
+        Schedule s = schedules.get(carId);
+        return s != null && s.shorten(day(from), day(newEnd));
+    }
+
+    /**
+     * Checks whether a car can be booked for a window.
+     *
+     * @param carId car ID
+     * @param from  first day
+     * @param to    last day (exclusive)
+     * @return true if no booking of the car overlaps the window
+     * @throws InvalidRentalPeriodException if the window is empty or reversed
+     */
+    public boolean isFree(int carId, LocalDate from, LocalDate to) {
+        checkWindow(from, to);
+        Schedule s = schedules.get(carId);
+        return s == null || s.isFree(day(from), day(to));
+    }
+
+    /**
+     * Finds the cars matching a query that are free for a whole window.
+     *
+     * <p>The query runs through the inventory's bitmap planner first; the
+     * window check is then one binary search per candidate (none for cars
+     * that were never booked). The result is lazy, like
+     * {@link CarInventory#stream(CarQuery)}.</p>
+     *
+     * @param inventory inventory to search
+     * @param query     further criteria (brand, type...); an empty query matches every car
+     * @param from      first day
+     * @param to        last day (exclusive)
+     * @return stream of matching cars that are free in the window
+     * @throws InvalidRentalPeriodException if the window is empty or reversed
+     */
+    public Stream<Car> freeCars(CarInventory inventory, CarQuery query, LocalDate from, LocalDate to) {
+        checkWindow(from, to);
+        int fromDay = day(from);
+        int toDay = day(to);
+
+        return inventory.stream(query).filter(car -> {
+            Schedule s = schedules.get(car.getId());
+            return s == null || s.isFree(fromDay, toDay);
+        });
+    }
+
+    /**
+     * Lists the booked windows of a car.
+     *
+     * @param carId car ID
+     * @return windows as {@code [from, to)} pairs in date order (empty if none)
+     */
+    public List<LocalDate[]> bookingsOf(int carId) {
+        List<LocalDate[]> result = new ArrayList<>();
+        Schedule s = schedules.get(carId);
+        if (s == null) return result;
+
+        int[] b = s.bookings;
+        for (int i = 0; i < b.length; i += 2) {
+            result.add(new LocalDate[]{LocalDate.ofEpochDay(b[i]), LocalDate.ofEpochDay(b[i + 1])});
+        }
+        return result;
+    }
+
+    /**
+     * Returns the car's schedule, creating it on first booking.
+     */
+    private Schedule scheduleForWrite(int carId) {
+        Schedule s = schedules.get(carId);
+        if (s != null) return s;
+
+        synchronized (writeLock) {
+            s = schedules.get(carId);
+            if (s == null) {
+                s = new Schedule();
+                schedules.put(carId, s);
+            }
+            return s;
+        }
+    }
+
+    private static void checkWindow(LocalDate from, LocalDate to) {
+        if (from == null || to == null) throw new IllegalArgumentException("Tarih null olamaz.");
+        if (!to.isAfter(from)) {
+            throw new InvalidRentalPeriodException("Bitiş tarihi başlangıç tarihinden sonra olmalı.");
+        }
+    }
+
+    /**
+     * @return the date as an epoch day number
+     */
+    private static int day(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+}
@@ -0,0 +1,381 @@
+package com.carrental;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An inventory split into independent shards, e.g. one per branch.
+ *
+ * <p>Every car belongs to exactly one shard, chosen from its ID (by hash, by
+ * ID range, or by any function passed to the constructor), and each shard is
+ * a complete {@link CarInventory} with its own ID index, slot bitmaps and
+ * write lock. Adding or removing a car locks only its shard, and renting or
+ * returning updates only its shard's bitmaps, so writers on different shards
+ * never contend. Lookups by ID go straight to the owning shard.</p>
+ *
+ * <p>Searches, counts and analytics fan out to all shards in parallel and
+ * merge the partial results. Results are ordered by shard, then by listing
+ * order inside the shard. Change events of all shards go to one shared feed,
+ * so {@link #events} behaves as on a single inventory.</p>
+ *
+ * <p>Because it extends {@link CarInventory}, a sharded inventory can be used
+ * anywhere a plain one is expected ({@link RentalService}, {@link HttpApi},
+ * {@link BookingServer}, {@link Snapshot}).</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Inheritance:</b> Overrides every operation of {@link CarInventory} to route or fan out.</li>
+ *   <li><b>Composition:</b> Each shard is a plain {@link CarInventory}.</li>
+ *   <li><b>Polymorphism:</b> Callers cannot tell a sharded inventory from a single one.</li>
+ * </ul>
+ * </p>
+ */
+public class ShardedInventory extends CarInventory {
+
+    private final CarInventory[] shards;
+
+    /** Car ID -> shard number. */
+    private final IntUnaryOperator shardOfId;
+
+    /** Shared by all shards, so subscribers see one stream of changes. */
+    private final InventoryFeed feed = new InventoryFeed();
+
+    /**
+     * Creates a sharded inventory with a custom partitioning.
+     *
+     * @param shardCount number of shards
+     * @param shardOfId  maps a car ID to a shard number in {@code [0, shardCount)}; must never change its answer
+     * @throws IllegalArgumentException if shardCount is not positive or shardOfId is null
+     */
+    public ShardedInventory(int shardCount, IntUnaryOperator shardOfId) {
+        if (shardCount <= 0) throw new IllegalArgumentException("Parça sayısı 1 veya daha büyük olmalı.");
+        if (shardOfId == null) throw new IllegalArgumentException("Parçalama fonksiyonu null olamaz.");
+
+        this.shards = new CarInventory[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new CarInventory(feed);
+        }
+        this.shardOfId = shardOfId;
+    }
+
+    /**
+     * Spreads cars evenly over the shards by ID.
+     *
+     * @param shardCount number of shards
+     * @return an empty sharded inventory
+     */
+    public static ShardedInventory byIdHash(int shardCount) {
+        return new ShardedInventory(shardCount, id -> Math.floorMod(id, shardCount));
+    }
+
+    /**
+     * Gives each shard a consecutive block of IDs, e.g. one block per branch.
+     *
+     * <p>IDs below the first block go to shard 0, IDs past the last block to
+     * the last shard.</p>
+     *
+     * @param shardCount  number of shards
+     * @param idsPerShard IDs in each block (shard {@code i} holds IDs {@code [i * idsPerShard + 1, (i + 1) * idsPerShard]})
+     * @return an empty sharded inventory
+     * @throws IllegalArgumentException if idsPerShard is not positive
+     */
+    public static ShardedInventory byIdRange(int shardCount, int idsPerShard) {
+        if (idsPerShard <= 0) throw new IllegalArgumentException("Parça başına ID sayısı 1 veya daha büyük olmalı.");
+        return new ShardedInventory(shardCount,
+                id -> (int) Math.max(0, Math.min(shardCount - 1, ((long) id - 1) / idsPerShard)));
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param index shard number
+     * @return the shard (a plain inventory; add and remove cars through this object, not the shard)
+     */
+    public CarInventory shard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * @param id car ID
+     * @return number of the shard that stores (or would store) the car
+     * @throws IllegalStateException if the partitioning returns a shard number out of range
+     */
+    public int shardOf(int id) {
+        int shard = shardOfId.applyAsInt(id);
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalStateException("Geçersiz parça numarası " + shard + " (ID " + id + ")");
+        }
+        return shard;
+    }
+
+    // ================= ADD / REMOVE / LOOKUP =================
+
+    @Override
+    public void addCar(Car car) {
+        if (car == null) throw new IllegalArgumentException("Araç null olamaz.");
+        shards[shardOf(car.getId())].addCar(car);
+    }
+
+    /**
+     * Adds multiple cars at once, each shard's part in parallel.
+     *
+     * <p>The whole list is validated before anything is added, so a conflict
+     * within the list or with stored cars adds nothing. A car added
+     * concurrently with the same ID can still make one shard reject its
+     * part.</p>
+     *
+     * @param carList list of cars to add
+     * @throws IllegalArgumentException if an ID conflict occurs
+     */
+    @Override
+    public void addCars(List<Car> carList) {
+        if (carList == null || carList.isEmpty()) return;
+
+        List<List<Car>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) parts.add(new ArrayList<>());
+
+        IntObjectMap<Car> batchIds = new IntObjectMap<>(carList.size());
+        for (Car c : carList) {
+            if (c == null) continue;
+            int shard = shardOf(c.getId());
+            if (shards[shard].findCarById(c.getId()) != null || batchIds.put(c.getId(), c) != null) {
+                throw new IllegalArgumentException("Seed içinde çakışan ID var: " + c.getId());
+            }
+            if (c.isAttachedToInventory()) {
+                throw new IllegalArgumentException("Araç başka bir envantere kayıtlı: " + c.getId());
+            }
+            parts.get(shard).add(c);
+        }
+
+        IntStream.range(0, shards.length).parallel()
+                .filter(i -> !parts.get(i).isEmpty())
+                .forEach(i -> shards[i].addBatch(parts.get(i)));
+
+        System.out.println(carList.size() + " araç envantere eklendi (" + shards.length + " parça).");
+    }
+
+    @Override
+    public boolean removeCar(int id) {
+        return shards[shardOf(id)].removeCar(id);
+    }
+
+    @Override
+    public Car findCarById(int id) {
+        return shards[shardOf(id)].findCarById(id);
+    }
+
+    // ================= COUNTS =================
+
+    @Override
+    public int countAvailableCars() {
+        return Arrays.stream(shards).mapToInt(CarInventory::countAvailableCars).sum();
+    }
+
+    @Override
+    public int countByType(Class<? extends Car> type) {
+        if (type == null) throw new IllegalArgumentException("Araç tipi null olamaz.");
+        return Arrays.stream(shards).mapToInt(s -> s.countByType(type)).sum();
+    }
+
+    @Override
+    public int countByFuelType(FuelType fuelType) {
+        if (fuelType == null) throw new IllegalArgumentException("Yakıt türü null olamaz.");
+        return Arrays.stream(shards).mapToInt(s -> s.countByFuelType(fuelType)).sum();
+    }
+
+    @Override
+    public int size() {
+        return Arrays.stream(shards).mapToInt(CarInventory::size).sum();
+    }
+
+    // ================= SEARCH =================
+
+    /**
+     * Runs a query on all shards in parallel and concatenates the results in shard order.
+     *
+     * @param query search criteria
+     * @return list of matching cars
+     */
+    @Override
+    public List<Car> search(CarQuery query) {
+        if (query == null) throw new IllegalArgumentException("Sorgu null olamaz.");
+
+        List<List<Car>> parts = Arrays.stream(shards).parallel().map(s -> s.search(query)).toList();
+        List<Car> result = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Runs a query lazily, one shard after the other.
+     *
+     * <p>Shards are only searched as far as the stream is pulled, so
+     * {@code limit} and paging stop early as on a single inventory.</p>
+     *
+     * @param query search criteria
+     * @return sequential stream of matching cars
+     */
+    @Override
+    public Stream<Car> stream(CarQuery query) {
+        if (query == null) throw new IllegalArgumentException("Sorgu null olamaz.");
+        return Arrays.stream(shards).flatMap(s -> s.stream(query));
+    }
+
+    @Override
+    public String explain(CarQuery query) {
+        if (query == null) throw new IllegalArgumentException("Sorgu null olamaz.");
+        return IntStream.range(0, shards.length)
+                .mapToObj(i -> "#" + i + ": " + shards[i].explain(query))
+                .collect(Collectors.joining(" ; "));
+    }
+
+    // ================= ANALYTICS =================
+
+    /**
+     * Computes the average daily rate of each brand over the whole fleet.
+     *
+     * <p>Per-shard averages cannot be merged without their counts, so each
+     * shard sums its own cars (in parallel) and the sums are merged.</p>
+     *
+     * @return brand name -> average daily rate, in order of first appearance
+     */
+    @Override
+    public Map<String, Double> averageDailyRateByBrand() {
+        List<Map<String, double[]>> parts = Arrays.stream(shards).parallel()
+                .map(s -> rateSums(s, Car::getBrand))
+                .toList();
+        return averages(parts);
+    }
+
+    @Override
+    public Map<FuelType, Double> averageDailyRateByFuelType() {
+        List<Map<FuelType, double[]>> parts = Arrays.stream(shards).parallel()
+                .map(s -> rateSums(s.stream(new CarQuery().type(GasCar.class)), car -> ((GasCar) car).getFuelType()))
+                .toList();
+        Map<FuelType, Double> merged = averages(parts);
+
+        // Same order as the single inventory: fuel type declaration order
+        Map<FuelType, Double> result = new EnumMap<>(FuelType.class);
+        result.putAll(merged);
+        return result;
+    }
+
+    @Override
+    public long totalAvailableElectricRangeKm() {
+        return Arrays.stream(shards).parallel().mapToLong(CarInventory::totalAvailableElectricRangeKm).sum();
+    }
+
+    // ================= PRICING =================
+
+    /**
+     * Quotes the rental fee of many cars, each shard pricing its own cars.
+     *
+     * @param candidates cars to price
+     * @param days       number of rental days
+     * @return fees in the order of {@code candidates}
+     * @throws InvalidRentalPeriodException if days is less than 1
+     */
+    @Override
+    public double[] quote(List<Car> candidates, int days) {
+        if (candidates == null) throw new IllegalArgumentException("Araç listesi null olamaz.");
+        if (days <= 0) throw new InvalidRentalPeriodException("Kiralama günü 1 veya daha fazla olmalı.");
+
+        int n = candidates.size();
+        int[] shardOfCandidate = new int[n];
+        List<List<Car>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) parts.add(new ArrayList<>());
+        for (int i = 0; i < n; i++) {
+            shardOfCandidate[i] = shardOf(candidates.get(i).getId());
+            parts.get(shardOfCandidate[i]).add(candidates.get(i));
+        }
+
+        double[][] partFees = new double[shards.length][];
+        for (int s = 0; s < shards.length; s++) {
+            if (!parts.get(s).isEmpty()) partFees[s] = shards[s].quote(parts.get(s), days);
+        }
+
+        // Scatter the per-shard fees back into candidate order
+        double[] fees = new double[n];
+        int[] next = new int[shards.length];
+        for (int i = 0; i < n; i++) {
+            int s = shardOfCandidate[i];
+            fees[i] = partFees[s][next[s]++];
+        }
+        return fees;
+    }
+
+    // ================= CHANGE EVENTS =================
+
+    /**
+     * Returns a publisher of the changes to matching cars in any shard.
+     *
+     * <p>The subscriber is registered on the shared feed first; then each
+     * shard adds its current cars under its own write lock. A car added or
+     * removed meanwhile is either seen by that step or published to the
+     * subscriber, so nothing is lost between the initial state and the
+     * changes.</p>
+     *
+     * @see CarInventory#events(CarQuery, boolean)
+     */
+    @Override
+    public Flow.Publisher<InventoryEvent> events(CarQuery filter, boolean includeCurrentCars) {
+        CarQuery query = eventFilter(filter);
+
+        return subscriber -> {
+            if (subscriber == null) throw new NullPointerException("Abone null olamaz.");
+            InventoryFeed.FeedSubscription subscription = feed.register(query, subscriber);
+            if (includeCurrentCars) {
+                for (CarInventory shard : shards) shard.seedEvents(subscription);
+            }
+            subscription.start();
+        };
+    }
+
+    // ================= HELPERS =================
+
+    private static <K> Map<K, double[]> rateSums(CarInventory shard, Function<Car, K> key) {
+        return rateSums(shard.stream(new CarQuery()), key);
+    }
+
+    /**
+     * @return key -> {sum of daily rates, number of cars}, in order of first appearance
+     */
+    private static <K> Map<K, double[]> rateSums(Stream<Car> cars, Function<Car, K> key) {
+        Map<K, double[]> sums = new LinkedHashMap<>();
+        cars.forEach(car -> {
+            double[] sum = sums.computeIfAbsent(key.apply(car), k -> new double[2]);
+            sum[0] += car.getDailyRate();
+            sum[1]++;
+        });
+        return sums;
+    }
+
+    private static <K> Map<K, Double> averages(List<Map<K, double[]>> parts) {
+        Map<K, double[]> total = new LinkedHashMap<>();
+        for (Map<K, double[]> part : parts) {
+            part.forEach((k, sum) -> {
+                double[] t = total.computeIfAbsent(k, x -> new double[2]);
+                t[0] += sum[0];
+                t[1] += sum[1];
+            });
+        }
+        Map<K, Double> result = new LinkedHashMap<>();
+        total.forEach((k, t) -> result.put(k, t[0] / t[1]));
+        return result;
+    }
+}
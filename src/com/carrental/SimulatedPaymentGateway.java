@@ -0,0 +1,73 @@
+package com.carrental;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Local stand-in for a payment provider, used until a real one is connected.
+ *
+ * <p>Every call sleeps for a fixed latency (one round trip per batch, like a
+ * real provider) and then answers each request. A charge is declined when it
+ * exceeds the card limit, or at random with the given decline rate.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Polymorphism:</b> Implements {@link PaymentGateway} so it can replace a real provider.</li>
+ *   <li><b>Encapsulation:</b> Latency and decline rules are fixed at construction.</li>
+ * </ul>
+ * </p>
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private final long latencyMillis;
+    private final double declineRate;
+    private final double cardLimit;
+
+    // Random declines; guarded by "this"
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    /**
+     * Creates a simulated gateway.
+     *
+     * @param latencyMillis round-trip time of one batch
+     * @param declineRate   share of charges declined at random (0.0 - 1.0)
+     * @param cardLimit     charges above this amount are always declined
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public SimulatedPaymentGateway(long latencyMillis, double declineRate, double cardLimit) {
+        if (latencyMillis < 0) throw new IllegalArgumentException("Gecikme negatif olamaz.");
+        if (!(declineRate >= 0 && declineRate <= 1)) throw new IllegalArgumentException("Red oranı 0 ile 1 arasında olmalı.");
+        if (!(cardLimit > 0)) throw new IllegalArgumentException("Kart limiti pozitif olmalı.");
+
+        this.latencyMillis = latencyMillis;
+        this.declineRate = declineRate;
+        this.cardLimit = cardLimit;
+    }
+
+    @Override
+    public List<Result> charge(List<Request> batch) {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ödeme isteği kesildi.", e);
+        }
+
+        List<Result> results = new ArrayList<>(batch.size());
+        for (Request r : batch) {
+            if (r.amount() > cardLimit) {
+                results.add(Result.declined(r.paymentId(), "Kart limiti aşıldı"));
+            } else if (randomDecline()) {
+                results.add(Result.declined(r.paymentId(), "Banka ödemeyi reddetti"));
+            } else {
+                results.add(Result.approved(r.paymentId()));
+            }
+        }
+        return results;
+    }
+
+    private synchronized boolean randomDecline() {
+        return declineRate > 0 && random.nextDouble() < declineRate;
+    }
+}
@@ -0,0 +1,327 @@
+package com.carrental;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Dense bitmap over inventory slots.
+ *
+ * <p>Bit {@code i} describes the car stored in slot {@code i} of a
+ * {@link CarInventory}. Bits are packed 64 per {@code long} word, so scans,
+ * counts and intersections between bitmaps (e.g. "available" AND "brand =
+ * Toyota") run one word at a time instead of visiting every car object.</p>
+ *
+ * <p>Thread safety:
+ * <ul>
+ *   <li>Bits are changed with compare-and-set on their word, so any number of
+ *       threads can set and clear bits at the same time.</li>
+ *   <li>Words live in fixed-size chunks that are allocated on first write.
+ *       Growing only copies the chunk directory, so a bit written during
+ *       growth is never lost in a copy, and sparse bitmaps (e.g. a rare
+ *       brand) only pay for the chunks they use.</li>
+ *   <li>Readers never lock; a scan sees each word atomically, but the bitmap
+ *       as a whole is only weakly consistent while writers are active.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>The number of set bits is maintained on every change, so
+ * {@link #cardinality()} does not scan the words.</p>
+ */
+final class SlotBitmap {
+
+    // Number of bits per word (2^6)
+    private static final int WORD_SHIFT = 6;
+
+    // Number of words per chunk (2^10 words = 65,536 slots = 8 KB)
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_WORDS - 1;
+
+    // Atomic access to single words of a chunk
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Word chunks; only the directory is copied on growth, chunks are shared
+    private volatile long[][] chunks;
+
+    // Number of set bits (LongAdder keeps concurrent updates from contending)
+    private final LongAdder cardinality = new LongAdder();
+
+    /**
+     * Creates an empty bitmap.
+     */
+    SlotBitmap() {
+        this.chunks = new long[1][];
+    }
+
+    /**
+     * Sets the bit for the given slot.
+     *
+     * @param slot slot number (0 or greater)
+     * @return true if the bit was previously clear
+     */
+    boolean set(int slot) {
+        int w = slot >>> WORD_SHIFT;
+        long[] chunk = chunkForWrite(w);
+        int i = w & CHUNK_MASK;
+        long mask = 1L << slot;
+
+        while (true) {
+            long current = (long) WORD.getVolatile(chunk, i);
+            if ((current & mask) != 0) return false;
+            if (WORD.compareAndSet(chunk, i, current, current | mask)) {
+                cardinality.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Clears the bit for the given slot.
+     *
+     * @param slot slot number (0 or greater)
+     * @return true if the bit was previously set
+     */
+    boolean clear(int slot) {
+        int w = slot >>> WORD_SHIFT;
+        long[][] dir = chunks;
+        if ((w >>> CHUNK_SHIFT) >= dir.length) return false;
+
+        long[] chunk = dir[w >>> CHUNK_SHIFT];
+        if (chunk == null) return false;
+        int i = w & CHUNK_MASK;
+        long mask = 1L << slot;
+
+        while (true) {
+            long current = (long) WORD.getVolatile(chunk, i);
+            if ((current & mask) == 0) return false;
+            if (WORD.compareAndSet(chunk, i, current, current & ~mask)) {
+                cardinality.decrement();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param slot slot number
+     * @return true if the bit for the slot is set
+     */
+    boolean get(int slot) {
+        return (word(chunks, slot >>> WORD_SHIFT) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Reads one word of the bitmap (bits {@code 64*w} to {@code 64*w + 63}).
+     *
+     * @param w word index
+     * @return the word, or 0 if it was never written
+     */
+    long wordAt(int w) {
+        return word(chunks, w);
+    }
+
+    /**
+     * Fills one word of a bitmap that no other thread can see yet (one being built).
+     *
+     * @param w    word index, not filled before
+     * @param word bits {@code 64*w} to {@code 64*w + 63}
+     */
+    void fillWord(int w, long word) {
+        if (word == 0) return;
+        chunkForWrite(w)[w & CHUNK_MASK] = word;
+        cardinality.add(Long.bitCount(word));
+    }
+
+    /**
+     * @return number of set bits
+     */
+    int cardinality() {
+        return cardinality.intValue();
+    }
+
+    /**
+     * Returns a new bitmap containing the union of this bitmap and {@code other}.
+     *
+     * @param other bitmap to merge with
+     * @return new bitmap
+     */
+    SlotBitmap or(SlotBitmap other) {
+        SlotBitmap result = new SlotBitmap();
+        long[][] a = chunks;
+        long[][] b = other.chunks;
+        int words = Math.max(a.length, b.length) << CHUNK_SHIFT;
+
+        for (int w = 0; w < words; w++) {
+            long word = word(a, w) | word(b, w);
+            if (word != 0) {
+                result.chunkForWrite(w)[w & CHUNK_MASK] = word;
+                result.cardinality.add(Long.bitCount(word));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the slots that are set in all given bitmaps.
+     *
+     * @param maps bitmaps to intersect (at least one)
+     * @return size of the intersection
+     */
+    static int andCardinality(SlotBitmap... maps) {
+        int[] count = {0};
+        forEachAndWord((base, word) -> count[0] += Long.bitCount(word), maps);
+        return count[0];
+    }
+
+    /**
+     * Calls {@code action} with every slot that is set in all given bitmaps,
+     * in ascending slot order.
+     *
+     * @param action callback receiving slot numbers
+     * @param maps   bitmaps to intersect (at least one)
+     */
+    static void forEachAnd(IntConsumer action, SlotBitmap... maps) {
+        forEachAndWord((base, word) -> {
+            // Visit the set bits of the combined word from lowest to highest
+            while (word != 0) {
+                action.accept(base + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }, maps);
+    }
+
+    /**
+     * Finds the first slot in {@code [from, to)} that is set in all given bitmaps.
+     *
+     * <p>Used by lazy iterators that resume a scan where they left off. Like
+     * the bulk scans, it works one word at a time and skips chunks that any
+     * of the bitmaps has not allocated.</p>
+     *
+     * @param from first slot to consider (inclusive)
+     * @param to   end of the range (exclusive)
+     * @param maps bitmaps to intersect (at least one)
+     * @return the next matching slot, or -1 if there is none in the range
+     */
+    static int nextSetBitAnd(int from, int to, SlotBitmap... maps) {
+        if (from < 0) from = 0;
+        if (from >= to) return -1;
+
+        int w = from >>> WORD_SHIFT;
+        int lastWord = (to - 1) >>> WORD_SHIFT;
+        long mask = -1L << from; // ignore bits below 'from' in the first word
+
+        while (w <= lastWord) {
+            int c = w >>> CHUNK_SHIFT;
+            long word = mask;
+            boolean missingChunk = false;
+
+            for (int m = 0; m < maps.length && word != 0; m++) {
+                long[][] dir = maps[m].chunks;
+                if (c >= dir.length || dir[c] == null) {
+                    missingChunk = true;
+                    break;
+                }
+                word &= (long) WORD.getVolatile(dir[c], w & CHUNK_MASK);
+            }
+
+            if (missingChunk) {
+                // Nothing can match in this chunk: jump to the next one
+                w = (c + 1) << CHUNK_SHIFT;
+            } else if (word != 0) {
+                int slot = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+                return slot < to ? slot : -1;
+            } else {
+                w++;
+            }
+            mask = -1L;
+        }
+        return -1;
+    }
+
+    /**
+     * Receives one non-zero word of an intersection.
+     */
+    @FunctionalInterface
+    private interface WordVisitor {
+        /**
+         * @param base slot number of bit 0 of the word
+         * @param word intersected bits
+         */
+        void visit(int base, long word);
+    }
+
+    /**
+     * ANDs the bitmaps word by word and passes every non-zero result to {@code visitor}.
+     *
+     * <p>Each bitmap's chunk directory is read once, so a scan works on a
+     * stable set of chunks. A chunk that is missing in any bitmap is empty
+     * in the intersection and is skipped as a whole.</p>
+     */
+    private static void forEachAndWord(WordVisitor visitor, SlotBitmap[] maps) {
+        long[][][] dirs = new long[maps.length][][];
+        int chunkCount = Integer.MAX_VALUE;
+        for (int m = 0; m < maps.length; m++) {
+            dirs[m] = maps[m].chunks;
+            chunkCount = Math.min(chunkCount, dirs[m].length);
+        }
+
+        long[][] current = new long[maps.length][];
+        for (int c = 0; c < chunkCount; c++) {
+            boolean empty = false;
+            for (int m = 0; m < maps.length && !empty; m++) {
+                current[m] = dirs[m][c];
+                empty = current[m] == null;
+            }
+            if (empty) continue;
+
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                long word = (long) WORD.getVolatile(current[0], i);
+                for (int m = 1; m < maps.length && word != 0; m++) {
+                    word &= (long) WORD.getVolatile(current[m], i);
+                }
+                if (word != 0) visitor.visit(((c << CHUNK_SHIFT) + i) << WORD_SHIFT, word);
+            }
+        }
+    }
+
+    /**
+     * Reads one word atomically (zero for unallocated chunks and beyond the end).
+     */
+    private static long word(long[][] dir, int w) {
+        int c = w >>> CHUNK_SHIFT;
+        if (c >= dir.length) return 0L;
+        long[] chunk = dir[c];
+        return chunk == null ? 0L : (long) WORD.getVolatile(chunk, w & CHUNK_MASK);
+    }
+
+    /**
+     * Returns the chunk holding word {@code w}, allocating it if needed.
+     */
+    private long[] chunkForWrite(int w) {
+        int c = w >>> CHUNK_SHIFT;
+        long[][] dir = chunks;
+        if (c < dir.length && dir[c] != null) return dir[c];
+        return allocateChunk(c);
+    }
+
+    /**
+     * Allocates chunk {@code c}, growing the directory first if it is too short.
+     *
+     * <p>Synchronized so that two writing threads cannot publish different
+     * chunks for the same position. The directory is copied and republished,
+     * which makes the new chunk visible to lock-free readers.</p>
+     */
+    private synchronized long[] allocateChunk(int c) {
+        long[][] dir = chunks;
+        if (c < dir.length && dir[c] != null) return dir[c];
+
+        long[][] grown = (c < dir.length)
+                ? dir.clone()
+                : Arrays.copyOf(dir, Math.max(c + 1, dir.length * 2));
+        grown[c] = new long[CHUNK_WORDS];
+        chunks = grown;
+        return grown[c];
+    }
+}
@@ -0,0 +1,277 @@
+package com.carrental;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Slot-based storage behind {@link CarInventory}.
+ *
+ * <p>Every stored car occupies one <b>slot</b>, handed out in the order cars
+ * are added. This class keeps everything that is addressed by slot:
+ * <ul>
+ *   <li>the slot table (slot → car),</li>
+ *   <li>the availability bitmap,</li>
+ *   <li>attribute bitmaps by brand, concrete car type and fuel type,</li>
+ *   <li>the {@link FleetColumns} used by fleet-wide aggregations.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Thread safety: structural changes ({@link #add}, {@link #remove}) must be
+ * serialised by the owning inventory. Availability updates and all reads are
+ * lock-free and may run on any thread. Slots are never reused inside one
+ * index; when the inventory compacts, it builds a fresh {@code SlotIndex}
+ * and swaps it in as a whole.</p>
+ */
+final class SlotIndex {
+
+    // Number of slots per table chunk (2^14 = 16,384 references)
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Acquire/release access to single table cells
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(Car[].class);
+
+    // Slot table in fixed-size chunks; growth copies only the directory
+    private volatile Car[][] table = new Car[1][];
+
+    // Number of slots handed out so far (removed slots included)
+    private volatile int slotCount;
+
+    // Slots of cars that are currently available for rent
+    private final SlotBitmap availableSlots = new SlotBitmap();
+
+    // Slots grouped by brand (lower-cased so lookups are case-insensitive)
+    private final Map<String, SlotBitmap> brandSlots = new ConcurrentHashMap<>();
+
+    // Slots grouped by concrete car class (GasCar, ElectricCar, LuxuryCar...)
+    private final Map<Class<? extends Car>, SlotBitmap> typeSlots = new ConcurrentHashMap<>();
+
+    // Slots of gas cars grouped by fuel type (one bitmap per constant, never replaced)
+    private final Map<FuelType, SlotBitmap> fuelSlots = new EnumMap<>(FuelType.class);
+
+    // Rates, brands, type codes and ranges as primitive columns
+    private final FleetColumns columns = new FleetColumns();
+
+    /**
+     * Creates an empty index.
+     */
+    SlotIndex() {
+        for (FuelType f : FuelType.values()) {
+            fuelSlots.put(f, new SlotBitmap());
+        }
+    }
+
+    // ================= WRITER OPERATIONS =================
+
+    /**
+     * @return the slot number the next {@link #add} will use
+     */
+    int nextSlot() {
+        return slotCount;
+    }
+
+    /**
+     * Stores a car in the next slot and sets its attribute bits.
+     *
+     * <p>The car must already report {@link #nextSlot()} as its inventory slot.
+     * The caller should run {@link #syncAvailability} afterwards to pick up
+     * any rent/return that raced with the add.</p>
+     *
+     * @param car the car to store
+     */
+    void add(Car car) {
+        int slot = slotCount;
+        Car[] chunk = chunkForWrite(slot >>> CHUNK_SHIFT);
+        CELL.setRelease(chunk, slot & CHUNK_MASK, car);
+
+        brandSlots.computeIfAbsent(brandKey(car.getBrand()), k -> new SlotBitmap()).set(slot);
+        typeSlots.computeIfAbsent(car.getClass(), k -> new SlotBitmap()).set(slot);
+        if (car instanceof GasCar g) {
+            fuelSlots.get(g.getFuelType()).set(slot);
+        }
+        if (car.isAvailable()) availableSlots.set(slot);
+        columns.add(slot, car);
+
+        slotCount = slot + 1;
+    }
+
+    /**
+     * Empties the car's slot and clears it from every bitmap.
+     *
+     * <p>The table cell is cleared first, so a concurrent
+     * {@link #syncAvailability} either sees the car gone or has its bit
+     * cleared afterwards.</p>
+     *
+     * @param car the car to remove
+     */
+    void remove(Car car) {
+        int slot = car.getInventorySlot();
+        CELL.setRelease(table[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK, null);
+
+        availableSlots.clear(slot);
+        clearFromGroup(brandSlots, brandKey(car.getBrand()), slot);
+        clearFromGroup(typeSlots, car.getClass(), slot);
+        if (car instanceof GasCar g) {
+            fuelSlots.get(g.getFuelType()).clear(slot);
+        }
+        columns.remove(slot);
+    }
+
+    // ================= LOCK-FREE OPERATIONS =================
+
+    /**
+     * Copies the car's current availability into the availability bitmap.
+     *
+     * <p>Called from {@link Car#rent()} / {@link Car#returnCar()} on whatever
+     * thread changed the car. Two updates for the same car may reach the bitmap
+     * in the opposite order to their CAS on the car, so the car is re-read
+     * after writing the bit until the two agree; the last update therefore
+     * always leaves the bitmap matching the car.</p>
+     *
+     * @param car the car whose availability has changed
+     */
+    void syncAvailability(Car car) {
+        int slot = car.getInventorySlot();
+
+        // Ignore cars that are not stored in this index (removed or renumbered)
+        if (slot < 0 || carAt(slot) != car) return;
+
+        boolean available;
+        do {
+            available = car.isAvailable();
+            if (available) availableSlots.set(slot);
+            else availableSlots.clear(slot);
+        } while (car.isAvailable() != available);
+
+        // The car was removed while we were writing: its slot must stay clear
+        if (carAt(slot) != car) availableSlots.clear(slot);
+    }
+
+    /**
+     * @param slot slot number
+     * @return the car stored in the slot, or null if the slot is empty
+     */
+    Car carAt(int slot) {
+        Car[][] dir = table;
+        int c = slot >>> CHUNK_SHIFT;
+        if (slot < 0 || c >= dir.length || dir[c] == null) return null;
+        return (Car) CELL.getAcquire(dir[c], slot & CHUNK_MASK);
+    }
+
+    /**
+     * @return number of slots handed out so far (removed slots included)
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Calls {@code action} for every stored car in slot order.
+     *
+     * @param action callback receiving each car
+     */
+    void forEachCar(Consumer<Car> action) {
+        int count = slotCount;
+        for (int slot = 0; slot < count; slot++) {
+            Car car = carAt(slot);
+            if (car != null) action.accept(car);
+        }
+    }
+
+    /**
+     * @return bitmap of available slots
+     */
+    SlotBitmap availableSlots() {
+        return availableSlots;
+    }
+
+    /**
+     * @param brand brand name (case-insensitive)
+     * @return bitmap of slots with that brand, or null if none were ever added
+     */
+    SlotBitmap brandSlots(String brand) {
+        return brandSlots.get(brandKey(brand));
+    }
+
+    /**
+     * Returns the slots of cars that are instances of {@code type}.
+     *
+     * <p>The type index is keyed by concrete class. Usually exactly one class
+     * matches; if the requested type has indexed subclasses, their bitmaps are
+     * OR-ed together into a new bitmap.</p>
+     *
+     * @param type car type (e.g. {@code GasCar.class})
+     * @return bitmap of matching slots, or null if none match
+     */
+    SlotBitmap typeSlots(Class<? extends Car> type) {
+        SlotBitmap matching = null;
+        for (Map.Entry<Class<? extends Car>, SlotBitmap> e : typeSlots.entrySet()) {
+            if (type.isAssignableFrom(e.getKey())) {
+                matching = (matching == null) ? e.getValue() : matching.or(e.getValue());
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * @param fuelType fuel type
+     * @return bitmap of gas car slots with that fuel type
+     */
+    SlotBitmap fuelSlots(FuelType fuelType) {
+        return fuelSlots.get(fuelType);
+    }
+
+    /**
+     * @return primitive columns of the stored cars
+     */
+    FleetColumns columns() {
+        return columns;
+    }
+
+    // ================= HELPERS =================
+
+    /**
+     * Clears a slot from one attribute bitmap and drops the bitmap once it is empty.
+     */
+    private static <K> void clearFromGroup(Map<K, SlotBitmap> index, K key, int slot) {
+        SlotBitmap group = index.get(key);
+        if (group == null) return;
+        group.clear(slot);
+        if (group.cardinality() == 0) index.remove(key);
+    }
+
+    /**
+     * Returns table chunk {@code c}, growing the directory and allocating the chunk if needed.
+     */
+    private Car[] chunkForWrite(int c) {
+        Car[][] dir = table;
+        if (c >= dir.length) {
+            dir = Arrays.copyOf(dir, Math.max(c + 1, dir.length * 2));
+        }
+        if (dir[c] == null) {
+            if (dir == table) dir = dir.clone();
+            dir[c] = new Car[CHUNK_SIZE];
+        }
+
+        // Publish the (possibly new) directory before the slot becomes visible
+        if (dir != table) table = dir;
+        return dir[c];
+    }
+
+    /**
+     * Normalises a brand name for the case-insensitive brand index.
+     *
+     * @param brand brand name
+     * @return lower-cased brand key
+     */
+    static String brandKey(String brand) {
+        return brand == null ? "" : brand.toLowerCase(Locale.ROOT);
+    }
+}
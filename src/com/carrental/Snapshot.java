@@ -0,0 +1,500 @@
+package com.carrental;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Point-in-time image of the cars, customers, rentals and payments in a compact binary file.
+ *
+ * <p>Replaying a long journal record by record gets slower as the history
+ * grows. A snapshot stores the whole state column by column (all car IDs,
+ * then all rates, ...), so loading it is one read of the file, a handful of
+ * bulk array copies, one {@link CarInventory#addCars} and
+ * one {@link RentalRegistry#registerAll}. Startup then only replays the
+ * journal records written after the snapshot (see {@link Journal#rollOver()}).</p>
+ *
+ * <p><b>File layout</b> (big-endian):
+ * <ol>
+ *   <li>header: magic, format version, covered journal generation,</li>
+ *   <li>string table: brands, models, names and phones, each stored once,</li>
+ *   <li>cars: count in the inventory, ids, kinds, rates, brand and model
+ *       references, kind-specific value; the cars in the inventory come first,
+ *       then retired cars (removed, or replaced under the same ID) that rentals still refer to,</li>
+ *   <li>customers: ids, name and phone references,</li>
+ *   <li>rentals: ids, car positions in the car section, customer ids, days, statuses, created and closed times,</li>
+ *   <li>payments: ids, amounts, methods, statuses, times, rental id lists,</li>
+ *   <li>CRC32C of everything above.</li>
+ * </ol>
+ * A snapshot is written to a temporary file and renamed into place, so a
+ * crash leaves either the old or the new snapshot, never a partial one.</p>
+ *
+ * <p>Object-Oriented Concepts:
+ * <ul>
+ *   <li><b>Encapsulation:</b> The binary layout is private to this class.</li>
+ *   <li><b>Single Responsibility:</b> Bulk save/load is separated from the
+ *       journal's change-by-change log.</li>
+ * </ul>
+ * </p>
+ */
+public final class Snapshot {
+
+    /**
+     * Summary of a loaded snapshot.
+     *
+     * @param generation journal generation the snapshot covers
+     * @param customers  customers found in the snapshot, in order of first rental
+     * @param cars       number of loaded cars
+     * @param rentals    number of loaded rentals
+     * @param payments   number of loaded payments
+     */
+    public record Loaded(long generation, List<Customer> customers, int cars, int rentals, int payments) {}
+
+    // "CRS1"
+    private static final int MAGIC = 0x43525331;
+    private static final int VERSION = 3;
+
+    // Closed time of a rental that is still open
+    private static final long NOT_CLOSED = Long.MIN_VALUE;
+
+    private Snapshot() {
+    }
+
+    // ================= WRITE =================
+
+    /**
+     * Writes the current state to a snapshot file.
+     *
+     * <p>The caller must keep the state still while this runs (see
+     * {@link RentalService#checkpoint}).</p>
+     *
+     * @param file       snapshot file (replaced atomically)
+     * @param generation journal generation the state corresponds to
+     * @param inventory  cars to save
+     * @param rentals    rentals to save (their customers are saved with them)
+     * @param payments   payments to save
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    public static void write(Path file, long generation, CarInventory inventory,
+                             RentalRegistry rentals, PaymentRegistry payments) {
+        Strings strings = new Strings();
+
+        // Cars (only GasCar, ElectricCar and LuxuryCar have a stored format); a car
+        // removed from the inventory is kept as long as one of its rentals is
+        List<Car> cars = inventory.search(new CarQuery());
+        int stored = cars.size();
+        Map<Car, Integer> positions = new IdentityHashMap<>(stored * 2);
+        for (int i = 0; i < stored; i++) positions.put(cars.get(i), i);
+
+        List<Rental> rentalList = new ArrayList<>(rentals.size());
+        rentals.forEach(rentalList::add);
+        for (Rental r : rentalList) {
+            if (positions.putIfAbsent(r.getCar(), cars.size()) == null) cars.add(r.getCar());
+        }
+        int nc = cars.size();
+        int[] carIds = new int[nc];
+        byte[] kinds = new byte[nc];
+        double[] rates = new double[nc];
+        int[] brands = new int[nc];
+        int[] models = new int[nc];
+        long[] extras = new long[nc];
+        for (int i = 0; i < nc; i++) {
+            Car car = cars.get(i);
+            carIds[i] = car.getId();
+            kinds[i] = Journal.kindOf(car);
+            rates[i] = car.getDailyRate();
+            brands[i] = strings.ref(car.getBrand());
+            models[i] = strings.ref(car.getModel());
+            extras[i] = switch (kinds[i]) {
+                case Journal.KIND_GAS -> ((GasCar) car).getFuelType().ordinal();
+                case Journal.KIND_ELECTRIC -> ((ElectricCar) car).getRangeKm();
+                default -> Double.doubleToRawLongBits(((LuxuryCar) car).getPremiumRate());
+            };
+        }
+
+        // Rentals, and their customers (each stored once)
+        int nr = rentalList.size();
+        int[] rentalIds = new int[nr];
+        int[] rentalCars = new int[nr];
+        int[] rentalCustomers = new int[nr];
+        int[] rentalDays = new int[nr];
+        long[] createdAt = new long[nr];
+        byte[] rentalStatuses = new byte[nr];
+        long[] closedAt = new long[nr];
+
+        IntObjectMap<Customer> seen = new IntObjectMap<>();
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < nr; i++) {
+            Rental r = rentalList.get(i);
+            rentalIds[i] = r.getRentalId();
+            rentalCars[i] = positions.get(r.getCar());
+            rentalCustomers[i] = r.getCustomer().getId();
+            rentalDays[i] = r.getDays();
+            rentalStatuses[i] = (byte) r.getStatus().ordinal();
+            createdAt[i] = Journal.epochNanos(r.getCreatedAt());
+            closedAt[i] = (r.getClosedAt() == null) ? NOT_CLOSED : Journal.epochNanos(r.getClosedAt());
+            if (seen.put(r.getCustomer().getId(), r.getCustomer()) == null) customers.add(r.getCustomer());
+        }
+
+        int nu = customers.size();
+        int[] customerIds = new int[nu];
+        int[] names = new int[nu];
+        int[] phones = new int[nu];
+        for (int i = 0; i < nu; i++) {
+            Customer c = customers.get(i);
+            customerIds[i] = c.getId();
+            names[i] = strings.ref(c.getName());
+            phones[i] = strings.ref(c.getPhone());
+        }
+
+        // Payments; rental id lists are flattened into one array
+        List<Payment> paymentList = new ArrayList<>(payments.size());
+        payments.forEach(paymentList::add);
+        int np = paymentList.size();
+        int[] paymentIds = new int[np];
+        double[] amounts = new double[np];
+        byte[] methods = new byte[np];
+        byte[] statuses = new byte[np];
+        long[] paidAt = new long[np];
+        int[] idCounts = new int[np];
+        int totalIds = 0;
+        for (int i = 0; i < np; i++) {
+            Payment p = paymentList.get(i);
+            paymentIds[i] = p.getPaymentId();
+            amounts[i] = p.getAmount();
+            methods[i] = (byte) p.getMethod().ordinal();
+            statuses[i] = (byte) p.getStatus().ordinal();
+            paidAt[i] = Journal.epochNanos(p.getPaidAt());
+            idCounts[i] = p.getRentalIds().length;
+            totalIds += idCounts[i];
+        }
+        int[] paidRentalIds = new int[totalIds];
+        int at = 0;
+        for (Payment p : paymentList) {
+            for (int id : p.getRentalIds()) paidRentalIds[at++] = id;
+        }
+
+        // Exact size: header + sections + checksum
+        long size = 16
+                + 4 + strings.bytes
+                + 8 + nc * (4L + 1 + 8 + 4 + 4 + 8)
+                + 4 + nu * 12L
+                + 4 + nr * (4L + 4 + 4 + 4 + 1 + 8 + 8)
+                + 4 + np * (4L + 8 + 1 + 1 + 8 + 4) + 4 + totalIds * 4L
+                + 4;
+        if (size > Integer.MAX_VALUE) throw new IllegalStateException("Anlık görüntü çok büyük.");
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION).putLong(generation);
+
+        out.putInt(strings.values.size());
+        for (byte[] b : strings.values) {
+            if (b == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(b.length).put(b);
+            }
+        }
+
+        out.putInt(nc).putInt(stored);
+        putInts(out, carIds);
+        out.put(kinds);
+        putDoubles(out, rates);
+        putInts(out, brands);
+        putInts(out, models);
+        putLongs(out, extras);
+
+        out.putInt(nu);
+        putInts(out, customerIds);
+        putInts(out, names);
+        putInts(out, phones);
+
+        out.putInt(nr);
+        putInts(out, rentalIds);
+        putInts(out, rentalCars);
+        putInts(out, rentalCustomers);
+        putInts(out, rentalDays);
+        out.put(rentalStatuses);
+        putLongs(out, createdAt);
+        putLongs(out, closedAt);
+
+        out.putInt(np);
+        putInts(out, paymentIds);
+        putDoubles(out, amounts);
+        out.put(methods);
+        out.put(statuses);
+        putLongs(out, paidAt);
+        putInts(out, idCounts);
+        out.putInt(totalIds);
+        putInts(out, paidRentalIds);
+
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        out.flip();
+
+        // Write next to the target, fsync, then swap it in
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) ch.write(out);
+            ch.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Anlık görüntü yazılamadı: " + file, e);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Anlık görüntü yerine konamadı: " + file, e);
+        }
+    }
+
+    // ================= LOAD =================
+
+    /**
+     * @param snapshot start of a snapshot (at least its header)
+     * @return the journal generation it covers
+     * @throws IllegalStateException if the bytes are not a snapshot header
+     */
+    static long coveredGeneration(ByteBuffer snapshot) {
+        if (snapshot.limit() < 16 || snapshot.getInt(0) != MAGIC || snapshot.getInt(4) != VERSION) {
+            throw new IllegalStateException("Geçersiz anlık görüntü");
+        }
+        return snapshot.getLong(8);
+    }
+
+    /**
+     * Loads a snapshot into empty components.
+     *
+     * @param file         snapshot file
+     * @param inventory    receives the cars
+     * @param rentals      receives the rentals
+     * @param payments     receives the payments
+     * @param reservations receives the booked window of every rental
+     * @param capacity     receives the active rentals
+     * @return what was loaded, or null if the file does not exist
+     * @throws UncheckedIOException if the file cannot be read
+     * @throws IllegalStateException if the file is not a valid snapshot
+     */
+    public static Loaded load(Path file, CarInventory inventory, RentalRegistry rentals, PaymentRegistry payments,
+                              ReservationEngine reservations, CapacityCalendar capacity) {
+        if (!Files.exists(file)) return null;
+
+        ByteBuffer in;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 20 || size > Integer.MAX_VALUE) throw new IllegalStateException("Geçersiz anlık görüntü: " + file);
+            // Read, not mapped: a live mapping would keep Windows from replacing the file at the next checkpoint
+            in = ByteBuffer.allocate((int) size);
+            while (in.hasRemaining() && ch.read(in, in.position()) > 0) {
+                // keep reading
+            }
+            if (in.hasRemaining()) throw new IllegalStateException("Geçersiz anlık görüntü: " + file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Anlık görüntü okunamadı: " + file, e);
+        }
+
+        int end = in.limit() - 4;
+        CRC32C crc = new CRC32C();
+        crc.update(in.slice(0, end));
+        if (in.getInt(0) != MAGIC || in.getInt(4) != VERSION || (int) crc.getValue() != in.getInt(end)) {
+            throw new IllegalStateException("Geçersiz anlık görüntü: " + file);
+        }
+
+        in.position(8);
+        long generation = in.getLong();
+
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.getInt();
+            if (length < 0) continue;
+            byte[] b = new byte[length];
+            in.get(b);
+            strings[i] = new String(b, StandardCharsets.UTF_8);
+        }
+
+        // Cars
+        int nc = in.getInt();
+        int stored = in.getInt();
+        if (stored < 0 || stored > nc) throw new IllegalStateException("Geçersiz anlık görüntü: " + file);
+        int[] carIds = getInts(in, nc);
+        byte[] kinds = getBytes(in, nc);
+        double[] rates = getDoubles(in, nc);
+        int[] brands = getInts(in, nc);
+        int[] models = getInts(in, nc);
+        long[] extras = getLongs(in, nc);
+
+        List<Car> cars = new ArrayList<>(nc);
+        for (int i = 0; i < nc; i++) {
+            String brand = strings[brands[i]];
+            String model = strings[models[i]];
+            cars.add(switch (kinds[i]) {
+                case Journal.KIND_GAS -> new GasCar(carIds[i], brand, model, rates[i], FuelType.values()[(int) extras[i]]);
+                case Journal.KIND_ELECTRIC -> new ElectricCar(carIds[i], brand, model, rates[i], (int) extras[i]);
+                case Journal.KIND_LUXURY -> new LuxuryCar(carIds[i], brand, model, rates[i], Double.longBitsToDouble(extras[i]));
+                default -> throw new IllegalStateException("Bilinmeyen araç türü: " + kinds[i]);
+            });
+        }
+        // Retired cars are only restored as the cars of their rentals
+        inventory.addCars(cars.subList(0, stored));
+
+        // Customers
+        int nu = in.getInt();
+        int[] customerIds = getInts(in, nu);
+        int[] names = getInts(in, nu);
+        int[] phones = getInts(in, nu);
+        IntObjectMap<Customer> customersById = new IntObjectMap<>(nu);
+        List<Customer> customers = new ArrayList<>(nu);
+        for (int i = 0; i < nu; i++) {
+            Customer c = new Customer(customerIds[i], strings[names[i]], strings[phones[i]]);
+            customersById.put(c.getId(), c);
+            customers.add(c);
+        }
+
+        // Rentals: open ones rent their car again, every one gets its booked window back
+        int nr = in.getInt();
+        int[] rentalIds = getInts(in, nr);
+        int[] rentalCars = getInts(in, nr);
+        int[] rentalCustomers = getInts(in, nr);
+        int[] rentalDays = getInts(in, nr);
+        byte[] rentalStatuses = getBytes(in, nr);
+        long[] createdAt = getLongs(in, nr);
+        long[] closedAt = getLongs(in, nr);
+
+        RentalStatus[] rentalStatusValues = RentalStatus.values();
+        List<Rental> rentalList = new ArrayList<>(nr);
+        List<Rental> active = new ArrayList<>();
+        for (int i = 0; i < nr; i++) {
+            if (rentalCars[i] < 0 || rentalCars[i] >= nc) {
+                throw new IllegalStateException("Anlık görüntüde bilinmeyen araç: " + rentalCars[i]);
+            }
+            Car car = cars.get(rentalCars[i]);
+
+            LocalDateTime created = Journal.fromEpochNanos(createdAt[i]);
+            LocalDateTime closed = (closedAt[i] == NOT_CLOSED) ? null : Journal.fromEpochNanos(closedAt[i]);
+            RentalStatus status = rentalStatusValues[rentalStatuses[i]];
+            Rental rental = Rental.restore(rentalIds[i], car, customersById.get(rentalCustomers[i]),
+                    rentalDays[i], created, closed, status);
+            rentalList.add(rental);
+
+            LocalDate start = created.toLocalDate();
+            reservations.tryReserve(car.getId(), start, start.plusDays(rentalDays[i]));
+            if (status == RentalStatus.ACTIVE) {
+                active.add(rental);
+            } else {
+                reservations.endEarly(car.getId(), start, closed.toLocalDate());
+            }
+        }
+        rentals.registerAll(rentalList);
+
+        // Closed rentals free everything from their return day on, so only open ones count
+        capacity.onRentalsCreated(active);
+
+        // Payments
+        int np = in.getInt();
+        int[] paymentIds = getInts(in, np);
+        double[] amounts = getDoubles(in, np);
+        byte[] methods = getBytes(in, np);
+        byte[] statuses = getBytes(in, np);
+        long[] paidAt = getLongs(in, np);
+        int[] idCounts = getInts(in, np);
+        int[] paidRentalIds = getInts(in, in.getInt());
+
+        PaymentMethod[] methodValues = PaymentMethod.values();
+        PaymentStatus[] statusValues = PaymentStatus.values();
+        int from = 0;
+        for (int i = 0; i < np; i++) {
+            int[] ids = Arrays.copyOfRange(paidRentalIds, from, from + idCounts[i]);
+            from += idCounts[i];
+
+            payments.register(new Payment(paymentIds[i], ids, amounts[i], methodValues[methods[i]],
+                    Journal.fromEpochNanos(paidAt[i]), statusValues[statuses[i]]));
+        }
+
+        return new Loaded(generation, customers, stored, nr, np);
+    }
+
+    // ================= HELPERS =================
+
+    /**
+     * String dictionary built while writing: each distinct string is stored once.
+     */
+    private static final class Strings {
+        final Map<String, Integer> refs = new HashMap<>();
+        final List<byte[]> values = new ArrayList<>();
+        long bytes;
+
+        int ref(String s) {
+            if (s == null) {
+                values.add(null);
+                bytes += 4;
+                return values.size() - 1;
+            }
+            Integer ref = refs.get(s);
+            if (ref != null) return ref;
+
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            values.add(b);
+            bytes += 4 + b.length;
+            refs.put(s, values.size() - 1);
+            return values.size() - 1;
+        }
+    }
+
+    private static void putInts(ByteBuffer out, int[] values) {
+        out.asIntBuffer().put(values);
+        out.position(out.position() + values.length * 4);
+    }
+
+    private static void putLongs(ByteBuffer out, long[] values) {
+        out.asLongBuffer().put(values);
+        out.position(out.position() + values.length * 8);
+    }
+
+    private static void putDoubles(ByteBuffer out, double[] values) {
+        out.asDoubleBuffer().put(values);
+        out.position(out.position() + values.length * 8);
+    }
+
+    private static int[] getInts(ByteBuffer in, int n) {
+        int[] values = new int[n];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + n * 4);
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer in, int n) {
+        long[] values = new long[n];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + n * 8);
+        return values;
+    }
+
+    private static double[] getDoubles(ByteBuffer in, int n) {
+        double[] values = new double[n];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + n * 8);
+        return values;
+    }
+
+    private static byte[] getBytes(ByteBuffer in, int n) {
+        byte[] values = new byte[n];
+        in.get(values);
+        return values;
+    }
+}
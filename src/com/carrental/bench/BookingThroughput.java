@@ -0,0 +1,241 @@
+package com.carrental.bench;
+
+import com.carrental.BookingClient;
+import com.carrental.BookingServer;
+import com.carrental.CapacityCalendar;
+import com.carrental.Car;
+import com.carrental.CarInventory;
+import com.carrental.CarNotAvailableException;
+import com.carrental.Customer;
+import com.carrental.ElectricCar;
+import com.carrental.FuelType;
+import com.carrental.GasCar;
+import com.carrental.Journal;
+import com.carrental.LuxuryCar;
+import com.carrental.PaymentMethod;
+import com.carrental.PaymentPipeline;
+import com.carrental.PaymentRegistry;
+import com.carrental.RentalRegistry;
+import com.carrental.RentalService;
+import com.carrental.ReservationEngine;
+import com.carrental.SimulatedPaymentGateway;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the binary booking protocol: {@link BookingClient}s against a local {@link BookingServer}.
+ *
+ * <p>Each connection keeps a fixed number of requests in flight (the
+ * pipelining depth) in this mix: 50% availability checks, 25% rentals and
+ * 25% returns of its own earlier rentals. Rentals that hit a rented car are
+ * answered requests like any other. Requests during the warm-up are not
+ * measured.</p>
+ *
+ * <p>Usage: {@code BookingThroughput [connections] [depth] [seconds]}; add
+ * {@code -Dcarrental.journal=FILE} to journal every rent and return. Run
+ * with e.g. {@code java -cp bin com.carrental.bench.BookingThroughput 8 128 20}.
+ * Measured on JDK 21, single core, client and server in one JVM, 20,000 cars:</p>
+ * <pre>
+ * connections  depth  journal     req/s   p50 ms   p99 ms
+ *           1      1  no         27,747     0.03     0.07
+ *           8    128  no         91,843     9.23    56.79
+ *          64     16  no         63,465    13.98    67.25
+ *           8    128  yes        57,905    12.47    74.74
+ * </pre>
+ * <p>The gateway pipeline batches up to 256 payments here; with 64 per batch
+ * it caps rentals at about 12,000/s and the total at about 48,000 req/s.</p>
+ * <p>For comparison, {@link HttpLoad} reaches about 5,000 req/s on the same
+ * machine with JSON over HTTP.</p>
+ */
+public final class BookingThroughput {
+
+    private static final int FLEET_SIZE = 20_000;
+    private static final long WARMUP_NANOS = 5_000_000_000L;
+
+    private static final String[] OPERATIONS = {"availability", "rent", "return"};
+
+    private BookingThroughput() {}
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        String journalFile = System.getProperty("carrental.journal");
+        Journal journal = journalFile == null ? null : Journal.open(Path.of(journalFile), 64, 20, null);
+
+        CarInventory inventory = new CarInventory();
+        RentalService service = new RentalService(inventory, new RentalRegistry(), new PaymentRegistry(),
+                new ReservationEngine(), new CapacityCalendar(inventory), journal);
+        service.addCars(fleet());
+        PaymentPipeline pipeline =
+                service.usePaymentGateway(new SimulatedPaymentGateway(20, 0.0, Double.MAX_VALUE), 256, 10);
+
+        AtomicInteger nextCustomerId = new AtomicInteger(1);
+        BookingServer server = new BookingServer(0, inventory, service,
+                (name, phone) -> new Customer(nextCustomerId.getAndIncrement(), name, phone));
+
+        System.out.printf("%d connections x %d in flight, %d s (+%d s warm-up), journal: %s%n",
+                connections, depth, seconds, WARMUP_NANOS / 1_000_000_000L, journal != null);
+
+        long measureFrom = System.nanoTime() + WARMUP_NANOS;
+        long end = measureFrom + seconds * 1_000_000_000L;
+
+        List<Driver> drivers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Driver driver = new Driver(i, new BookingClient("localhost", server.port()), depth, measureFrom, end);
+            drivers.add(driver);
+            threads.add(Thread.ofVirtual().name("driver-", i).start(driver::run));
+        }
+        for (Thread t : threads) t.join();
+
+        report(drivers, seconds);
+
+        for (Driver d : drivers) d.client.close();
+        server.close();
+        pipeline.close();
+        System.out.println("Ödeme hattı: " + pipeline.stats());
+        if (journal != null) journal.close();
+    }
+
+    private static List<Car> fleet() {
+        List<Car> cars = new ArrayList<>(FLEET_SIZE);
+        for (int id = 1; id <= FLEET_SIZE; id++) {
+            String brand = "Marka" + (id % 20);
+            String model = "Model" + (id % 200);
+            cars.add(switch (id % 3) {
+                case 0 -> new GasCar(id, brand, model, 500 + id % 500, FuelType.values()[id % 3]);
+                case 1 -> new ElectricCar(id, brand, model, 800 + id % 300, 300 + id % 200);
+                default -> new LuxuryCar(id, brand, model, 2000 + id % 1000);
+            });
+        }
+        return cars;
+    }
+
+    private static void report(List<Driver> drivers, int seconds) {
+        System.out.printf("%-13s %9s %9s %8s %8s %9s %9s %7s%n",
+                "", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "rejected", "errors");
+        long[][] perOperation = new long[OPERATIONS.length][];
+        long rejected = 0, errors = 0;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            long opRejected = 0, opErrors = 0;
+            List<long[]> parts = new ArrayList<>();
+            for (Driver d : drivers) {
+                parts.add(d.latencies[op].sorted());
+                opRejected += d.rejected[op].get();
+                opErrors += d.errors[op].get();
+            }
+            long[] merged = parts.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            perOperation[op] = merged;
+            rejected += opRejected;
+            errors += opErrors;
+            printRow(OPERATIONS[op], merged, seconds, opRejected, opErrors);
+        }
+        long[] all = Arrays.stream(perOperation).flatMapToLong(Arrays::stream).sorted().toArray();
+        printRow("total", all, seconds, rejected, errors);
+    }
+
+    private static void printRow(String label, long[] sorted, int seconds, long rejected, long errors) {
+        System.out.printf("%-13s %9d %9.0f %8.2f %8.2f %9.2f %9d %7d%n",
+                label, sorted.length, (double) sorted.length / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999), rejected, errors);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /** Latencies in nanoseconds; written by the driver and the client's reader thread. */
+    private static final class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    /** Keeps {@code depth} requests in flight on one connection. */
+    private static final class Driver {
+
+        final int index;
+        final BookingClient client;
+        final Semaphore window;
+        final int depth;
+        final long measureFrom;
+        final long end;
+        final SplittableRandom random;
+
+        final Latencies[] latencies = new Latencies[OPERATIONS.length];
+        final AtomicInteger[] rejected = new AtomicInteger[OPERATIONS.length];
+        final AtomicInteger[] errors = new AtomicInteger[OPERATIONS.length];
+
+        // Rentals of this connection that have not been returned yet
+        final ConcurrentLinkedQueue<Integer> open = new ConcurrentLinkedQueue<>();
+
+        Driver(int index, BookingClient client, int depth, long measureFrom, long end) {
+            this.index = index;
+            this.client = client;
+            this.window = new Semaphore(depth);
+            this.depth = depth;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.random = new SplittableRandom(index);
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                latencies[i] = new Latencies();
+                rejected[i] = new AtomicInteger();
+                errors[i] = new AtomicInteger();
+            }
+        }
+
+        void run() {
+            String name = "Partner " + index;
+            while (System.nanoTime() < end) {
+                window.acquireUninterruptibly();
+
+                int roll = random.nextInt(4);
+                Integer rentalId = (roll == 3) ? open.poll() : null;
+                int op = roll < 2 || (roll == 3 && rentalId == null) ? 0 : roll == 2 ? 1 : 2;
+
+                long started = System.nanoTime();
+                CompletableFuture<?> future = switch (op) {
+                    case 0 -> client.availability(1 + random.nextInt(FLEET_SIZE), 1 + random.nextInt(7));
+                    case 1 -> client.rent(1 + random.nextInt(FLEET_SIZE), name, "05550000000",
+                            1 + random.nextInt(7), PaymentMethod.CARD)
+                            .thenApply(rented -> open.add(rented.rentalId()));
+                    default -> client.returnRental(rentalId);
+                };
+                int measuredOp = op;
+                future.whenComplete((result, error) -> {
+                    long finished = System.nanoTime();
+                    window.release();
+                    if (started < measureFrom || finished > end) return;
+                    latencies[measuredOp].add(finished - started);
+                    if (error == null) return;
+                    Throwable cause = (error.getCause() != null) ? error.getCause() : error;
+                    (cause instanceof CarNotAvailableException ? rejected : errors)[measuredOp].incrementAndGet();
+                });
+            }
+            // Let the last requests finish before the connection is closed
+            window.acquireUninterruptibly(depth);
+        }
+    }
+}
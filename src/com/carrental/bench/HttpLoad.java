@@ -0,0 +1,353 @@
+package com.carrental.bench;
+
+import com.carrental.CapacityCalendar;
+import com.carrental.Car;
+import com.carrental.CarInventory;
+import com.carrental.Customer;
+import com.carrental.ElectricCar;
+import com.carrental.FuelType;
+import com.carrental.GasCar;
+import com.carrental.HttpApi;
+import com.carrental.Journal;
+import com.carrental.LuxuryCar;
+import com.carrental.PaymentPipeline;
+import com.carrental.PaymentRegistry;
+import com.carrental.RentalRegistry;
+import com.carrental.RentalService;
+import com.carrental.ReservationEngine;
+import com.carrental.SimulatedPaymentGateway;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator for {@link HttpApi}: many keep-alive clients, each on its own virtual thread.
+ *
+ * <p>Every client holds one HTTP/1.1 connection and sends requests back to
+ * back (closed loop) in this mix: 60% car searches, 20% rentals, 10% returns
+ * of its own earlier rentals, 5% receipts and 5% payment listings. Rentals
+ * that hit an already rented car (409) count as answered requests. Requests
+ * during the warm-up are not measured.</p>
+ *
+ * <p>Usage: {@code HttpLoad [clients] [seconds] [host:port]}. Without an
+ * address, an API over a synthetic fleet of 20,000 cars is started in the
+ * same JVM, with a 20 ms simulated gateway and, if
+ * {@code -Dcarrental.journal=FILE} is given, a journal. Run with e.g.
+ * {@code java -cp bin com.carrental.bench.HttpLoad 2000 30}. Measured on
+ * JDK 21, single core, client and server in one JVM, 15-30 s after 5 s warm-up:</p>
+ * <pre>
+ * clients  journal   req/s   p50 ms   p99 ms   p99.9 ms   p99 rent ms
+ *     200  no         5157     35.0     92.9      108.6          91.9
+ *     200  yes        4339     44.3    115.2      182.7         137.0
+ *   2,000  no         5393    359.9    694.3      742.2         694.8
+ *   2,000  yes        3517    472.3   1705.3     2872.9        2117.8
+ * </pre>
+ * <p>With one core shared by clients and server the numbers are a lower
+ * bound; the p99 is mostly queueing behind the other clients.</p>
+ */
+public final class HttpLoad {
+
+    private static final int FLEET_SIZE = 20_000;
+    private static final long WARMUP_NANOS = 5_000_000_000L;
+
+    private static final String[] OPERATIONS = {"search", "rent", "return", "receipt", "payments"};
+    private static final Pattern RENTAL_ID = Pattern.compile("\"rentalId\":(\\d+)");
+
+    private HttpLoad() {}
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        HttpApi api = null;
+        PaymentPipeline pipeline = null;
+        Journal journal = null;
+        String host;
+        int port;
+        if (args.length > 2) {
+            host = args[2].substring(0, args[2].lastIndexOf(':'));
+            port = Integer.parseInt(args[2].substring(args[2].lastIndexOf(':') + 1));
+        } else {
+            String journalFile = System.getProperty("carrental.journal");
+            if (journalFile != null) journal = Journal.open(Path.of(journalFile), 64, 20, null);
+
+            CarInventory inventory = new CarInventory();
+            RentalRegistry rentals = new RentalRegistry();
+            PaymentRegistry payments = new PaymentRegistry();
+            RentalService service = new RentalService(inventory, rentals, payments,
+                    new ReservationEngine(), new CapacityCalendar(inventory), journal);
+            service.addCars(fleet());
+            pipeline = service.usePaymentGateway(new SimulatedPaymentGateway(20, 0.0, Double.MAX_VALUE), 64, 10);
+
+            AtomicInteger nextCustomerId = new AtomicInteger(1);
+            api = new HttpApi(0, inventory, service, rentals, payments,
+                    (name, phone) -> new Customer(nextCustomerId.getAndIncrement(), name, phone));
+            host = "localhost";
+            port = api.port();
+        }
+
+        System.out.printf("%d clients, %d s (+%d s warm-up) against %s:%d%n",
+                clients, seconds, WARMUP_NANOS / 1_000_000_000L, host, port);
+
+        long start = System.nanoTime();
+        long measureFrom = start + WARMUP_NANOS;
+        long end = measureFrom + seconds * 1_000_000_000L;
+
+        List<Client> all = new ArrayList<>(clients);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(i, host, port, measureFrom, end);
+            all.add(client);
+            Thread.ofVirtual().name("load-", i).start(() -> {
+                try {
+                    client.run();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+
+        report(all, seconds);
+
+        if (api != null) api.close();
+        if (pipeline != null) {
+            pipeline.close();
+            System.out.println("Ödeme hattı: " + pipeline.stats());
+        }
+        if (journal != null) journal.close();
+    }
+
+    private static List<Car> fleet() {
+        List<Car> cars = new ArrayList<>(FLEET_SIZE);
+        for (int id = 1; id <= FLEET_SIZE; id++) {
+            String brand = "Marka" + (id % 20);
+            String model = "Model" + (id % 200);
+            cars.add(switch (id % 3) {
+                case 0 -> new GasCar(id, brand, model, 500 + id % 500, FuelType.values()[id % 3]);
+                case 1 -> new ElectricCar(id, brand, model, 800 + id % 300, 300 + id % 200);
+                default -> new LuxuryCar(id, brand, model, 2000 + id % 1000);
+            });
+        }
+        return cars;
+    }
+
+    private static void report(List<Client> clients, int seconds) {
+        System.out.printf("%-9s %9s %9s %8s %8s %9s %8s %6s %6s%n",
+                "", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "4xx", "5xx");
+
+        long[][] perOperation = new long[OPERATIONS.length][];
+        long errors = 0, total4xx = 0, total5xx = 0;
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            int count = 0;
+            long c4xx = 0, c5xx = 0;
+            for (Client c : clients) {
+                count += c.latencies[op].size;
+                c4xx += c.status4xx[op];
+                c5xx += c.status5xx[op];
+            }
+            long[] merged = new long[count];
+            int at = 0;
+            for (Client c : clients) {
+                System.arraycopy(c.latencies[op].values, 0, merged, at, c.latencies[op].size);
+                at += c.latencies[op].size;
+            }
+            Arrays.sort(merged);
+            perOperation[op] = merged;
+            total4xx += c4xx;
+            total5xx += c5xx;
+            printRow(OPERATIONS[op], merged, seconds, c4xx, c5xx);
+        }
+        for (Client c : clients) errors += c.errors;
+
+        long[] all = Arrays.stream(perOperation).flatMapToLong(Arrays::stream).sorted().toArray();
+        printRow("total", all, seconds, total4xx, total5xx);
+        System.out.println("connection errors: " + errors);
+    }
+
+    private static void printRow(String label, long[] sorted, int seconds, long c4xx, long c5xx) {
+        System.out.printf("%-9s %9d %9.0f %8.2f %8.2f %9.2f %8.2f %6d %6d%n",
+                label, sorted.length, (double) sorted.length / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6, c4xx, c5xx);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /** Growable array of latencies in nanoseconds. */
+    private static final class Latencies {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+    }
+
+    /** One keep-alive connection sending requests in a loop. */
+    private static final class Client {
+
+        final int index;
+        final String host;
+        final int port;
+        final long measureFrom;
+        final long end;
+        final SplittableRandom random;
+
+        final Latencies[] latencies = new Latencies[OPERATIONS.length];
+        final long[] status4xx = new long[OPERATIONS.length];
+        final long[] status5xx = new long[OPERATIONS.length];
+        long errors;
+
+        // Rentals of this client that have not been returned yet
+        final ArrayDeque<Integer> open = new ArrayDeque<>();
+
+        Socket socket;
+        InputStream in;
+        OutputStream out;
+        String body;
+
+        Client(int index, String host, int port, long measureFrom, long end) {
+            this.index = index;
+            this.host = host;
+            this.port = port;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            this.random = new SplittableRandom(index);
+            for (int i = 0; i < latencies.length; i++) latencies[i] = new Latencies();
+        }
+
+        void run() {
+            // Spread the connects so they do not all hit the accept queue at once
+            try {
+                Thread.sleep(random.nextInt(1000));
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            while (System.nanoTime() < end) {
+                int roll = random.nextInt(100);
+                int op = roll < 60 ? 0 : roll < 80 ? 1 : roll < 90 ? 2 : roll < 95 ? 3 : 4;
+                if ((op == 2 || op == 3) && open.isEmpty()) op = 0;
+
+                long started = System.nanoTime();
+                int status;
+                try {
+                    status = switch (op) {
+                        case 0 -> send("GET", "/cars?brand=Marka" + random.nextInt(20) + "&available=true&size=20", null);
+                        case 1 -> send("POST", "/rentals", "carIds=" + (1 + random.nextInt(FLEET_SIZE))
+                                + "&name=Load+" + index + "&phone=05550000000&days=" + (1 + random.nextInt(7))
+                                + "&method=CARD");
+                        case 2 -> send("POST", "/rentals/" + open.poll() + "/return", null);
+                        case 3 -> send("GET", "/rentals/" + open.peek() + "/receipt", null);
+                        default -> send("GET", "/payments?offset=" + random.nextInt(1000) + "&limit=20", null);
+                    };
+                } catch (IOException e) {
+                    errors++;
+                    disconnect();
+                    continue;
+                }
+                long finished = System.nanoTime();
+
+                if (op == 1 && status == 201) {
+                    Matcher m = RENTAL_ID.matcher(body);
+                    if (m.find()) open.add(Integer.parseInt(m.group(1)));
+                }
+                if (started >= measureFrom && finished <= end) {
+                    latencies[op].add(finished - started);
+                    if (status >= 500) status5xx[op]++;
+                    else if (status >= 400) status4xx[op]++;
+                }
+            }
+            disconnect();
+        }
+
+        /**
+         * Sends one request on the connection (opening it if needed) and reads the whole response.
+         *
+         * @return the status code; the body is left in {@link #body}
+         */
+        int send(String method, String path, String form) throws IOException {
+            if (socket == null) {
+                socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port));
+                in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+                out = socket.getOutputStream();
+            }
+
+            byte[] payload = form == null ? new byte[0] : form.getBytes(StandardCharsets.UTF_8);
+            StringBuilder head = new StringBuilder(128)
+                    .append(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                    .append("Host: ").append(host).append("\r\n")
+                    .append("Content-Length: ").append(payload.length).append("\r\n");
+            if (form != null) head.append("Content-Type: application/x-www-form-urlencoded\r\n");
+            head.append("\r\n");
+
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+            byte[] request = Arrays.copyOf(headBytes, headBytes.length + payload.length);
+            System.arraycopy(payload, 0, request, headBytes.length, payload.length);
+            out.write(request);
+            out.flush();
+
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            int length = -1;
+            boolean close = false;
+            for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+                int colon = line.indexOf(':');
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) length = Integer.parseInt(value);
+                if (name.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) close = true;
+            }
+            if (length < 0) throw new IOException("Yanıtta Content-Length yok.");
+
+            body = new String(in.readNBytes(length), StandardCharsets.UTF_8);
+            if (close) disconnect();
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder(64);
+            while (true) {
+                int b = in.read();
+                if (b < 0) throw new EOFException("Bağlantı kapandı.");
+                if (b == '\n') break;
+                if (b != '\r') line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        private void disconnect() {
+            if (socket == null) return;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // reconnect on the next request anyway
+            }
+            socket = null;
+        }
+    }
+}
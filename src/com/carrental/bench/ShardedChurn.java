@@ -0,0 +1,128 @@
+package com.carrental.bench;
+
+import com.carrental.Car;
+import com.carrental.CarInventory;
+import com.carrental.CarQuery;
+import com.carrental.ElectricCar;
+import com.carrental.FuelType;
+import com.carrental.GasCar;
+import com.carrental.LuxuryCar;
+import com.carrental.ShardedInventory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fleet churn against a single {@link CarInventory} and {@link ShardedInventory}s of growing shard count.
+ *
+ * <p>Writer threads remove a random car and add a new car under the same ID
+ * (each pair counted as one operation); renter threads rent and return
+ * random cars; one searcher repeatedly runs a brand + availability query
+ * over the whole fleet. Each configuration runs on its own fleet.</p>
+ *
+ * <p>Usage: {@code ShardedChurn [writers] [seconds]}, e.g.
+ * {@code java -cp bin com.carrental.bench.ShardedChurn 8 5}.
+ * Measured on JDK 21 with one core (so the parallel fan-out cannot help and
+ * the gain comes from writers no longer queueing on one lock), 200,000 cars,
+ * 8 writers, 4 renters:</p>
+ * <pre>
+ * shards   add+remove/s   rent+return/s   searches/s
+ *      1         51,317         927,929        294.6
+ *      2        132,587         876,205        293.6
+ *      4        206,578         704,938        256.2
+ *      8        255,650         529,650        173.6
+ *     16        266,880         519,893        225.2
+ * </pre>
+ * <p>Renting is lock-free on both, so it only loses CPU share to the writers
+ * that now get through; with more cores the fan-out also spreads searches.</p>
+ */
+public final class ShardedChurn {
+
+    private static final int FLEET_SIZE = 200_000;
+    private static final int RENTERS = 4;
+
+    private ShardedChurn() {}
+
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%6s %14s %15s %12s%n", "shards", "add+remove/s", "rent+return/s", "searches/s");
+        for (int shards : new int[]{1, 2, 4, 8, 16}) {
+            CarInventory inventory = (shards == 1) ? new CarInventory() : ShardedInventory.byIdHash(shards);
+            inventory.addCars(fleet(1, FLEET_SIZE));
+            run(inventory, shards, writers, seconds);
+        }
+    }
+
+    private static void run(CarInventory inventory, int shards, int writers, int seconds) throws InterruptedException {
+        LongAdder churned = new LongAdder();
+        LongAdder rented = new LongAdder();
+        LongAdder searched = new LongAdder();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(writers + RENTERS + 1);
+
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            Thread.ofPlatform().start(() -> {
+                SplittableRandom random = new SplittableRandom(writer);
+                // Each writer replaces only IDs of its own residue class, so writers never collide
+                int perWriter = FLEET_SIZE / writers;
+                while (System.nanoTime() < end) {
+                    int id = 1 + writer + random.nextInt(perWriter) * writers;
+                    inventory.removeCar(id);
+                    inventory.addCar(fleet(id, id).get(0));
+                    churned.increment();
+                }
+                done.countDown();
+            });
+        }
+        for (int r = 0; r < RENTERS; r++) {
+            int renter = r;
+            Thread.ofPlatform().start(() -> {
+                SplittableRandom random = new SplittableRandom(1000 + renter);
+                while (System.nanoTime() < end) {
+                    Car car = inventory.findCarById(1 + random.nextInt(FLEET_SIZE));
+                    if (car == null) continue;
+                    try {
+                        car.rent();
+                        car.returnCar();
+                        rented.increment();
+                    } catch (RuntimeException busy) {
+                        // rented by another renter meanwhile
+                    }
+                }
+                done.countDown();
+            });
+        }
+        Thread.ofPlatform().start(() -> {
+            CarQuery query = new CarQuery().brand("Marka7").availableOnly();
+            while (System.nanoTime() < end) {
+                inventory.search(query);
+                searched.increment();
+            }
+            done.countDown();
+        });
+        done.await();
+
+        System.out.printf("%6d %14.0f %15.0f %12.1f%n", shards,
+                churned.sum() / (double) seconds, rented.sum() / (double) seconds, searched.sum() / (double) seconds);
+    }
+
+    private static List<Car> fleet(int fromId, int toId) {
+        List<Car> cars = new ArrayList<>(toId - fromId + 1);
+        for (int id = fromId; id <= toId; id++) {
+            String brand = "Marka" + (id % 20);
+            String model = "Model" + (id % 200);
+            cars.add(switch (id % 3) {
+                case 0 -> new GasCar(id, brand, model, 500 + id % 500, FuelType.values()[id % 3]);
+                case 1 -> new ElectricCar(id, brand, model, 800 + id % 300, 300 + id % 200);
+                default -> new LuxuryCar(id, brand, model, 2000 + id % 1000);
+            });
+        }
+        return cars;
+    }
+}
@@ -0,0 +1,97 @@
+package com.carrental.bench;
+
+import com.carrental.CapacityCalendar;
+import com.carrental.Car;
+import com.carrental.CarInventory;
+import com.carrental.Customer;
+import com.carrental.ElectricCar;
+import com.carrental.FuelType;
+import com.carrental.GasCar;
+import com.carrental.PaymentMethod;
+import com.carrental.PaymentRegistry;
+import com.carrental.Rental;
+import com.carrental.RentalRegistry;
+import com.carrental.RentalService;
+import com.carrental.ReservationEngine;
+import com.carrental.Snapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that a snapshot taken after removing rented cars can be loaded again.
+ *
+ * <p>Rents three cars, returns two, then removes one returned car, removes
+ * the car that is still rented, and adds a different car under the ID of
+ * the other returned one. The snapshot of that state must load, every rental
+ * must get back the car it was made for, and the re-added car must be the
+ * only one in the inventory under its ID.</p>
+ *
+ * <p>Run with {@code java -cp bin com.carrental.bench.SnapshotRoundTrip};
+ * it prints {@code OK} or the first mismatch and exits with status 1.</p>
+ */
+public final class SnapshotRoundTrip {
+
+    private SnapshotRoundTrip() {}
+
+    public static void main(String[] args) throws Exception {
+        CarInventory inventory = new CarInventory();
+        RentalRegistry rentals = new RentalRegistry();
+        PaymentRegistry payments = new PaymentRegistry();
+        RentalService service = new RentalService(inventory, rentals, payments,
+                new ReservationEngine(), new CapacityCalendar(inventory));
+
+        service.addCar(new GasCar(1, "Fiat", "Egea", 900, FuelType.values()[0]));
+        service.addCar(new GasCar(2, "Renault", "Clio", 850, FuelType.values()[1]));
+        service.addCar(new ElectricCar(3, "Togg", "T10X", 1500, 450));
+        service.addCar(new ElectricCar(4, "Tesla", "Model Y", 2000, 500));
+
+        Customer customer = new Customer(1, "Ayşe Yılmaz", "05551234567");
+        int removed = service.rent(1, customer, 2, PaymentMethod.CARD).rentals().get(0).getRentalId();
+        int replaced = service.rent(2, customer, 2, PaymentMethod.CASH).rentals().get(0).getRentalId();
+        int stillOpen = service.rent(3, customer, 2, PaymentMethod.CARD).rentals().get(0).getRentalId();
+        service.returnRental(removed);
+        service.returnRental(replaced);
+
+        service.removeCar(1);
+        service.removeCar(2);
+        service.removeCar(3);
+        service.addCar(new GasCar(2, "Dacia", "Sandero", 700, FuelType.values()[0]));
+
+        Path file = Files.createTempFile("carrental-roundtrip", ".snapshot");
+        try {
+            Snapshot.write(file, 1, inventory, rentals, payments);
+
+            CarInventory loadedInventory = new CarInventory();
+            RentalRegistry loadedRentals = new RentalRegistry();
+            Snapshot.load(file, loadedInventory, loadedRentals, new PaymentRegistry(),
+                    new ReservationEngine(), new CapacityCalendar(loadedInventory));
+
+            check(loadedInventory.size() == 2, "envanterde 2 araç olmalı: " + loadedInventory.size());
+            check(loadedInventory.findCarById(1) == null, "silinen araç envantere dönmemeli");
+            check(sameCar(loadedRentals.findById(removed), "Fiat"), "silinen aracın kiralaması aracını kaybetti");
+
+            Car current = loadedInventory.findCarById(2);
+            check(current != null && current.getBrand().equals("Dacia") && current.isAvailable(),
+                    "yeniden eklenen araç yanlış: " + current);
+            Rental old = loadedRentals.findById(replaced);
+            check(sameCar(old, "Renault") && old.getCar() != current, "eski kiralama yeni araca bağlandı");
+
+            Rental open = loadedRentals.findById(stillOpen);
+            check(sameCar(open, "Togg") && !open.getCar().isAvailable(), "açık kiralamanın aracı kirada olmalı");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println("OK");
+    }
+
+    private static boolean sameCar(Rental rental, String brand) {
+        return rental != null && rental.getCar().getBrand().equals(brand);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (condition) return;
+        System.out.println("HATA: " + message);
+        System.exit(1);
+    }
+}
@@ -5,4 +5,5 @@
  * 
  */
 module NTPproje {
+	requires jdk.httpserver;
 }
\ No newline at end of file